@@ -0,0 +1,484 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2018 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import net.imglib2.neighborsearch.KNearestNeighborSearchOnDynamicKDTree;
+import net.imglib2.neighborsearch.RadiusNeighborSearchOnDynamicKDTree;
+
+/**
+ * A spatial index that supports insertion and removal of points, built from
+ * static {@link FlatKDTree}s using the logarithmic method.
+ * <p>
+ * New points are collected in a small unsorted buffer of {@link #BUFFER_SIZE}
+ * points. When the buffer is full, it is merged with levels <em>0</em> to
+ * <em>j-1</em> into a new tree at level <em>j</em>, the first empty level.
+ * Level <em>j</em> holds at most {@code BUFFER_SIZE << j} points, so every
+ * point is rebuilt into a tree at most <em>log(size / BUFFER_SIZE)</em> times,
+ * and insertion takes amortized <em>O(log<sup>2</sup>(size))</em> time.
+ * </p>
+ * <p>
+ * Removed points are only marked as deleted and skipped by searches. A level
+ * is rebuilt without its deleted points when more than half of its points
+ * have been removed, so deletion takes amortized <em>O(log(size))</em> time
+ * and searches never visit more than twice the number of live points.
+ * </p>
+ * <p>
+ * Each point is identified by the id returned from
+ * {@link #insert(RealLocalizable, Object)}. Ids of removed points are reused
+ * by later insertions once the point has been purged from its tree.
+ * </p>
+ * <p>
+ * Use {@link KNearestNeighborSearchOnDynamicKDTree} and
+ * {@link RadiusNeighborSearchOnDynamicKDTree} to search the index. A search
+ * always reflects the current content of the index, but the index must not be
+ * modified while a search is running.
+ * </p>
+ */
+public class DynamicKDTree< T > implements EuclideanSpace
+{
+	/**
+	 * Maximum number of points that are kept outside of a tree.
+	 */
+	public static final int BUFFER_SIZE = 64;
+
+	private static final int IN_BUFFER = -1;
+
+	private final int n;
+
+	/**
+	 * coordinates of point {@code id} are at {@code coordinates[ id * n ]} to
+	 * {@code coordinates[ id * n + n - 1 ]}.
+	 */
+	private double[] coordinates;
+
+	private Object[] values;
+
+	private boolean[] alive;
+
+	/**
+	 * level of the tree containing each id, or {@link #IN_BUFFER}.
+	 */
+	private int[] levelOf;
+
+	/**
+	 * number of ids ever allocated.
+	 */
+	private int numIds;
+
+	private int[] freeIds;
+
+	private int numFreeIds;
+
+	private int size;
+
+	private final int[] buffer = new int[ BUFFER_SIZE ];
+
+	private int bufferSize;
+
+	/**
+	 * {@code levels.get( j )} is {@code null} if level <em>j</em> is empty.
+	 */
+	private final List< Level > levels = new ArrayList<>();
+
+	private final class Level
+	{
+		final int[] ids;
+
+		final FlatKDTree< T > tree;
+
+		int numDead;
+
+		Level( final int[] ids, final double[] levelCoordinates )
+		{
+			this.ids = ids;
+			this.tree = new FlatKDTree<>( new AbstractList< T >()
+			{
+				@SuppressWarnings( "unchecked" )
+				@Override
+				public T get( final int i )
+				{
+					return ( T ) values[ ids[ i ] ];
+				}
+
+				@Override
+				public int size()
+				{
+					return ids.length;
+				}
+			}, levelCoordinates, n );
+		}
+	}
+
+	public DynamicKDTree( final int n )
+	{
+		this.n = n;
+		final int capacity = 2 * BUFFER_SIZE;
+		coordinates = new double[ capacity * n ];
+		values = new Object[ capacity ];
+		alive = new boolean[ capacity ];
+		levelOf = new int[ capacity ];
+		freeIds = new int[ capacity ];
+	}
+
+	@Override
+	public int numDimensions()
+	{
+		return n;
+	}
+
+	/**
+	 * @return the number of points in the index.
+	 */
+	public int size()
+	{
+		return size;
+	}
+
+	/**
+	 * Add a point to the index.
+	 *
+	 * @return the id of the new point.
+	 */
+	public int insert( final RealLocalizable position, final T value )
+	{
+		final int id = allocate();
+		for ( int d = 0; d < n; ++d )
+			coordinates[ id * n + d ] = position.getDoublePosition( d );
+		values[ id ] = value;
+		alive[ id ] = true;
+		levelOf[ id ] = IN_BUFFER;
+		++size;
+		buffer[ bufferSize++ ] = id;
+		if ( bufferSize == BUFFER_SIZE )
+			flushBuffer();
+		return id;
+	}
+
+	/**
+	 * Remove the point with the given id from the index.
+	 *
+	 * @return {@code false} if there is no such point.
+	 */
+	public boolean remove( final int id )
+	{
+		if ( !contains( id ) )
+			return false;
+		alive[ id ] = false;
+		values[ id ] = null;
+		--size;
+		final int l = levelOf[ id ];
+		if ( l == IN_BUFFER )
+		{
+			for ( int i = 0; i < bufferSize; ++i )
+				if ( buffer[ i ] == id )
+				{
+					buffer[ i ] = buffer[ --bufferSize ];
+					break;
+				}
+			free( id );
+		}
+		else
+		{
+			final Level level = levels.get( l );
+			if ( 2 * ++level.numDead > level.ids.length )
+			{
+				final int[] ids = new int[ level.ids.length ];
+				levels.set( l, build( Arrays.copyOf( ids, collect( level, ids, 0 ) ), l ) );
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Remove all points.
+	 */
+	public void clear()
+	{
+		Arrays.fill( alive, 0, numIds, false );
+		Arrays.fill( values, 0, numIds, null );
+		numIds = 0;
+		numFreeIds = 0;
+		size = 0;
+		bufferSize = 0;
+		levels.clear();
+	}
+
+	/**
+	 * @return whether a point with the given id is in the index.
+	 */
+	public boolean contains( final int id )
+	{
+		return id >= 0 && id < numIds && alive[ id ];
+	}
+
+	@SuppressWarnings( "unchecked" )
+	public T getValue( final int id )
+	{
+		return ( T ) values[ id ];
+	}
+
+	public double getDoublePosition( final int id, final int d )
+	{
+		return coordinates[ id * n + d ];
+	}
+
+	/**
+	 * @return squared Euclidean distance between point {@code id} and
+	 *         {@code p}.
+	 */
+	public double squDistance( final int id, final double[] p )
+	{
+		double sum = 0;
+		for ( int d = 0, o = id * n; d < n; ++d, ++o )
+		{
+			final double diff = coordinates[ o ] - p[ d ];
+			sum += diff * diff;
+		}
+		return sum;
+	}
+
+	/**
+	 * @return the number of points that are not yet part of a tree.
+	 */
+	public int bufferSize()
+	{
+		return bufferSize;
+	}
+
+	/**
+	 * @return the id of the i-th buffered point.
+	 */
+	public int getBufferId( final int i )
+	{
+		return buffer[ i ];
+	}
+
+	/**
+	 * @return the number of levels, some of which may be empty.
+	 */
+	public int numLevels()
+	{
+		return levels.size();
+	}
+
+	/**
+	 * Get the tree of level {@code level}, or {@code null} if the level is
+	 * empty. The tree may contain removed points, use {@link #getIds(int)}
+	 * and {@link #contains(int)} to skip them.
+	 */
+	public FlatKDTree< T > getTree( final int level )
+	{
+		final Level l = levels.get( level );
+		return l == null ? null : l.tree;
+	}
+
+	/**
+	 * Get the ids of the points in the tree of level {@code level}. The id of
+	 * the point at {@code node} is {@code getIds( level )[
+	 * getTree( level ).getIndex( node ) ]}. The array must not be modified.
+	 */
+	public int[] getIds( final int level )
+	{
+		return levels.get( level ).ids;
+	}
+
+	/**
+	 * Merge the buffer and levels <em>0</em> to <em>j-1</em> into level
+	 * <em>j</em>, the first empty level.
+	 */
+	private void flushBuffer()
+	{
+		int j = 0;
+		int capacity = BUFFER_SIZE;
+		while ( j < levels.size() && levels.get( j ) != null )
+			capacity += levels.get( j++ ).ids.length;
+		if ( j == levels.size() )
+			levels.add( null );
+
+		final int[] ids = new int[ capacity ];
+		System.arraycopy( buffer, 0, ids, 0, bufferSize );
+		int count = bufferSize;
+		bufferSize = 0;
+		for ( int l = 0; l < j; ++l )
+		{
+			count = collect( levels.get( l ), ids, count );
+			levels.set( l, null );
+		}
+		levels.set( j, build( Arrays.copyOf( ids, count ), j ) );
+	}
+
+	/**
+	 * Append the live ids of {@code level} to {@code ids}, starting at
+	 * {@code count}, and free the ids of its removed points.
+	 *
+	 * @return the number of ids in {@code ids}.
+	 */
+	private int collect( final Level level, final int[] ids, int count )
+	{
+		for ( final int id : level.ids )
+		{
+			if ( alive[ id ] )
+				ids[ count++ ] = id;
+			else
+				free( id );
+		}
+		return count;
+	}
+
+	/**
+	 * Build the tree of level {@code level} from {@code ids}.
+	 */
+	private Level build( final int[] ids, final int level )
+	{
+		if ( ids.length == 0 )
+			return null;
+		final double[] levelCoordinates = new double[ ids.length * n ];
+		for ( int i = 0; i < ids.length; ++i )
+		{
+			System.arraycopy( coordinates, ids[ i ] * n, levelCoordinates, i * n, n );
+			levelOf[ ids[ i ] ] = level;
+		}
+		return new Level( ids, levelCoordinates );
+	}
+
+	private int allocate()
+	{
+		if ( numFreeIds > 0 )
+			return freeIds[ --numFreeIds ];
+		if ( numIds == alive.length )
+		{
+			final int capacity = 2 * numIds;
+			coordinates = Arrays.copyOf( coordinates, capacity * n );
+			values = Arrays.copyOf( values, capacity );
+			alive = Arrays.copyOf( alive, capacity );
+			levelOf = Arrays.copyOf( levelOf, capacity );
+		}
+		return numIds++;
+	}
+
+	private void free( final int id )
+	{
+		if ( numFreeIds == freeIds.length )
+			freeIds = Arrays.copyOf( freeIds, 2 * numFreeIds );
+		freeIds[ numFreeIds++ ] = id;
+	}
+
+	/**
+	 * Create an {@link Entry} that can be moved to any point of this index
+	 * with {@link Entry#setId(int)}.
+	 */
+	public Entry createEntry()
+	{
+		return new Entry();
+	}
+
+	/**
+	 * A reusable handle to a point of the index, providing its position and
+	 * value.
+	 */
+	public final class Entry implements RealLocalizable, Sampler< T >
+	{
+		private int id;
+
+		private Entry()
+		{}
+
+		public void setId( final int id )
+		{
+			this.id = id;
+		}
+
+		public int getId()
+		{
+			return id;
+		}
+
+		@Override
+		public int numDimensions()
+		{
+			return n;
+		}
+
+		@Override
+		public void localize( final float[] position )
+		{
+			for ( int d = 0; d < n; ++d )
+				position[ d ] = ( float ) coordinates[ id * n + d ];
+		}
+
+		@Override
+		public void localize( final double[] position )
+		{
+			System.arraycopy( coordinates, id * n, position, 0, n );
+		}
+
+		@Override
+		public float getFloatPosition( final int d )
+		{
+			return ( float ) coordinates[ id * n + d ];
+		}
+
+		@Override
+		public double getDoublePosition( final int d )
+		{
+			return coordinates[ id * n + d ];
+		}
+
+		@Override
+		public T get()
+		{
+			return getValue( id );
+		}
+
+		@Override
+		public Entry copy()
+		{
+			final Entry copy = new Entry();
+			copy.id = id;
+			return copy;
+		}
+
+		@Override
+		public String toString()
+		{
+			return "id " + id + " | " + get();
+		}
+	}
+}
@@ -0,0 +1,693 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2018 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * KDTree to access values at RealLocalizable positions, stored in flat
+ * arrays.
+ * <p>
+ * In contrast to {@link KDTree}, nodes are not objects. The tree is a
+ * left-balanced (complete) binary tree in implicit layout: the children of
+ * node <em>i</em> are <em>2i+1</em> and <em>2i+2</em>, and the split dimension
+ * of a node is its depth modulo the number of dimensions. The coordinates of
+ * all nodes are stored in one {@code double[]} (node <em>i</em> at
+ * <em>i*n ... i*n+n-1</em>), and an {@code int[]} maps nodes to indices into
+ * the list of values. A tree with <em>m</em> points thus takes
+ * <em>m*(8n+4)</em> bytes in addition to the values, and searches traverse
+ * contiguous memory.
+ * </p>
+ *
+ * @param <T>
+ *            type of values stored in the tree.
+ */
+public class FlatKDTree< T > implements EuclideanSpace, IterableRealInterval< T >
+{
+	/**
+	 * the number of dimensions.
+	 */
+	final protected int n;
+
+	/**
+	 * the number of nodes in the tree.
+	 */
+	final protected int size;
+
+	/**
+	 * coordinates of the nodes, node i occupies positions[ i * n ] to
+	 * positions[ i * n + n - 1 ].
+	 */
+	final protected double[] positions;
+
+	/**
+	 * the value of node i is values.get( indices[ i ] ).
+	 */
+	final protected int[] indices;
+
+	final protected List< T > values;
+
+	/**
+	 * minimum of each dimension.
+	 */
+	final protected double[] min;
+
+	/**
+	 * maximum of each dimension.
+	 */
+	final protected double[] max;
+
+	/**
+	 * Construct a FlatKDTree from the elements in the given list.
+	 *
+	 * <p>
+	 * Note that the constructor can be called with the same list for both
+	 * {@code values == positions} if {@code T extends RealLocalizable}.
+	 * </p>
+	 *
+	 * @param values
+	 *            a list of values
+	 * @param positions
+	 *            a non-empty list of positions corresponding to the values
+	 * @throws IllegalArgumentException
+	 *             if {@code positions} is empty, because the number of
+	 *             dimensions is not known then. Use
+	 *             {@link #FlatKDTree(List, List, int)} for lists that may be
+	 *             empty.
+	 */
+	public < L extends RealLocalizable > FlatKDTree( final List< T > values, final List< L > positions )
+	{
+		this( values, positions, numDimensions( positions ) );
+	}
+
+	/**
+	 * Construct a FlatKDTree from the elements in the given list.
+	 *
+	 * <p>
+	 * Note that the constructor can be called with the same list for both
+	 * {@code values == positions} if {@code T extends RealLocalizable}.
+	 * </p>
+	 *
+	 * @param values
+	 *            a list of values
+	 * @param positions
+	 *            a list of positions corresponding to the values, possibly
+	 *            empty
+	 * @param n
+	 *            number of dimensions
+	 */
+	public < L extends RealLocalizable > FlatKDTree( final List< T > values, final List< L > positions, final int n )
+	{
+		this( values, flatten( positions, n ), n );
+	}
+
+	/**
+	 * Construct a FlatKDTree from values and their coordinates.
+	 *
+	 * @param values
+	 *            a list of values
+	 * @param coordinates
+	 *            coordinates of the values, the coordinates of
+	 *            {@code values.get( i )} are at {@code coordinates[ i * n ]} to
+	 *            {@code coordinates[ i * n + n - 1 ]}. The array is not
+	 *            modified.
+	 * @param n
+	 *            number of dimensions
+	 */
+	public FlatKDTree( final List< T > values, final double[] coordinates, final int n )
+	{
+		this( values, coordinates, n, null );
+	}
+
+	/**
+	 * Construct a FlatKDTree from values and their coordinates, building
+	 * subtrees with more than {@link KDTree#PARALLEL_THRESHOLD} elements as
+	 * separate tasks on {@code pool}. (Unlike {@link KDTree}, splitting at
+	 * approximate medians is not offered, because the implicit layout
+	 * requires every split at an exact rank.)
+	 *
+	 * @param values
+	 *            a list of values
+	 * @param coordinates
+	 *            coordinates of the values, the coordinates of
+	 *            {@code values.get( i )} are at {@code coordinates[ i * n ]} to
+	 *            {@code coordinates[ i * n + n - 1 ]}. The array is not
+	 *            modified.
+	 * @param n
+	 *            number of dimensions
+	 * @param pool
+	 *            pool on which subtrees are built, or {@code null} to build
+	 *            the tree in the calling thread
+	 */
+	public FlatKDTree( final List< T > values, final double[] coordinates, final int n, final ForkJoinPool pool )
+	{
+		assert values.size() * n == coordinates.length;
+
+		this.n = n;
+		this.size = values.size();
+		this.values = values instanceof java.util.RandomAccess ? values : new ArrayList<>( values );
+
+		this.min = new double[ n ];
+		this.max = new double[ n ];
+		for ( int d = 0; d < n; ++d )
+		{
+			min[ d ] = Double.MAX_VALUE;
+			max[ d ] = -Double.MAX_VALUE;
+		}
+		for ( int i = 0, o = 0; i < size; ++i )
+		{
+			for ( int d = 0; d < n; ++d, ++o )
+			{
+				final double x = coordinates[ o ];
+				if ( x < min[ d ] )
+					min[ d ] = x;
+				if ( x > max[ d ] )
+					max[ d ] = x;
+			}
+		}
+
+		final int[] order = new int[ size ];
+		for ( int i = 0; i < size; ++i )
+			order[ i ] = i;
+		indices = new int[ size ];
+		if ( pool == null )
+			makeSubtree( coordinates, order, 0, size, 0, 0 );
+		else
+			pool.invoke( new MakeSubtreeTask( coordinates, order, 0, size, 0, 0 ) );
+
+		positions = new double[ size * n ];
+		for ( int i = 0; i < size; ++i )
+			System.arraycopy( coordinates, indices[ i ] * n, positions, i * n, n );
+	}
+
+	private static int numDimensions( final List< ? extends RealLocalizable > positions )
+	{
+		if ( positions.isEmpty() )
+			throw new IllegalArgumentException( "cannot infer the number of dimensions of an empty list of positions" );
+		return positions.get( 0 ).numDimensions();
+	}
+
+	private static < L extends RealLocalizable > double[] flatten( final List< L > positions, final int n )
+	{
+		final double[] coordinates = new double[ positions.size() * n ];
+		final double[] p = new double[ n ];
+		int o = 0;
+		for ( final L position : positions )
+		{
+			assert position.numDimensions() == n;
+			position.localize( p );
+			System.arraycopy( p, 0, coordinates, o, n );
+			o += n;
+		}
+		return coordinates;
+	}
+
+	/**
+	 * Construct the subtree rooted at {@code node} from the points
+	 * {@code order[ from ]} to {@code order[ to - 1 ]}. The points are
+	 * partitioned at the element that makes the left subtree of {@code node}
+	 * complete with respect to coordinate {@code d}. That element becomes
+	 * {@code node} and the left and right partitions are processed
+	 * recursively.
+	 */
+	private void makeSubtree( final double[] coordinates, final int[] order, final int from, final int to, final int node, final int d )
+	{
+		if ( to <= from )
+			return;
+		final int k = from + leftSubtreeSize( to - from );
+		select( coordinates, n, d, order, from, to, k );
+		indices[ node ] = order[ k ];
+		final int dChild = ( d + 1 == n ) ? 0 : d + 1;
+		makeSubtree( coordinates, order, from, k, 2 * node + 1, dChild );
+		makeSubtree( coordinates, order, k + 1, to, 2 * node + 2, dChild );
+	}
+
+	/**
+	 * Parallel version of
+	 * {@link FlatKDTree#makeSubtree(double[], int[], int, int, int, int)}.
+	 */
+	private final class MakeSubtreeTask extends RecursiveAction
+	{
+		private static final long serialVersionUID = 1L;
+
+		private final double[] coordinates;
+
+		private final int[] order;
+
+		private final int from;
+
+		private final int to;
+
+		private final int node;
+
+		private final int d;
+
+		MakeSubtreeTask( final double[] coordinates, final int[] order, final int from, final int to, final int node, final int d )
+		{
+			this.coordinates = coordinates;
+			this.order = order;
+			this.from = from;
+			this.to = to;
+			this.node = node;
+			this.d = d;
+		}
+
+		@Override
+		protected void compute()
+		{
+			if ( to - from <= KDTree.PARALLEL_THRESHOLD )
+			{
+				makeSubtree( coordinates, order, from, to, node, d );
+				return;
+			}
+			final int k = from + leftSubtreeSize( to - from );
+			select( coordinates, n, d, order, from, to, k );
+			indices[ node ] = order[ k ];
+			final int dChild = ( d + 1 == n ) ? 0 : d + 1;
+			invokeAll(
+					new MakeSubtreeTask( coordinates, order, from, k, 2 * node + 1, dChild ),
+					new MakeSubtreeTask( coordinates, order, k + 1, to, 2 * node + 2, dChild ) );
+		}
+	}
+
+	/**
+	 * Number of nodes in the left subtree of a left-balanced tree with
+	 * {@code m} nodes.
+	 */
+	static int leftSubtreeSize( final int m )
+	{
+		if ( m < 2 )
+			return 0;
+		// number of levels that are completely filled
+		final int h = 31 - Integer.numberOfLeadingZeros( m + 1 );
+		final int lastLevel = m - ( ( 1 << h ) - 1 );
+		final int half = 1 << ( h - 1 );
+		return half - 1 + Math.min( lastLevel, half );
+	}
+
+	/**
+	 * Partially sort {@code order[ from ]} to {@code order[ to - 1 ]} by the
+	 * d-th coordinate of the points they refer to, such that
+	 * {@code order[ k ]} is the element that would be there in a sorted list,
+	 * and all elements before (after) it are smaller (greater) or equal.
+	 */
+	static void select( final double[] coordinates, final int n, final int d, final int[] order, int from, int to, final int k )
+	{
+		while ( to - from > 1 )
+		{
+			final int mid = ( from + to - 1 ) >>> 1;
+			final double a = coordinates[ order[ from ] * n + d ];
+			final double b = coordinates[ order[ mid ] * n + d ];
+			final double c = coordinates[ order[ to - 1 ] * n + d ];
+			final double pivot = a < b ? ( b < c ? b : Math.max( a, c ) ) : ( a < c ? a : Math.max( b, c ) );
+
+			int i = from;
+			int j = to - 1;
+			while ( i <= j )
+			{
+				while ( coordinates[ order[ i ] * n + d ] < pivot )
+					++i;
+				while ( coordinates[ order[ j ] * n + d ] > pivot )
+					--j;
+				if ( i <= j )
+				{
+					final int tmp = order[ i ];
+					order[ i ] = order[ j ];
+					order[ j ] = tmp;
+					++i;
+					--j;
+				}
+			}
+			if ( k <= j )
+				to = j + 1;
+			else if ( k >= i )
+				from = i;
+			else
+				return;
+		}
+	}
+
+	@Override
+	public int numDimensions()
+	{
+		return n;
+	}
+
+	/**
+	 * @return the number of nodes.
+	 */
+	public int numPoints()
+	{
+		return size;
+	}
+
+	/**
+	 * Get the coordinates of all nodes. Node <em>i</em> occupies
+	 * <em>i*n ... i*n+n-1</em>. The array must not be modified.
+	 */
+	public double[] getPositions()
+	{
+		return positions;
+	}
+
+	/**
+	 * @return the index into the list of values of {@code node}.
+	 */
+	public int getIndex( final int node )
+	{
+		return indices[ node ];
+	}
+
+	/**
+	 * @return the value of {@code node}.
+	 */
+	public T getValue( final int node )
+	{
+		return values.get( indices[ node ] );
+	}
+
+	/**
+	 * @return the d-th coordinate of {@code node}.
+	 */
+	public double getDoublePosition( final int node, final int d )
+	{
+		return positions[ node * n + d ];
+	}
+
+	/**
+	 * @return the dimension along which {@code node} splits the space.
+	 */
+	public int getSplitDimension( final int node )
+	{
+		return ( 31 - Integer.numberOfLeadingZeros( node + 1 ) ) % n;
+	}
+
+	/**
+	 * @return the squared distance of {@code node} to {@code p}.
+	 */
+	public double squDistance( final int node, final double[] p )
+	{
+		double sum = 0;
+		for ( int d = 0, o = node * n; d < n; ++d, ++o )
+		{
+			final double diff = positions[ o ] - p[ d ];
+			sum += diff * diff;
+		}
+		return sum;
+	}
+
+	/**
+	 * Create a {@link Node} that can be moved to any node of this tree with
+	 * {@link Node#setNode(int)}.
+	 */
+	public Node createNode()
+	{
+		return new Node();
+	}
+
+	/**
+	 * A reusable handle to a node of the tree, providing its position and
+	 * value.
+	 */
+	public final class Node implements RealLocalizable, Sampler< T >
+	{
+		private int node;
+
+		private Node()
+		{}
+
+		public void setNode( final int node )
+		{
+			this.node = node;
+		}
+
+		public int getNode()
+		{
+			return node;
+		}
+
+		@Override
+		public int numDimensions()
+		{
+			return n;
+		}
+
+		@Override
+		public void localize( final float[] position )
+		{
+			for ( int d = 0; d < n; ++d )
+				position[ d ] = ( float ) positions[ node * n + d ];
+		}
+
+		@Override
+		public void localize( final double[] position )
+		{
+			System.arraycopy( positions, node * n, position, 0, n );
+		}
+
+		@Override
+		public float getFloatPosition( final int d )
+		{
+			return ( float ) positions[ node * n + d ];
+		}
+
+		@Override
+		public double getDoublePosition( final int d )
+		{
+			return positions[ node * n + d ];
+		}
+
+		@Override
+		public T get()
+		{
+			return getValue( node );
+		}
+
+		@Override
+		public Node copy()
+		{
+			final Node copy = new Node();
+			copy.node = node;
+			return copy;
+		}
+
+		@Override
+		public String toString()
+		{
+			return "node " + node + " | " + get();
+		}
+	}
+
+	@Override
+	public double realMin( final int d )
+	{
+		return min[ d ];
+	}
+
+	@Override
+	public void realMin( final double[] m )
+	{
+		for ( int d = 0; d < n; ++d )
+			m[ d ] = min[ d ];
+	}
+
+	@Override
+	public void realMin( final RealPositionable m )
+	{
+		m.setPosition( min );
+	}
+
+	@Override
+	public double realMax( final int d )
+	{
+		return max[ d ];
+	}
+
+	@Override
+	public void realMax( final double[] m )
+	{
+		for ( int d = 0; d < n; ++d )
+			m[ d ] = max[ d ];
+	}
+
+	@Override
+	public void realMax( final RealPositionable m )
+	{
+		m.setPosition( max );
+	}
+
+	@Override
+	public long size()
+	{
+		return size;
+	}
+
+	@Override
+	public Object iterationOrder()
+	{
+		return this; // iteration order is only compatible with ourselves
+	}
+
+	/**
+	 * Iterates the nodes in index order.
+	 */
+	public final class FlatKDTreeCursor implements RealCursor< T >
+	{
+		private int node;
+
+		public FlatKDTreeCursor()
+		{
+			reset();
+		}
+
+		private FlatKDTreeCursor( final FlatKDTreeCursor c )
+		{
+			node = c.node;
+		}
+
+		@Override
+		public void localize( final float[] position )
+		{
+			for ( int d = 0; d < n; ++d )
+				position[ d ] = ( float ) positions[ node * n + d ];
+		}
+
+		@Override
+		public void localize( final double[] position )
+		{
+			System.arraycopy( positions, node * n, position, 0, n );
+		}
+
+		@Override
+		public float getFloatPosition( final int d )
+		{
+			return ( float ) positions[ node * n + d ];
+		}
+
+		@Override
+		public double getDoublePosition( final int d )
+		{
+			return positions[ node * n + d ];
+		}
+
+		@Override
+		public int numDimensions()
+		{
+			return n;
+		}
+
+		@Override
+		public T get()
+		{
+			return getValue( node );
+		}
+
+		@Override
+		public FlatKDTreeCursor copy()
+		{
+			return new FlatKDTreeCursor( this );
+		}
+
+		@Override
+		public FlatKDTreeCursor copyCursor()
+		{
+			return copy();
+		}
+
+		@Override
+		public void jumpFwd( final long steps )
+		{
+			node += steps;
+		}
+
+		@Override
+		public void fwd()
+		{
+			++node;
+		}
+
+		@Override
+		public void reset()
+		{
+			node = -1;
+		}
+
+		@Override
+		public boolean hasNext()
+		{
+			return node < size - 1;
+		}
+
+		@Override
+		public T next()
+		{
+			fwd();
+			return get();
+		}
+
+		@Override
+		public void remove()
+		{
+			// NB: no action.
+		}
+	}
+
+	@Override
+	public FlatKDTreeCursor iterator()
+	{
+		return new FlatKDTreeCursor();
+	}
+
+	@Override
+	public FlatKDTreeCursor cursor()
+	{
+		return new FlatKDTreeCursor();
+	}
+
+	@Override
+	public FlatKDTreeCursor localizingCursor()
+	{
+		return new FlatKDTreeCursor();
+	}
+
+	@Override
+	public T firstElement()
+	{
+		return getValue( 0 );
+	}
+}
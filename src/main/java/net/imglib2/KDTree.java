@@ -39,6 +39,8 @@ import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.List;
 import java.util.ListIterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 
 import net.imglib2.util.KthElement;
 
@@ -188,6 +190,45 @@ public class KDTree< T > implements EuclideanSpace, IterableRealInterval< T >
 	 *            a list of positions corresponding to the values
 	 */
 	public < L extends RealLocalizable > KDTree( final List< T > values, final List< L > positions )
+	{
+		this( values, positions, null, false );
+	}
+
+	/**
+	 * Construct a KDTree from the elements in the given list, optionally
+	 * building subtrees in parallel and splitting at approximate medians.
+	 *
+	 * <p>
+	 * If a {@link ForkJoinPool} is given (and {@code positions} is a
+	 * {@link java.util.RandomAccess} list), the left and right subtrees of
+	 * nodes with more than {@link #PARALLEL_THRESHOLD} elements are built as
+	 * separate tasks.
+	 * </p>
+	 *
+	 * <p>
+	 * With {@code approximateMedian}, sublists larger than
+	 * {@link #APPROXIMATE_THRESHOLD} are not split at their exact median, but
+	 * at the median of a sample of {@link #MEDIAN_SAMPLE_SIZE} elements, which
+	 * takes a single partitioning pass instead of a selection. The tree is
+	 * slightly less balanced, searches still return exact results. Elements
+	 * with the same coordinate as the sample median are divided between both
+	 * subtrees. If the split still leaves less than a quarter of the elements
+	 * on one side, the exact median is used instead. Like {@code pool},
+	 * {@code approximateMedian} is ignored if {@code positions} is not a
+	 * {@link java.util.RandomAccess} list.
+	 * </p>
+	 *
+	 * @param values
+	 *            a list of values
+	 * @param positions
+	 *            a list of positions corresponding to the values
+	 * @param pool
+	 *            pool on which subtrees are built, or {@code null} to build
+	 *            the tree in the calling thread
+	 * @param approximateMedian
+	 *            whether to split large sublists at approximate medians
+	 */
+	public < L extends RealLocalizable > KDTree( final List< T > values, final List< L > positions, final ForkJoinPool pool, final boolean approximateMedian )
 	{
 		assert values.size() == positions.size();
 
@@ -217,7 +258,13 @@ public class KDTree< T > implements EuclideanSpace, IterableRealInterval< T >
 			}
 		}
 
-		if ( values == positions )
+		if ( positions instanceof java.util.RandomAccess && ( pool != null || approximateMedian ) )
+		{
+			final Builder< L > builder = new Builder<>( values, positions, approximateMedian );
+			final int j = positions.size() - 1;
+			root = pool == null ? builder.makeNode( 0, j, 0 ) : pool.invoke( builder.new MakeNodeTask( 0, j, 0 ) );
+		}
+		else if ( values == positions )
 		{
 			if ( positions instanceof java.util.RandomAccess )
 				root = makeNode( positions, 0, positions.size() - 1, 0 );
@@ -522,6 +569,187 @@ public class KDTree< T > implements EuclideanSpace, IterableRealInterval< T >
 		}
 	}
 
+	/**
+	 * Subtrees with more elements than this are built in parallel.
+	 */
+	public static final int PARALLEL_THRESHOLD = 1 << 14;
+
+	/**
+	 * Sublists with more elements than this are split at an approximate
+	 * median, if requested.
+	 */
+	public static final int APPROXIMATE_THRESHOLD = 1 << 12;
+
+	/**
+	 * Number of elements from which the approximate median is taken.
+	 */
+	public static final int MEDIAN_SAMPLE_SIZE = 127;
+
+	/**
+	 * Builds the tree from a {@link java.util.RandomAccess} list of positions,
+	 * either sequentially through {@link #makeNode(int, int, int)} or in
+	 * parallel through {@link MakeNodeTask}. If values and positions are the
+	 * same list, {@code permutation} is {@code null}.
+	 */
+	private final class Builder< L extends RealLocalizable >
+	{
+		private final List< T > values;
+
+		private final List< L > positions;
+
+		private final int[] permutation;
+
+		private final boolean approximateMedian;
+
+		Builder( final List< T > values, final List< L > positions, final boolean approximateMedian )
+		{
+			this.values = values;
+			this.positions = positions;
+			this.approximateMedian = approximateMedian;
+			if ( values == positions )
+				permutation = null;
+			else
+			{
+				permutation = new int[ positions.size() ];
+				for ( int k = 0; k < permutation.length; ++k )
+					permutation[ k ] = k;
+			}
+		}
+
+		@SuppressWarnings( "unchecked" )
+		private ValueNode< T > newNode( final int k, final int d, final ValueNode< T > left, final ValueNode< T > right )
+		{
+			final T value = permutation == null ? ( T ) positions.get( k ) : values.get( permutation[ k ] );
+			return new ValueNode<>( value, positions.get( k ), d, left, right );
+		}
+
+		/**
+		 * Build the subtree of elements i to j (inclusive) in the calling
+		 * thread.
+		 */
+		ValueNode< T > makeNode( final int i, final int j, final int d )
+		{
+			if ( !approximateMedian || j - i < APPROXIMATE_THRESHOLD )
+				return permutation == null
+						? KDTree.this.makeNode( positions, i, j, d )
+						: KDTree.this.makeNode( positions, i, j, d, values, permutation );
+
+			final int k = split( i, j, d );
+			final int dChild = ( d + 1 == n ) ? 0 : d + 1;
+			return newNode( k, d, makeNode( i, k - 1, dChild ), makeNode( k + 1, j, dChild ) );
+		}
+
+		/**
+		 * Partition elements i to j (inclusive) with respect to coordinate d.
+		 *
+		 * @return the index of the split element.
+		 */
+		private int split( final int i, final int j, final int d )
+		{
+			final DimComparator< L > comparator = new DimComparator<>( d );
+			if ( !approximateMedian || j - i < APPROXIMATE_THRESHOLD )
+			{
+				final int k = i + ( j - i ) / 2;
+				if ( permutation == null )
+					KthElement.kthElement( i, j, k, positions, comparator );
+				else
+					KthElement.kthElement( i, j, k, positions, permutation, comparator );
+				return k;
+			}
+
+			// find the median of evenly spaced samples
+			final int step = ( j - i ) / MEDIAN_SAMPLE_SIZE;
+			final int[] samples = new int[ MEDIAN_SAMPLE_SIZE ];
+			for ( int s = 0; s < MEDIAN_SAMPLE_SIZE; ++s )
+				samples[ s ] = i + s * step;
+			for ( int s = 1; s < MEDIAN_SAMPLE_SIZE; ++s )
+			{
+				final int sample = samples[ s ];
+				int t = s - 1;
+				for ( ; t >= 0 && comparator.compare( positions.get( samples[ t ] ), positions.get( sample ) ) > 0; --t )
+					samples[ t + 1 ] = samples[ t ];
+				samples[ t + 1 ] = sample;
+			}
+			final double pivot = positions.get( samples[ MEDIAN_SAMPLE_SIZE / 2 ] ).getDoublePosition( d );
+
+			// three-way partition around the pivot, so that many elements
+			// equal to the pivot can be divided evenly between the subtrees
+			int lt = i;
+			int gt = j + 1;
+			for ( int k = i; k < gt; )
+			{
+				final double x = positions.get( k ).getDoublePosition( d );
+				if ( x < pivot )
+					swap( lt++, k++ );
+				else if ( x > pivot )
+					swap( k, --gt );
+				else
+					++k;
+			}
+			final int median = i + ( j - i ) / 2;
+			final int k = Math.max( lt, Math.min( gt - 1, median ) );
+
+			// fall back to the exact median if the sample was unrepresentative
+			final int minPart = ( j - i ) / 4;
+			if ( k - i >= minPart && j - k >= minPart )
+				return k;
+			if ( permutation == null )
+				KthElement.kthElement( i, j, median, positions, comparator );
+			else
+				KthElement.kthElement( i, j, median, positions, permutation, comparator );
+			return median;
+		}
+
+		private void swap( final int a, final int b )
+		{
+			final L tmp = positions.get( a );
+			positions.set( a, positions.get( b ) );
+			positions.set( b, tmp );
+			if ( permutation != null )
+			{
+				final int p = permutation[ a ];
+				permutation[ a ] = permutation[ b ];
+				permutation[ b ] = p;
+			}
+		}
+
+		/**
+		 * Build the subtree of elements i to j (inclusive), forking the left
+		 * subtree if it is larger than {@link #PARALLEL_THRESHOLD}.
+		 */
+		final class MakeNodeTask extends RecursiveTask< ValueNode< T > >
+		{
+			private static final long serialVersionUID = 1L;
+
+			private final int i;
+
+			private final int j;
+
+			private final int d;
+
+			MakeNodeTask( final int i, final int j, final int d )
+			{
+				this.i = i;
+				this.j = j;
+				this.d = d;
+			}
+
+			@Override
+			protected ValueNode< T > compute()
+			{
+				if ( j - i < PARALLEL_THRESHOLD )
+					return makeNode( i, j, d );
+
+				final int k = split( i, j, d );
+				final int dChild = ( d + 1 == n ) ? 0 : d + 1;
+				final MakeNodeTask left = new MakeNodeTask( i, k - 1, dChild );
+				left.fork();
+				final ValueNode< T > right = new MakeNodeTask( k + 1, j, dChild ).compute();
+				return newNode( k, d, left.join(), right );
+			}
+		}
+	}
+
 	/**
 	 * Get the root node.
 	 *
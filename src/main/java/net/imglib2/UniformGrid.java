@@ -0,0 +1,399 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2018 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import net.imglib2.neighborsearch.NearestNeighborSearchOnUniformGrid;
+import net.imglib2.neighborsearch.RadiusNeighborSearchOnUniformGrid;
+
+/**
+ * A spatial index that buckets points into a uniform grid of cubic cells.
+ * <p>
+ * The grid is built with a counting sort: points are counted per cell, the
+ * counts are turned into cell start offsets, and the coordinates are copied
+ * into a flat array in cell order. The points of a cell are then contiguous,
+ * and so are the points of a run of cells along dimension 0. Cells are
+ * numbered in flat index order with dimension 0 fastest, and
+ * {@link #getCellStart(int) getCellStart( c )} to
+ * {@link #getCellStart(int) getCellStart( c + 1 )} are the sorted indices of
+ * the points in cell <em>c</em>.
+ * </p>
+ * <p>
+ * For dense points and queries of a fixed radius, build the grid with that
+ * radius as cell size. A radius query then visits at most
+ * <em>3<sup>n</sup></em> cells and no tree traversal is needed. See
+ * {@link RadiusNeighborSearchOnUniformGrid} and
+ * {@link NearestNeighborSearchOnUniformGrid}.
+ * </p>
+ */
+public class UniformGrid< T > implements EuclideanSpace
+{
+	/**
+	 * The cell size is increased until the grid has at most this many cells
+	 * per point, which bounds the memory of sparse point sets.
+	 */
+	public static final int MAX_CELLS_PER_POINT = 4;
+
+	/**
+	 * Average number of points per cell targeted by
+	 * {@link #UniformGrid(IterableRealInterval)}.
+	 */
+	public static final int POINTS_PER_CELL = 2;
+
+	private final int n;
+
+	private final int numPoints;
+
+	private final double cellSize;
+
+	private final double inverseCellSize;
+
+	private final double[] origin;
+
+	private final int[] gridDimensions;
+
+	/**
+	 * start of each cell in {@link #positions}, and {@code numPoints} at the
+	 * end.
+	 */
+	private final int[] cellStart;
+
+	/**
+	 * coordinates in cell order, point <em>k</em> occupies
+	 * {@code positions[ k * n ]} to {@code positions[ k * n + n - 1 ]}.
+	 */
+	private final double[] positions;
+
+	/**
+	 * original index of each point in cell order.
+	 */
+	private final int[] indices;
+
+	private final List< Sampler< T > > samplers;
+
+	/**
+	 * Construct a grid over the elements of {@code points}, choosing the cell
+	 * size such that there are about {@link #POINTS_PER_CELL} points per cell
+	 * on average. Use this for nearest neighbor searches.
+	 */
+	public UniformGrid( final IterableRealInterval< T > points )
+	{
+		this( points, -1 );
+	}
+
+	/**
+	 * Construct a grid over the elements of {@code points} for radius
+	 * searches with the given radius. The cell size is {@code radius}, unless
+	 * this would create more than {@link #MAX_CELLS_PER_POINT} cells per
+	 * point.
+	 *
+	 * @param points
+	 *            the points to index. Their samples are accessed through
+	 *            copies of the cursor, as in {@link KDTree}.
+	 * @param radius
+	 *            the expected query radius. Searches with other radii work,
+	 *            but are less efficient.
+	 */
+	public UniformGrid( final IterableRealInterval< T > points, final double radius )
+	{
+		n = points.numDimensions();
+		numPoints = ( int ) points.size();
+
+		final double[] coordinates = new double[ numPoints * n ];
+		samplers = new ArrayList<>( numPoints );
+		final RealCursor< T > cursor = points.localizingCursor();
+		for ( int o = 0; cursor.hasNext(); )
+		{
+			cursor.fwd();
+			samplers.add( cursor.copyCursor() );
+			for ( int d = 0; d < n; ++d )
+				coordinates[ o++ ] = cursor.getDoublePosition( d );
+		}
+
+		origin = new double[ n ];
+		final double[] extent = new double[ n ];
+		if ( numPoints > 0 )
+		{
+			for ( int d = 0; d < n; ++d )
+			{
+				double min = Double.POSITIVE_INFINITY;
+				double max = Double.NEGATIVE_INFINITY;
+				for ( int o = d; o < coordinates.length; o += n )
+				{
+					min = Math.min( min, coordinates[ o ] );
+					max = Math.max( max, coordinates[ o ] );
+				}
+				origin[ d ] = min;
+				extent[ d ] = max - min;
+			}
+		}
+		cellSize = cellSize( extent, Math.max( numPoints, 1 ), radius );
+		inverseCellSize = 1.0 / cellSize;
+
+		gridDimensions = new int[ n ];
+		int numCells = 1;
+		for ( int d = 0; d < n; ++d )
+		{
+			gridDimensions[ d ] = ( int ) ( extent[ d ] * inverseCellSize ) + 1;
+			numCells *= gridDimensions[ d ];
+		}
+
+		// counting sort
+		final int[] cells = new int[ numPoints ];
+		cellStart = new int[ numCells + 1 ];
+		for ( int i = 0; i < numPoints; ++i )
+		{
+			int cell = 0;
+			for ( int d = n - 1; d >= 0; --d )
+			{
+				final long c = cellCoordinate( coordinates[ i * n + d ], d );
+				cell = cell * gridDimensions[ d ] + ( int ) Math.min( c, gridDimensions[ d ] - 1 );
+			}
+			cells[ i ] = cell;
+			++cellStart[ cell + 1 ];
+		}
+		for ( int c = 0; c < numCells; ++c )
+			cellStart[ c + 1 ] += cellStart[ c ];
+		final int[] next = new int[ numCells ];
+		System.arraycopy( cellStart, 0, next, 0, numCells );
+		positions = new double[ numPoints * n ];
+		indices = new int[ numPoints ];
+		for ( int i = 0; i < numPoints; ++i )
+		{
+			final int k = next[ cells[ i ] ]++;
+			indices[ k ] = i;
+			System.arraycopy( coordinates, i * n, positions, k * n, n );
+		}
+	}
+
+	/**
+	 * Use {@code radius} as cell size if it is positive, otherwise aim for
+	 * {@link #POINTS_PER_CELL} points per cell. Then grow the cell size until
+	 * there are at most {@link #MAX_CELLS_PER_POINT} cells per point.
+	 */
+	private static double cellSize( final double[] extent, final int numPoints, final double radius )
+	{
+		final int n = extent.length;
+		double cellSize = radius;
+		if ( !( cellSize > 0 ) )
+		{
+			double volume = 1;
+			int m = 0;
+			for ( final double e : extent )
+				if ( e > 0 )
+				{
+					volume *= e;
+					++m;
+				}
+			cellSize = m == 0 ? 1 : Math.pow( volume * POINTS_PER_CELL / numPoints, 1.0 / m );
+		}
+		final double maxCells = ( double ) MAX_CELLS_PER_POINT * numPoints;
+		while ( true )
+		{
+			double numCells = 1;
+			for ( int d = 0; d < n; ++d )
+				numCells *= Math.floor( extent[ d ] / cellSize ) + 1;
+			if ( numCells <= maxCells )
+				return cellSize;
+			cellSize *= Math.max( 1.01, Math.pow( numCells / maxCells, 1.0 / n ) );
+		}
+	}
+
+	@Override
+	public int numDimensions()
+	{
+		return n;
+	}
+
+	/**
+	 * @return the number of points.
+	 */
+	public int numPoints()
+	{
+		return numPoints;
+	}
+
+	public double getCellSize()
+	{
+		return cellSize;
+	}
+
+	/**
+	 * @return the number of cells in dimension {@code d}.
+	 */
+	public int getGridDimension( final int d )
+	{
+		return gridDimensions[ d ];
+	}
+
+	/**
+	 * Get the index of the cell containing coordinate {@code x} in dimension
+	 * {@code d}. The result is not clamped to the grid.
+	 */
+	public long cellCoordinate( final double x, final int d )
+	{
+		return ( long ) Math.floor( ( x - origin[ d ] ) * inverseCellSize );
+	}
+
+	/**
+	 * @return the sorted index of the first point in cell {@code cell} (in
+	 *         flat index order), or {@link #numPoints()} for
+	 *         {@code cell == numCells}.
+	 */
+	public int getCellStart( final int cell )
+	{
+		return cellStart[ cell ];
+	}
+
+	/**
+	 * Get the coordinates of all points in cell order. Point <em>k</em>
+	 * occupies {@code k * n} to {@code k * n + n - 1}.
+	 */
+	public double[] getPositions()
+	{
+		return positions;
+	}
+
+	/**
+	 * @return the index (in iteration order of the source) of the point at
+	 *         sorted index {@code k}.
+	 */
+	public int getIndex( final int k )
+	{
+		return indices[ k ];
+	}
+
+	/**
+	 * @return squared Euclidean distance between the point at sorted index
+	 *         {@code k} and {@code p}.
+	 */
+	public double squDistance( final int k, final double[] p )
+	{
+		double sum = 0;
+		for ( int d = 0, o = k * n; d < n; ++d, ++o )
+		{
+			final double diff = positions[ o ] - p[ d ];
+			sum += diff * diff;
+		}
+		return sum;
+	}
+
+	/**
+	 * Create an {@link Entry} that can be moved to any point of the grid with
+	 * {@link Entry#setPoint(int)}.
+	 */
+	public Entry createEntry()
+	{
+		return new Entry();
+	}
+
+	/**
+	 * A reusable handle to a point of the grid, providing its position and
+	 * value.
+	 */
+	public final class Entry implements RealLocalizable, Sampler< T >
+	{
+		private int k;
+
+		private Entry()
+		{}
+
+		/**
+		 * Move to the point at sorted index {@code k}.
+		 */
+		public void setPoint( final int k )
+		{
+			this.k = k;
+		}
+
+		public int getPoint()
+		{
+			return k;
+		}
+
+		@Override
+		public int numDimensions()
+		{
+			return n;
+		}
+
+		@Override
+		public void localize( final float[] position )
+		{
+			for ( int d = 0; d < n; ++d )
+				position[ d ] = ( float ) positions[ k * n + d ];
+		}
+
+		@Override
+		public void localize( final double[] position )
+		{
+			System.arraycopy( positions, k * n, position, 0, n );
+		}
+
+		@Override
+		public float getFloatPosition( final int d )
+		{
+			return ( float ) positions[ k * n + d ];
+		}
+
+		@Override
+		public double getDoublePosition( final int d )
+		{
+			return positions[ k * n + d ];
+		}
+
+		@Override
+		public T get()
+		{
+			return samplers.get( indices[ k ] ).get();
+		}
+
+		@Override
+		public Entry copy()
+		{
+			final Entry copy = new Entry();
+			copy.k = k;
+			return copy;
+		}
+
+		@Override
+		public String toString()
+		{
+			return "point " + indices[ k ] + " | " + get();
+		}
+	}
+}
@@ -35,55 +35,141 @@
 package net.imglib2.histogram;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 
 import net.imglib2.Cursor;
+import net.imglib2.Dimensions;
+import net.imglib2.FinalDimensions;
+import net.imglib2.FinalInterval;
 import net.imglib2.Interval;
+import net.imglib2.IterableInterval;
+import net.imglib2.Localizable;
+import net.imglib2.Point;
 import net.imglib2.Positionable;
 import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessible;
+import net.imglib2.RandomAccessibleInterval;
 import net.imglib2.RealPositionable;
 import net.imglib2.img.Img;
 import net.imglib2.img.ImgFactory;
+import net.imglib2.img.array.ArrayImg;
 import net.imglib2.img.array.ArrayImgFactory;
+import net.imglib2.img.basictypeaccess.LongAccess;
+import net.imglib2.img.basictypeaccess.array.LongArray;
 import net.imglib2.type.numeric.integer.LongType;
+import net.imglib2.util.Intervals;
+import net.imglib2.view.Views;
 
 /**
  * This class represents an n-dimensional set of counters. Histogram
  * implementations use these for tracking value counts.
+ * <p>
+ * If the counts are stored in an {@link ArrayImg} (the case for dense
+ * counters constructed from bin counts), counters are accessed directly in
+ * the underlying {@code long[]}.
+ * </p>
+ * <p>
+ * Sparse counters only store the non-zero counts, in a hash map from flat bin
+ * index to count. This allows for joint histograms of several channels, where
+ * most of the bins are never hit, see {@link HistogramNd}. Counters constructed
+ * from bin counts are sparse if there are more than {@link Integer#MAX_VALUE}
+ * bins, which cannot be stored densely. Writing to the {@link Img} view of a
+ * sparse counter writes to the hash map.
+ * </p>
  *
  * @author Barry DeZonia
  */
 public class DiscreteFrequencyDistribution implements Img< LongType >
 {
 
+	/**
+	 * {@link HistogramNd}s use sparse counters if the number of bins exceeds
+	 * this.
+	 */
+	public static final long MAX_DENSE_BINS = 1 << 24;
+
 	// -- instance variables --
 
+	/**
+	 * The counts if dense, else {@code null}.
+	 */
 	private final Img< LongType > counts;
 
 	private final RandomAccess< LongType > accessor;
 
+	/**
+	 * The non-zero counts by flat index if sparse, else {@code null}.
+	 */
+	private final LongLongHashMap map;
+
+	/**
+	 * {@link #counts}, or a view of {@link #map}, used to implement the
+	 * {@link Img} methods.
+	 */
+	private final RandomAccessibleInterval< LongType > source;
+
+	private final IterableInterval< LongType > iterable;
+
+	/**
+	 * The counts in flat iteration order, or {@code null} if {@link #counts}
+	 * is not array backed.
+	 */
+	private final long[] array;
+
+	private final long[] strides;
+
 	private long totalValues;
 
 	// -- public api --
 
 	/**
-	 * Construct an n-dimensional counter with the given number of bins
+	 * Construct an n-dimensional counter with the given number of bins. The
+	 * counter is sparse if there are more than {@link Integer#MAX_VALUE} bins.
 	 */
 	public DiscreteFrequencyDistribution( final long[] binCounts )
+	{
+		this( binCounts, numBins( binCounts ) > Integer.MAX_VALUE );
+	}
+
+	/**
+	 * Construct an n-dimensional counter with the given number of bins.
+	 * 
+	 * @param sparse
+	 *            whether to store only the non-zero counts in a hash map.
+	 */
+	public DiscreteFrequencyDistribution( final long[] binCounts, final boolean sparse )
 	{
 		// check inputs for issues
 
-		for ( int i = 0; i < binCounts.length; i++ )
-		{
-			if ( binCounts[ i ] <= 0 ) { throw new IllegalArgumentException( "invalid bin count (<= 0)" ); }
-		}
+		final long numBins = numBins( binCounts );
+		if ( !sparse && numBins > Integer.MAX_VALUE )
+			throw new IllegalArgumentException( "too many bins for a dense counter (" + numBins + ")" );
 
 		// then build object
 
-		counts = new ArrayImgFactory<>( new LongType() ).create( binCounts );
-
-		accessor = counts.randomAccess();
+		if ( sparse )
+		{
+			counts = null;
+			accessor = null;
+			map = new LongLongHashMap();
+			strides = strides( new FinalDimensions( binCounts ) );
+			source = Views.interval( new SparseCounts(), new FinalInterval( binCounts ) );
+			iterable = Views.flatIterable( source );
+			array = null;
+		}
+		else
+		{
+			counts = new ArrayImgFactory<>( new LongType() ).create( binCounts );
+			accessor = counts.randomAccess();
+			map = null;
+			strides = strides( counts );
+			source = counts;
+			iterable = counts;
+			array = array( counts );
+		}
 
 		totalValues = 0;
 	}
@@ -96,14 +182,177 @@ public class DiscreteFrequencyDistribution implements Img< LongType >
 	{
 		counts = img;
 		accessor = counts.randomAccess();
+		map = null;
+		source = counts;
+		iterable = counts;
+		array = array( counts );
+		strides = strides( counts );
 		resetCounters();
 	}
 
+	private static long[] array( final Img< LongType > img )
+	{
+		if ( img instanceof ArrayImg )
+		{
+			final Object access = ( ( ArrayImg< ?, ? > ) img ).update( null );
+			if ( access instanceof LongArray )
+				return ( ( LongArray ) access ).getCurrentStorageArray();
+		}
+		return null;
+	}
+
+	private static long numBins( final long[] binCounts )
+	{
+		long numBins = 1;
+		for ( int i = 0; i < binCounts.length; i++ )
+		{
+			if ( binCounts[ i ] <= 0 ) { throw new IllegalArgumentException( "invalid bin count (<= 0)" ); }
+			if ( numBins > Long.MAX_VALUE / binCounts[ i ] ) { throw new IllegalArgumentException( "too many bins" ); }
+			numBins *= binCounts[ i ];
+		}
+		return numBins;
+	}
+
+	private static long[] strides( final Dimensions dimensions )
+	{
+		final long[] strides = new long[ dimensions.numDimensions() ];
+		long stride = 1;
+		for ( int d = 0; d < strides.length; ++d )
+		{
+			strides[ d ] = stride;
+			stride *= dimensions.dimension( d );
+		}
+		return strides;
+	}
+
+	private int index( final long[] binPos )
+	{
+		return ( int ) flatIndex( binPos );
+	}
+
+	private long flatIndex( final long[] binPos )
+	{
+		long index = 0;
+		for ( int d = 0; d < strides.length; ++d )
+			index += binPos[ d ] * strides[ d ];
+		return index;
+	}
+
+	private long flatIndex( final Localizable binPos )
+	{
+		long index = 0;
+		for ( int d = 0; d < strides.length; ++d )
+			index += binPos.getLongPosition( d ) * strides[ d ];
+		return index;
+	}
+
+	private void position( long index, final long[] binPos )
+	{
+		for ( int d = strides.length - 1; d >= 0; --d )
+		{
+			binPos[ d ] = index / strides[ d ];
+			index -= binPos[ d ] * strides[ d ];
+		}
+	}
+
+	/**
+	 * Returns true if only the non-zero counts are stored.
+	 */
+	public boolean isSparse()
+	{
+		return map != null;
+	}
+
+	/**
+	 * Visitor for {@link DiscreteFrequencyDistribution#forEachNonZero}.
+	 */
+	interface BinConsumer
+	{
+		void accept( long[] binPos, long count );
+	}
+
+	/**
+	 * Visit the position and count of each bin with a non-zero count, in no
+	 * particular order. The position array is reused.
+	 */
+	void forEachNonZero( final BinConsumer consumer )
+	{
+		final long[] binPos = new long[ strides.length ];
+		if ( map != null )
+		{
+			for ( int i = 0; i < map.capacity(); ++i )
+			{
+				final long index = map.keyAt( i );
+				if ( index != LongLongHashMap.FREE && map.valueAt( i ) != 0 )
+				{
+					position( index, binPos );
+					consumer.accept( binPos, map.valueAt( i ) );
+				}
+			}
+		}
+		else if ( array != null )
+		{
+			final int size = ( int ) counts.size();
+			for ( int i = 0; i < size; ++i )
+			{
+				if ( array[ i ] != 0 )
+				{
+					position( i, binPos );
+					consumer.accept( binPos, array[ i ] );
+				}
+			}
+		}
+		else
+		{
+			final Cursor< LongType > cursor = counts.localizingCursor();
+			while ( cursor.hasNext() )
+			{
+				final long count = cursor.next().get();
+				if ( count != 0 )
+				{
+					cursor.localize( binPos );
+					consumer.accept( binPos, count );
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns the {@code long[]} that stores the counts in flat iteration
+	 * order, or {@code null} if the counts are not array backed. Writing to the
+	 * array does not update {@link #totalValues()}, see
+	 * {@link #addTotalValues(long)}.
+	 */
+	long[] array()
+	{
+		return array;
+	}
+
+	/**
+	 * Adds {@code count} to the total number of values after counters were
+	 * modified through {@link #array()}.
+	 */
+	void addTotalValues( final long count )
+	{
+		totalValues += count;
+	}
+
 	/**
 	 * Resets all frequency counts to zero.
 	 */
 	public void resetCounters()
 	{
+		totalValues = 0;
+		if ( map != null )
+		{
+			map.clear();
+			return;
+		}
+		if ( array != null )
+		{
+			Arrays.fill( array, 0, ( int ) counts.size(), 0 );
+			return;
+		}
 		final Cursor< LongType > cursor = counts.cursor();
 		while ( cursor.hasNext() )
 		{
@@ -117,11 +366,15 @@ public class DiscreteFrequencyDistribution implements Img< LongType >
 	 */
 	public long frequency( final long[] binPos )
 	{
-		for ( int i = 0; i < accessor.numDimensions(); i++ )
+		for ( int i = 0; i < numDimensions(); i++ )
 		{
 			if ( binPos[ i ] < 0 || binPos[ i ] >= dimension( i ) )
 				return 0;
 		}
+		if ( map != null )
+			return map.get( flatIndex( binPos ) );
+		if ( array != null )
+			return array[ index( binPos ) ];
 		accessor.setPosition( binPos );
 		return accessor.get().get();
 	}
@@ -132,6 +385,20 @@ public class DiscreteFrequencyDistribution implements Img< LongType >
 	public void setFrequency( final long[] binPos, final long value )
 	{
 		if ( value < 0 ) { throw new IllegalArgumentException( "frequency count must be >= 0" ); }
+		if ( map != null )
+		{
+			final long index = flatIndex( binPos );
+			totalValues += ( value - map.get( index ) );
+			map.put( index, value );
+			return;
+		}
+		if ( array != null )
+		{
+			final int index = index( binPos );
+			totalValues += ( value - array[ index ] );
+			array[ index ] = value;
+			return;
+		}
 		accessor.setPosition( binPos );
 		final long currentValue = accessor.get().get();
 		totalValues += ( value - currentValue );
@@ -153,8 +420,15 @@ public class DiscreteFrequencyDistribution implements Img< LongType >
 	 */
 	public void increment( final long[] binPos )
 	{
-		accessor.setPosition( binPos );
-		accessor.get().inc();
+		if ( map != null )
+			map.add( flatIndex( binPos ), 1 );
+		else if ( array != null )
+			++array[ index( binPos ) ];
+		else
+		{
+			accessor.setPosition( binPos );
+			accessor.get().inc();
+		}
 		totalValues++;
 	}
 
@@ -163,8 +437,15 @@ public class DiscreteFrequencyDistribution implements Img< LongType >
 	 */
 	public void decrement( final long[] binPos )
 	{
-		accessor.setPosition( binPos );
-		accessor.get().dec();
+		if ( map != null )
+			map.add( flatIndex( binPos ), -1 );
+		else if ( array != null )
+			--array[ index( binPos ) ];
+		else
+		{
+			accessor.setPosition( binPos );
+			accessor.get().dec();
+		}
 		totalValues--;
 	}
 
@@ -182,14 +463,20 @@ public class DiscreteFrequencyDistribution implements Img< LongType >
 	public long modeCount()
 	{
 		final List< long[] > modes = modePositions();
-		return frequency( modes.get( 0 ) );
+		return modes.isEmpty() ? 0 : frequency( modes.get( 0 ) );
 	}
 
 	/**
-	 * Returns a list of bin positions of the highest frequency bins.
+	 * Returns a list of bin positions of the highest frequency bins, in flat
+	 * iteration order. If nothing was counted, a dense counter returns all
+	 * bins, as they all have the highest frequency 0. A sparse counter
+	 * considers only bins with a positive count and returns an empty list,
+	 * because listing all of its bins is not feasible.
 	 */
 	public List< long[] > modePositions()
 	{
+		if ( map != null )
+			return sparseModePositions();
 		long commonValue = 0;
 		final List< long[] > modePositions = new ArrayList< long[] >();
 		final Cursor< LongType > cursor = localizingCursor();
@@ -214,155 +501,253 @@ public class DiscreteFrequencyDistribution implements Img< LongType >
 		return modePositions;
 	}
 
+	private List< long[] > sparseModePositions()
+	{
+		long commonValue = 0;
+		final List< Long > indices = new ArrayList<>();
+		for ( int i = 0; i < map.capacity(); ++i )
+		{
+			if ( map.keyAt( i ) == LongLongHashMap.FREE )
+				continue;
+			final long val = map.valueAt( i );
+			if ( val > commonValue )
+			{
+				commonValue = val;
+				indices.clear();
+				indices.add( map.keyAt( i ) );
+			}
+			else if ( val == commonValue && val > 0 )
+				indices.add( map.keyAt( i ) );
+		}
+		Collections.sort( indices );
+		final List< long[] > modePositions = new ArrayList< long[] >();
+		for ( final long index : indices )
+		{
+			final long[] pos = new long[ numDimensions() ];
+			position( index, pos );
+			modePositions.add( pos );
+		}
+		return modePositions;
+	}
+
 	// -- Img methods --
 
 	@Override
 	public RandomAccess< LongType > randomAccess()
 	{
-		return counts.randomAccess();
+		return source.randomAccess();
 	}
 
 	@Override
 	public RandomAccess< LongType > randomAccess( final Interval interval )
 	{
-		return counts.randomAccess( interval );
+		return source.randomAccess( interval );
 	}
 
 	@Override
 	public int numDimensions()
 	{
-		return counts.numDimensions();
+		return source.numDimensions();
 	}
 
 	@Override
 	public long min( final int d )
 	{
-		return counts.min( d );
+		return source.min( d );
 	}
 
 	@Override
 	public void min( final long[] min )
 	{
-		counts.min( min );
+		source.min( min );
 	}
 
 	@Override
 	public void min( final Positionable min )
 	{
-		counts.min( min );
+		source.min( min );
 	}
 
 	@Override
 	public long max( final int d )
 	{
-		return counts.max( d );
+		return source.max( d );
 	}
 
 	@Override
 	public void max( final long[] max )
 	{
-		counts.max( max );
+		source.max( max );
 	}
 
 	@Override
 	public void max( final Positionable max )
 	{
-		counts.max( max );
+		source.max( max );
 	}
 
 	@Override
 	public double realMin( final int d )
 	{
-		return counts.realMin( d );
+		return source.realMin( d );
 	}
 
 	@Override
 	public void realMin( final double[] min )
 	{
-		counts.realMin( min );
+		source.realMin( min );
 	}
 
 	@Override
 	public void realMin( final RealPositionable min )
 	{
-		counts.realMin( min );
+		source.realMin( min );
 	}
 
 	@Override
 	public double realMax( final int d )
 	{
-		return counts.realMax( d );
+		return source.realMax( d );
 	}
 
 	@Override
 	public void realMax( final double[] max )
 	{
-		counts.realMax( max );
+		source.realMax( max );
 	}
 
 	@Override
 	public void realMax( final RealPositionable max )
 	{
-		counts.realMax( max );
+		source.realMax( max );
 	}
 
 	@Override
 	public void dimensions( final long[] dimensions )
 	{
-		counts.dimensions( dimensions );
+		source.dimensions( dimensions );
 	}
 
 	@Override
 	public long dimension( final int d )
 	{
-		return counts.dimension( d );
+		return source.dimension( d );
 	}
 
 	@Override
 	public Cursor< LongType > cursor()
 	{
-		return counts.cursor();
+		return iterable.cursor();
 	}
 
 	@Override
 	public Cursor< LongType > localizingCursor()
 	{
-		return counts.localizingCursor();
+		return iterable.localizingCursor();
 	}
 
 	@Override
 	public long size()
 	{
-		return counts.size();
+		return iterable.size();
 	}
 
 	@Override
 	public LongType firstElement()
 	{
-		return counts.firstElement();
+		return iterable.firstElement();
 	}
 
 	@Override
 	public Object iterationOrder()
 	{
-		return counts.iterationOrder();
+		return iterable.iterationOrder();
 	}
 
 	@Override
 	public Iterator< LongType > iterator()
 	{
-		return counts.iterator();
+		return iterable.iterator();
 	}
 
 	@Override
 	public ImgFactory< LongType > factory()
 	{
-		return counts.factory();
+		return counts != null ? counts.factory() : new ArrayImgFactory<>( new LongType() );
+	}
+
+	/**
+	 * The counts of {@link #map} as a {@link RandomAccessible}. Accessors read
+	 * and write the map at their position.
+	 */
+	private final class SparseCounts implements RandomAccessible< LongType >
+	{
+		@Override
+		public int numDimensions()
+		{
+			return strides.length;
+		}
+
+		@Override
+		public SparseAccess randomAccess()
+		{
+			return new SparseAccess();
+		}
+
+		@Override
+		public SparseAccess randomAccess( final Interval interval )
+		{
+			return randomAccess();
+		}
+	}
+
+	private final class SparseAccess extends Point implements RandomAccess< LongType >, LongAccess
+	{
+		private final LongType t = new LongType( this );
+
+		SparseAccess()
+		{
+			super( strides.length );
+		}
+
+		@Override
+		public long getValue( final int index )
+		{
+			return map.get( flatIndex( this ) );
+		}
+
+		@Override
+		public void setValue( final int index, final long value )
+		{
+			map.put( flatIndex( this ), value );
+		}
+
+		@Override
+		public LongType get()
+		{
+			return t;
+		}
+
+		@Override
+		public SparseAccess copy()
+		{
+			final SparseAccess copy = new SparseAccess();
+			copy.setPosition( this );
+			return copy;
+		}
+
+		@Override
+		public SparseAccess copyRandomAccess()
+		{
+			return copy();
+		}
 	}
 
 	@Override
 	public DiscreteFrequencyDistribution copy()
 	{
+		if ( map != null )
+			return new DiscreteFrequencyDistribution( Intervals.dimensionsAsLongArray( source ), true );
 		return new DiscreteFrequencyDistribution( counts.copy() );
 	}
 
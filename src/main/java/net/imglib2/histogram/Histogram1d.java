@@ -35,9 +35,11 @@
 package net.imglib2.histogram;
 
 import java.util.Iterator;
+import java.util.concurrent.ExecutorService;
 
 import net.imglib2.Cursor;
 import net.imglib2.Interval;
+import net.imglib2.IterableInterval;
 import net.imglib2.Positionable;
 import net.imglib2.RandomAccess;
 import net.imglib2.RealPositionable;
@@ -67,6 +69,8 @@ public class Histogram1d< T > implements Img< LongType >
 
 	private DiscreteFrequencyDistribution distrib;
 
+	private Histogram1dCounter< T > counter;
+
 	private long[] pos;
 
 	private long ignoredCount;
@@ -85,6 +89,7 @@ public class Histogram1d< T > implements Img< LongType >
 		this.mapper = mapper;
 		this.distrib =
 				new DiscreteFrequencyDistribution( new long[] { mapper.getBinCount() } );
+		this.counter = new Histogram1dCounter<>( mapper );
 		this.pos = new long[ 1 ];
 		this.ignoredCount = 0;
 	}
@@ -100,6 +105,7 @@ public class Histogram1d< T > implements Img< LongType >
 	{
 		mapper = other.mapper.copy();
 		distrib = other.distrib.copy();
+		counter = new Histogram1dCounter<>( mapper );
 		pos = other.pos.clone();
 		// TODO - is reset what we really want? or copy the exact counts too?
 		reset();
@@ -449,6 +455,59 @@ public class Histogram1d< T > implements Img< LongType >
 		subtract( data );
 	}
 
+	/**
+	 * Counts the data contained in the given data source using the underlying
+	 * bin distribution. The data is counted in parallel by {@code executor},
+	 * see {@link #addData(IterableInterval, ExecutorService)}.
+	 * 
+	 * @param data
+	 *            The total data to count
+	 * @param executor
+	 *            Runs the counting tasks
+	 */
+	public void countData( final IterableInterval< T > data, final ExecutorService executor )
+	{
+		reset();
+		final Iterator< T > iter = data.iterator();
+		if ( iter.hasNext() )
+		{
+			firstValue = iter.next();
+		}
+		add( data, executor );
+	}
+
+	/**
+	 * Counts additional data contained in a given iterable interval, in
+	 * parallel. The data is split into one range of its iteration order per
+	 * available processor, along the cells of a {@code CellImg} and the planes
+	 * of a {@code PlanarImg} where possible. Each range is counted into its own
+	 * partial histogram by {@code executor}, and the partial histograms are
+	 * added to this one.
+	 * 
+	 * @param data
+	 *            The new data to count
+	 * @param executor
+	 *            Runs the counting tasks
+	 */
+	public void addData( final IterableInterval< T > data, final ExecutorService executor )
+	{
+		add( data, executor );
+	}
+
+	/**
+	 * Uncounts some original data contained in a given iterable interval, in
+	 * parallel, see {@link #addData(IterableInterval, ExecutorService)}.
+	 * 
+	 * @param data
+	 *            The old data to uncount
+	 * @param executor
+	 *            Runs the counting tasks
+	 */
+	public void subtractData( final IterableInterval< T > data, final ExecutorService executor )
+	{
+		subtract( data, executor );
+	}
+
 	/**
 	 * Directly increment a bin by position.
 	 * 
@@ -739,30 +798,40 @@ public class Histogram1d< T > implements Img< LongType >
 		if ( iter.hasNext() )
 		{
 			firstValue = iter.next();
-			increment( firstValue );
 		}
 
-		// record the rest of the elements
-		while ( iter.hasNext() )
-		{
-			increment ( iter.next() );
-		}
+		add( data );
 	}
 
 	private void add( final Iterable< T > data )
 	{
-		for ( final T value : data )
-		{
-			increment( value );
-		}
+		ignoredCount += counter.count( data, distrib, 1 );
 	}
 
 	private void subtract( final Iterable< T > data )
 	{
-		for ( final T value : data )
-		{
-			decrement( value );
-		}
+		ignoredCount -= counter.count( data, distrib, -1 );
+	}
+
+	private void add( final IterableInterval< T > data, final ExecutorService executor )
+	{
+		ignoredCount += count( data, executor, 1 );
+	}
+
+	private void subtract( final IterableInterval< T > data, final ExecutorService executor )
+	{
+		ignoredCount -= count( data, executor, -1 );
+	}
+
+	private long count( final IterableInterval< T > data, final ExecutorService executor, final int delta )
+	{
+		if ( distrib.array() == null )
+			return counter.count( data, distrib, delta );
+		final Histogram1dCounter< T > prototype = counter.copyFor( data );
+		return PartialHistograms.count( data, data.size(), Runtime.getRuntime().availableProcessors(), () -> {
+			final Histogram1dCounter< T > c = prototype.copy();
+			return ( from, to, counts ) -> c.count( data, from, to, counts );
+		}, distrib, delta, executor );
 	}
 
 }
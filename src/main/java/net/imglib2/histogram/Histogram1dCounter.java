@@ -0,0 +1,345 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2018 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.histogram;
+
+import java.util.Iterator;
+
+import net.imglib2.Cursor;
+import net.imglib2.IterableInterval;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.cell.AbstractCellImg;
+import net.imglib2.img.planar.PlanarImg;
+import net.imglib2.type.numeric.integer.UnsignedByteType;
+import net.imglib2.type.numeric.integer.UnsignedShortType;
+import net.imglib2.util.PrimitiveStorage;
+
+/**
+ * Counts data into a {@link DiscreteFrequencyDistribution} for
+ * {@link Histogram1d}, incrementing the {@code long[]} of the distribution
+ * directly.
+ * <p>
+ * For {@link UnsignedByteType} and {@link UnsignedShortType} data with an
+ * {@link Integer1dBinMapper} or {@link Real1dBinMapper}, the bin of each of the
+ * 256 or 65536 possible values is looked up in a table. The values are read
+ * directly from the primitive arrays of {@link ArrayImg}s, {@link PlanarImg}s
+ * and {@link AbstractCellImg}s.
+ * </p>
+ */
+final class Histogram1dCounter< T >
+{
+	/**
+	 * Maximal number of values counted at a time from a storage array.
+	 */
+	private static final int CHUNK_SIZE = 1 << 16;
+
+	private final BinMapper1d< T > mapper;
+
+	/**
+	 * bin of each value of {@link #tableType}, or -1 if the value is ignored
+	 */
+	private int[] table = null;
+
+	private Class< ? > tableType = null;
+
+	private final long[] pos = new long[ 1 ];
+
+	Histogram1dCounter( final BinMapper1d< T > mapper )
+	{
+		this.mapper = mapper;
+	}
+
+	private Histogram1dCounter( final BinMapper1d< T > mapper, final int[] table, final Class< ? > tableType )
+	{
+		this.mapper = mapper;
+		this.table = table;
+		this.tableType = tableType;
+	}
+
+	/**
+	 * Create a counter for {@link #count(IterableInterval, long, long, long[])}
+	 * of {@code data}, with a copy of the mapper. The table of bins is
+	 * computed here, and shared with the new counter.
+	 */
+	Histogram1dCounter< T > copyFor( final Iterable< T > data )
+	{
+		final int[] t = table( data );
+		return new Histogram1dCounter<>( mapper.copy(), t, t == null ? null : tableType );
+	}
+
+	/**
+	 * Create a counter with a copy of the mapper, sharing the table of bins.
+	 */
+	Histogram1dCounter< T > copy()
+	{
+		return new Histogram1dCounter<>( mapper.copy(), table, tableType );
+	}
+
+	/**
+	 * Increment the bins of {@code counts} for the values of {@code data}
+	 * with flat iteration index {@code from} (inclusive) to {@code to}
+	 * (exclusive). Only the table of bins prepared by {@link #copyFor} is used.
+	 *
+	 * @return the number of values that do not map to a bin.
+	 */
+	long count( final IterableInterval< T > data, final long from, final long to, final long[] counts )
+	{
+		long ignored = 0;
+		if ( table != null )
+		{
+			final PrimitiveStorage.Chunks chunks = new PrimitiveStorage.Chunks( data, CHUNK_SIZE, storageKind() );
+			if ( chunks.isDirect() )
+				return count( chunks, from, to, table, counts, 1 );
+		}
+
+		final Cursor< T > cursor = data.cursor();
+		cursor.jumpFwd( from );
+		if ( table == null )
+		{
+			for ( long i = from; i < to; ++i )
+			{
+				final long bin = mapper.map( cursor.next() );
+				if ( bin == Long.MIN_VALUE || bin == Long.MAX_VALUE )
+					++ignored;
+				else
+					++counts[ ( int ) bin ];
+			}
+		}
+		else if ( tableType == UnsignedShortType.class )
+		{
+			for ( long i = from; i < to; ++i )
+			{
+				final int bin = table[ ( ( UnsignedShortType ) cursor.next() ).get() ];
+				if ( bin < 0 )
+					++ignored;
+				else
+					++counts[ bin ];
+			}
+		}
+		else
+		{
+			for ( long i = from; i < to; ++i )
+			{
+				final int bin = table[ ( ( UnsignedByteType ) cursor.next() ).get() ];
+				if ( bin < 0 )
+					++ignored;
+				else
+					++counts[ bin ];
+			}
+		}
+		return ignored;
+	}
+
+	/**
+	 * Add {@code delta} to the bin of each value of {@code data}.
+	 *
+	 * @return the number of values that do not map to a bin.
+	 */
+	long count( final Iterable< T > data, final DiscreteFrequencyDistribution distrib, final int delta )
+	{
+		final long[] counts = distrib.array();
+		if ( counts == null )
+			return countMapped( data, distrib, delta );
+
+		final int[] table = table( data );
+		long size = 0;
+		long ignored = 0;
+		if ( table == null )
+		{
+			for ( final T value : data )
+			{
+				final long bin = mapper.map( value );
+				if ( bin == Long.MIN_VALUE || bin == Long.MAX_VALUE )
+					++ignored;
+				else
+					counts[ ( int ) bin ] += delta;
+				++size;
+			}
+		}
+		else
+		{
+			final PrimitiveStorage.Chunks chunks = data instanceof IterableInterval
+					? new PrimitiveStorage.Chunks( ( IterableInterval< T > ) data, CHUNK_SIZE, storageKind() )
+					: null;
+			if ( chunks != null && chunks.isDirect() )
+			{
+				size = ( ( IterableInterval< T > ) data ).size();
+				ignored = count( chunks, 0, size, table, counts, delta );
+			}
+			else if ( tableType == UnsignedShortType.class )
+			{
+				for ( final T value : data )
+				{
+					final int bin = table[ ( ( UnsignedShortType ) value ).get() ];
+					if ( bin < 0 )
+						++ignored;
+					else
+						counts[ bin ] += delta;
+					++size;
+				}
+			}
+			else
+			{
+				for ( final T value : data )
+				{
+					final int bin = table[ ( ( UnsignedByteType ) value ).get() ];
+					if ( bin < 0 )
+						++ignored;
+					else
+						counts[ bin ] += delta;
+					++size;
+				}
+			}
+		}
+		distrib.addTotalValues( delta * ( size - ignored ) );
+		return ignored;
+	}
+
+	private long countMapped( final Iterable< T > data, final DiscreteFrequencyDistribution distrib, final int delta )
+	{
+		long ignored = 0;
+		for ( final T value : data )
+		{
+			final long bin = mapper.map( value );
+			if ( bin == Long.MIN_VALUE || bin == Long.MAX_VALUE )
+				++ignored;
+			else
+			{
+				pos[ 0 ] = bin;
+				if ( delta > 0 )
+					distrib.increment( pos );
+				else
+					distrib.decrement( pos );
+			}
+		}
+		return ignored;
+	}
+
+	/**
+	 * Add {@code delta} to the bin of each value with flat iteration index
+	 * {@code from} (inclusive) to {@code to} (exclusive), read directly from
+	 * the storage arrays of {@code chunks}.
+	 *
+	 * @return the number of values that do not map to a bin.
+	 */
+	private static long count( final PrimitiveStorage.Chunks chunks, final long from, final long to, final int[] table, final long[] counts, final int delta )
+	{
+		final long[] ignored = { 0 };
+		chunks.forEach( from, to, ( values, f, t ) -> ignored[ 0 ] += values instanceof short[]
+				? countShorts( ( short[] ) values, f, t, table, counts, delta )
+				: countBytes( ( byte[] ) values, f, t, table, counts, delta ) );
+		return ignored[ 0 ];
+	}
+
+	private static long countShorts( final short[] values, final int from, final int to, final int[] table, final long[] counts, final int delta )
+	{
+		long ignored = 0;
+		for ( int i = from; i < to; ++i )
+		{
+			final int bin = table[ values[ i ] & 0xffff ];
+			if ( bin < 0 )
+				++ignored;
+			else
+				counts[ bin ] += delta;
+		}
+		return ignored;
+	}
+
+	private static long countBytes( final byte[] values, final int from, final int to, final int[] table, final long[] counts, final int delta )
+	{
+		long ignored = 0;
+		for ( int i = from; i < to; ++i )
+		{
+			final int bin = table[ values[ i ] & 0xff ];
+			if ( bin < 0 )
+				++ignored;
+			else
+				counts[ bin ] += delta;
+		}
+		return ignored;
+	}
+
+	/**
+	 * Returns the table of bins for the type of {@code data}, or {@code null}
+	 * if the type or the mapper are not supported.
+	 */
+	@SuppressWarnings( "unchecked" )
+	private int[] table( final Iterable< T > data )
+	{
+		if ( !( mapper instanceof Integer1dBinMapper || mapper instanceof Real1dBinMapper ) )
+			return null;
+		final Iterator< T > iterator = data.iterator();
+		if ( !iterator.hasNext() )
+			return null;
+		final Class< ? > type = iterator.next().getClass();
+		if ( type == tableType )
+			return table;
+
+		final int size;
+		final Object variable;
+		if ( type == UnsignedShortType.class )
+		{
+			size = 1 << 16;
+			variable = new UnsignedShortType();
+		}
+		else if ( type == UnsignedByteType.class )
+		{
+			size = 1 << 8;
+			variable = new UnsignedByteType();
+		}
+		else
+			return null;
+
+		table = new int[ size ];
+		for ( int i = 0; i < size; ++i )
+		{
+			if ( variable instanceof UnsignedShortType )
+				( ( UnsignedShortType ) variable ).set( i );
+			else
+				( ( UnsignedByteType ) variable ).set( i );
+			final long bin = mapper.map( ( T ) variable );
+			table[ i ] = ( bin == Long.MIN_VALUE || bin == Long.MAX_VALUE ) ? -1 : ( int ) bin;
+		}
+		tableType = type;
+		return table;
+	}
+
+	/**
+	 * The kind of storage array read directly for types with a table of bins.
+	 */
+	private PrimitiveStorage.Kind storageKind()
+	{
+		return tableType == UnsignedShortType.class ? PrimitiveStorage.Kind.UNSIGNED_SHORT : PrimitiveStorage.Kind.UNSIGNED_BYTE;
+	}
+}
@@ -37,9 +37,11 @@ package net.imglib2.histogram;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
 
 import net.imglib2.Cursor;
 import net.imglib2.Interval;
+import net.imglib2.IterableInterval;
 import net.imglib2.Positionable;
 import net.imglib2.RandomAccess;
 import net.imglib2.RealPositionable;
@@ -58,6 +60,13 @@ import net.imglib2.type.numeric.integer.LongType;
  * <p>
  * Note: the last three classifications may not be present depending upon the
  * makeup of the input data.
+ * <p>
+ * If there are more than {@link DiscreteFrequencyDistribution#MAX_DENSE_BINS}
+ * bins in total, e.g., for a joint histogram of four 8-bit channels, only the
+ * non-zero counts are stored, see {@link DiscreteFrequencyDistribution}. Such
+ * histograms differ from dense ones only before anything is counted:
+ * {@link DiscreteFrequencyDistribution#modePositions()} of {@link #dfd()} is
+ * then empty rather than listing every bin.
  * 
  * @author Barry DeZonia
  */
@@ -93,11 +102,13 @@ public class HistogramNd< T > implements Img< LongType >
 	{
 		this.mappers = mappers;
 		final long[] dims = new long[ mappers.size() ];
+		long numBins = 1;
 		for ( int i = 0; i < mappers.size(); i++ )
 		{
 			dims[ i ] = mappers.get( i ).getBinCount();
+			numBins = numBins > Long.MAX_VALUE / dims[ i ] ? Long.MAX_VALUE : numBins * dims[ i ];
 		}
-		distrib = new DiscreteFrequencyDistribution( dims );
+		distrib = new DiscreteFrequencyDistribution( dims, numBins > DiscreteFrequencyDistribution.MAX_DENSE_BINS );
 		pos = new long[ mappers.size() ];
 		ignoredCount = 0;
 	}
@@ -187,17 +198,12 @@ public class HistogramNd< T > implements Img< LongType >
 	{
 		if ( !hasTails( dim ) )
 			return 0;
-		long sum = 0;
-		final Cursor< ? > cursor = distrib.localizingCursor();
-		final long[] binPos = new long[ distrib.numDimensions() ];
-		while ( cursor.hasNext() )
-		{
-			cursor.next();
-			cursor.localize( binPos );
+		final long[] sum = { 0 };
+		distrib.forEachNonZero( ( binPos, count ) -> {
 			if ( binPos[ dim ] == 0 )
-				sum += distrib.frequency( binPos );
-		}
-		return sum;
+				sum[ 0 ] += count;
+		} );
+		return sum[ 0 ];
 	}
 
 	/**
@@ -207,23 +213,18 @@ public class HistogramNd< T > implements Img< LongType >
 	{
 		if ( !hasTails() )
 			return 0;
-		long sum = 0;
-		final Cursor< ? > cursor = distrib.localizingCursor();
-		final long[] binPos = new long[ distrib.numDimensions() ];
-		while ( cursor.hasNext() )
-		{
-			cursor.next();
-			cursor.localize( binPos );
+		final long[] sum = { 0 };
+		distrib.forEachNonZero( ( binPos, count ) -> {
 			for ( int i = 0; i < mappers.size(); i++ )
 			{
 				if ( binPos[ i ] == 0 )
 				{
-					sum += distrib.frequency( binPos );
+					sum[ 0 ] += count;
 					break;
 				}
 			}
-		}
-		return sum;
+		} );
+		return sum[ 0 ];
 	}
 
 	/**
@@ -235,17 +236,12 @@ public class HistogramNd< T > implements Img< LongType >
 		if ( !hasTails( dim ) )
 			return 0;
 		final long dimSize = mappers.get( dim ).getBinCount();
-		long sum = 0;
-		final Cursor< ? > cursor = distrib.localizingCursor();
-		final long[] binPos = new long[ distrib.numDimensions() ];
-		while ( cursor.hasNext() )
-		{
-			cursor.next();
-			cursor.localize( binPos );
+		final long[] sum = { 0 };
+		distrib.forEachNonZero( ( binPos, count ) -> {
 			if ( binPos[ dim ] == dimSize - 1 )
-				sum += distrib.frequency( binPos );
-		}
-		return sum;
+				sum[ 0 ] += count;
+		} );
+		return sum[ 0 ];
 	}
 
 	/**
@@ -255,23 +251,18 @@ public class HistogramNd< T > implements Img< LongType >
 	{
 		if ( !hasTails() )
 			return 0;
-		long sum = 0;
-		final Cursor< ? > cursor = distrib.localizingCursor();
-		final long[] binPos = new long[ distrib.numDimensions() ];
-		while ( cursor.hasNext() )
-		{
-			cursor.next();
-			cursor.localize( binPos );
+		final long[] sum = { 0 };
+		distrib.forEachNonZero( ( binPos, count ) -> {
 			for ( int i = 0; i < mappers.size(); i++ )
 			{
 				if ( binPos[ i ] == mappers.get( i ).getBinCount() - 1 )
 				{
-					sum += distrib.frequency( binPos );
+					sum[ 0 ] += count;
 					break;
 				}
 			}
-		}
-		return sum;
+		} );
+		return sum[ 0 ];
 	}
 
 	/**
@@ -282,22 +273,17 @@ public class HistogramNd< T > implements Img< LongType >
 	{
 		final boolean hasTails = hasTails( dim );
 		final long dimSize = mappers.get( dim ).getBinCount();
-		long sum = 0;
-		final Cursor< ? > cursor = distrib.localizingCursor();
-		final long[] binPos = new long[ distrib.numDimensions() ];
-		while ( cursor.hasNext() )
-		{
-			cursor.next();
-			cursor.localize( binPos );
+		final long[] sum = { 0 };
+		distrib.forEachNonZero( ( binPos, count ) -> {
 			boolean inTail = false;
 			if ( hasTails && ( binPos[ dim ] == 0 ) || ( binPos[ dim ] == dimSize - 1 ) )
 			{
 				inTail = true;
 			}
 			if ( !inTail )
-				sum += distrib.frequency( binPos );
-		}
-		return sum;
+				sum[ 0 ] += count;
+		} );
+		return sum[ 0 ];
 	}
 
 	/**
@@ -311,13 +297,8 @@ public class HistogramNd< T > implements Img< LongType >
 		// But this double counts some tail bins.
 		if ( !hasTails() )
 			return distributionCount();
-		long sum = 0;
-		final Cursor< ? > cursor = distrib.localizingCursor();
-		final long[] binPos = new long[ distrib.numDimensions() ];
-		while ( cursor.hasNext() )
-		{
-			cursor.next();
-			cursor.localize( binPos );
+		final long[] sum = { 0 };
+		distrib.forEachNonZero( ( binPos, count ) -> {
 			boolean inTail = false;
 			for ( int i = 0; i < binPos.length; i++ )
 			{
@@ -328,9 +309,9 @@ public class HistogramNd< T > implements Img< LongType >
 				}
 			}
 			if ( !inTail )
-				sum += distrib.frequency( binPos );
-		}
-		return sum;
+				sum[ 0 ] += count;
+		} );
+		return sum[ 0 ];
 	}
 
 	/**
@@ -340,18 +321,12 @@ public class HistogramNd< T > implements Img< LongType >
 	 */
 	public long distributionCount( final int dim, final long dimVal )
 	{
-		long sum = 0;
-		final Cursor< ? > cursor = distrib.localizingCursor();
-		final long[] binPos = new long[ distrib.numDimensions() ];
-		while ( cursor.hasNext() )
-		{
-			cursor.next();
-			cursor.localize( binPos );
-			if ( binPos[ dim ] != dimVal )
-				continue;
-			sum += distrib.frequency( binPos );
-		}
-		return sum;
+		final long[] sum = { 0 };
+		distrib.forEachNonZero( ( binPos, count ) -> {
+			if ( binPos[ dim ] == dimVal )
+				sum[ 0 ] += count;
+		} );
+		return sum[ 0 ];
 	}
 
 	/**
@@ -804,6 +779,54 @@ public class HistogramNd< T > implements Img< LongType >
 		subtract( data );
 	}
 
+	/**
+	 * Counts the data contained in the given data sources using the underlying
+	 * bin distribution. The data is counted in parallel by {@code executor},
+	 * see {@link #addData(List, ExecutorService)}.
+	 * 
+	 * @param data
+	 *            The total data to count, one source per dimension
+	 * @param executor
+	 *            Runs the counting tasks
+	 */
+	public void countData( final List< ? extends IterableInterval< T > > data, final ExecutorService executor )
+	{
+		reset();
+		add( data, executor );
+	}
+
+	/**
+	 * Counts additional data contained in the given data sources, in parallel.
+	 * The sources are iterated together and split into one range of their
+	 * iteration order per available processor, along the cells of a
+	 * {@code CellImg} and the planes of a {@code PlanarImg} where possible.
+	 * Each range is counted into its own partial histogram by
+	 * {@code executor}, and the partial histograms are added to this one.
+	 * 
+	 * @param data
+	 *            The new data to count, one source per dimension
+	 * @param executor
+	 *            Runs the counting tasks
+	 */
+	public void addData( final List< ? extends IterableInterval< T > > data, final ExecutorService executor )
+	{
+		add( data, executor );
+	}
+
+	/**
+	 * Uncounts some original data contained in the given data sources, in
+	 * parallel, see {@link #addData(List, ExecutorService)}.
+	 * 
+	 * @param data
+	 *            The old data to uncount, one source per dimension
+	 * @param executor
+	 *            Runs the counting tasks
+	 */
+	public void subtractData( final List< ? extends IterableInterval< T > > data, final ExecutorService executor )
+	{
+		subtract( data, executor );
+	}
+
 	/**
 	 * Directly increment a bin by position.
 	 * 
@@ -1060,6 +1083,79 @@ public class HistogramNd< T > implements Img< LongType >
 		modifyCounts( data, decrementer );
 	}
 
+	private void add( final List< ? extends IterableInterval< T > > data, final ExecutorService executor )
+	{
+		if ( distrib.array() == null )
+			add( new ArrayList< Iterable< T > >( data ) );
+		else
+			ignoredCount += count( data, executor, 1 );
+	}
+
+	private void subtract( final List< ? extends IterableInterval< T > > data, final ExecutorService executor )
+	{
+		if ( distrib.array() == null )
+			subtract( new ArrayList< Iterable< T > >( data ) );
+		else
+			ignoredCount -= count( data, executor, -1 );
+	}
+
+	private long count( final List< ? extends IterableInterval< T > > data, final ExecutorService executor, final int delta )
+	{
+		final int n = mappers.size();
+		if ( data.size() != n )
+			throw new IllegalArgumentException( "expected " + n + " data sources, got " + data.size() );
+		if ( n == 0 )
+			return 0;
+
+		// the sources are iterated together until one of them ends
+		long size = Long.MAX_VALUE;
+		for ( final IterableInterval< T > source : data )
+			size = Math.min( size, source.size() );
+
+		// strides of the flat bin index
+		final long[] strides = new long[ n ];
+		long stride = 1;
+		for ( int d = 0; d < n; ++d )
+		{
+			strides[ d ] = stride;
+			stride *= mappers.get( d ).getBinCount();
+		}
+
+		return PartialHistograms.count( data.get( 0 ), size, Runtime.getRuntime().availableProcessors(), () -> {
+			final List< BinMapper1d< T > > taskMappers = new ArrayList<>( n );
+			for ( final BinMapper1d< T > mapper : mappers )
+				taskMappers.add( mapper.copy() );
+			return ( from, to, counts ) -> {
+				final List< Cursor< T > > cursors = new ArrayList<>( n );
+				for ( final IterableInterval< T > source : data )
+				{
+					final Cursor< T > cursor = source.cursor();
+					cursor.jumpFwd( from );
+					cursors.add( cursor );
+				}
+				long ignored = 0;
+				for ( long i = from; i < to; ++i )
+				{
+					long index = 0;
+					boolean outside = false;
+					for ( int d = 0; d < n; ++d )
+					{
+						final long bin = taskMappers.get( d ).map( cursors.get( d ).next() );
+						if ( bin == Long.MIN_VALUE || bin == Long.MAX_VALUE )
+							outside = true;
+						else
+							index += bin * strides[ d ];
+					}
+					if ( outside )
+						++ignored;
+					else
+						++counts[ ( int ) index ];
+				}
+				return ignored;
+			};
+		}, distrib, delta, executor );
+	}
+
 	private void modifyCounts( final Iterable< List< T >> data, final Counter counter )
 	{
 		final Iterator< List< T >> iter = data.iterator();
@@ -0,0 +1,270 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2018 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.histogram;
+
+import java.util.Arrays;
+
+/**
+ * A map from non-negative {@code long} keys to {@code long} values, using open
+ * addressing with linear probing in primitive arrays. Keys that are not in the
+ * map have value 0, and entries whose value becomes 0 are removed, so only
+ * non-zero values are stored.
+ * <p>
+ * Used by {@link DiscreteFrequencyDistribution} to store sparse counts.
+ * </p>
+ */
+final class LongLongHashMap
+{
+	/**
+	 * Marks an unused slot. Keys are non-negative.
+	 */
+	static final long FREE = -1;
+
+	private long[] keys;
+
+	private long[] values;
+
+	/**
+	 * {@code keys.length - 1}, the capacity is a power of two.
+	 */
+	private int mask;
+
+	private int shift;
+
+	private int size;
+
+	LongLongHashMap()
+	{
+		this( 16 );
+	}
+
+	/**
+	 * @param capacity
+	 *            initial number of slots, rounded up to a power of two.
+	 */
+	LongLongHashMap( final int capacity )
+	{
+		allocate( Math.max( 4, Integer.highestOneBit( Math.max( 1, capacity - 1 ) ) << 1 ) );
+	}
+
+	private void allocate( final int capacity )
+	{
+		keys = new long[ capacity ];
+		values = new long[ capacity ];
+		Arrays.fill( keys, FREE );
+		mask = capacity - 1;
+		shift = 64 - Integer.numberOfTrailingZeros( capacity );
+		size = 0;
+	}
+
+	private int slot( final long key )
+	{
+		// Fibonacci hashing, the high bits are well mixed
+		return ( int ) ( ( key * 0x9E3779B97F4A7C15L ) >>> shift );
+	}
+
+	/**
+	 * Returns the number of non-zero entries.
+	 */
+	int size()
+	{
+		return size;
+	}
+
+	/**
+	 * Returns the value of {@code key}, or 0 if it is not in the map.
+	 */
+	long get( final long key )
+	{
+		for ( int i = slot( key );; i = ( i + 1 ) & mask )
+		{
+			final long k = keys[ i ];
+			if ( k == key )
+				return values[ i ];
+			if ( k == FREE )
+				return 0;
+		}
+	}
+
+	/**
+	 * Set the value of {@code key}. Setting 0 removes the entry.
+	 */
+	void put( final long key, final long value )
+	{
+		final int i = find( key );
+		if ( keys[ i ] == key )
+		{
+			if ( value == 0 )
+				remove( i );
+			else
+				values[ i ] = value;
+		}
+		else if ( value != 0 )
+			insert( i, key, value );
+	}
+
+	/**
+	 * Add {@code delta} to the value of {@code key}.
+	 *
+	 * @return the new value
+	 */
+	long add( final long key, final long delta )
+	{
+		final int i = find( key );
+		if ( keys[ i ] == key )
+		{
+			final long value = values[ i ] + delta;
+			if ( value == 0 )
+				remove( i );
+			else
+				values[ i ] = value;
+			return value;
+		}
+		if ( delta != 0 )
+			insert( i, key, delta );
+		return delta;
+	}
+
+	/**
+	 * Remove all entries.
+	 */
+	void clear()
+	{
+		Arrays.fill( keys, FREE );
+		size = 0;
+	}
+
+	/**
+	 * Returns the number of slots. Together with {@link #keyAt(int)} and
+	 * {@link #valueAt(int)} this can be used to visit all entries.
+	 */
+	int capacity()
+	{
+		return keys.length;
+	}
+
+	/**
+	 * Returns the key in slot {@code i}, or {@link #FREE}.
+	 */
+	long keyAt( final int i )
+	{
+		return keys[ i ];
+	}
+
+	/**
+	 * Returns the value in slot {@code i}.
+	 */
+	long valueAt( final int i )
+	{
+		return values[ i ];
+	}
+
+	LongLongHashMap copy()
+	{
+		final LongLongHashMap copy = new LongLongHashMap( 4 );
+		copy.keys = keys.clone();
+		copy.values = values.clone();
+		copy.mask = mask;
+		copy.shift = shift;
+		copy.size = size;
+		return copy;
+	}
+
+	/**
+	 * Returns the slot of {@code key}, or the free slot where it would be
+	 * inserted.
+	 */
+	private int find( final long key )
+	{
+		if ( key < 0 )
+			throw new IllegalArgumentException( "negative key " + key );
+		int i = slot( key );
+		while ( keys[ i ] != key && keys[ i ] != FREE )
+			i = ( i + 1 ) & mask;
+		return i;
+	}
+
+	private void insert( final int i, final long key, final long value )
+	{
+		keys[ i ] = key;
+		values[ i ] = value;
+		// keep the load factor below 3/4
+		if ( 4 * ++size > 3 * keys.length )
+			rehash( 2 * keys.length );
+	}
+
+	/**
+	 * Remove the entry in slot {@code i}, and shift following entries of the
+	 * probe sequence back so that no tombstones are needed.
+	 */
+	private void remove( int i )
+	{
+		--size;
+		for ( int j = ( i + 1 ) & mask;; j = ( j + 1 ) & mask )
+		{
+			final long k = keys[ j ];
+			if ( k == FREE )
+				break;
+			// move k to i, unless its home slot lies cyclically in ( i, j ]
+			final int home = slot( k );
+			if ( i <= j ? ( i < home && home <= j ) : ( i < home || home <= j ) )
+				continue;
+			keys[ i ] = k;
+			values[ i ] = values[ j ];
+			i = j;
+		}
+		keys[ i ] = FREE;
+	}
+
+	private void rehash( final int capacity )
+	{
+		final long[] oldKeys = keys;
+		final long[] oldValues = values;
+		allocate( capacity );
+		for ( int i = 0; i < oldKeys.length; ++i )
+		{
+			final long key = oldKeys[ i ];
+			if ( key != FREE )
+			{
+				int j = slot( key );
+				while ( keys[ j ] != FREE )
+					j = ( j + 1 ) & mask;
+				keys[ j ] = key;
+				values[ j ] = oldValues[ i ];
+				++size;
+			}
+		}
+	}
+}
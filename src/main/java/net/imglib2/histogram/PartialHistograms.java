@@ -0,0 +1,186 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2018 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.histogram;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Supplier;
+
+import net.imglib2.IterableInterval;
+import net.imglib2.img.cell.AbstractCellImg;
+import net.imglib2.img.planar.PlanarImg;
+import net.imglib2.util.ParallelTasks;
+import net.imglib2.util.PrimitiveStorage;
+
+/**
+ * Parallel counting for {@link Histogram1d} and {@link HistogramNd}. The data
+ * is split into ranges of its flat iteration order, typically one per
+ * available processor. Each range is counted into a separate {@code long[]} of bins, and
+ * the partial histograms are added to the {@link DiscreteFrequencyDistribution}
+ * afterwards.
+ * <p>
+ * For {@link AbstractCellImg}s and {@link PlanarImg}s the ranges start and end
+ * at cell and plane borders, if there are enough of those.
+ * </p>
+ */
+final class PartialHistograms
+{
+	private PartialHistograms()
+	{}
+
+	/**
+	 * Ranges are not made smaller than this, to keep the cost of allocating
+	 * and merging partial histograms small compared to the counting.
+	 */
+	static final long MIN_SAMPLES_PER_TASK = 1 << 16;
+
+	/**
+	 * Counts a range of values into a partial histogram.
+	 */
+	interface RangeCounter
+	{
+		/**
+		 * Increment the bins of {@code counts} for the values with flat
+		 * iteration index {@code from} (inclusive) to {@code to} (exclusive).
+		 *
+		 * @return the number of values that do not map to a bin.
+		 */
+		long count( long from, long to, long[] counts );
+	}
+
+	private static class Partial
+	{
+		final long[] counts;
+
+		long ignored;
+
+		Partial( final int numBins )
+		{
+			counts = new long[ numBins ];
+		}
+	}
+
+	/**
+	 * Count the first {@code size} values of {@code data} and add {@code delta}
+	 * times the counts to {@code distrib}, which must be array backed.
+	 *
+	 * @param numTasks
+	 *            maximum number of ranges, each counted into its own partial
+	 *            histogram.
+	 * @param counters
+	 *            creates one {@link RangeCounter} for each task.
+	 * @return the number of values that do not map to a bin.
+	 */
+	static long count(
+			final IterableInterval< ? > data,
+			final long size,
+			final int numTasks,
+			final Supplier< RangeCounter > counters,
+			final DiscreteFrequencyDistribution distrib,
+			final int delta,
+			final ExecutorService executor )
+	{
+		final long[] counts = distrib.array();
+		final int numBins = ( int ) distrib.size();
+		final long[] bounds = split( data, size, numTasks );
+
+		final List< Callable< Partial > > tasks = new ArrayList<>();
+		for ( int i = 0; i < bounds.length - 1; ++i )
+		{
+			final long from = bounds[ i ];
+			final long to = bounds[ i + 1 ];
+			if ( from == to )
+				continue;
+			tasks.add( () -> {
+				final Partial partial = new Partial( numBins );
+				partial.ignored = counters.get().count( from, to, partial.counts );
+				return partial;
+			} );
+		}
+
+		long ignored = 0;
+		for ( final Partial partial : ParallelTasks.invokeAll( executor, tasks ) )
+		{
+			final long[] partialCounts = partial.counts;
+			for ( int b = 0; b < numBins; ++b )
+				counts[ b ] += delta * partialCounts[ b ];
+			ignored += partial.ignored;
+		}
+		distrib.addTotalValues( delta * ( size - ignored ) );
+		return ignored;
+	}
+
+	/**
+	 * Split the flat iteration order of the first {@code size} values of
+	 * {@code data} into at most {@code numTasks} ranges.
+	 *
+	 * @return the bounds of the ranges, range i is from {@code bounds[i]}
+	 *         (inclusive) to {@code bounds[i+1]} (exclusive).
+	 */
+	static long[] split( final IterableInterval< ? > data, final long size, final int numTasks )
+	{
+		final int n = ( int ) Math.max( 1, Math.min( numTasks, size / MIN_SAMPLES_PER_TASK ) );
+		final long[] bounds = new long[ n + 1 ];
+		final long[] segments = PrimitiveStorage.segmentSizes( data );
+		if ( segments == null || segments.length < n || n == 1 )
+		{
+			for ( int t = 1; t < n; ++t )
+				bounds[ t ] = flatBound( size, n, t );
+		}
+		else
+		{
+			// end each range at the first segment border after its flat bound
+			int t = 1;
+			long end = 0;
+			for ( final long segment : segments )
+			{
+				end = Math.min( end + segment, size );
+				while ( t < n && end >= flatBound( size, n, t ) )
+					bounds[ t++ ] = end;
+			}
+			while ( t < n )
+				bounds[ t++ ] = size;
+		}
+		bounds[ n ] = size;
+		return bounds;
+	}
+
+	private static long flatBound( final long size, final int n, final int t )
+	{
+		return size / n * t + Math.min( t, size % n );
+	}
+}
@@ -0,0 +1,428 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2018 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.histogram;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import net.imglib2.Cursor;
+import net.imglib2.IterableInterval;
+import net.imglib2.type.numeric.RealType;
+
+/**
+ * A KLL sketch (Karnin, Lang, Liberty: "Optimal Quantile Approximation in
+ * Streams", 2016) to estimate quantiles of a stream of values in one pass with
+ * bounded memory.
+ * <p>
+ * The sketch keeps a hierarchy of compactors. Values are added to level 0.
+ * When a level exceeds its capacity, it is sorted and every other value
+ * (starting at a random offset) is promoted to the next level, where it
+ * represents twice the weight. The capacity of level h is about
+ * {@code k (2/3)^(H-1-h)} for H levels, so the sketch holds about {@code 3k}
+ * values regardless of the number of values added. The rank error of a
+ * quantile is about {@code 1.7 / k} with high probability, e.g., about 1% for
+ * the default {@code k = 200}. The minimum and maximum are tracked exactly.
+ * </p>
+ * <p>
+ * Sketches of parts of the data can be {@link #merge(QuantileSketch) merged},
+ * so that data can be sketched in parallel, see
+ * {@link Quantiles#sketch(IterableInterval, java.util.concurrent.ExecutorService)}.
+ * Sketches are not thread-safe.
+ * </p>
+ */
+public class QuantileSketch
+{
+	/**
+	 * Default accuracy parameter.
+	 */
+	public static final int DEFAULT_K = 200;
+
+	/**
+	 * Lower bound on the capacity of a level.
+	 */
+	private static final int MIN_CAPACITY = 8;
+
+	private final int k;
+
+	private final Random random;
+
+	/**
+	 * values of each level, level h has weight {@code 2^h}
+	 */
+	private double[][] levels;
+
+	private int[] sizes;
+
+	private int numLevels;
+
+	private long n;
+
+	private double min;
+
+	private double max;
+
+	/**
+	 * values and cumulative weights in ascending order, or {@code null} if
+	 * values were added since they were computed.
+	 */
+	private double[] sortedValues;
+
+	private long[] cumulativeWeights;
+
+	/**
+	 * Create a sketch with accuracy parameter {@link #DEFAULT_K}.
+	 */
+	public QuantileSketch()
+	{
+		this( DEFAULT_K );
+	}
+
+	/**
+	 * Create a sketch with accuracy parameter {@code k}. The rank error is
+	 * about {@code 1.7 / k}, and the sketch holds about {@code 3k} values.
+	 */
+	public QuantileSketch( final int k )
+	{
+		this( k, new Random() );
+	}
+
+	/**
+	 * Create a sketch with accuracy parameter {@code k}, using {@code random}
+	 * to choose the values that are promoted to the next level.
+	 */
+	public QuantileSketch( final int k, final Random random )
+	{
+		if ( k < MIN_CAPACITY )
+			throw new IllegalArgumentException( "k must be at least " + MIN_CAPACITY );
+		this.k = k;
+		this.random = random;
+		levels = new double[ 4 ][];
+		sizes = new int[ 4 ];
+		levels[ 0 ] = new double[ k ];
+		numLevels = 1;
+		n = 0;
+		min = Double.NaN;
+		max = Double.NaN;
+	}
+
+	/**
+	 * Returns the accuracy parameter.
+	 */
+	public int getK()
+	{
+		return k;
+	}
+
+	/**
+	 * Returns the number of values added to the sketch.
+	 */
+	public long size()
+	{
+		return n;
+	}
+
+	/**
+	 * Returns the number of values held by the sketch.
+	 */
+	public int numRetained()
+	{
+		int retained = 0;
+		for ( int h = 0; h < numLevels; ++h )
+			retained += sizes[ h ];
+		return retained;
+	}
+
+	/**
+	 * Returns the smallest value added, or {@code NaN} if the sketch is empty.
+	 */
+	public double min()
+	{
+		return min;
+	}
+
+	/**
+	 * Returns the largest value added, or {@code NaN} if the sketch is empty.
+	 */
+	public double max()
+	{
+		return max;
+	}
+
+	/**
+	 * Add a value. {@code NaN}s are ignored.
+	 */
+	public void add( final double value )
+	{
+		if ( Double.isNaN( value ) )
+			return;
+		if ( n++ == 0 )
+		{
+			min = value;
+			max = value;
+		}
+		else if ( value < min )
+			min = value;
+		else if ( value > max )
+			max = value;
+		sortedValues = null;
+
+		// level 0 has at least k slots, and fewer than k values after compress
+		if ( sizes[ 0 ] >= k )
+			compress();
+		levels[ 0 ][ sizes[ 0 ]++ ] = value;
+	}
+
+	/**
+	 * Add all values of {@code data}.
+	 */
+	public void add( final IterableInterval< ? extends RealType< ? > > data )
+	{
+		final Cursor< ? extends RealType< ? > > cursor = data.cursor();
+		while ( cursor.hasNext() )
+			add( cursor.next().getRealDouble() );
+	}
+
+	/**
+	 * Add the values of {@code data} from flat iteration index {@code from}
+	 * (inclusive) to {@code to} (exclusive).
+	 */
+	public void add( final IterableInterval< ? extends RealType< ? > > data, final long from, final long to )
+	{
+		final Cursor< ? extends RealType< ? > > cursor = data.cursor();
+		cursor.jumpFwd( from );
+		for ( long i = from; i < to; ++i )
+			add( cursor.next().getRealDouble() );
+	}
+
+	/**
+	 * Add the values held by {@code other} to this sketch. The result
+	 * approximates the quantiles of all values added to either sketch.
+	 */
+	public void merge( final QuantileSketch other )
+	{
+		if ( other.n == 0 )
+			return;
+		if ( n == 0 )
+		{
+			min = other.min;
+			max = other.max;
+		}
+		else
+		{
+			min = Math.min( min, other.min );
+			max = Math.max( max, other.max );
+		}
+		n += other.n;
+		sortedValues = null;
+
+		for ( int h = 0; h < other.numLevels; ++h )
+		{
+			if ( h == numLevels )
+				addLevel();
+			for ( int i = 0; i < other.sizes[ h ]; ++i )
+				append( h, other.levels[ h ][ i ] );
+		}
+		compress();
+	}
+
+	/**
+	 * Returns an estimate of the {@code quantile} of the added values, for
+	 * {@code 0 <= quantile <= 1}. As in
+	 * {@link net.imglib2.util.Util#percentile(double[], double)}, this is the
+	 * value at index {@code round( ( n - 1 ) * quantile )} of the sorted
+	 * values. Returns {@code NaN} if the sketch is empty.
+	 */
+	public double quantile( final double quantile )
+	{
+		if ( n == 0 )
+			return Double.NaN;
+		final long pos = Math.min( n - 1, Math.max( 0, Math.round( ( n - 1 ) * quantile ) ) );
+		if ( pos == 0 )
+			return min;
+		if ( pos == n - 1 )
+			return max;
+		sort();
+		int i = Arrays.binarySearch( cumulativeWeights, pos );
+		// first value with cumulative weight > pos
+		i = i >= 0 ? i + 1 : -i - 1;
+		return Math.max( min, Math.min( max, sortedValues[ Math.min( i, sortedValues.length - 1 ) ] ) );
+	}
+
+	/**
+	 * Returns estimates of several quantiles.
+	 */
+	public double[] quantiles( final double... quantiles )
+	{
+		final double[] result = new double[ quantiles.length ];
+		for ( int i = 0; i < quantiles.length; ++i )
+			result[ i ] = quantile( quantiles[ i ] );
+		return result;
+	}
+
+	/**
+	 * Returns an estimate of the median of the added values.
+	 */
+	public double median()
+	{
+		return quantile( 0.5 );
+	}
+
+	/**
+	 * Returns an estimate of the fraction of added values that are smaller
+	 * than or equal to {@code value}.
+	 */
+	public double rank( final double value )
+	{
+		if ( n == 0 )
+			return Double.NaN;
+		sort();
+		int i = Arrays.binarySearch( sortedValues, value );
+		if ( i >= 0 )
+		{
+			while ( i + 1 < sortedValues.length && sortedValues[ i + 1 ] == value )
+				++i;
+			return ( double ) cumulativeWeights[ i ] / n;
+		}
+		i = -i - 2;
+		return i < 0 ? 0 : ( double ) cumulativeWeights[ i ] / n;
+	}
+
+	private int capacity( final int h )
+	{
+		final int depth = numLevels - 1 - h;
+		return Math.max( MIN_CAPACITY, ( int ) Math.ceil( k * Math.pow( 2.0 / 3.0, depth ) ) );
+	}
+
+	private void addLevel()
+	{
+		if ( numLevels == levels.length )
+		{
+			levels = Arrays.copyOf( levels, 2 * numLevels );
+			sizes = Arrays.copyOf( sizes, 2 * numLevels );
+		}
+		levels[ numLevels++ ] = new double[ MIN_CAPACITY ];
+	}
+
+	private void append( final int h, final double value )
+	{
+		if ( sizes[ h ] == levels[ h ].length )
+			levels[ h ] = Arrays.copyOf( levels[ h ], 2 * sizes[ h ] );
+		levels[ h ][ sizes[ h ]++ ] = value;
+	}
+
+	/**
+	 * Compact levels until each is within its capacity.
+	 */
+	private void compress()
+	{
+		boolean compacted;
+		do
+		{
+			compacted = false;
+			for ( int h = 0; h < numLevels; ++h )
+			{
+				if ( sizes[ h ] >= capacity( h ) )
+				{
+					compact( h );
+					compacted = true;
+				}
+			}
+		}
+		while ( compacted );
+	}
+
+	/**
+	 * Sort level {@code h} and promote every other value to level
+	 * {@code h + 1}. With an odd number of values, the largest one stays.
+	 */
+	private void compact( final int h )
+	{
+		if ( h + 1 == numLevels )
+			addLevel();
+		final double[] values = levels[ h ];
+		final int size = sizes[ h ];
+		Arrays.sort( values, 0, size );
+		final int even = size & ~1;
+		for ( int i = random.nextBoolean() ? 1 : 0; i < even; i += 2 )
+			append( h + 1, values[ i ] );
+		if ( even < size )
+		{
+			values[ 0 ] = values[ even ];
+			sizes[ h ] = 1;
+		}
+		else
+			sizes[ h ] = 0;
+	}
+
+	/**
+	 * Merge the sorted levels into {@link #sortedValues} and
+	 * {@link #cumulativeWeights}.
+	 */
+	private void sort()
+	{
+		if ( sortedValues != null )
+			return;
+		double[] values = new double[ 0 ];
+		long[] weights = new long[ 0 ];
+		for ( int h = 0; h < numLevels; ++h )
+		{
+			final double[] level = Arrays.copyOf( levels[ h ], sizes[ h ] );
+			Arrays.sort( level );
+			final long weight = 1L << h;
+			final double[] mergedValues = new double[ values.length + level.length ];
+			final long[] mergedWeights = new long[ mergedValues.length ];
+			int i = 0, j = 0;
+			for ( int m = 0; m < mergedValues.length; ++m )
+			{
+				if ( j == level.length || ( i < values.length && values[ i ] <= level[ j ] ) )
+				{
+					mergedValues[ m ] = values[ i ];
+					mergedWeights[ m ] = weights[ i++ ];
+				}
+				else
+				{
+					mergedValues[ m ] = level[ j++ ];
+					mergedWeights[ m ] = weight;
+				}
+			}
+			values = mergedValues;
+			weights = mergedWeights;
+		}
+		for ( int i = 1; i < weights.length; ++i )
+			weights[ i ] += weights[ i - 1 ];
+		sortedValues = values;
+		cumulativeWeights = weights;
+	}
+}
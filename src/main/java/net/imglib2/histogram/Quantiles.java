@@ -0,0 +1,248 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2018 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.histogram;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+
+import net.imglib2.Cursor;
+import net.imglib2.IterableInterval;
+import net.imglib2.type.numeric.IntegerType;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.util.ParallelTasks;
+
+/**
+ * Quantiles of image data without copying and sorting the values as
+ * {@link net.imglib2.util.Util#percentile(double[], double)} does.
+ * <ul>
+ * <li>{@link #exact} computes exact quantiles of integer data from a
+ * {@link Histogram1d} with one bin per value.</li>
+ * <li>{@link #sketch} estimates quantiles of any real data in one pass with
+ * bounded memory, using a {@link QuantileSketch}.</li>
+ * </ul>
+ * As in {@link net.imglib2.util.Util#percentile(double[], double)}, the
+ * {@code q}-quantile of {@code n} values is the value at index
+ * {@code round( ( n - 1 ) * q )} of the sorted values.
+ */
+public class Quantiles
+{
+	private Quantiles()
+	{}
+
+	/**
+	 * Integer data with a larger range of values is not counted in a
+	 * histogram by {@link #exact}.
+	 */
+	public static final long MAX_EXACT_BINS = 1 << 24;
+
+	/**
+	 * Compute the exact {@code quantiles} of integer data. For types with at
+	 * most 2^16 values (e.g., {@code UnsignedByteType},
+	 * {@code UnsignedShortType}) the data is read once, otherwise twice to
+	 * determine the range of values first.
+	 *
+	 * @return the quantiles, {@code NaN} if {@code data} is empty.
+	 * @throws IllegalArgumentException
+	 *             if the data spans more than {@link #MAX_EXACT_BINS} values.
+	 */
+	public static < T extends IntegerType< T > > double[] exact( final IterableInterval< T > data, final double... quantiles )
+	{
+		final Histogram1d< T > hist = exactHistogram( data );
+		if ( hist == null )
+			return nans( quantiles.length );
+		hist.countData( data );
+		return quantiles( hist, quantiles );
+	}
+
+	/**
+	 * Compute the exact {@code quantiles} of integer data, counting the
+	 * histogram in parallel, see
+	 * {@link Histogram1d#countData(IterableInterval, ExecutorService)}.
+	 *
+	 * @return the quantiles, {@code NaN} if {@code data} is empty.
+	 * @throws IllegalArgumentException
+	 *             if the data spans more than {@link #MAX_EXACT_BINS} values.
+	 */
+	public static < T extends IntegerType< T > > double[] exact( final IterableInterval< T > data, final ExecutorService executor, final double... quantiles )
+	{
+		final Histogram1d< T > hist = exactHistogram( data );
+		if ( hist == null )
+			return nans( quantiles.length );
+		hist.countData( data, executor );
+		return quantiles( hist, quantiles );
+	}
+
+	/**
+	 * Returns the quantiles of the values counted in {@code hist}. The result
+	 * is exact if {@code hist} has one bin per value, e.g., with an
+	 * {@link Integer1dBinMapper}. Otherwise, the center of the bin containing
+	 * the quantile is returned. Values in tail bins are taken into account,
+	 * ignored values are not. A value of the data type is obtained from
+	 * {@link Histogram1d#firstDataValue()}, so {@code hist} must be populated
+	 * with {@code countData()}.
+	 *
+	 * @return the quantiles, {@code NaN} if nothing was counted.
+	 */
+	public static < T extends RealType< T > > double[] quantiles( final Histogram1d< T > hist, final double... quantiles )
+	{
+		final long n = hist.distributionCount();
+		if ( n == 0 )
+			return nans( quantiles.length );
+		if ( hist.firstDataValue() == null )
+			throw new IllegalArgumentException( "histogram was not populated with countData()" );
+		final long[] counts = hist.toLongArray();
+		final T value = hist.firstDataValue().createVariable();
+		final double[] result = new double[ quantiles.length ];
+		for ( int i = 0; i < quantiles.length; ++i )
+		{
+			final long pos = Math.min( n - 1, Math.max( 0, Math.round( ( n - 1 ) * quantiles[ i ] ) ) );
+			long cumulative = 0;
+			int bin = 0;
+			while ( ( cumulative += counts[ bin ] ) <= pos )
+				++bin;
+			hist.getCenterValue( bin, value );
+			result[ i ] = value.getRealDouble();
+		}
+		return result;
+	}
+
+	/**
+	 * Sketch the quantiles of {@code data} in one pass, with the default
+	 * accuracy {@link QuantileSketch#DEFAULT_K}.
+	 */
+	public static QuantileSketch sketch( final IterableInterval< ? extends RealType< ? > > data )
+	{
+		final QuantileSketch sketch = new QuantileSketch();
+		sketch.add( data );
+		return sketch;
+	}
+
+	/**
+	 * Sketch the quantiles of {@code data} in one pass.
+	 *
+	 * @param k
+	 *            accuracy parameter of the sketch, see {@link QuantileSketch}
+	 */
+	public static QuantileSketch sketch( final IterableInterval< ? extends RealType< ? > > data, final int k )
+	{
+		final QuantileSketch sketch = new QuantileSketch( k );
+		sketch.add( data );
+		return sketch;
+	}
+
+	/**
+	 * Sketch the quantiles of {@code data} in parallel, with the default
+	 * accuracy {@link QuantileSketch#DEFAULT_K}.
+	 */
+	public static QuantileSketch sketch( final IterableInterval< ? extends RealType< ? > > data, final ExecutorService executor )
+	{
+		return sketch( data, QuantileSketch.DEFAULT_K, executor );
+	}
+
+	/**
+	 * Sketch the quantiles of {@code data} in parallel. The data is split into
+	 * one range of its iteration order per available processor, each range is
+	 * sketched by {@code executor}, and the sketches are merged.
+	 *
+	 * @param k
+	 *            accuracy parameter of the sketch, see {@link QuantileSketch}
+	 */
+	public static QuantileSketch sketch( final IterableInterval< ? extends RealType< ? > > data, final int k, final ExecutorService executor )
+	{
+		final long[] bounds = PartialHistograms.split( data, data.size(), Runtime.getRuntime().availableProcessors() );
+		final List< Callable< QuantileSketch > > tasks = new ArrayList<>();
+		for ( int i = 0; i < bounds.length - 1; ++i )
+		{
+			final long from = bounds[ i ];
+			final long to = bounds[ i + 1 ];
+			final long seed = i;
+			tasks.add( () -> {
+				final QuantileSketch sketch = new QuantileSketch( k, new Random( seed ) );
+				sketch.add( data, from, to );
+				return sketch;
+			} );
+		}
+		final QuantileSketch sketch = new QuantileSketch( k, new Random( bounds.length ) );
+		for ( final QuantileSketch partial : ParallelTasks.invokeAll( executor, tasks ) )
+			sketch.merge( partial );
+		return sketch;
+	}
+
+	/**
+	 * Create a histogram with one bin per value in the range of {@code data},
+	 * or {@code null} if {@code data} is empty.
+	 */
+	static < T extends IntegerType< T > > Histogram1d< T > exactHistogram( final IterableInterval< T > data )
+	{
+		if ( data.size() == 0 )
+			return null;
+		final T type = data.firstElement();
+		long min;
+		long max;
+		if ( type.getMaxValue() - type.getMinValue() < 1 << 16 )
+		{
+			min = ( long ) type.getMinValue();
+			max = ( long ) type.getMaxValue();
+		}
+		else
+		{
+			final Cursor< T > cursor = data.cursor();
+			min = Long.MAX_VALUE;
+			max = Long.MIN_VALUE;
+			while ( cursor.hasNext() )
+			{
+				final long value = cursor.next().getIntegerLong();
+				if ( value < min )
+					min = value;
+				if ( value > max )
+					max = value;
+			}
+		}
+		if ( max - min >= MAX_EXACT_BINS || max - min < 0 )
+			throw new IllegalArgumentException( "range of values too large for an exact histogram: " + min + " to " + max );
+		return new Histogram1d<>( new Integer1dBinMapper< T >( min, max - min + 1, false ) );
+	}
+
+	private static double[] nans( final int n )
+	{
+		final double[] result = new double[ n ];
+		Arrays.fill( result, Double.NaN );
+		return result;
+	}
+}
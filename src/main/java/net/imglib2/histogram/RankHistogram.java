@@ -0,0 +1,351 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2018 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.histogram;
+
+import java.util.Arrays;
+
+import net.imglib2.IterableInterval;
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessible;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.iterator.LocalizingIntervalIterator;
+import net.imglib2.type.numeric.IntegerType;
+import net.imglib2.util.Intervals;
+
+/**
+ * Counts of integer values with one bin per value, for computing order
+ * statistics (k-th smallest value, quantiles, median) by counting instead of
+ * partitioning. Values can be added and removed, so the counts can follow a
+ * sliding window.
+ * <p>
+ * The rank queries keep a cursor at the bin of the last result, together with
+ * the number of values in bins below it (as in the running median filter of
+ * Huang, Yang, and Tang, 1979). {@link #add(long)} and {@link #remove(long)}
+ * update the counts and the cursor in constant time, and a query moves the
+ * cursor from the last result to the new one. For a sliding window, the
+ * median moves little from one step to the next, so the update per step is
+ * constant in practice. Blocks of {@value #BLOCK_SIZE} bins are skipped at
+ * once, which bounds the cost of a query by
+ * {@code O( numBins / BLOCK_SIZE + BLOCK_SIZE )}.
+ * </p>
+ */
+public class RankHistogram
+{
+	/**
+	 * Number of bins of the blocks that are skipped at once by rank queries.
+	 */
+	public static final int BLOCK_SIZE = 256;
+
+	private static final int BLOCK_SHIFT = 8;
+
+	private static final int BLOCK_MASK = BLOCK_SIZE - 1;
+
+	private final long min;
+
+	private final long[] counts;
+
+	private final long[] blockCounts;
+
+	private long n;
+
+	/**
+	 * Cursor bin of the rank queries.
+	 */
+	private int pos;
+
+	/**
+	 * Number of values in the bins before {@link #pos}.
+	 */
+	private long below;
+
+	/**
+	 * Create an empty {@link RankHistogram} for the values from {@code min} to
+	 * {@code min + numBins - 1}.
+	 */
+	public RankHistogram( final long min, final int numBins )
+	{
+		if ( numBins <= 0 || numBins > Quantiles.MAX_EXACT_BINS )
+			throw new IllegalArgumentException( "number of bins must be between 1 and " + Quantiles.MAX_EXACT_BINS + ", not " + numBins );
+		this.min = min;
+		counts = new long[ numBins ];
+		blockCounts = new long[ ( numBins + BLOCK_MASK ) >> BLOCK_SHIFT ];
+	}
+
+	/**
+	 * Create an empty {@link RankHistogram} for all values of {@code type},
+	 * e.g., {@code UnsignedByteType} or {@code UnsignedShortType}.
+	 *
+	 * @throws IllegalArgumentException
+	 *             if {@code type} has more than
+	 *             {@link Quantiles#MAX_EXACT_BINS} values.
+	 */
+	public static RankHistogram forType( final IntegerType< ? > type )
+	{
+		final double range = type.getMaxValue() - type.getMinValue() + 1;
+		if ( range > Quantiles.MAX_EXACT_BINS )
+			throw new IllegalArgumentException( type.getClass().getSimpleName() + " has too many values for a RankHistogram" );
+		return new RankHistogram( ( long ) type.getMinValue(), ( int ) range );
+	}
+
+	/**
+	 * Count the values of {@code data}, in {@code O( n + range )}. The counts
+	 * are computed with {@link Histogram1d#countData(Iterable)}, which reads
+	 * the storage of {@code UnsignedByteType} and {@code UnsignedShortType}
+	 * images directly.
+	 *
+	 * @throws IllegalArgumentException
+	 *             if the data spans more than {@link Quantiles#MAX_EXACT_BINS}
+	 *             values.
+	 */
+	public static < T extends IntegerType< T > > RankHistogram of( final IterableInterval< T > data )
+	{
+		final Histogram1d< T > hist = Quantiles.exactHistogram( data );
+		if ( hist == null )
+			return new RankHistogram( 0, 1 );
+		hist.countData( data );
+		final T value = data.firstElement().createVariable();
+		hist.getLowerBound( 0, value );
+		final RankHistogram ranks = new RankHistogram( value.getIntegerLong(), ( int ) hist.getBinCount() );
+		final long[] counts = hist.toLongArray();
+		for ( int i = 0; i < counts.length; ++i )
+		{
+			ranks.counts[ i ] = counts[ i ];
+			ranks.blockCounts[ i >> BLOCK_SHIFT ] += counts[ i ];
+			ranks.n += counts[ i ];
+		}
+		return ranks;
+	}
+
+	/**
+	 * Add a value.
+	 */
+	public void add( final long value )
+	{
+		final int i = ( int ) ( value - min );
+		++counts[ i ];
+		++blockCounts[ i >> BLOCK_SHIFT ];
+		++n;
+		if ( i < pos )
+			++below;
+	}
+
+	/**
+	 * Remove a value, which must have been added before.
+	 */
+	public void remove( final long value )
+	{
+		final int i = ( int ) ( value - min );
+		--counts[ i ];
+		--blockCounts[ i >> BLOCK_SHIFT ];
+		--n;
+		if ( i < pos )
+			--below;
+	}
+
+	/**
+	 * Remove all values.
+	 */
+	public void clear()
+	{
+		Arrays.fill( counts, 0 );
+		Arrays.fill( blockCounts, 0 );
+		n = 0;
+		below = 0;
+	}
+
+	/**
+	 * Returns the number of values.
+	 */
+	public long size()
+	{
+		return n;
+	}
+
+	/**
+	 * Returns how often {@code value} was added (and not removed).
+	 */
+	public long count( final long value )
+	{
+		return counts[ ( int ) ( value - min ) ];
+	}
+
+	/**
+	 * Returns the smallest value that can be counted.
+	 */
+	public long minBin()
+	{
+		return min;
+	}
+
+	/**
+	 * Returns the number of bins, i.e., the number of distinct values that
+	 * can be counted.
+	 */
+	public int numBins()
+	{
+		return counts.length;
+	}
+
+	/**
+	 * Returns the value of the given {@code rank}, i.e., the element at index
+	 * {@code rank} of the sorted values.
+	 *
+	 * @param rank
+	 *            {@code 0 <= rank < size()}
+	 */
+	public long value( final long rank )
+	{
+		if ( rank < 0 || rank >= n )
+			throw new IndexOutOfBoundsException( "rank " + rank + " of " + n + " values" );
+		while ( below > rank )
+		{
+			final int block = ( pos >> BLOCK_SHIFT ) - 1;
+			if ( ( pos & BLOCK_MASK ) == 0 && below - blockCounts[ block ] > rank )
+			{
+				below -= blockCounts[ block ];
+				pos -= BLOCK_SIZE;
+			}
+			else
+				below -= counts[ --pos ];
+		}
+		while ( below + counts[ pos ] <= rank )
+		{
+			final int block = pos >> BLOCK_SHIFT;
+			if ( ( pos & BLOCK_MASK ) == 0 && below + blockCounts[ block ] <= rank )
+			{
+				below += blockCounts[ block ];
+				pos += BLOCK_SIZE;
+			}
+			else
+				below += counts[ pos++ ];
+		}
+		return min + pos;
+	}
+
+	/**
+	 * Returns the {@code q}-quantile: as in
+	 * {@link net.imglib2.util.Util#percentile(double[], double)}, the value of
+	 * rank {@code round( ( size() - 1 ) * q )}.
+	 */
+	public long quantile( final double q )
+	{
+		return value( Math.min( n - 1, Math.max( 0, Math.round( ( n - 1 ) * q ) ) ) );
+	}
+
+	/**
+	 * Returns the median, the value of rank {@code ( size() - 1 ) / 2}
+	 * rounded up.
+	 */
+	public long median()
+	{
+		return quantile( 0.5 );
+	}
+
+	/**
+	 * Median filter along dimension {@code d}, see
+	 * {@link #rankFilter(RandomAccessible, RandomAccessibleInterval, int, int, double)}.
+	 */
+	public static < T extends IntegerType< T >, U extends IntegerType< U > > void medianFilter( final RandomAccessible< T > source, final RandomAccessibleInterval< U > target, final int d, final int radius )
+	{
+		rankFilter( source, target, d, radius, 0.5 );
+	}
+
+	/**
+	 * Rank filter along dimension {@code d}: each value of {@code target} is
+	 * set to the {@code q}-quantile of the {@code 2 * radius + 1} values of
+	 * {@code source} centered at the same position along dimension {@code d}.
+	 * The window slides along each line, adding one value and removing one
+	 * value per step.
+	 *
+	 * @param source
+	 *            input, must be defined in {@code target} extended by
+	 *            {@code radius} along dimension {@code d}, e.g., an extended
+	 *            view. The type must have at most
+	 *            {@link Quantiles#MAX_EXACT_BINS} values.
+	 * @param target
+	 *            output
+	 * @param d
+	 *            dimension along which to filter
+	 * @param radius
+	 *            window radius
+	 * @param q
+	 *            quantile, e.g., {@code 0.5} for the median, {@code 0} for
+	 *            the minimum
+	 */
+	public static < T extends IntegerType< T >, U extends IntegerType< U > > void rankFilter( final RandomAccessible< T > source, final RandomAccessibleInterval< U > target, final int d, final int radius, final double q )
+	{
+		if ( Intervals.isEmpty( target ) )
+			return;
+		final long[] lineMin = Intervals.minAsLongArray( target );
+		final long[] lineMax = Intervals.maxAsLongArray( target );
+		lineMax[ d ] = lineMin[ d ];
+		final LocalizingIntervalIterator lines = new LocalizingIntervalIterator( lineMin, lineMax );
+		final RandomAccess< T > in = source.randomAccess();
+		final RandomAccess< T > out = source.randomAccess();
+		final RandomAccess< U > result = target.randomAccess();
+		in.setPosition( lineMin );
+		final RankHistogram hist = forType( in.get() );
+		final long length = target.dimension( d );
+		final long rank = Math.round( 2 * radius * q );
+		while ( lines.hasNext() )
+		{
+			lines.fwd();
+			in.setPosition( lines );
+			in.move( -radius, d );
+			out.setPosition( in );
+			result.setPosition( lines );
+			for ( int i = 0; i < 2 * radius; ++i )
+			{
+				hist.add( in.get().getIntegerLong() );
+				in.fwd( d );
+			}
+			for ( long x = 0; x < length; ++x )
+			{
+				hist.add( in.get().getIntegerLong() );
+				in.fwd( d );
+				result.get().setInteger( hist.value( rank ) );
+				result.fwd( d );
+				hist.remove( out.get().getIntegerLong() );
+				out.fwd( d );
+			}
+			// remove the remaining values, cheaper than clear()
+			for ( int i = 0; i < 2 * radius; ++i )
+			{
+				hist.remove( out.get().getIntegerLong() );
+				out.fwd( d );
+			}
+		}
+	}
+}
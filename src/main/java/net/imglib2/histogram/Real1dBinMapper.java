@@ -145,6 +145,58 @@ public class Real1dBinMapper< T extends RealType< T >> implements BinMapper1d< T
 		return pos;
 	}
 
+	/**
+	 * Map the values from index {@code from} (inclusive) to {@code to}
+	 * (exclusive) to bin positions as {@link #map(RealType)} does, and store
+	 * them in {@code result} starting at index {@code offset}. Values outside
+	 * the range are mapped to -1 if there are no tail bins.
+	 * <p>
+	 * The reciprocal of the bin width is computed once, and the loop has no
+	 * branches. A value within rounding error of a bin edge may therefore be
+	 * mapped to the neighboring bin of the one returned by
+	 * {@link #map(RealType)}.
+	 * </p>
+	 */
+	public void map( final double[] values, final int from, final int to, final int[] result, final int offset )
+	{
+		checkIntBins();
+		final double scale = 1 / binWidth;
+		final int last = ( int ) interiorBins - 1;
+		final int shift = tailBins ? 1 : 0;
+		final int below = tailBins ? 0 : -1;
+		final int above = tailBins ? ( int ) bins - 1 : -1;
+		for ( int i = from, j = offset; i < to; ++i, ++j )
+		{
+			final double val = values[ i ];
+			final int pos = Math.min( Math.max( ( int ) Math.floor( ( val - minVal ) * scale ), 0 ), last ) + shift;
+			// NaN is mapped above, as in map( T )
+			result[ j ] = val <= maxVal ? ( val < minVal ? below : pos ) : above;
+		}
+	}
+
+	/**
+	 * Map the values from index {@code from} (inclusive) to {@code to}
+	 * (exclusive) to bin positions, and store them in {@code result} starting
+	 * at index {@code offset}, see
+	 * {@link #map(double[], int, int, int[], int)}.
+	 */
+	public void map( final float[] values, final int from, final int to, final int[] result, final int offset )
+	{
+		checkIntBins();
+		final double scale = 1 / binWidth;
+		final int last = ( int ) interiorBins - 1;
+		final int shift = tailBins ? 1 : 0;
+		final int below = tailBins ? 0 : -1;
+		final int above = tailBins ? ( int ) bins - 1 : -1;
+		for ( int i = from, j = offset; i < to; ++i, ++j )
+		{
+			final double val = values[ i ];
+			final int pos = Math.min( Math.max( ( int ) Math.floor( ( val - minVal ) * scale ), 0 ), last ) + shift;
+			// NaN is mapped above, as in map( T )
+			result[ j ] = val <= maxVal ? ( val < minVal ? below : pos ) : above;
+		}
+	}
+
 	@Override
 	public void getCenterValue( final long binPos, final T value )
 	{
@@ -232,6 +284,12 @@ public class Real1dBinMapper< T extends RealType< T >> implements BinMapper1d< T
 
 	// -- helpers --
 
+	private void checkIntBins()
+	{
+		if ( bins > Integer.MAX_VALUE ) { throw new IllegalArgumentException(
+				"Real1dBinMapper: too many bins to map into an int array" ); }
+	}
+
 	private double min( final long pos )
 	{
 		if ( pos < 0 || pos > bins - 1 ) { throw new IllegalArgumentException( "invalid bin position specified" ); }
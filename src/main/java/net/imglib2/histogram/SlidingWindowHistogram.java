@@ -0,0 +1,236 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2018 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.histogram;
+
+import java.util.function.BiConsumer;
+
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessible;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.type.numeric.IntegerType;
+import net.imglib2.util.Intervals;
+
+/**
+ * Histograms of a rectangular window moving over an image, for local rank
+ * filters (median, percentiles) and other neighborhood statistics.
+ * <p>
+ * The window visits the target positions in snake order: along dimension 0
+ * forward, one step in dimension 1, along dimension 0 backward, and so on for
+ * higher dimensions. Every step moves the window by one pixel, so only the
+ * slab of the window that enters is added to the histogram and the slab that
+ * leaves is removed, instead of recounting the whole window. The counts are
+ * kept in a {@link RankHistogram}, i.e., in primitive arrays with one bin per
+ * value of the source type.
+ * </p>
+ */
+public class SlidingWindowHistogram
+{
+	private SlidingWindowHistogram()
+	{}
+
+	/**
+	 * Median filter with a window of size {@code 2 * radius[d] + 1} in each
+	 * dimension {@code d}, see
+	 * {@link #rankFilter(RandomAccessible, RandomAccessibleInterval, long[], double)}.
+	 */
+	public static < T extends IntegerType< T >, U extends IntegerType< U > > void medianFilter( final RandomAccessible< T > source, final RandomAccessibleInterval< U > target, final long... radius )
+	{
+		rankFilter( source, target, radius, 0.5 );
+	}
+
+	/**
+	 * Rank filter with a window of size {@code 2 * radius[d] + 1} in each
+	 * dimension {@code d}: each value of {@code target} is set to the
+	 * {@code q}-quantile of the values of {@code source} in the window
+	 * centered at the same position.
+	 *
+	 * @param source
+	 *            input, must be defined in {@code target} extended by
+	 *            {@code radius}, e.g., an extended view. The type must have
+	 *            at most {@link Quantiles#MAX_EXACT_BINS} values.
+	 * @param target
+	 *            output
+	 * @param radius
+	 *            window radius per dimension
+	 * @param q
+	 *            quantile, e.g., {@code 0.5} for the median, {@code 0} for
+	 *            the minimum
+	 */
+	public static < T extends IntegerType< T >, U extends IntegerType< U > > void rankFilter( final RandomAccessible< T > source, final RandomAccessibleInterval< U > target, final long[] radius, final double q )
+	{
+		long windowSize = 1;
+		for ( final long r : radius )
+			windowSize *= 2 * r + 1;
+		final long rank = Math.round( ( windowSize - 1 ) * q );
+		process( source, target, radius, ( histogram, output ) -> output.setInteger( histogram.value( rank ) ) );
+	}
+
+	/**
+	 * Move a window of size {@code 2 * radius[d] + 1} in each dimension
+	 * {@code d} over all positions of {@code target}, and call
+	 * {@code operation} with the histogram of the values of {@code source} in
+	 * the window and the value of {@code target} at the window center.
+	 *
+	 * @param source
+	 *            input, must be defined in {@code target} extended by
+	 *            {@code radius}, e.g., an extended view. The type must have
+	 *            at most {@link Quantiles#MAX_EXACT_BINS} values.
+	 * @param target
+	 *            output
+	 * @param radius
+	 *            window radius per dimension
+	 * @param operation
+	 *            computes the output value from the window histogram. The
+	 *            histogram must not be modified.
+	 */
+	public static < T extends IntegerType< T >, U > void process( final RandomAccessible< T > source, final RandomAccessibleInterval< U > target, final long[] radius, final BiConsumer< RankHistogram, ? super U > operation )
+	{
+		final int n = target.numDimensions();
+		if ( radius.length != n || source.numDimensions() != n )
+			throw new IllegalArgumentException( "radius, source, and target must have the same number of dimensions" );
+		if ( Intervals.isEmpty( target ) )
+			return;
+
+		final long[] tmin = Intervals.minAsLongArray( target );
+		final long[] tmax = Intervals.maxAsLongArray( target );
+		final RandomAccess< T > in = source.randomAccess();
+		final RandomAccess< U > out = target.randomAccess();
+		in.setPosition( tmin );
+		final RankHistogram histogram = RankHistogram.forType( in.get() );
+
+		// window center, window bounds, and scan direction per dimension
+		final long[] pos = tmin.clone();
+		final long[] wmin = new long[ n ];
+		final long[] wmax = new long[ n ];
+		final int[] dir = new int[ n ];
+		for ( int d = 0; d < n; ++d )
+		{
+			wmin[ d ] = pos[ d ] - radius[ d ];
+			wmax[ d ] = pos[ d ] + radius[ d ];
+			dir[ d ] = 1;
+		}
+
+		// the full initial window is a "slab" of dimension 0
+		for ( long c = wmin[ 0 ]; c <= wmax[ 0 ]; ++c )
+			slab( in, wmin, wmax, 0, c, histogram, true );
+
+		out.setPosition( pos );
+		operation.accept( histogram, out.get() );
+		while ( true )
+		{
+			// find the dimension of the next step in snake order
+			int d = 0;
+			while ( d < n && ( pos[ d ] + dir[ d ] < tmin[ d ] || pos[ d ] + dir[ d ] > tmax[ d ] ) )
+			{
+				dir[ d ] = -dir[ d ];
+				++d;
+			}
+			if ( d == n )
+				return;
+
+			if ( dir[ d ] > 0 )
+			{
+				slab( in, wmin, wmax, d, wmin[ d ], histogram, false );
+				++wmin[ d ];
+				++wmax[ d ];
+				slab( in, wmin, wmax, d, wmax[ d ], histogram, true );
+			}
+			else
+			{
+				slab( in, wmin, wmax, d, wmax[ d ], histogram, false );
+				--wmin[ d ];
+				--wmax[ d ];
+				slab( in, wmin, wmax, d, wmin[ d ], histogram, true );
+			}
+			pos[ d ] += dir[ d ];
+			out.move( dir[ d ], d );
+			operation.accept( histogram, out.get() );
+		}
+	}
+
+	/**
+	 * Add (or remove) the values of the slab of the window {@code [wmin, wmax]}
+	 * at coordinate {@code c} in dimension {@code k} to (or from)
+	 * {@code histogram}.
+	 */
+	private static < T extends IntegerType< T > > void slab( final RandomAccess< T > in, final long[] wmin, final long[] wmax, final int k, final long c, final RankHistogram histogram, final boolean add )
+	{
+		final int n = wmin.length;
+		in.setPosition( wmin );
+		in.setPosition( c, k );
+		if ( n == 1 )
+		{
+			if ( add )
+				histogram.add( in.get().getIntegerLong() );
+			else
+				histogram.remove( in.get().getIntegerLong() );
+			return;
+		}
+		final int inner = k == 0 ? 1 : 0;
+		final long length = wmax[ inner ] - wmin[ inner ] + 1;
+		while ( true )
+		{
+			if ( add )
+				for ( long x = 0; x < length; ++x )
+				{
+					histogram.add( in.get().getIntegerLong() );
+					in.fwd( inner );
+				}
+			else
+				for ( long x = 0; x < length; ++x )
+				{
+					histogram.remove( in.get().getIntegerLong() );
+					in.fwd( inner );
+				}
+			in.setPosition( wmin[ inner ], inner );
+
+			// next line of the slab
+			int d = 0;
+			for ( ; d < n; ++d )
+			{
+				if ( d == k || d == inner )
+					continue;
+				if ( in.getLongPosition( d ) < wmax[ d ] )
+				{
+					in.fwd( d );
+					break;
+				}
+				in.setPosition( wmin[ d ], d );
+			}
+			if ( d == n )
+				return;
+		}
+	}
+}
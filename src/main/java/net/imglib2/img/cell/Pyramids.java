@@ -0,0 +1,468 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2018 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.img.cell;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import net.imglib2.Cursor;
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.type.NativeType;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.util.Intervals;
+import net.imglib2.util.ParallelTasks;
+import net.imglib2.util.Util;
+import net.imglib2.view.DownsampleView;
+import net.imglib2.view.DownsampleView.Mode;
+import net.imglib2.view.Hyperslabs;
+
+/**
+ * Materialize multi-resolution pyramids into {@link CellImg}s.
+ * <p>
+ * Each pixel of level <em>k</em> is the reduction of its block of
+ * <em>f<sub>d</sub><sup>k</sup></em> pixels in the full resolution source,
+ * including the blocks cut off at the max border. Every level is computed from
+ * the previous one, so the source is read only once. For {@link Mode#MAX} the
+ * previous level itself suffices, because the maximum of block maxima is the
+ * maximum of the source block. The mean of block means and the mode of block
+ * modes differ from the mean and mode of the source block, so for
+ * {@link Mode#AVERAGE} the sum and pixel count of each block, and for
+ * {@link Mode#MODE} the histogram of each block are kept for the previous
+ * level. The histograms of a level hold at most one entry per source pixel,
+ * and far fewer for label images with few labels per block.
+ * </p>
+ * <p>
+ * Cells of a level are filled in parallel, one task per cell.
+ * </p>
+ */
+public class Pyramids
+{
+	private Pyramids()
+	{}
+
+	/**
+	 * Create {@code numLevels} downsampled levels of {@code source} using
+	 * {@link Runtime#availableProcessors()} threads.
+	 *
+	 * @see #downsample(RandomAccessibleInterval, Mode, long[], int, int[],
+	 *      ExecutorService)
+	 */
+	public static < T extends NativeType< T > & RealType< T > > List< CellImg< T, ? > > downsample(
+			final RandomAccessibleInterval< T > source,
+			final Mode mode,
+			final long[] factors,
+			final int numLevels,
+			final int... cellDimensions )
+	{
+		final ExecutorService executor = Executors.newFixedThreadPool( Runtime.getRuntime().availableProcessors() );
+		try
+		{
+			return downsample( source, mode, factors, numLevels, cellDimensions, executor );
+		}
+		finally
+		{
+			executor.shutdown();
+		}
+	}
+
+	/**
+	 * Create {@code numLevels} downsampled levels of {@code source}. Level
+	 * <em>k</em> (counting from 1) is {@code source} reduced by
+	 * {@code factors}<sup><em>k</em></sup> using {@code mode}. The source
+	 * itself is not part of the returned list.
+	 *
+	 * @param source
+	 *            the full resolution image.
+	 * @param mode
+	 *            how blocks of pixels are reduced.
+	 * @param factors
+	 *            downsampling factor per dimension from one level to the next.
+	 * @param numLevels
+	 *            the number of levels to create.
+	 * @param cellDimensions
+	 *            cell dimensions of the created {@link CellImg}s.
+	 * @param executor
+	 *            runs one task per cell of each level.
+	 * @return the downsampled levels, from finest to coarsest.
+	 */
+	public static < T extends NativeType< T > & RealType< T > > List< CellImg< T, ? > > downsample(
+			final RandomAccessibleInterval< T > source,
+			final Mode mode,
+			final long[] factors,
+			final int numLevels,
+			final int[] cellDimensions,
+			final ExecutorService executor )
+	{
+		final CellImgFactory< T > factory = new CellImgFactory<>( Util.getTypeFromInterval( source ).createVariable(), cellDimensions );
+		final List< CellImg< T, ? > > levels = new ArrayList<>();
+		RandomAccessibleInterval< T > previous = source;
+		BlockStatistics statistics = null;
+		for ( int level = 0; level < numLevels; ++level )
+		{
+			final CellImg< T, ? > img;
+			if ( mode == Mode.MAX )
+			{
+				final DownsampleView< T > view = new DownsampleView<>( previous, mode, factors );
+				img = factory.create( Intervals.dimensionsAsLongArray( view ) );
+				fill( img, view, executor );
+			}
+			else
+			{
+				final long[] previousDimensions = Intervals.dimensionsAsLongArray( previous );
+				final long[] dimensions = new long[ previousDimensions.length ];
+				for ( int d = 0; d < dimensions.length; ++d )
+					dimensions[ d ] = ( previousDimensions[ d ] + factors[ d ] - 1 ) / factors[ d ];
+				img = factory.create( dimensions );
+				statistics = reduce( img, source, statistics, previousDimensions, mode == Mode.AVERAGE, factors, level + 1 < numLevels, executor );
+			}
+			levels.add( img );
+			previous = img;
+		}
+		return levels;
+	}
+
+	/**
+	 * Copy {@code source} into {@code img}, one task per cell.
+	 */
+	private static < T extends NativeType< T > & RealType< T >, A > void fill(
+			final CellImg< T, A > img,
+			final RandomAccessibleInterval< T > source,
+			final ExecutorService executor )
+	{
+		final CellGrid grid = img.getCellGrid();
+		final int n = grid.numDimensions();
+		final long numCells = Intervals.numElements( grid.getGridDimensions() );
+		final List< Runnable > tasks = new ArrayList<>();
+		for ( long i = 0; i < numCells; ++i )
+		{
+			final long index = i;
+			tasks.add( () -> {
+				final long[] cellGridPosition = new long[ n ];
+				final long[] cellMin = new long[ n ];
+				final int[] cellDims = new int[ n ];
+				grid.getCellGridPositionFlat( index, cellGridPosition );
+				grid.getCellDimensions( cellGridPosition, cellMin, cellDims );
+				final ArrayImg< T, A > cell = Hyperslabs.cell( img, cellGridPosition );
+				final RandomAccess< T > access = source.randomAccess();
+				final long[] position = new long[ n ];
+				final Cursor< T > cursor = cell.localizingCursor();
+				while ( cursor.hasNext() )
+				{
+					final T t = cursor.next();
+					for ( int d = 0; d < n; ++d )
+						position[ d ] = cellMin[ d ] + cursor.getLongPosition( d );
+					access.setPosition( position );
+					t.set( access.get() );
+				}
+			} );
+		}
+		ParallelTasks.runAll( executor, tasks );
+	}
+
+	/**
+	 * Fill {@code img} with the mean ({@code average}) or mode of the source
+	 * block of each pixel. The blocks are merged from the blocks of the
+	 * previous level, whose statistics are {@code previous}, or, for the first
+	 * level ({@code previous == null}), from the pixels of {@code source}.
+	 *
+	 * @param previousDimensions
+	 *            dimensions of the previous level.
+	 * @param keep
+	 *            whether the statistics of {@code img} are needed for the next
+	 *            level.
+	 * @return the statistics of the blocks of {@code img}, or {@code null} if
+	 *         not {@code keep}.
+	 */
+	private static < T extends NativeType< T > & RealType< T >, A > BlockStatistics reduce(
+			final CellImg< T, A > img,
+			final RandomAccessibleInterval< T > source,
+			final BlockStatistics previous,
+			final long[] previousDimensions,
+			final boolean average,
+			final long[] factors,
+			final boolean keep,
+			final ExecutorService executor )
+	{
+		final CellGrid grid = img.getCellGrid();
+		final int n = grid.numDimensions();
+		final long numCells = Intervals.numElements( grid.getGridDimensions() );
+		if ( keep && numCells > Integer.MAX_VALUE )
+			throw new IllegalArgumentException( "too many cells: " + numCells );
+		final BlockStatistics statistics = keep ? new BlockStatistics( grid, ( int ) numCells, average ) : null;
+		final long[] sourceMin = Intervals.minAsLongArray( source );
+		final List< Runnable > tasks = new ArrayList<>();
+		for ( long i = 0; i < numCells; ++i )
+		{
+			final long index = i;
+			tasks.add( () -> {
+				final long[] cellGridPosition = new long[ n ];
+				final long[] cellMin = new long[ n ];
+				final int[] cellDims = new int[ n ];
+				grid.getCellGridPositionFlat( index, cellGridPosition );
+				grid.getCellDimensions( cellGridPosition, cellMin, cellDims );
+				final ArrayImg< T, A > cell = Hyperslabs.cell( img, cellGridPosition );
+				final RandomAccess< T > access = previous == null ? source.randomAccess() : null;
+				final long[] blockMin = new long[ n ];
+				final long[] blockMax = new long[ n ];
+				final long[] position = new long[ n ];
+				final long[] sourcePosition = new long[ n ];
+				final Entries block = new Entries();
+				final Entries cellEntries = keep ? new Entries() : null;
+				final int[] offsets = keep && !average ? new int[ ( int ) cell.size() + 1 ] : null;
+				int pixel = 0;
+				final Cursor< T > cursor = cell.localizingCursor();
+				while ( cursor.hasNext() )
+				{
+					final T t = cursor.next();
+					for ( int d = 0; d < n; ++d )
+					{
+						blockMin[ d ] = ( cellMin[ d ] + cursor.getLongPosition( d ) ) * factors[ d ];
+						blockMax[ d ] = Math.min( blockMin[ d ] + factors[ d ], previousDimensions[ d ] ) - 1;
+						position[ d ] = blockMin[ d ];
+					}
+					block.clear();
+					while ( true )
+					{
+						if ( previous == null )
+						{
+							for ( int d = 0; d < n; ++d )
+								sourcePosition[ d ] = sourceMin[ d ] + position[ d ];
+							access.setPosition( sourcePosition );
+							final double value = access.get().getRealDouble();
+							if ( average )
+								block.accumulate( value, 1 );
+							else
+								block.merge( value, 1 );
+						}
+						else
+							previous.addTo( block, position );
+
+						int d = 0;
+						for ( ; d < n; ++d )
+						{
+							if ( position[ d ] < blockMax[ d ] )
+							{
+								++position[ d ];
+								break;
+							}
+							position[ d ] = blockMin[ d ];
+						}
+						if ( d == n )
+							break;
+					}
+					t.setReal( average ? block.mean() : block.mode() );
+					if ( keep )
+					{
+						for ( int e = 0; e < block.size; ++e )
+							cellEntries.append( block.values[ e ], block.counts[ e ] );
+						if ( offsets != null )
+							offsets[ ++pixel ] = cellEntries.size;
+					}
+				}
+				if ( keep )
+					statistics.set( ( int ) index, offsets, cellEntries );
+			} );
+		}
+		ParallelTasks.runAll( executor, tasks );
+		return statistics;
+	}
+
+	/**
+	 * Statistics of the source blocks of the pixels of one level, stored per
+	 * cell: for {@link Mode#AVERAGE} one entry per pixel with the sum and the
+	 * number of source pixels of its block, for {@link Mode#MODE} the
+	 * histogram of its block as entries sorted by value.
+	 */
+	private static final class BlockStatistics
+	{
+		private final CellGrid grid;
+
+		private final int n;
+
+		/**
+		 * Per cell, the index of the first entry of each pixel in flat
+		 * iteration order, followed by the total number of entries.
+		 * {@code null} if every pixel has exactly one entry.
+		 */
+		private final int[][] offsets;
+
+		private final double[][] values;
+
+		private final long[][] counts;
+
+		private final boolean average;
+
+		BlockStatistics( final CellGrid grid, final int numCells, final boolean average )
+		{
+			this.grid = grid;
+			this.average = average;
+			n = grid.numDimensions();
+			offsets = average ? null : new int[ numCells ][];
+			values = new double[ numCells ][];
+			counts = new long[ numCells ][];
+		}
+
+		void set( final int cell, final int[] cellOffsets, final Entries entries )
+		{
+			if ( offsets != null )
+				offsets[ cell ] = cellOffsets;
+			values[ cell ] = Arrays.copyOf( entries.values, entries.size );
+			counts[ cell ] = Arrays.copyOf( entries.counts, entries.size );
+		}
+
+		/**
+		 * Add the statistics of the block of the pixel at {@code position}
+		 * to {@code block}.
+		 */
+		void addTo( final Entries block, final long[] position )
+		{
+			long cell = 0;
+			long cellStride = 1;
+			int pixel = 0;
+			int pixelStride = 1;
+			for ( int d = 0; d < n; ++d )
+			{
+				final int cellDimension = grid.cellDimension( d );
+				final long gridPosition = position[ d ] / cellDimension;
+				cell += gridPosition * cellStride;
+				cellStride *= grid.gridDimension( d );
+				pixel += ( int ) ( position[ d ] - gridPosition * cellDimension ) * pixelStride;
+				pixelStride *= grid.getCellDimension( d, gridPosition );
+			}
+			final int c = ( int ) cell;
+			final double[] cellValues = values[ c ];
+			final long[] cellCounts = counts[ c ];
+			if ( average )
+				block.accumulate( cellValues[ pixel ], cellCounts[ pixel ] );
+			else
+			{
+				final int[] cellOffsets = offsets[ c ];
+				for ( int e = cellOffsets[ pixel ]; e < cellOffsets[ pixel + 1 ]; ++e )
+					block.merge( cellValues[ e ], cellCounts[ e ] );
+			}
+		}
+	}
+
+	/**
+	 * Growable list of values with counts.
+	 */
+	private static final class Entries
+	{
+		private double[] values = new double[ 16 ];
+
+		private long[] counts = new long[ 16 ];
+
+		private int size;
+
+		void clear()
+		{
+			size = 0;
+		}
+
+		void append( final double value, final long count )
+		{
+			if ( size == values.length )
+				grow();
+			values[ size ] = value;
+			counts[ size ] = count;
+			++size;
+		}
+
+		/**
+		 * Add {@code value} to the sum and {@code count} to the count of the
+		 * single entry.
+		 */
+		void accumulate( final double value, final long count )
+		{
+			if ( size == 0 )
+				append( value, count );
+			else
+			{
+				values[ 0 ] += value;
+				counts[ 0 ] += count;
+			}
+		}
+
+		/**
+		 * Add {@code count} to the entry of {@code value}, keeping the
+		 * entries sorted by value.
+		 */
+		void merge( final double value, final long count )
+		{
+			int i = Arrays.binarySearch( values, 0, size, value );
+			if ( i >= 0 )
+			{
+				counts[ i ] += count;
+				return;
+			}
+			i = -i - 1;
+			if ( size == values.length )
+				grow();
+			System.arraycopy( values, i, values, i + 1, size - i );
+			System.arraycopy( counts, i, counts, i + 1, size - i );
+			values[ i ] = value;
+			counts[ i ] = count;
+			++size;
+		}
+
+		double mean()
+		{
+			return values[ 0 ] / counts[ 0 ];
+		}
+
+		/**
+		 * The value with the largest count, the smallest such value on ties.
+		 */
+		double mode()
+		{
+			int mode = 0;
+			for ( int i = 1; i < size; ++i )
+				if ( counts[ i ] > counts[ mode ] )
+					mode = i;
+			return values[ mode ];
+		}
+
+		private void grow()
+		{
+			values = Arrays.copyOf( values, 2 * values.length );
+			counts = Arrays.copyOf( counts, 2 * counts.length );
+		}
+	}
+}
@@ -0,0 +1,263 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2018 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.interpolation.neighborsearch;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import net.imglib2.FlatKDTree;
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.RealLocalizable;
+import net.imglib2.RealPoint;
+import net.imglib2.neighborsearch.KNearestNeighborSearchOnFlatKDTree;
+import net.imglib2.type.Type;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.util.Intervals;
+import net.imglib2.util.ParallelTasks;
+
+/**
+ * Render {@link NearestNeighborSearchInterpolator} and
+ * {@link InverseDistanceWeightingInterpolator} over a {@link FlatKDTree} into
+ * a raster. The result is the same as copying
+ * {@code Views.raster( Views.interpolate( ... ) )} into the target, but much
+ * faster:
+ * <ul>
+ * <li>The target is processed in lines along dimension 0. Within a line, the
+ * neighbors of the previous pixel bound the k-th nearest neighbor distance of
+ * the next pixel, and this bound is passed to
+ * {@link KNearestNeighborSearchOnFlatKDTree#search(RealLocalizable, double)}
+ * to prune the tree from the start.</li>
+ * <li>Lines are rendered in parallel, each task with its own search.</li>
+ * </ul>
+ * Pixel coordinates of the target are used as query coordinates.
+ */
+public class NeighborSearchRasterizer
+{
+	private NeighborSearchRasterizer()
+	{}
+
+	/**
+	 * Number of lines rendered by one task.
+	 */
+	private static final int LINES_PER_TASK = 16;
+
+	/**
+	 * Write the value of the nearest point of {@code tree} into each pixel of
+	 * {@code target}, using {@link Runtime#availableProcessors()} threads.
+	 */
+	public static < T extends Type< T > > void nearestNeighbor(
+			final FlatKDTree< T > tree,
+			final RandomAccessibleInterval< T > target )
+	{
+		final ExecutorService executor = Executors.newFixedThreadPool( Runtime.getRuntime().availableProcessors() );
+		try
+		{
+			nearestNeighbor( tree, target, executor );
+		}
+		finally
+		{
+			executor.shutdown();
+		}
+	}
+
+	/**
+	 * Write the value of the nearest point of {@code tree} into each pixel of
+	 * {@code target}.
+	 *
+	 * @param executor
+	 *            runs one task per {@value #LINES_PER_TASK} lines.
+	 */
+	public static < T extends Type< T > > void nearestNeighbor(
+			final FlatKDTree< T > tree,
+			final RandomAccessibleInterval< T > target,
+			final ExecutorService executor )
+	{
+		render( tree, 1, target, executor, ( search, t ) -> t.set( search.getSampler( 0 ).get() ) );
+	}
+
+	/**
+	 * Write the inverse distance weighted mean of the {@code k} nearest points
+	 * of {@code tree} into each pixel of {@code target}, using
+	 * {@link Runtime#availableProcessors()} threads.
+	 *
+	 * @see InverseDistanceWeightingInterpolator
+	 */
+	public static < T extends RealType< T >, S extends RealType< S > > void inverseDistanceWeighting(
+			final FlatKDTree< T > tree,
+			final int k,
+			final double p,
+			final RandomAccessibleInterval< S > target )
+	{
+		final ExecutorService executor = Executors.newFixedThreadPool( Runtime.getRuntime().availableProcessors() );
+		try
+		{
+			inverseDistanceWeighting( tree, k, p, target, executor );
+		}
+		finally
+		{
+			executor.shutdown();
+		}
+	}
+
+	/**
+	 * Write the inverse distance weighted mean of the {@code k} nearest points
+	 * of {@code tree} into each pixel of {@code target}.
+	 *
+	 * @param k
+	 *            number of neighbors
+	 * @param p
+	 *            power applied to the distance, see
+	 *            {@link InverseDistanceWeightingInterpolator}
+	 * @param executor
+	 *            runs one task per {@value #LINES_PER_TASK} lines.
+	 */
+	public static < T extends RealType< T >, S extends RealType< S > > void inverseDistanceWeighting(
+			final FlatKDTree< T > tree,
+			final int k,
+			final double p,
+			final RandomAccessibleInterval< S > target,
+			final ExecutorService executor )
+	{
+		final double p2 = p / 2.0;
+		// for integer p, evaluate squareDistance^(p/2) without Math.pow
+		final int wholePower = ( int ) Math.floor( p2 );
+		final boolean halfPower = p2 - wholePower == 0.5;
+		final boolean integerP = p == Math.rint( p ) && p >= 0 && p <= 16;
+		render( tree, k, target, executor, ( search, t ) -> {
+			if ( k == 1 || search.getSquareDistance( 0 ) / search.getSquareDistance( 1 ) < InverseDistanceWeightingInterpolator.minThreshold )
+				t.setReal( search.getSampler( 0 ).get().getRealDouble() );
+			else
+			{
+				double sumIntensity = 0;
+				double sumWeights = 0;
+				for ( int i = 0; i < k; ++i )
+				{
+					final double squDistance = search.getSquareDistance( i );
+					double power;
+					if ( integerP )
+					{
+						power = halfPower ? Math.sqrt( squDistance ) : 1;
+						for ( int j = 0; j < wholePower; ++j )
+							power *= squDistance;
+					}
+					else
+						power = Math.pow( squDistance, p2 );
+					final double weight = 1.0 / power;
+					sumWeights += weight;
+					sumIntensity += search.getSampler( i ).get().getRealDouble() * weight;
+				}
+				t.setReal( sumIntensity / sumWeights );
+			}
+		} );
+	}
+
+	private interface PixelWriter< T, S >
+	{
+		void write( KNearestNeighborSearchOnFlatKDTree< T > search, S target );
+	}
+
+	private static < T, S > void render(
+			final FlatKDTree< T > tree,
+			final int k,
+			final RandomAccessibleInterval< S > target,
+			final ExecutorService executor,
+			final PixelWriter< T, S > writer )
+	{
+		if ( tree.numPoints() < k )
+			throw new IllegalArgumentException( "tree has fewer than " + k + " points" );
+		if ( Intervals.isEmpty( target ) )
+			return;
+		final int n = target.numDimensions();
+		final long[] min = Intervals.minAsLongArray( target );
+		final long[] dimensions = Intervals.dimensionsAsLongArray( target );
+		final long numLines = Intervals.numElements( target ) / dimensions[ 0 ];
+
+		final KNearestNeighborSearchOnFlatKDTree< T > search = new KNearestNeighborSearchOnFlatKDTree<>( tree, k );
+		final List< Runnable > tasks = new ArrayList<>();
+		for ( long from = 0; from < numLines; from += LINES_PER_TASK )
+		{
+			final long firstLine = from;
+			final long lastLine = Math.min( from + LINES_PER_TASK, numLines ) - 1;
+			tasks.add( () -> {
+				final KNearestNeighborSearchOnFlatKDTree< T > s = search.copy();
+				final RandomAccess< S > access = target.randomAccess();
+				final long[] position = new long[ n ];
+				final RealPoint query = new RealPoint( n );
+				for ( long line = firstLine; line <= lastLine; ++line )
+				{
+					// lines are numbered in flat order of dimensions 1..n-1
+					position[ 0 ] = min[ 0 ];
+					long remainder = line;
+					for ( int d = 1; d < n; ++d )
+					{
+						position[ d ] = min[ d ] + remainder % dimensions[ d ];
+						remainder /= dimensions[ d ];
+					}
+					access.setPosition( position );
+					query.setPosition( position );
+
+					s.search( query );
+					writer.write( s, access.get() );
+					for ( long x = 1; x < dimensions[ 0 ]; ++x )
+					{
+						access.fwd( 0 );
+						query.move( 1, 0 );
+						// the previous neighbors are still candidates
+						double bound = 0;
+						for ( int i = 0; i < k; ++i )
+							bound = Math.max( bound, squDistance( s.getPosition( i ), query ) );
+						s.search( query, Math.nextUp( bound ) );
+						writer.write( s, access.get() );
+					}
+				}
+			} );
+		}
+		ParallelTasks.runAll( executor, tasks );
+	}
+
+	private static double squDistance( final RealLocalizable a, final RealLocalizable b )
+	{
+		double sum = 0;
+		for ( int d = 0; d < a.numDimensions(); ++d )
+		{
+			final double diff = a.getDoublePosition( d ) - b.getDoublePosition( d );
+			sum += diff * diff;
+		}
+		return sum;
+	}
+}
@@ -0,0 +1,115 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2018 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.interpolation.randomaccess;
+
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.type.NativeType;
+import net.imglib2.type.numeric.NumericType;
+
+/**
+ * Base class of {@link NLinearInterpolator}s that read the corners of the
+ * <em>2x2x...x2</em> hypercube directly from the primitive array of an
+ * {@link ArrayImg}. The flat index of the lower corner is computed once per
+ * {@link #get()}, the other corners are at fixed offsets from it.
+ * <p>
+ * The {@link ArrayImg} is not extended, i.e., interpolated positions must be
+ * within its interval. At the upper border in a dimension, the offset of the
+ * upper corner is 0 (its weight is 0 for positions inside the interval).
+ * </p>
+ */
+abstract class AbstractNLinearInterpolatorArray< T extends NumericType< T > & NativeType< T > > extends NLinearInterpolator< T >
+{
+	final protected int[] strides;
+
+	final protected long[] last;
+
+	/**
+	 * Offsets of the corners from the lower corner, in the order of
+	 * {@link #weights}.
+	 */
+	final protected int[] offsets;
+
+	protected AbstractNLinearInterpolatorArray( final ArrayImg< T, ? > img )
+	{
+		super( img );
+		strides = new int[ n ];
+		last = new long[ n ];
+		int stride = 1;
+		for ( int d = 0; d < n; ++d )
+		{
+			strides[ d ] = stride;
+			last[ d ] = img.dimension( d ) - 1;
+			stride *= ( int ) img.dimension( d );
+		}
+		offsets = new int[ 1 << n ];
+	}
+
+	protected AbstractNLinearInterpolatorArray( final AbstractNLinearInterpolatorArray< T > interpolator )
+	{
+		super( interpolator );
+		strides = interpolator.strides;
+		last = interpolator.last;
+		offsets = new int[ 1 << n ];
+	}
+
+	/**
+	 * Offset of the upper corner from the lower corner in dimension
+	 * {@code d}.
+	 */
+	final protected int step( final long p, final int d )
+	{
+		return p < last[ d ] ? strides[ d ] : 0;
+	}
+
+	/**
+	 * Fill {@link #offsets} for the current position.
+	 *
+	 * @return the flat index of the lower corner.
+	 */
+	final protected int fillOffsets()
+	{
+		int index = 0;
+		for ( int d = 0; d < n; ++d )
+		{
+			final long p = target.getLongPosition( d );
+			index += ( int ) p * strides[ d ];
+			final int step = step( p, d );
+			final int m = 1 << d;
+			for ( int i = 0; i < m; ++i )
+				offsets[ i + m ] = offsets[ i ] + step;
+		}
+		return index;
+	}
+}
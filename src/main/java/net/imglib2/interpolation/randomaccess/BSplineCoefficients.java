@@ -0,0 +1,389 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2018 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.interpolation.randomaccess;
+
+import java.lang.ref.SoftReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import net.imglib2.Cursor;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.img.basictypeaccess.array.DoubleArray;
+import net.imglib2.img.cell.Cell;
+import net.imglib2.img.cell.CellGrid;
+import net.imglib2.img.cell.LazyCellImg;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.type.numeric.real.DoubleType;
+import net.imglib2.util.Intervals;
+import net.imglib2.util.ParallelTasks;
+import net.imglib2.view.Views;
+
+/**
+ * Compute the coefficients of the cubic B-spline that interpolates an image,
+ * as required by {@link BSplineInterpolator}.
+ * <p>
+ * The coefficients are obtained by the recursive (IIR) prefilter of Unser et
+ * al., applied once along each axis. Outside of the image, the image is
+ * assumed to be mirrored without repeating the border pixel (as in
+ * {@link Views#extendMirrorSingle(RandomAccessibleInterval)}), and so are the
+ * coefficients.
+ * </p>
+ * <p>
+ * By default, the coefficients of the whole image are computed into an
+ * {@link ArrayImg}, filtering the lines along each axis in parallel. For big
+ * images, {@link #lazy(int...)} creates a {@link LazyCellImg} instead, whose
+ * cells are computed when they are first accessed and kept in a cache of
+ * {@link SoftReference}s. Each cell is then filtered from a block of the image
+ * that is padded by the distance after which the impulse response of the
+ * prefilter falls below the {@link #tolerance(double) tolerance}.
+ * </p>
+ *
+ * <pre>
+ * {@code
+ * RandomAccessibleInterval<DoubleType> coefficients = new BSplineCoefficients()
+ *     .lazy(64, 64, 64)
+ *     .compute(image);
+ * }
+ * </pre>
+ */
+public class BSplineCoefficients
+{
+	/**
+	 * Pole of the cubic B-spline prefilter.
+	 */
+	static final double POLE = Math.sqrt( 3.0 ) - 2.0;
+
+	/**
+	 * Gain of the cubic B-spline prefilter.
+	 */
+	static final double GAIN = ( 1.0 - POLE ) * ( 1.0 - 1.0 / POLE );
+
+	/**
+	 * Approximate number of samples filtered by one task.
+	 */
+	private static final int SAMPLES_PER_TASK = 1 << 16;
+
+	private ExecutorService executor = null;
+
+	private int[] cellDimensions = null;
+
+	private double tolerance = 1e-10;
+
+	/**
+	 * Filter in parallel using {@code executor}. If not set, a pool of
+	 * {@link Runtime#availableProcessors()} threads is created for each
+	 * {@link #compute(RandomAccessibleInterval)}. Ignored for
+	 * {@link #lazy(int...) lazy} coefficients.
+	 */
+	public BSplineCoefficients executor( final ExecutorService executor )
+	{
+		this.executor = executor;
+		return this;
+	}
+
+	/**
+	 * Compute the coefficients lazily into cells of the given dimensions.
+	 * Larger cells reduce the overhead of the padding.
+	 */
+	public BSplineCoefficients lazy( final int... cellDimensions )
+	{
+		this.cellDimensions = cellDimensions.clone();
+		return this;
+	}
+
+	/**
+	 * Truncate infinite sums of the prefilter when their terms become smaller
+	 * than {@code tolerance} (relative to the image values). Defaults to
+	 * {@code 1e-10}.
+	 */
+	public BSplineCoefficients tolerance( final double tolerance )
+	{
+		if ( !( tolerance > 0 && tolerance < 1 ) )
+			throw new IllegalArgumentException( "tolerance must be in (0, 1)" );
+		this.tolerance = tolerance;
+		return this;
+	}
+
+	/**
+	 * Compute the B-spline coefficients of {@code source}.
+	 *
+	 * @return the coefficients, with the same interval as {@code source}.
+	 */
+	public < T extends RealType< T > > RandomAccessibleInterval< DoubleType > compute( final RandomAccessibleInterval< T > source )
+	{
+		final RandomAccessibleInterval< DoubleType > coefficients;
+		if ( cellDimensions != null )
+			coefficients = computeLazy( source );
+		else if ( executor != null )
+			coefficients = computeArray( source, executor );
+		else
+		{
+			final ExecutorService pool = Executors.newFixedThreadPool( Runtime.getRuntime().availableProcessors() );
+			try
+			{
+				coefficients = computeArray( source, pool );
+			}
+			finally
+			{
+				pool.shutdown();
+			}
+		}
+		return Views.translate( coefficients, Intervals.minAsLongArray( source ) );
+	}
+
+	/**
+	 * Number of terms after which the impulse response of the prefilter is
+	 * smaller than {@code tolerance}.
+	 */
+	static int horizon( final double tolerance )
+	{
+		return ( int ) Math.ceil( Math.log( tolerance ) / Math.log( Math.abs( POLE ) ) );
+	}
+
+	private < T extends RealType< T > > ArrayImg< DoubleType, DoubleArray > computeArray(
+			final RandomAccessibleInterval< T > source,
+			final ExecutorService executor )
+	{
+		final int n = source.numDimensions();
+		final long[] dimensions = Intervals.dimensionsAsLongArray( source );
+		final ArrayImg< DoubleType, DoubleArray > img = ArrayImgs.doubles( dimensions );
+		final double[] data = img.update( null ).getCurrentStorageArray();
+		copy( source, data );
+
+		final int horizon = horizon( tolerance );
+		int slab = 1;
+		for ( int d = 0; d < n; ++d )
+		{
+			final int length = ( int ) dimensions[ d ];
+			final int stride = slab;
+			slab *= length;
+			if ( length == 1 )
+				continue;
+			final int outer = data.length / ( stride * length );
+
+			// filter blocks of up to columnsPerUnit neighboring lines at once,
+			// they are contiguous in memory
+			final int columnsPerUnit = Math.min( stride, Math.max( 1, SAMPLES_PER_TASK / length ) );
+			final int unitsPerSlab = ( stride + columnsPerUnit - 1 ) / columnsPerUnit;
+			final long numUnits = ( long ) outer * unitsPerSlab;
+			final int unitsPerTask = Math.max( 1, SAMPLES_PER_TASK / ( columnsPerUnit * length ) );
+
+			final List< Runnable > tasks = new ArrayList<>();
+			for ( long from = 0; from < numUnits; from += unitsPerTask )
+			{
+				final long first = from;
+				final long last = Math.min( from + unitsPerTask, numUnits );
+				tasks.add( () -> {
+					for ( long unit = first; unit < last; ++unit )
+					{
+						final int o = ( int ) ( unit / unitsPerSlab );
+						final int j = ( int ) ( unit % unitsPerSlab ) * columnsPerUnit;
+						final int columns = Math.min( columnsPerUnit, stride - j );
+						prefilter( data, o * stride * length + j, length, stride, columns, horizon );
+					}
+				} );
+			}
+			ParallelTasks.runAll( executor, tasks );
+		}
+		return img;
+	}
+
+	private < T extends RealType< T > > LazyCellImg< DoubleType, DoubleArray > computeLazy( final RandomAccessibleInterval< T > source )
+	{
+		final int n = source.numDimensions();
+		if ( cellDimensions.length != n )
+			throw new IllegalArgumentException( "expected " + n + " cell dimensions" );
+		final long[] min = Intervals.minAsLongArray( source );
+		final long[] max = Intervals.maxAsLongArray( source );
+		final CellGrid grid = new CellGrid( Intervals.dimensionsAsLongArray( source ), cellDimensions );
+		final int horizon = horizon( tolerance );
+
+		final ConcurrentHashMap< Long, SoftReference< Cell< DoubleArray > > > cache = new ConcurrentHashMap<>();
+		final LazyCellImg.Get< Cell< DoubleArray > > get = index -> {
+			final SoftReference< Cell< DoubleArray > > reference = cache.get( index );
+			Cell< DoubleArray > cell = reference == null ? null : reference.get();
+			if ( cell == null )
+			{
+				final long[] cellMin = new long[ n ];
+				final int[] cellDims = new int[ n ];
+				grid.getCellDimensions( index, cellMin, cellDims );
+				cell = new Cell<>( cellDims, cellMin, new DoubleArray( computeCell( source, min, max, cellMin, cellDims, horizon ) ) );
+				cache.put( index, new SoftReference<>( cell ) );
+			}
+			return cell;
+		};
+		return new LazyCellImg<>( grid, new DoubleType(), get );
+	}
+
+	/**
+	 * Filter the cell at {@code cellMin} (relative to the source min) from a
+	 * block of the source that is padded by {@code horizon} pixels, or less at
+	 * the border of the source where the mirror boundary is exact.
+	 */
+	private static < T extends RealType< T > > double[] computeCell(
+			final RandomAccessibleInterval< T > source,
+			final long[] sourceMin,
+			final long[] sourceMax,
+			final long[] cellMin,
+			final int[] cellDims,
+			final int horizon )
+	{
+		final int n = cellDims.length;
+		final long[] blockMin = new long[ n ];
+		final long[] blockMax = new long[ n ];
+		final long[] blockDims = new long[ n ];
+		final long[] offset = new long[ n ];
+		for ( int d = 0; d < n; ++d )
+		{
+			blockMin[ d ] = Math.max( sourceMin[ d ], sourceMin[ d ] + cellMin[ d ] - horizon );
+			blockMax[ d ] = Math.min( sourceMax[ d ], sourceMin[ d ] + cellMin[ d ] + cellDims[ d ] - 1 + horizon );
+			blockDims[ d ] = blockMax[ d ] - blockMin[ d ] + 1;
+			offset[ d ] = sourceMin[ d ] + cellMin[ d ] - blockMin[ d ];
+		}
+		final ArrayImg< DoubleType, DoubleArray > block = ArrayImgs.doubles( blockDims );
+		final double[] data = block.update( null ).getCurrentStorageArray();
+		copy( Views.interval( source, blockMin, blockMax ), data );
+		int stride = 1;
+		for ( int d = 0; d < n; ++d )
+		{
+			final int length = ( int ) blockDims[ d ];
+			final int slab = stride * length;
+			for ( int o = 0; o < data.length; o += slab )
+				prefilter( data, o, length, stride, stride, horizon );
+			stride = slab;
+		}
+
+		final double[] cellData = new double[ ( int ) Intervals.numElements( cellDims ) ];
+		final long[] offsetMax = new long[ n ];
+		for ( int d = 0; d < n; ++d )
+			offsetMax[ d ] = offset[ d ] + cellDims[ d ] - 1;
+		final Cursor< DoubleType > in = Views.flatIterable( Views.interval( block, offset, offsetMax ) ).cursor();
+		for ( int i = 0; i < cellData.length; ++i )
+			cellData[ i ] = in.next().get();
+		return cellData;
+	}
+
+	private static < T extends RealType< T > > void copy( final RandomAccessibleInterval< T > source, final double[] data )
+	{
+		final Cursor< T > cursor = Views.flatIterable( source ).cursor();
+		for ( int i = 0; i < data.length; ++i )
+			data[ i ] = cursor.next().getRealDouble();
+	}
+
+	/**
+	 * Apply the cubic B-spline prefilter along {@code length} rows that start
+	 * at {@code offset} and are {@code stride} apart, to the first
+	 * {@code columns} elements of each row. That is, filter the
+	 * {@code columns} lines starting at {@code offset}, {@code offset + 1},
+	 * ..., with elements {@code stride} apart, at once.
+	 */
+	static void prefilter( final double[] data, final int offset, final int length, final int stride, final int columns, final int horizon )
+	{
+		if ( length == 1 )
+			return;
+		final double z = POLE;
+		final int last = offset + ( length - 1 ) * stride;
+
+		for ( int k = 0; k < length; ++k )
+		{
+			final int r = offset + k * stride;
+			for ( int j = 0; j < columns; ++j )
+				data[ r + j ] *= GAIN;
+		}
+
+		// causal initialization, accumulated into the first row
+		if ( horizon < length )
+		{
+			double zk = z;
+			for ( int k = 1; k < horizon; ++k )
+			{
+				final int r = offset + k * stride;
+				for ( int j = 0; j < columns; ++j )
+					data[ offset + j ] += zk * data[ r + j ];
+				zk *= z;
+			}
+		}
+		else
+		{
+			// exact for the mirrored signal of period 2 * length - 2
+			double zk = z;
+			double z2k = Math.pow( z, length - 1 );
+			final double iz = 1.0 / z;
+			for ( int j = 0; j < columns; ++j )
+				data[ offset + j ] += z2k * data[ last + j ];
+			z2k *= z2k * iz;
+			for ( int k = 1; k < length - 1; ++k )
+			{
+				final int r = offset + k * stride;
+				final double w = zk + z2k;
+				for ( int j = 0; j < columns; ++j )
+					data[ offset + j ] += w * data[ r + j ];
+				zk *= z;
+				z2k *= iz;
+			}
+			final double s = 1.0 / ( 1.0 - zk * zk );
+			for ( int j = 0; j < columns; ++j )
+				data[ offset + j ] *= s;
+		}
+
+		// causal recursion
+		for ( int k = 1; k < length; ++k )
+		{
+			final int r = offset + k * stride;
+			final int p = r - stride;
+			for ( int j = 0; j < columns; ++j )
+				data[ r + j ] += z * data[ p + j ];
+		}
+
+		// anticausal initialization
+		final double a = z / ( z * z - 1.0 );
+		for ( int j = 0; j < columns; ++j )
+			data[ last + j ] = a * ( data[ last + j ] + z * data[ last - stride + j ] );
+
+		// anticausal recursion
+		for ( int k = length - 2; k >= 0; --k )
+		{
+			final int r = offset + k * stride;
+			final int q = r + stride;
+			for ( int j = 0; j < columns; ++j )
+				data[ r + j ] = z * ( data[ q + j ] - data[ r + j ] );
+		}
+	}
+}
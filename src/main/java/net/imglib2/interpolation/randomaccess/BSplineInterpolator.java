@@ -0,0 +1,196 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2018 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.interpolation.randomaccess;
+
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessible;
+import net.imglib2.RealRandomAccess;
+import net.imglib2.position.transform.Floor;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.type.numeric.real.DoubleType;
+
+/**
+ * n-dimensional cubic B-spline interpolation from precomputed
+ * {@link BSplineCoefficients}.
+ * <p>
+ * The four weights of the cubic B-spline are evaluated once per dimension and
+ * position, the 4<sup>n</sup> coefficients around the position are then
+ * summed with the products of their weights.
+ * </p>
+ */
+public class BSplineInterpolator< T extends RealType< T > > extends Floor< RandomAccess< DoubleType > > implements RealRandomAccess< T >
+{
+	final protected T interpolatedValue;
+
+	final protected boolean clip;
+
+	final protected double minValue, maxValue;
+
+	/**
+	 * weights of the four taps of each dimension, at {@code 4 * d + i}
+	 */
+	final protected double[] weights;
+
+	final protected double[] products;
+
+	final protected int[] taps;
+
+	/**
+	 * @param coefficients
+	 *            the B-spline coefficients, extended such that the 4 by 4
+	 *            neighborhood of all interpolated positions can be accessed,
+	 *            typically with
+	 *            {@link net.imglib2.view.Views#extendMirrorSingle}
+	 * @param type
+	 *            type of the interpolated values
+	 * @param clip
+	 *            clip interpolated values to the range of {@code type}
+	 */
+	public BSplineInterpolator( final RandomAccessible< DoubleType > coefficients, final T type, final boolean clip )
+	{
+		super( coefficients.randomAccess() );
+		this.interpolatedValue = type.createVariable();
+		this.clip = clip;
+		this.minValue = type.getMinValue();
+		this.maxValue = type.getMaxValue();
+		this.weights = new double[ 4 * n ];
+		this.products = new double[ n + 1 ];
+		this.products[ n ] = 1.0;
+		this.taps = new int[ n ];
+	}
+
+	public BSplineInterpolator( final BSplineInterpolator< T > interpolator )
+	{
+		super( interpolator.target.copyRandomAccess() );
+		this.interpolatedValue = interpolator.interpolatedValue.copy();
+		this.clip = interpolator.clip;
+		this.minValue = interpolator.minValue;
+		this.maxValue = interpolator.maxValue;
+		this.weights = new double[ 4 * n ];
+		this.products = new double[ n + 1 ];
+		this.products[ n ] = 1.0;
+		this.taps = new int[ n ];
+		System.arraycopy( interpolator.position, 0, position, 0, n );
+	}
+
+	/**
+	 * Evaluate the cubic B-spline at the four taps around the current
+	 * position, for each dimension.
+	 */
+	final protected void updateWeights()
+	{
+		for ( int d = 0; d < n; ++d )
+		{
+			final double t = position[ d ] - target.getLongPosition( d );
+			final double t2 = t * t;
+			final double t3 = t2 * t;
+			final double u = 1.0 - t;
+			final int i = 4 * d;
+			weights[ i ] = u * u * u / 6.0;
+			weights[ i + 1 ] = 2.0 / 3.0 - t2 + 0.5 * t3;
+			weights[ i + 3 ] = t3 / 6.0;
+			weights[ i + 2 ] = 1.0 - weights[ i ] - weights[ i + 1 ] - weights[ i + 3 ];
+		}
+	}
+
+	@Override
+	public T get()
+	{
+		updateWeights();
+		// start at the first of the taps floor - 1, ..., floor + 2
+		for ( int d = n - 1; d >= 1; --d )
+		{
+			target.bck( d );
+			taps[ d ] = 0;
+			products[ d ] = weights[ 4 * d ] * products[ d + 1 ];
+		}
+		target.bck( 0 );
+
+		final double w0 = weights[ 0 ], w1 = weights[ 1 ], w2 = weights[ 2 ], w3 = weights[ 3 ];
+		double sum = 0;
+		A: while ( true )
+		{
+			// the four taps of dimension 0
+			double line = target.get().get() * w0;
+			target.fwd( 0 );
+			line += target.get().get() * w1;
+			target.fwd( 0 );
+			line += target.get().get() * w2;
+			target.fwd( 0 );
+			line += target.get().get() * w3;
+			target.move( -3, 0 );
+			sum += line * products[ 1 ];
+
+			for ( int d = 1; d < n; ++d )
+			{
+				if ( ++taps[ d ] < 4 )
+				{
+					target.fwd( d );
+					products[ d ] = weights[ 4 * d + taps[ d ] ] * products[ d + 1 ];
+					for ( int e = d - 1; e >= 1; --e )
+						products[ e ] = weights[ 4 * e ] * products[ e + 1 ];
+					continue A;
+				}
+				taps[ d ] = 0;
+				target.move( -3, d );
+			}
+			break;
+		}
+		for ( int d = 0; d < n; ++d )
+			target.fwd( d );
+
+		if ( clip )
+		{
+			if ( sum < minValue )
+				sum = minValue;
+			else if ( sum > maxValue )
+				sum = maxValue;
+		}
+		interpolatedValue.setReal( sum );
+		return interpolatedValue;
+	}
+
+	@Override
+	public BSplineInterpolator< T > copy()
+	{
+		return new BSplineInterpolator<>( this );
+	}
+
+	@Override
+	public BSplineInterpolator< T > copyRealRandomAccess()
+	{
+		return copy();
+	}
+}
@@ -0,0 +1,120 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2018 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.interpolation.randomaccess;
+
+import net.imglib2.RandomAccessible;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.RealInterval;
+import net.imglib2.interpolation.InterpolatorFactory;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.type.numeric.real.DoubleType;
+import net.imglib2.util.Util;
+import net.imglib2.view.Views;
+
+/**
+ * Creates {@link BSplineInterpolator}s for cubic B-spline interpolation of a
+ * {@link RandomAccessibleInterval}.
+ * <p>
+ * The {@link BSplineCoefficients} of the most recent source are cached, such
+ * that they are computed only once for all interpolators of
+ * {@code Views.interpolate( source, factory )}. Outside of the source interval,
+ * the source is assumed to be mirrored as by
+ * {@link Views#extendMirrorSingle(RandomAccessibleInterval)}.
+ * </p>
+ */
+public class BSplineInterpolatorFactory< T extends RealType< T > > implements InterpolatorFactory< T, RandomAccessibleInterval< T > >
+{
+	private final BSplineCoefficients coefficients;
+
+	private final boolean clipping;
+
+	private RandomAccessibleInterval< T > source = null;
+
+	private RandomAccessible< DoubleType > extendedCoefficients = null;
+
+	/**
+	 * Creates a new {@link BSplineInterpolatorFactory} that computes the
+	 * coefficients with {@code coefficients}.
+	 *
+	 * @param clipping
+	 *            the B-spline can overshoot the original values, so they can be
+	 *            clipped to the range of the type if wanted
+	 */
+	public BSplineInterpolatorFactory( final BSplineCoefficients coefficients, final boolean clipping )
+	{
+		this.coefficients = coefficients;
+		this.clipping = clipping;
+	}
+
+	public BSplineInterpolatorFactory( final boolean clipping )
+	{
+		this( new BSplineCoefficients(), clipping );
+	}
+
+	/**
+	 * Creates a new {@link BSplineInterpolatorFactory} with standard
+	 * parameters (do clipping, compute coefficients into an array)
+	 */
+	public BSplineInterpolatorFactory()
+	{
+		this( true );
+	}
+
+	@Override
+	public BSplineInterpolator< T > create( final RandomAccessibleInterval< T > randomAccessible )
+	{
+		return new BSplineInterpolator<>( getCoefficients( randomAccessible ), Util.getTypeFromInterval( randomAccessible ), clipping );
+	}
+
+	/**
+	 * For now, ignore the {@link RealInterval} and return
+	 * {@link #create(RandomAccessibleInterval)}.
+	 */
+	@Override
+	public BSplineInterpolator< T > create( final RandomAccessibleInterval< T > randomAccessible, final RealInterval interval )
+	{
+		return create( randomAccessible );
+	}
+
+	private synchronized RandomAccessible< DoubleType > getCoefficients( final RandomAccessibleInterval< T > randomAccessible )
+	{
+		if ( randomAccessible != source )
+		{
+			extendedCoefficients = Views.extendMirrorSingle( coefficients.compute( randomAccessible ) );
+			source = randomAccessible;
+		}
+		return extendedCoefficients;
+	}
+}
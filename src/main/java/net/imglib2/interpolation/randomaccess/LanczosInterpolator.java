@@ -185,7 +185,10 @@ public class LanczosInterpolator< T extends RealType< T > > extends FloorOffset<
 				final long p = target.getLongPosition( d );
 				if ( p < max[ d ] )
 				{
-					products[ d ] = lookUpLanczos( position[ d ] - p ) * products[ ++d ];
+					products[ d ] = lookUpLanczos( position[ d ] - p ) * products[ d + 1 ];
+					// the lower dimensions were reset by the previous
+					// iterations, update their products with the new factor
+					accumulate( d - 1 );
 					continue A;
 				}
 				target.move( -size[ d ], d );
@@ -35,10 +35,19 @@ package net.imglib2.interpolation.randomaccess;
 
 import net.imglib2.RandomAccessible;
 import net.imglib2.RealInterval;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.basictypeaccess.array.AbstractFloatArray;
+import net.imglib2.img.basictypeaccess.array.AbstractShortArray;
 import net.imglib2.interpolation.InterpolatorFactory;
 import net.imglib2.type.numeric.NumericType;
+import net.imglib2.type.numeric.integer.UnsignedShortType;
+import net.imglib2.type.numeric.real.FloatType;
 
 /**
+ * Creates {@link NLinearInterpolator}s. For {@link ArrayImg}s of
+ * {@link FloatType} or {@link UnsignedShortType}, the interpolators read the
+ * primitive array directly (see {@link NLinearInterpolatorFloatArray} and
+ * {@link NLinearInterpolatorUnsignedShortArray}).
  * 
  * @param <T>
  * 
@@ -51,6 +60,12 @@ public class NLinearInterpolatorFactory< T extends NumericType< T > > implements
 	@Override
 	public NLinearInterpolator< T > create( final RandomAccessible< T > randomAccessible )
 	{
+		if ( randomAccessible instanceof ArrayImg )
+		{
+			final NLinearInterpolator< T > interpolator = createArrayInterpolator( ( ArrayImg< ?, ? > ) randomAccessible );
+			if ( interpolator != null )
+				return interpolator;
+		}
 		switch ( randomAccessible.numDimensions() )
 		{
 		case 1:
@@ -64,6 +79,22 @@ public class NLinearInterpolatorFactory< T extends NumericType< T > > implements
 		}
 	}
 
+	/**
+	 * @return an interpolator that reads the primitive array of {@code img},
+	 *         or {@code null} if there is none for its type and access.
+	 */
+	@SuppressWarnings( { "unchecked", "rawtypes" } )
+	private NLinearInterpolator< T > createArrayInterpolator( final ArrayImg< ?, ? > img )
+	{
+		final Class< ? > type = img.randomAccess().get().getClass();
+		final Object access = img.update( null );
+		if ( type == FloatType.class && access instanceof AbstractFloatArray )
+			return ( NLinearInterpolator< T > ) ( NLinearInterpolator< ? > ) new NLinearInterpolatorFloatArray( ( ArrayImg ) img );
+		if ( type == UnsignedShortType.class && access instanceof AbstractShortArray )
+			return ( NLinearInterpolator< T > ) ( NLinearInterpolator< ? > ) new NLinearInterpolatorUnsignedShortArray( ( ArrayImg ) img );
+		return null;
+	}
+
 	/**
 	 * For now, ignore the {@link RealInterval} and return
 	 * {@link #create(RandomAccessible)}.
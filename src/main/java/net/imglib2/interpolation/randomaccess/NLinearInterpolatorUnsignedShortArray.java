@@ -0,0 +1,144 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2018 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.interpolation.randomaccess;
+
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.basictypeaccess.array.AbstractShortArray;
+import net.imglib2.type.numeric.integer.UnsignedShortType;
+import net.imglib2.util.Util;
+
+/**
+ * {@link NLinearInterpolator} for {@link ArrayImg}s of
+ * {@link UnsignedShortType}. The result is identical to
+ * {@link NLinearInterpolator}, i.e., each weighted corner is rounded to an
+ * integer before summation.
+ */
+public class NLinearInterpolatorUnsignedShortArray extends AbstractNLinearInterpolatorArray< UnsignedShortType >
+{
+	final protected short[] data;
+
+	protected NLinearInterpolatorUnsignedShortArray( final NLinearInterpolatorUnsignedShortArray interpolator )
+	{
+		super( interpolator );
+		data = interpolator.data;
+	}
+
+	public NLinearInterpolatorUnsignedShortArray( final ArrayImg< UnsignedShortType, ? extends AbstractShortArray< ? > > img )
+	{
+		super( img );
+		data = img.update( null ).getCurrentStorageArray();
+	}
+
+	@Override
+	public UnsignedShortType get()
+	{
+		switch ( n )
+		{
+		case 2:
+			accumulator.set( get2D() );
+			break;
+		case 3:
+			accumulator.set( get3D() );
+			break;
+		default:
+			fillWeights();
+			final int index = fillOffsets();
+			int a = ( int ) Util.round( ( data[ index ] & 0xffff ) * weights[ 0 ] );
+			for ( int i = 1; i < weights.length; ++i )
+			{
+				final int c = i ^ ( i >> 1 );
+				a += ( int ) Util.round( ( data[ index + offsets[ c ] ] & 0xffff ) * weights[ c ] );
+			}
+			accumulator.set( a );
+		}
+		return accumulator;
+	}
+
+	private int get2D()
+	{
+		final long x = target.getLongPosition( 0 );
+		final long y = target.getLongPosition( 1 );
+		final double w0 = position[ 0 ] - x;
+		final double w0Inv = 1.0d - w0;
+		final double w1 = position[ 1 ] - y;
+		final double w1Inv = 1.0d - w1;
+
+		final int i = ( int ) ( x + y * strides[ 1 ] );
+		final int dx = step( x, 0 );
+		final int dy = step( y, 1 );
+		int a = ( int ) Util.round( ( data[ i ] & 0xffff ) * ( w0Inv * w1Inv ) );
+		a += ( int ) Util.round( ( data[ i + dx ] & 0xffff ) * ( w0 * w1Inv ) );
+		a += ( int ) Util.round( ( data[ i + dx + dy ] & 0xffff ) * ( w0 * w1 ) );
+		a += ( int ) Util.round( ( data[ i + dy ] & 0xffff ) * ( w0Inv * w1 ) );
+		return a;
+	}
+
+	private int get3D()
+	{
+		final long x = target.getLongPosition( 0 );
+		final long y = target.getLongPosition( 1 );
+		final long z = target.getLongPosition( 2 );
+		final double w0 = position[ 0 ] - x;
+		final double w0Inv = 1.0d - w0;
+		final double w1 = position[ 1 ] - y;
+		final double w1Inv = 1.0d - w1;
+		final double w2 = position[ 2 ] - z;
+		final double w2Inv = 1.0d - w2;
+		final double w00 = w2Inv * w1Inv;
+		final double w01 = w2Inv * w1;
+		final double w10 = w2 * w1Inv;
+		final double w11 = w2 * w1;
+
+		final int i = ( int ) ( x + y * strides[ 1 ] + z * strides[ 2 ] );
+		final int dx = step( x, 0 );
+		final int dy = step( y, 1 );
+		final int dz = step( z, 2 );
+		int a = ( int ) Util.round( ( data[ i ] & 0xffff ) * ( w00 * w0Inv ) );
+		a += ( int ) Util.round( ( data[ i + dx ] & 0xffff ) * ( w00 * w0 ) );
+		a += ( int ) Util.round( ( data[ i + dx + dy ] & 0xffff ) * ( w01 * w0 ) );
+		a += ( int ) Util.round( ( data[ i + dy ] & 0xffff ) * ( w01 * w0Inv ) );
+		a += ( int ) Util.round( ( data[ i + dy + dz ] & 0xffff ) * ( w11 * w0Inv ) );
+		a += ( int ) Util.round( ( data[ i + dx + dy + dz ] & 0xffff ) * ( w11 * w0 ) );
+		a += ( int ) Util.round( ( data[ i + dx + dz ] & 0xffff ) * ( w10 * w0 ) );
+		a += ( int ) Util.round( ( data[ i + dz ] & 0xffff ) * ( w10 * w0Inv ) );
+		return a;
+	}
+
+	@Override
+	public NLinearInterpolatorUnsignedShortArray copy()
+	{
+		return new NLinearInterpolatorUnsignedShortArray( this );
+	}
+}
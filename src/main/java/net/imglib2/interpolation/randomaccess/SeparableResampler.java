@@ -0,0 +1,503 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2018 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.interpolation.randomaccess;
+
+import java.util.Arrays;
+
+import net.imglib2.Cursor;
+import net.imglib2.RandomAccessible;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.position.transform.Floor;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.util.Intervals;
+import net.imglib2.util.Util;
+import net.imglib2.view.Views;
+
+/**
+ * Resample a {@link RandomAccessible} on an axis-aligned grid, i.e., under a
+ * scaling and translation. Target pixel <em>x</em> is computed at source
+ * coordinate <em>x<sub>d</sub> &middot; scale<sub>d</sub> +
+ * translation<sub>d</sub></em> in each dimension <em>d</em>.
+ * <p>
+ * {@link NLinearInterpolator} and {@link LanczosInterpolator} compute the
+ * weights of all <em>taps<sup>n</sup></em> neighbors of every sample and
+ * visit them with a {@link net.imglib2.RandomAccess}. For an axis-aligned
+ * grid, the weights are separable and identical for all pixels with the same
+ * coordinate in a dimension. This class therefore precomputes a table of
+ * first source index and tap weights per target coordinate and axis. The
+ * target is processed in tiles: the source region of a tile, including the
+ * kernel support, is copied into a buffer, and resampled one axis at a time.
+ * Axes are processed in order of increasing target to source size ratio, so
+ * that downsampling axes shrink the buffer early. Tiles span whole lines of
+ * dimension 0 and as many lines as fit into buffers of
+ * {@link #MAX_BUFFER_SIZE} elements, so memory does not grow with the size of
+ * the target.
+ * </p>
+ * <p>
+ * Values are computed in double precision and clamped to the range of the
+ * target type, so for integer types they may differ from the interpolators,
+ * which accumulate in the source type.
+ * </p>
+ */
+public class SeparableResampler
+{
+	private SeparableResampler()
+	{}
+
+	/**
+	 * A one-dimensional interpolation kernel.
+	 */
+	public interface Kernel
+	{
+		/**
+		 * @return the number of source samples contributing to a value.
+		 */
+		int numTaps();
+
+		/**
+		 * @return the first source sample contributing to the value at
+		 *         {@code x}.
+		 */
+		long firstTap( double x );
+
+		/**
+		 * Compute the weights of the {@link #numTaps()} source samples
+		 * starting at {@code firstTap( x )} for the value at {@code x}.
+		 */
+		void weights( double x, double[] weights );
+	}
+
+	/**
+	 * The kernel of {@link NLinearInterpolator}.
+	 */
+	public static Kernel nLinear()
+	{
+		return new Kernel()
+		{
+			@Override
+			public int numTaps()
+			{
+				return 2;
+			}
+
+			@Override
+			public long firstTap( final double x )
+			{
+				return Floor.floor( x );
+			}
+
+			@Override
+			public void weights( final double x, final double[] weights )
+			{
+				final double w = x - Floor.floor( x );
+				weights[ 0 ] = 1.0 - w;
+				weights[ 1 ] = w;
+			}
+		};
+	}
+
+	/**
+	 * The kernel of {@link LanczosInterpolator}, including its lookup table
+	 * approximation of the Lanczos window.
+	 */
+	public static Kernel lanczos( final int alpha )
+	{
+		final int lutScale = LanczosInterpolator.lutScale;
+		final double[] lut = new double[ alpha * lutScale + 2 ];
+		for ( int i = 0; i < lut.length; ++i )
+		{
+			final double x = ( double ) i / lutScale;
+			lut[ i ] = x == 0 ? 1 : alpha * Math.sin( Math.PI * x ) * Math.sin( Math.PI * x / alpha ) / ( LanczosInterpolator.piSquare * x * x );
+		}
+		return new Kernel()
+		{
+			@Override
+			public int numTaps()
+			{
+				return 2 * alpha;
+			}
+
+			@Override
+			public long firstTap( final double x )
+			{
+				return Floor.floor( x ) - alpha + 1;
+			}
+
+			@Override
+			public void weights( final double x, final double[] weights )
+			{
+				final long first = firstTap( x );
+				for ( int i = 0; i < 2 * alpha; ++i )
+				{
+					final double y = Math.abs( x - ( first + i ) ) * lutScale;
+					final int yi = ( int ) y;
+					weights[ i ] = ( lut[ yi + 1 ] - lut[ yi ] ) * ( y - yi ) + lut[ yi ];
+				}
+			}
+		};
+	}
+
+	/**
+	 * Maximum number of elements of the buffers that hold the source region of
+	 * a tile and its intermediate results, unless a single target pixel needs
+	 * more.
+	 */
+	public static final int MAX_BUFFER_SIZE = 1 << 20;
+
+	/**
+	 * Per-axis table of first source index and tap weights for each target
+	 * coordinate.
+	 */
+	private static final class AxisTable
+	{
+		final int numTaps;
+
+		final long[] first;
+
+		final double[] weights;
+
+		AxisTable( final Kernel kernel, final long targetMin, final int targetSize, final double scale, final double translation )
+		{
+			numTaps = kernel.numTaps();
+			first = new long[ targetSize ];
+			weights = new double[ targetSize * numTaps ];
+			final double[] w = new double[ numTaps ];
+			for ( int i = 0; i < targetSize; ++i )
+			{
+				final double x = ( targetMin + i ) * scale + translation;
+				first[ i ] = kernel.firstTap( x );
+				kernel.weights( x, w );
+				System.arraycopy( w, 0, weights, i * numTaps, numTaps );
+			}
+		}
+
+		/**
+		 * @return the first source index needed for target coordinates
+		 *         {@code from} (inclusive) to {@code to} (exclusive).
+		 */
+		long sourceMin( final int from, final int to )
+		{
+			long min = Long.MAX_VALUE;
+			for ( int i = from; i < to; ++i )
+				min = Math.min( min, first[ i ] );
+			return min;
+		}
+
+		/**
+		 * @return the number of source samples needed for target coordinates
+		 *         {@code from} (inclusive) to {@code to} (exclusive).
+		 */
+		long sourceSize( final int from, final int to )
+		{
+			long max = Long.MIN_VALUE;
+			for ( int i = from; i < to; ++i )
+				max = Math.max( max, first[ i ] );
+			return max + numTaps - sourceMin( from, to );
+		}
+
+		/**
+		 * @return the largest buffer extent, source or target, of any tile of
+		 *         {@code tileSize} target coordinates.
+		 */
+		long maxExtent( final int tileSize )
+		{
+			long extent = tileSize;
+			for ( int from = 0; from < first.length; from += tileSize )
+				extent = Math.max( extent, sourceSize( from, Math.min( from + tileSize, first.length ) ) );
+			return extent;
+		}
+	}
+
+	/**
+	 * Fill {@code target} by resampling {@code source} at
+	 * <em>x<sub>d</sub> &middot; scale<sub>d</sub> +
+	 * translation<sub>d</sub></em> for each target pixel <em>x</em>.
+	 *
+	 * @param source
+	 *            the source, must be defined in the region covered by the
+	 *            kernel (e.g., extended with {@link Views#extendBorder}).
+	 * @param scale
+	 *            source pixels per target pixel in each dimension.
+	 * @param translation
+	 *            source coordinate of target pixel 0 in each dimension.
+	 * @param kernel
+	 *            the interpolation kernel, e.g., {@link #nLinear()} or
+	 *            {@link #lanczos(int)}.
+	 * @param target
+	 *            the target.
+	 */
+	public static < T extends RealType< T >, S extends RealType< S > > void resample(
+			final RandomAccessible< T > source,
+			final double[] scale,
+			final double[] translation,
+			final Kernel kernel,
+			final RandomAccessibleInterval< S > target )
+	{
+		resample( source, scale, translation, kernel, target, MAX_BUFFER_SIZE );
+	}
+
+	static < T extends RealType< T >, S extends RealType< S > > void resample(
+			final RandomAccessible< T > source,
+			final double[] scale,
+			final double[] translation,
+			final Kernel kernel,
+			final RandomAccessibleInterval< S > target,
+			final int maxBufferSize )
+	{
+		if ( Intervals.isEmpty( target ) )
+			return;
+		final int n = target.numDimensions();
+		final AxisTable[] tables = new AxisTable[ n ];
+		for ( int d = 0; d < n; ++d )
+			tables[ d ] = new AxisTable( kernel, target.min( d ), checkedSize( target.dimension( d ) ), scale[ d ], translation[ d ] );
+
+		final int[] tileSize = tileSize( tables, maxBufferSize );
+		final S type = Util.getTypeFromInterval( target );
+		final double minValue = type.getMinValue();
+		final double maxValue = type.getMaxValue();
+
+		final int[] tileMin = new int[ n ];
+		final int[] tileMax = new int[ n ];
+		final long[] sourceMin = new long[ n ];
+		final long[] sourceMax = new long[ n ];
+		final long[] targetMin = new long[ n ];
+		final long[] targetMax = new long[ n ];
+		final int[] sizes = new int[ n ];
+		final int[][] first = new int[ n ][];
+		final Integer[] order = new Integer[ n ];
+		final Buffers buffers = new Buffers();
+		while ( true )
+		{
+			for ( int d = 0; d < n; ++d )
+			{
+				final AxisTable table = tables[ d ];
+				tileMax[ d ] = Math.min( tileMin[ d ] + tileSize[ d ], table.first.length );
+				sourceMin[ d ] = table.sourceMin( tileMin[ d ], tileMax[ d ] );
+				sizes[ d ] = checkedSize( table.sourceSize( tileMin[ d ], tileMax[ d ] ) );
+				sourceMax[ d ] = sourceMin[ d ] + sizes[ d ] - 1;
+				targetMin[ d ] = target.min( d ) + tileMin[ d ];
+				targetMax[ d ] = target.min( d ) + tileMax[ d ] - 1;
+				first[ d ] = new int[ tileMax[ d ] - tileMin[ d ] ];
+				for ( int t = tileMin[ d ]; t < tileMax[ d ]; ++t )
+					first[ d ][ t - tileMin[ d ] ] = ( int ) ( table.first[ t ] - sourceMin[ d ] );
+				order[ d ] = d;
+			}
+
+			// copy the source region of the tile
+			double[] buffer = buffers.get( numElements( sizes ) );
+			int i = 0;
+			for ( final T t : Views.flatIterable( Views.interval( source, sourceMin, sourceMax ) ) )
+				buffer[ i++ ] = t.getRealDouble();
+
+			// resample one axis at a time, shrinking axes first
+			Arrays.sort( order, ( a, b ) -> Double.compare(
+					( double ) first[ a ].length / sizes[ a ],
+					( double ) first[ b ].length / sizes[ b ] ) );
+			for ( final int d : order )
+			{
+				final int[] resultSizes = sizes.clone();
+				resultSizes[ d ] = first[ d ].length;
+				final double[] result = buffers.other( numElements( resultSizes ) );
+				resampleAxis( buffer, sizes, d, first[ d ], tables[ d ], tileMin[ d ], result );
+				buffer = result;
+				sizes[ d ] = resultSizes[ d ];
+			}
+
+			// write the target tile
+			final Cursor< S > cursor = Views.flatIterable( Views.interval( target, targetMin, targetMax ) ).cursor();
+			for ( int j = 0; cursor.hasNext(); ++j )
+				cursor.next().setReal( Math.max( minValue, Math.min( maxValue, buffer[ j ] ) ) );
+
+			// next tile
+			int d = 0;
+			for ( ; d < n; ++d )
+			{
+				tileMin[ d ] += tileSize[ d ];
+				if ( tileMin[ d ] < tables[ d ].first.length )
+					break;
+				tileMin[ d ] = 0;
+			}
+			if ( d == n )
+				break;
+		}
+	}
+
+	/**
+	 * Choose the tile size in each dimension such that the buffers of a tile
+	 * have at most {@code maxBufferSize} elements. Tiles are cut along the
+	 * outer dimensions first, so that they span whole lines of dimension 0 as
+	 * long as possible.
+	 */
+	private static int[] tileSize( final AxisTable[] tables, final int maxBufferSize )
+	{
+		final int n = tables.length;
+		final int[] tileSize = new int[ n ];
+		final long[] extents = new long[ n ];
+		for ( int d = 0; d < n; ++d )
+		{
+			tileSize[ d ] = tables[ d ].first.length;
+			extents[ d ] = tables[ d ].maxExtent( tileSize[ d ] );
+		}
+		while ( true )
+		{
+			final long limit = maxBufferSize + 1L;
+			long size = 1;
+			for ( final long extent : extents )
+				size = Math.min( size * Math.min( extent, limit ), limit );
+			if ( size <= maxBufferSize )
+				return tileSize;
+
+			// halve the outer dimension with the largest extent, dimension 0
+			// only if all outer dimensions are single pixels
+			int split = -1;
+			for ( int d = n - 1; d > 0; --d )
+				if ( tileSize[ d ] > 1 && ( split < 0 || extents[ d ] > extents[ split ] ) )
+					split = d;
+			if ( split < 0 )
+			{
+				if ( tileSize[ 0 ] == 1 )
+					return tileSize;
+				split = 0;
+			}
+			tileSize[ split ] = ( tileSize[ split ] + 1 ) / 2;
+			extents[ split ] = tables[ split ].maxExtent( tileSize[ split ] );
+		}
+	}
+
+	/**
+	 * Two buffers that are used alternately as source and result of the
+	 * passes of a tile, and reused for all tiles.
+	 */
+	private static final class Buffers
+	{
+		private double[] current = new double[ 0 ];
+
+		private double[] other = new double[ 0 ];
+
+		/**
+		 * @return the current buffer, with at least {@code size} elements.
+		 */
+		double[] get( final int size )
+		{
+			if ( current.length < size )
+				current = new double[ size ];
+			return current;
+		}
+
+		/**
+		 * Make the other buffer current and return it, with at least
+		 * {@code size} elements set to 0.
+		 */
+		double[] other( final int size )
+		{
+			final double[] tmp = current;
+			current = other;
+			other = tmp;
+			if ( current.length < size )
+				current = new double[ size ];
+			else
+				Arrays.fill( current, 0, size, 0 );
+			return current;
+		}
+	}
+
+	/**
+	 * Resample the buffer of size {@code sizes} along {@code d} into
+	 * {@code result}, which must be zero. {@code first} are the first source
+	 * indices of the target coordinates of the tile, whose weights start at
+	 * target coordinate {@code tileMin} of {@code table}.
+	 */
+	private static void resampleAxis( final double[] buffer, final int[] sizes, final int d, final int[] first, final AxisTable table, final int tileMin, final double[] result )
+	{
+		int inner = 1;
+		for ( int e = 0; e < d; ++e )
+			inner *= sizes[ e ];
+		int outer = 1;
+		for ( int e = d + 1; e < sizes.length; ++e )
+			outer *= sizes[ e ];
+		final int sourceSize = sizes[ d ];
+		final int targetSize = first.length;
+		final int numTaps = table.numTaps;
+		final int weightsOffset = tileMin * numTaps;
+
+		for ( int o = 0; o < outer; ++o )
+		{
+			final int sourceBase = o * sourceSize * inner;
+			final int targetBase = o * targetSize * inner;
+			if ( inner == 1 )
+			{
+				// resample a contiguous row
+				for ( int t = 0; t < targetSize; ++t )
+				{
+					final int f = sourceBase + first[ t ];
+					double sum = 0;
+					for ( int k = 0, w = weightsOffset + t * numTaps; k < numTaps; ++k, ++w )
+						sum += table.weights[ w ] * buffer[ f + k ];
+					result[ targetBase + t ] = sum;
+				}
+			}
+			else
+			{
+				// accumulate weighted contiguous rows of length inner
+				for ( int t = 0; t < targetSize; ++t )
+				{
+					final int targetRow = targetBase + t * inner;
+					for ( int k = 0, w = weightsOffset + t * numTaps; k < numTaps; ++k, ++w )
+					{
+						final double weight = table.weights[ w ];
+						final int sourceRow = sourceBase + ( first[ t ] + k ) * inner;
+						for ( int j = 0; j < inner; ++j )
+							result[ targetRow + j ] += weight * buffer[ sourceRow + j ];
+					}
+				}
+			}
+		}
+	}
+
+	private static int numElements( final int[] sizes )
+	{
+		long size = 1;
+		for ( final int s : sizes )
+			size *= s;
+		return checkedSize( size );
+	}
+
+	private static int checkedSize( final long size )
+	{
+		if ( size > Integer.MAX_VALUE - 8 )
+			throw new IllegalArgumentException( "resampling buffer of " + size + " elements is too large" );
+		return ( int ) size;
+	}
+}
@@ -0,0 +1,357 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2018 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.neighborsearch;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+
+import net.imglib2.EuclideanSpace;
+import net.imglib2.FlatKDTree;
+import net.imglib2.IterableRealInterval;
+import net.imglib2.RealCursor;
+import net.imglib2.RealLocalizable;
+import net.imglib2.RealPoint;
+import net.imglib2.util.ParallelTasks;
+
+/**
+ * Answer many neighbor queries at once.
+ * <p>
+ * Queries are split into chunks that are processed in parallel, each with its
+ * own search. Optionally, queries are visited in Z-order (Morton order) so that
+ * consecutive queries traverse similar parts of the search structure.
+ * </p>
+ * <p>
+ * {@link #search(Supplier, double[], boolean, ExecutorService, Query)} works
+ * with any {@link NearestNeighborSearch}, {@link KNearestNeighborSearch}, or
+ * {@link RadiusNeighborSearch}: each task gets a search from a
+ * {@link Supplier}, e.g., {@code search::copy}, and the results of each query
+ * are handed to a callback. The {@code kNearest} methods are a shortcut for
+ * k-nearest neighbor queries on a {@link FlatKDTree} that return the results
+ * in flat arrays in the original query order.
+ * </p>
+ */
+public class BulkNeighborSearch
+{
+	private BulkNeighborSearch()
+	{}
+
+	/**
+	 * Number of queries processed by one task.
+	 */
+	private static final int CHUNK_SIZE = 4096;
+
+	/**
+	 * Runs one query.
+	 */
+	public interface Query< S >
+	{
+		/**
+		 * Search the neighbors of {@code query}, the q-th query, with
+		 * {@code search} and consume the results. Called concurrently for
+		 * queries of different chunks, each chunk with its own search.
+		 */
+		void run( S search, RealLocalizable query, int q );
+	}
+
+	/**
+	 * The k nearest neighbors of a sequence of queries. If the tree has fewer
+	 * than k points, the missing neighbors have index -1 and infinite
+	 * distance.
+	 */
+	public static class Result
+	{
+		private final int numQueries;
+
+		private final int k;
+
+		private final int[] indices;
+
+		private final double[] distances;
+
+		Result( final int numQueries, final int k )
+		{
+			if ( ( long ) numQueries * k > Integer.MAX_VALUE )
+				throw new IllegalArgumentException( numQueries + " queries with " + k + " neighbors each exceed the maximum array size" );
+			this.numQueries = numQueries;
+			this.k = k;
+			indices = new int[ numQueries * k ];
+			distances = new double[ numQueries * k ];
+		}
+
+		public int numQueries()
+		{
+			return numQueries;
+		}
+
+		public int getK()
+		{
+			return k;
+		}
+
+		/**
+		 * @return the index into the list of values of the tree of the i-th
+		 *         nearest neighbor of query q, or -1 if the tree has fewer
+		 *         than i+1 points.
+		 */
+		public int getIndex( final int q, final int i )
+		{
+			return indices[ q * k + i ];
+		}
+
+		/**
+		 * @return the distance of the i-th nearest neighbor of query q.
+		 */
+		public double getDistance( final int q, final int i )
+		{
+			return distances[ q * k + i ];
+		}
+
+		/**
+		 * Get the indices of all neighbors, the i-th nearest neighbor of query
+		 * q is at {@code q * k + i}.
+		 */
+		public int[] getIndices()
+		{
+			return indices;
+		}
+
+		/**
+		 * Get the distances of all neighbors, the i-th nearest neighbor of
+		 * query q is at {@code q * k + i}.
+		 */
+		public double[] getDistances()
+		{
+			return distances;
+		}
+	}
+
+	/**
+	 * Find the k nearest neighbors of each query using
+	 * {@link Runtime#availableProcessors()} threads.
+	 *
+	 * @param tree
+	 *            the tree to search
+	 * @param k
+	 *            number of neighbors per query
+	 * @param queries
+	 *            query coordinates, {@code queries[ q ]} is the q-th query
+	 * @param sortQueries
+	 *            whether to process queries in Z-order
+	 */
+	public static Result kNearest( final FlatKDTree< ? > tree, final int k, final double[][] queries, final boolean sortQueries )
+	{
+		final int n = tree.numDimensions();
+		final double[] coordinates = new double[ numCoordinates( queries.length, n ) ];
+		for ( int q = 0; q < queries.length; ++q )
+			System.arraycopy( queries[ q ], 0, coordinates, q * n, n );
+		return kNearest( tree, k, coordinates, sortQueries );
+	}
+
+	/**
+	 * Find the k nearest neighbors of the positions of the elements of
+	 * {@code queries} (in iteration order) using
+	 * {@link Runtime#availableProcessors()} threads.
+	 *
+	 * @param tree
+	 *            the tree to search
+	 * @param k
+	 *            number of neighbors per query
+	 * @param queries
+	 *            query positions
+	 * @param sortQueries
+	 *            whether to process queries in Z-order
+	 */
+	public static Result kNearest( final FlatKDTree< ? > tree, final int k, final IterableRealInterval< ? > queries, final boolean sortQueries )
+	{
+		final int n = tree.numDimensions();
+		final double[] coordinates = new double[ numCoordinates( queries.size(), n ) ];
+		final RealCursor< ? > cursor = queries.localizingCursor();
+		for ( int o = 0; cursor.hasNext(); o += n )
+		{
+			cursor.fwd();
+			for ( int d = 0; d < n; ++d )
+				coordinates[ o + d ] = cursor.getDoublePosition( d );
+		}
+		return kNearest( tree, k, coordinates, sortQueries );
+	}
+
+	private static int numCoordinates( final long numQueries, final int n )
+	{
+		if ( numQueries * n > Integer.MAX_VALUE )
+			throw new IllegalArgumentException( "coordinates of " + numQueries + " queries exceed the maximum array size" );
+		return ( int ) numQueries * n;
+	}
+
+	private static Result kNearest( final FlatKDTree< ? > tree, final int k, final double[] coordinates, final boolean sortQueries )
+	{
+		final ExecutorService executor = Executors.newFixedThreadPool( Runtime.getRuntime().availableProcessors() );
+		try
+		{
+			return kNearest( tree, k, coordinates, sortQueries, executor );
+		}
+		finally
+		{
+			executor.shutdown();
+		}
+	}
+
+	/**
+	 * Find the k nearest neighbors of each query.
+	 *
+	 * @param tree
+	 *            the tree to search
+	 * @param k
+	 *            number of neighbors per query
+	 * @param coordinates
+	 *            query coordinates, query q occupies {@code coordinates[ q * n ]}
+	 *            to {@code coordinates[ q * n + n - 1 ]}
+	 * @param sortQueries
+	 *            whether to process queries in Z-order
+	 * @param executor
+	 *            runs one task per chunk of queries
+	 */
+	public static < T > Result kNearest( final FlatKDTree< T > tree, final int k, final double[] coordinates, final boolean sortQueries, final ExecutorService executor )
+	{
+		final Result result = new Result( coordinates.length / tree.numDimensions(), k );
+		final KNearestNeighborSearchOnFlatKDTree< T > search = new KNearestNeighborSearchOnFlatKDTree<>( tree, k );
+		search( search::copy, coordinates, sortQueries, executor, ( s, query, q ) -> {
+			s.search( query );
+			for ( int i = 0, o = q * k; i < k; ++i, ++o )
+			{
+				final int index = s.getIndex( i );
+				result.indices[ o ] = index;
+				result.distances[ o ] = index < 0 ? Double.POSITIVE_INFINITY : s.getDistance( i );
+			}
+		} );
+		return result;
+	}
+
+	/**
+	 * Run {@code query} for each query position.
+	 *
+	 * @param searches
+	 *            creates one search per task, e.g., {@code search::copy} for
+	 *            a {@link NearestNeighborSearch}, or
+	 *            {@code () -> new RadiusNeighborSearchOnKDTree<>( tree )}.
+	 * @param coordinates
+	 *            query coordinates, query q occupies {@code coordinates[ q * n ]}
+	 *            to {@code coordinates[ q * n + n - 1 ]}
+	 * @param sortQueries
+	 *            whether to process queries in Z-order
+	 * @param executor
+	 *            runs one task per chunk of queries
+	 * @param query
+	 *            searches and consumes the results of one query
+	 */
+	public static < S extends EuclideanSpace > void search( final Supplier< ? extends S > searches, final double[] coordinates, final boolean sortQueries, final ExecutorService executor, final Query< ? super S > query )
+	{
+		final int n = searches.get().numDimensions();
+		final int numQueries = coordinates.length / n;
+		final int[] order = sortQueries ? zOrder( coordinates, n ) : null;
+
+		final List< Runnable > tasks = new ArrayList<>();
+		for ( int from = 0; from < numQueries; )
+		{
+			final int chunkFrom = from;
+			final int chunkTo = ( int ) Math.min( ( long ) from + CHUNK_SIZE, numQueries );
+			from = chunkTo;
+			tasks.add( () -> {
+				final S s = searches.get();
+				final RealPoint point = new RealPoint( n );
+				for ( int i = chunkFrom; i < chunkTo; ++i )
+				{
+					final int q = order == null ? i : order[ i ];
+					for ( int d = 0; d < n; ++d )
+						point.setPosition( coordinates[ q * n + d ], d );
+					query.run( s, point, q );
+				}
+			} );
+		}
+		ParallelTasks.runAll( executor, tasks );
+	}
+
+	/**
+	 * Order points by their Z-order (Morton) code on a grid of
+	 * <em>2<sup>floor(31/n)</sup></em> cells per dimension over their bounding
+	 * box. Codes have at most 31 bits, so the sort keys
+	 * {@code code << 32 | index} are non-negative.
+	 *
+	 * @return point indices in Z-order.
+	 */
+	static int[] zOrder( final double[] coordinates, final int n )
+	{
+		final int numPoints = coordinates.length / n;
+		final double[] min = new double[ n ];
+		final double[] scale = new double[ n ];
+		Arrays.fill( min, Double.POSITIVE_INFINITY );
+		Arrays.fill( scale, Double.NEGATIVE_INFINITY );
+		for ( int o = 0; o < coordinates.length; )
+			for ( int d = 0; d < n; ++d, ++o )
+			{
+				min[ d ] = Math.min( min[ d ], coordinates[ o ] );
+				scale[ d ] = Math.max( scale[ d ], coordinates[ o ] );
+			}
+		final int bits = 31 / n;
+		final long cells = ( 1L << bits ) - 1;
+		for ( int d = 0; d < n; ++d )
+		{
+			final double extent = scale[ d ] - min[ d ];
+			scale[ d ] = extent > 0 ? cells / extent : 0;
+		}
+
+		// sort (code << 32 | index) to sort indices by code
+		final long[] keys = new long[ numPoints ];
+		for ( int i = 0, o = 0; i < numPoints; ++i )
+		{
+			long code = 0;
+			for ( int d = 0; d < n; ++d, ++o )
+			{
+				final long cell = ( long ) ( ( coordinates[ o ] - min[ d ] ) * scale[ d ] );
+				for ( int b = 0; b < bits; ++b )
+					code |= ( ( cell >> b ) & 1 ) << ( b * n + d );
+			}
+			keys[ i ] = ( code << 32 ) | i;
+		}
+		Arrays.sort( keys );
+		final int[] order = new int[ numPoints ];
+		for ( int i = 0; i < numPoints; ++i )
+			order[ i ] = ( int ) keys[ i ];
+		return order;
+	}
+}
@@ -0,0 +1,327 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2018 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.neighborsearch;
+
+/**
+ * Helpers for ordering search results held in parallel arrays of squared
+ * distances and result nodes (either node indices or node objects), and for
+ * maintaining the k best candidates of a k-nearest neighbor search.
+ * <p>
+ * The k best candidates are kept in a sorted array for small k, and in a
+ * max-heap for {@code k > }{@link #HEAP_THRESHOLD}. Initialize all keys to the
+ * search bound (e.g., {@link Double#MAX_VALUE}), {@link #offer} each
+ * candidate, and {@link #finish} the search to sort the candidates.
+ * </p>
+ */
+final class DistanceOrder
+{
+	private DistanceOrder()
+	{}
+
+	/**
+	 * For k larger than this, the k best candidates are kept in a heap.
+	 */
+	static final int HEAP_THRESHOLD = 16;
+
+	/**
+	 * @return the largest of the k best squared distances {@code keys}, i.e.,
+	 *         the distance a candidate has to beat.
+	 */
+	static double kth( final double[] keys, final int k )
+	{
+		return keys[ k > HEAP_THRESHOLD ? 0 : k - 1 ];
+	}
+
+	/**
+	 * Add a candidate to the k best if it is closer than the current k-th
+	 * best.
+	 */
+	static void offer( final double[] keys, final int[] values, final int k, final double key, final int value )
+	{
+		if ( k > HEAP_THRESHOLD )
+		{
+			if ( key < keys[ 0 ] )
+				replaceTop( keys, values, k, key, value );
+		}
+		else if ( key < keys[ k - 1 ] )
+		{
+			int i = k - 1;
+			for ( int j = i - 1; i > 0 && key < keys[ j ]; --i, --j )
+			{
+				keys[ i ] = keys[ j ];
+				values[ i ] = values[ j ];
+			}
+			keys[ i ] = key;
+			values[ i ] = value;
+		}
+	}
+
+	/**
+	 * Add a candidate to the k best if it is closer than the current k-th
+	 * best.
+	 */
+	static void offer( final double[] keys, final Object[] values, final int k, final double key, final Object value )
+	{
+		if ( k > HEAP_THRESHOLD )
+		{
+			if ( key < keys[ 0 ] )
+				replaceTop( keys, values, k, key, value );
+		}
+		else if ( key < keys[ k - 1 ] )
+		{
+			int i = k - 1;
+			for ( int j = i - 1; i > 0 && key < keys[ j ]; --i, --j )
+			{
+				keys[ i ] = keys[ j ];
+				values[ i ] = values[ j ];
+			}
+			keys[ i ] = key;
+			values[ i ] = value;
+		}
+	}
+
+	/**
+	 * Sort the k best candidates by distance after all candidates have been
+	 * offered.
+	 */
+	static void finish( final double[] keys, final int[] values, final int k )
+	{
+		if ( k > HEAP_THRESHOLD )
+			sort( keys, values, 0, k );
+	}
+
+	/**
+	 * Sort the k best candidates by distance after all candidates have been
+	 * offered.
+	 */
+	static void finish( final double[] keys, final Object[] values, final int k )
+	{
+		if ( k > HEAP_THRESHOLD )
+			sort( keys, values, 0, k );
+	}
+
+	/**
+	 * Below this size, ranges are sorted by insertion sort.
+	 */
+	private static final int INSERTION_SORT_THRESHOLD = 16;
+
+	/**
+	 * Sort {@code keys[ from ]} to {@code keys[ to - 1 ]} in ascending order
+	 * and permute {@code values} in the same way.
+	 */
+	static void sort( final double[] keys, final int[] values, int from, int to )
+	{
+		while ( to - from > INSERTION_SORT_THRESHOLD )
+		{
+			final int p = partition( keys, values, from, to );
+			// recurse into the smaller part to bound the stack depth
+			if ( p - from < to - p )
+			{
+				sort( keys, values, from, p );
+				from = p;
+			}
+			else
+			{
+				sort( keys, values, p, to );
+				to = p;
+			}
+		}
+		for ( int i = from + 1; i < to; ++i )
+		{
+			final double key = keys[ i ];
+			final int value = values[ i ];
+			int j = i - 1;
+			for ( ; j >= from && keys[ j ] > key; --j )
+			{
+				keys[ j + 1 ] = keys[ j ];
+				values[ j + 1 ] = values[ j ];
+			}
+			keys[ j + 1 ] = key;
+			values[ j + 1 ] = value;
+		}
+	}
+
+	/**
+	 * Hoare partition around the median of the first, middle, and last key.
+	 *
+	 * @return index p such that all keys before p are {@code <=} all keys from
+	 *         p on.
+	 */
+	private static int partition( final double[] keys, final int[] values, final int from, final int to )
+	{
+		final double pivot = medianOf3( keys[ from ], keys[ ( from + to ) >>> 1 ], keys[ to - 1 ] );
+		int i = from - 1;
+		int j = to;
+		while ( true )
+		{
+			do
+				++i;
+			while ( keys[ i ] < pivot );
+			do
+				--j;
+			while ( keys[ j ] > pivot );
+			if ( i >= j )
+				return j + 1;
+			swap( keys, values, i, j );
+		}
+	}
+
+	/**
+	 * Sort {@code keys[ from ]} to {@code keys[ to - 1 ]} in ascending order
+	 * and permute {@code values} in the same way.
+	 */
+	static void sort( final double[] keys, final Object[] values, int from, int to )
+	{
+		while ( to - from > INSERTION_SORT_THRESHOLD )
+		{
+			final int p = partition( keys, values, from, to );
+			if ( p - from < to - p )
+			{
+				sort( keys, values, from, p );
+				from = p;
+			}
+			else
+			{
+				sort( keys, values, p, to );
+				to = p;
+			}
+		}
+		for ( int i = from + 1; i < to; ++i )
+		{
+			final double key = keys[ i ];
+			final Object value = values[ i ];
+			int j = i - 1;
+			for ( ; j >= from && keys[ j ] > key; --j )
+			{
+				keys[ j + 1 ] = keys[ j ];
+				values[ j + 1 ] = values[ j ];
+			}
+			keys[ j + 1 ] = key;
+			values[ j + 1 ] = value;
+		}
+	}
+
+	private static int partition( final double[] keys, final Object[] values, final int from, final int to )
+	{
+		final double pivot = medianOf3( keys[ from ], keys[ ( from + to ) >>> 1 ], keys[ to - 1 ] );
+		int i = from - 1;
+		int j = to;
+		while ( true )
+		{
+			do
+				++i;
+			while ( keys[ i ] < pivot );
+			do
+				--j;
+			while ( keys[ j ] > pivot );
+			if ( i >= j )
+				return j + 1;
+			swap( keys, values, i, j );
+		}
+	}
+
+	private static double medianOf3( final double a, final double b, final double c )
+	{
+		return a < b ? ( b < c ? b : Math.max( a, c ) ) : ( a < c ? a : Math.max( b, c ) );
+	}
+
+	/**
+	 * Replace the largest key of the max-heap {@code keys[ 0 ]} to
+	 * {@code keys[ size - 1 ]} by {@code key} and restore the heap property.
+	 */
+	private static void replaceTop( final double[] keys, final int[] values, final int size, final double key, final int value )
+	{
+		int i = 0;
+		while ( true )
+		{
+			int child = 2 * i + 1;
+			if ( child >= size )
+				break;
+			if ( child + 1 < size && keys[ child + 1 ] > keys[ child ] )
+				++child;
+			if ( keys[ child ] <= key )
+				break;
+			keys[ i ] = keys[ child ];
+			values[ i ] = values[ child ];
+			i = child;
+		}
+		keys[ i ] = key;
+		values[ i ] = value;
+	}
+
+	/**
+	 * Replace the largest key of the max-heap {@code keys[ 0 ]} to
+	 * {@code keys[ size - 1 ]} by {@code key} and restore the heap property.
+	 */
+	private static void replaceTop( final double[] keys, final Object[] values, final int size, final double key, final Object value )
+	{
+		int i = 0;
+		while ( true )
+		{
+			int child = 2 * i + 1;
+			if ( child >= size )
+				break;
+			if ( child + 1 < size && keys[ child + 1 ] > keys[ child ] )
+				++child;
+			if ( keys[ child ] <= key )
+				break;
+			keys[ i ] = keys[ child ];
+			values[ i ] = values[ child ];
+			i = child;
+		}
+		keys[ i ] = key;
+		values[ i ] = value;
+	}
+
+	private static void swap( final double[] keys, final int[] values, final int i, final int j )
+	{
+		final double key = keys[ i ];
+		keys[ i ] = keys[ j ];
+		keys[ j ] = key;
+		final int value = values[ i ];
+		values[ i ] = values[ j ];
+		values[ j ] = value;
+	}
+
+	private static void swap( final double[] keys, final Object[] values, final int i, final int j )
+	{
+		final double key = keys[ i ];
+		keys[ i ] = keys[ j ];
+		keys[ j ] = key;
+		final Object value = values[ i ];
+		values[ i ] = values[ j ];
+		values[ j ] = value;
+	}
+}
@@ -0,0 +1,246 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2018 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.neighborsearch;
+
+import net.imglib2.DynamicKDTree;
+import net.imglib2.FlatKDTree;
+import net.imglib2.RealLocalizable;
+import net.imglib2.Sampler;
+
+/**
+ * Implementation of {@link KNearestNeighborSearch} search for
+ * {@link DynamicKDTree}s. Buffered points are compared exhaustively, the tree
+ * of each level is traversed like in {@link KNearestNeighborSearchOnFlatKDTree}
+ * skipping removed points. The k best candidates are shared across levels, so
+ * later levels are pruned by the candidates found in earlier ones.
+ * <p>
+ * With {@code k = 1} this is also the {@link NearestNeighborSearch} for
+ * {@link DynamicKDTree}s.
+ * </p>
+ * <p>
+ * If the index contains fewer than k points, the remaining results have id
+ * -1, distance {@link Double#MAX_VALUE}, and {@code null} {@link Sampler} and
+ * position. The {@link Sampler}s and
+ * {@link RealLocalizable}s returned for the results are reused and point to
+ * the new results after the next {@link #search}.
+ * </p>
+ */
+public class KNearestNeighborSearchOnDynamicKDTree< T > implements KNearestNeighborSearch< T >
+{
+	protected final DynamicKDTree< T > tree;
+
+	protected final int n;
+
+	protected final double[] pos;
+
+	protected final int k;
+
+	protected final int[] bestIds;
+
+	protected final double[] bestSquDistances;
+
+	protected final DynamicKDTree< T >.Entry[] bestPoints;
+
+	/**
+	 * nodes still to visit, sized for the deepest possible level.
+	 */
+	private final SearchStack stack = new SearchStack( Integer.MAX_VALUE );
+
+	@SuppressWarnings( "unchecked" )
+	public KNearestNeighborSearchOnDynamicKDTree( final DynamicKDTree< T > tree, final int k )
+	{
+		this.tree = tree;
+		this.n = tree.numDimensions();
+		this.pos = new double[ n ];
+		this.k = k;
+		this.bestIds = new int[ k ];
+		this.bestSquDistances = new double[ k ];
+		this.bestPoints = ( DynamicKDTree< T >.Entry[] ) new DynamicKDTree< ? >.Entry[ k ];
+		for ( int i = 0; i < k; ++i )
+		{
+			bestIds[ i ] = -1;
+			bestSquDistances[ i ] = Double.MAX_VALUE;
+			bestPoints[ i ] = tree.createEntry();
+		}
+	}
+
+	@Override
+	public int numDimensions()
+	{
+		return n;
+	}
+
+	@Override
+	public int getK()
+	{
+		return k;
+	}
+
+	@Override
+	public void search( final RealLocalizable reference )
+	{
+		reference.localize( pos );
+		for ( int i = 0; i < k; ++i )
+		{
+			bestIds[ i ] = -1;
+			bestSquDistances[ i ] = Double.MAX_VALUE;
+		}
+		for ( int i = 0; i < tree.bufferSize(); ++i )
+		{
+			final int id = tree.getBufferId( i );
+			DistanceOrder.offer( bestSquDistances, bestIds, k, tree.squDistance( id, pos ), id );
+		}
+		for ( int level = 0; level < tree.numLevels(); ++level )
+		{
+			final FlatKDTree< T > levelTree = tree.getTree( level );
+			if ( levelTree != null )
+				searchTree( levelTree, tree.getIds( level ) );
+		}
+		DistanceOrder.finish( bestSquDistances, bestIds, k );
+		for ( int i = 0; i < k; ++i )
+			bestPoints[ i ].setId( bestIds[ i ] );
+	}
+
+	/**
+	 * Search one level. {@code ids[ levelTree.getIndex( node ) ]} is the id of
+	 * the point at {@code node}.
+	 */
+	private void searchTree( final FlatKDTree< T > levelTree, final int[] ids )
+	{
+		final double[] positions = levelTree.getPositions();
+		final int size = levelTree.numPoints();
+		stack.size = 0;
+		stack.push( 0, 0, 0 );
+		while ( stack.size > 0 )
+		{
+			final int top = --stack.size;
+			if ( stack.squDistances[ top ] > DistanceOrder.kth( bestSquDistances, k ) )
+				continue;
+			int current = stack.nodes[ top ];
+			int dCurrent = stack.dimensions[ top ];
+			while ( current < size )
+			{
+				// consider the current node, unless it has been removed
+				final int id = ids[ levelTree.getIndex( current ) ];
+				if ( tree.contains( id ) )
+					DistanceOrder.offer( bestSquDistances, bestIds, k, levelTree.squDistance( current, pos ), id );
+
+				final double axisDiff = pos[ dCurrent ] - positions[ current * n + dCurrent ];
+				final boolean leftIsNearBranch = axisDiff < 0;
+				final int left = 2 * current + 1;
+				dCurrent = ( dCurrent + 1 == n ) ? 0 : dCurrent + 1;
+
+				final int awayChild = leftIsNearBranch ? left + 1 : left;
+				final double axisSquDistance = axisDiff * axisDiff;
+				if ( awayChild < size && axisSquDistance <= DistanceOrder.kth( bestSquDistances, k ) )
+					stack.push( awayChild, dCurrent, axisSquDistance );
+				current = leftIsNearBranch ? left : left + 1;
+			}
+		}
+	}
+
+	@Override
+	public Sampler< T > getSampler( final int i )
+	{
+		return bestIds[ i ] < 0 ? null : bestPoints[ i ];
+	}
+
+	@Override
+	public RealLocalizable getPosition( final int i )
+	{
+		return bestIds[ i ] < 0 ? null : bestPoints[ i ];
+	}
+
+	@Override
+	public double getSquareDistance( final int i )
+	{
+		return bestSquDistances[ i ];
+	}
+
+	@Override
+	public double getDistance( final int i )
+	{
+		return Math.sqrt( bestSquDistances[ i ] );
+	}
+
+	/**
+	 * @return the id of the i-th nearest neighbor, or -1 if the index contains
+	 *         fewer than i+1 points.
+	 */
+	public int getId( final int i )
+	{
+		return bestIds[ i ];
+	}
+
+	/* NearestNeighborSearch */
+
+	@Override
+	public RealLocalizable getPosition()
+	{
+		return getPosition( 0 );
+	}
+
+	@Override
+	public Sampler< T > getSampler()
+	{
+		return getSampler( 0 );
+	}
+
+	@Override
+	public double getSquareDistance()
+	{
+		return getSquareDistance( 0 );
+	}
+
+	@Override
+	public double getDistance()
+	{
+		return getDistance( 0 );
+	}
+
+	@Override
+	public KNearestNeighborSearchOnDynamicKDTree< T > copy()
+	{
+		final KNearestNeighborSearchOnDynamicKDTree< T > copy = new KNearestNeighborSearchOnDynamicKDTree<>( tree, k );
+		System.arraycopy( pos, 0, copy.pos, 0, pos.length );
+		for ( int i = 0; i < k; ++i )
+		{
+			copy.bestIds[ i ] = bestIds[ i ];
+			copy.bestSquDistances[ i ] = bestSquDistances[ i ];
+			copy.bestPoints[ i ].setId( bestIds[ i ] );
+		}
+		return copy;
+	}
+}
@@ -0,0 +1,256 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2018 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.neighborsearch;
+
+import net.imglib2.FlatKDTree;
+import net.imglib2.RealLocalizable;
+import net.imglib2.Sampler;
+
+/**
+ * Implementation of {@link KNearestNeighborSearch} search for
+ * {@link FlatKDTree}s.
+ * <p>
+ * The tree is traversed iteratively using a preallocated stack. For
+ * {@code k > }{@link KNearestNeighborSearchOnKDTree#HEAP_THRESHOLD}, the
+ * current k best candidates are kept in a max-heap rather than a sorted array.
+ * </p>
+ * <p>
+ * The {@link Sampler}s and {@link RealLocalizable}s returned for the results
+ * are reused and point to the new results after the next {@link #search}. If
+ * fewer than k points are found, the remaining samplers and positions are
+ * {@code null}, their indices are -1, and their squared distances are the
+ * search bound ({@link Double#MAX_VALUE} without bound).
+ * </p>
+ */
+public class KNearestNeighborSearchOnFlatKDTree< T > implements KNearestNeighborSearch< T >
+{
+	protected final FlatKDTree< T > tree;
+
+	protected final int n;
+
+	protected final double[] pos;
+
+	protected final double[] positions;
+
+	protected final int size;
+
+	protected final int k;
+
+	protected final int[] bestNodes;
+
+	protected final double[] bestSquDistances;
+
+	protected final FlatKDTree< T >.Node[] bestPoints;
+
+	/**
+	 * nodes still to visit.
+	 */
+	private final SearchStack stack;
+
+	@SuppressWarnings( "unchecked" )
+	public KNearestNeighborSearchOnFlatKDTree( final FlatKDTree< T > tree, final int k )
+	{
+		this.tree = tree;
+		this.n = tree.numDimensions();
+		this.pos = new double[ n ];
+		this.positions = tree.getPositions();
+		this.size = tree.numPoints();
+		this.k = k;
+		this.bestNodes = new int[ k ];
+		this.bestSquDistances = new double[ k ];
+		this.bestPoints = ( FlatKDTree< T >.Node[] ) new FlatKDTree< ? >.Node[ k ];
+		for ( int i = 0; i < k; ++i )
+		{
+			bestNodes[ i ] = -1;
+			bestSquDistances[ i ] = Double.MAX_VALUE;
+			bestPoints[ i ] = tree.createNode();
+		}
+		stack = new SearchStack( size );
+	}
+
+	@Override
+	public int numDimensions()
+	{
+		return n;
+	}
+
+	@Override
+	public int getK()
+	{
+		return k;
+	}
+
+	@Override
+	public void search( final RealLocalizable reference )
+	{
+		search( reference, Double.MAX_VALUE );
+	}
+
+	/**
+	 * Search the k nearest neighbors among the points with squared distance
+	 * smaller than {@code maxSquDistance} to {@code reference}. Subtrees
+	 * farther away than the bound are pruned from the start, so this is
+	 * faster than {@link #search(RealLocalizable)} if a tight upper bound for
+	 * the k-th nearest neighbor distance is known, e.g., from the neighbors
+	 * of a nearby query.
+	 * <p>
+	 * If fewer than k points are within the bound, the remaining results are
+	 * empty, see {@link KNearestNeighborSearchOnFlatKDTree}.
+	 * </p>
+	 */
+	public void search( final RealLocalizable reference, final double maxSquDistance )
+	{
+		reference.localize( pos );
+		for ( int i = 0; i < k; ++i )
+		{
+			bestSquDistances[ i ] = maxSquDistance;
+			bestNodes[ i ] = -1;
+		}
+		searchNode( 0, 0 );
+		DistanceOrder.finish( bestSquDistances, bestNodes, k );
+		for ( int i = 0; i < k; ++i )
+			bestPoints[ i ].setNode( bestNodes[ i ] );
+	}
+
+	/**
+	 * Search the subtree rooted at {@code root}, which splits along dimension
+	 * {@code d}. The near branch of each node is descended immediately, the
+	 * away branch is pushed onto the stack and visited later, unless its split
+	 * plane is farther away than the current k-th best candidate by then.
+	 */
+	protected void searchNode( final int root, final int d )
+	{
+		stack.size = 0;
+		stack.push( root, d, 0 );
+		while ( stack.size > 0 )
+		{
+			final int top = --stack.size;
+			if ( stack.squDistances[ top ] > DistanceOrder.kth( bestSquDistances, k ) )
+				continue;
+			int current = stack.nodes[ top ];
+			int dCurrent = stack.dimensions[ top ];
+			while ( current < size )
+			{
+				// consider the current node
+				DistanceOrder.offer( bestSquDistances, bestNodes, k, tree.squDistance( current, pos ), current );
+
+				final double axisDiff = pos[ dCurrent ] - positions[ current * n + dCurrent ];
+				final boolean leftIsNearBranch = axisDiff < 0;
+				final int left = 2 * current + 1;
+				dCurrent = ( dCurrent + 1 == n ) ? 0 : dCurrent + 1;
+
+				// remember the away branch (unless it can already be excluded),
+				// continue with the near branch
+				final int awayChild = leftIsNearBranch ? left + 1 : left;
+				final double axisSquDistance = axisDiff * axisDiff;
+				if ( awayChild < size && axisSquDistance <= DistanceOrder.kth( bestSquDistances, k ) )
+					stack.push( awayChild, dCurrent, axisSquDistance );
+				current = leftIsNearBranch ? left : left + 1;
+			}
+		}
+	}
+
+	@Override
+	public Sampler< T > getSampler( final int i )
+	{
+		return bestNodes[ i ] < 0 ? null : bestPoints[ i ];
+	}
+
+	@Override
+	public RealLocalizable getPosition( final int i )
+	{
+		return bestNodes[ i ] < 0 ? null : bestPoints[ i ];
+	}
+
+	@Override
+	public double getSquareDistance( final int i )
+	{
+		return bestSquDistances[ i ];
+	}
+
+	@Override
+	public double getDistance( final int i )
+	{
+		return Math.sqrt( bestSquDistances[ i ] );
+	}
+
+	/**
+	 * @return the index into the list of values of the i-th nearest neighbor.
+	 */
+	public int getIndex( final int i )
+	{
+		return bestNodes[ i ] < 0 ? -1 : tree.getIndex( bestNodes[ i ] );
+	}
+
+	/* NearestNeighborSearch */
+
+	@Override
+	public RealLocalizable getPosition()
+	{
+		return getPosition( 0 );
+	}
+
+	@Override
+	public Sampler< T > getSampler()
+	{
+		return getSampler( 0 );
+	}
+
+	@Override
+	public double getSquareDistance()
+	{
+		return getSquareDistance( 0 );
+	}
+
+	@Override
+	public double getDistance()
+	{
+		return getDistance( 0 );
+	}
+
+	@Override
+	public KNearestNeighborSearchOnFlatKDTree< T > copy()
+	{
+		final KNearestNeighborSearchOnFlatKDTree< T > copy = new KNearestNeighborSearchOnFlatKDTree<>( tree, k );
+		System.arraycopy( pos, 0, copy.pos, 0, pos.length );
+		for ( int i = 0; i < k; ++i )
+		{
+			copy.bestNodes[ i ] = bestNodes[ i ];
+			copy.bestSquDistances[ i ] = bestSquDistances[ i ];
+			copy.bestPoints[ i ].setNode( bestNodes[ i ] );
+		}
+		return copy;
+	}
+}
@@ -41,11 +41,21 @@ import net.imglib2.Sampler;
 
 /**
  * Implementation of {@link KNearestNeighborSearch} search for kd-trees.
+ * <p>
+ * The tree is traversed iteratively using a preallocated stack. For
+ * {@code k > }{@link #HEAP_THRESHOLD}, the current k best candidates are kept
+ * in a max-heap rather than a sorted array.
+ * </p>
  * 
  * @author Tobias Pietzsch
  */
 public class KNearestNeighborSearchOnKDTree< T > implements KNearestNeighborSearch< T >
 {
+	/**
+	 * For k larger than this, candidates are kept in a heap.
+	 */
+	public static final int HEAP_THRESHOLD = DistanceOrder.HEAP_THRESHOLD;
+
 	protected KDTree< T > tree;
 
 	protected final int n;
@@ -58,6 +68,11 @@ public class KNearestNeighborSearchOnKDTree< T > implements KNearestNeighborSear
 
 	protected double[] bestSquDistances;
 
+	/**
+	 * nodes still to visit.
+	 */
+	private final NodeStack< T > stack;
+
 	@SuppressWarnings( "unchecked" )
 	public KNearestNeighborSearchOnKDTree( final KDTree< T > tree, final int k )
 	{
@@ -69,6 +84,7 @@ public class KNearestNeighborSearchOnKDTree< T > implements KNearestNeighborSear
 		this.bestSquDistances = new double[ k ];
 		for ( int i = 0; i < k; ++i )
 			bestSquDistances[ i ] = Double.MAX_VALUE;
+		this.stack = new NodeStack<>( tree.size() );
 	}
 
 	@Override
@@ -88,39 +104,46 @@ public class KNearestNeighborSearchOnKDTree< T > implements KNearestNeighborSear
 	{
 		reference.localize( pos );
 		for ( int i = 0; i < k; ++i )
+		{
 			bestSquDistances[ i ] = Double.MAX_VALUE;
+			bestPoints[ i ] = null;
+		}
 		searchNode( tree.getRoot() );
+		DistanceOrder.finish( bestSquDistances, bestPoints, k );
 	}
 
-	protected void searchNode( final KDTreeNode< T > current )
+	/**
+	 * Search the subtree rooted at {@code root}. The near branch of each node
+	 * is descended immediately, the away branch is pushed onto the stack and
+	 * visited later, unless its split plane is farther away than the current
+	 * k-th best candidate by then.
+	 */
+	protected void searchNode( final KDTreeNode< T > root )
 	{
-		// consider the current node
-		final double squDistance = current.squDistanceTo( pos );
-		if ( squDistance < bestSquDistances[ k - 1 ] )
+		stack.size = 0;
+		stack.push( root, 0 );
+		while ( stack.size > 0 )
 		{
-			int i = k - 1;
-			for ( int j = i - 1; i > 0 && squDistance < bestSquDistances[ j ]; --i, --j )
+			KDTreeNode< T > current = stack.pop();
+			if ( stack.squDistances[ stack.size ] > DistanceOrder.kth( bestSquDistances, k ) )
+				continue;
+			while ( current != null )
 			{
-				bestSquDistances[ i ] = bestSquDistances[ j ];
-				bestPoints[ i ] = bestPoints[ j ];
+				// consider the current node
+				DistanceOrder.offer( bestSquDistances, bestPoints, k, current.squDistanceTo( pos ), current );
+
+				final double axisDiff = pos[ current.getSplitDimension() ] - current.getSplitCoordinate();
+				final boolean leftIsNearBranch = axisDiff < 0;
+
+				// remember the away branch (unless it can already be excluded),
+				// continue with the near branch
+				final KDTreeNode< T > awayChild = leftIsNearBranch ? current.right : current.left;
+				final double axisSquDistance = axisDiff * axisDiff;
+				if ( awayChild != null && axisSquDistance <= DistanceOrder.kth( bestSquDistances, k ) )
+					stack.push( awayChild, axisSquDistance );
+				current = leftIsNearBranch ? current.left : current.right;
 			}
-			bestSquDistances[ i ] = squDistance;
-			bestPoints[ i ] = current;
 		}
-
-		final double axisDiff = pos[ current.getSplitDimension() ] - current.getSplitCoordinate();
-		final double axisSquDistance = axisDiff * axisDiff;
-		final boolean leftIsNearBranch = axisDiff < 0;
-
-		// search the near branch
-		final KDTreeNode< T > nearChild = leftIsNearBranch ? current.left : current.right;
-		final KDTreeNode< T > awayChild = leftIsNearBranch ? current.right : current.left;
-		if ( nearChild != null )
-			searchNode( nearChild );
-
-		// search the away branch - maybe
-		if ( ( axisSquDistance <= bestSquDistances[ k - 1 ] ) && ( awayChild != null ) )
-			searchNode( awayChild );
 	}
 
 	@Override
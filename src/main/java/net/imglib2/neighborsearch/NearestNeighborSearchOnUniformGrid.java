@@ -0,0 +1,232 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2018 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.neighborsearch;
+
+import net.imglib2.RealLocalizable;
+import net.imglib2.Sampler;
+import net.imglib2.UniformGrid;
+
+/**
+ * Implementation of {@link NearestNeighborSearch} search for
+ * {@link UniformGrid}s. Cells are scanned in rings of increasing Chebyshev
+ * distance <em>s</em> from the cell containing the query. All points in rings
+ * beyond <em>s</em> are at least <em>s</em> cell sizes away, so the search
+ * stops as soon as the best candidate is closer than that.
+ * <p>
+ * If the grid is empty, {@link #getSquareDistance()} is
+ * {@link Double#MAX_VALUE} after a search.
+ * </p>
+ */
+public class NearestNeighborSearchOnUniformGrid< T > implements NearestNeighborSearch< T >
+{
+	protected final UniformGrid< T > grid;
+
+	protected final int n;
+
+	protected final double[] pos;
+
+	protected int bestPoint;
+
+	protected double bestSquDistance;
+
+	protected final UniformGrid< T >.Entry best;
+
+	/**
+	 * cell containing the query (not clamped to the grid).
+	 */
+	private final long[] center;
+
+	private final int[] min;
+
+	private final int[] max;
+
+	private final int[] cell;
+
+	public NearestNeighborSearchOnUniformGrid( final UniformGrid< T > grid )
+	{
+		this.grid = grid;
+		this.n = grid.numDimensions();
+		this.pos = new double[ n ];
+		this.best = grid.createEntry();
+		this.center = new long[ n ];
+		this.min = new int[ n ];
+		this.max = new int[ n ];
+		this.cell = new int[ n ];
+	}
+
+	@Override
+	public int numDimensions()
+	{
+		return n;
+	}
+
+	@Override
+	public void search( final RealLocalizable reference )
+	{
+		reference.localize( pos );
+		bestPoint = -1;
+		bestSquDistance = Double.MAX_VALUE;
+		if ( grid.numPoints() == 0 )
+			return;
+
+		// rings sMin to sMax intersect the grid
+		long sMin = 0;
+		long sMax = 0;
+		for ( int d = 0; d < n; ++d )
+		{
+			final long c = grid.cellCoordinate( pos[ d ], d );
+			final long last = grid.getGridDimension( d ) - 1;
+			center[ d ] = c;
+			sMin = Math.max( sMin, Math.max( -c, c - last ) );
+			sMax = Math.max( sMax, Math.max( c, last - c ) );
+		}
+		final double cellSize = grid.getCellSize();
+		for ( long s = sMin; s <= sMax; ++s )
+		{
+			searchRing( s );
+			final double bound = s * cellSize;
+			if ( bestSquDistance <= bound * bound )
+				break;
+		}
+		best.setPoint( bestPoint );
+	}
+
+	/**
+	 * Scan all cells at Chebyshev distance {@code s} from {@link #center}.
+	 * Rows along dimension 0 that lie on the ring in another dimension are
+	 * scanned completely, all other rows only at their two ends.
+	 */
+	private void searchRing( final long s )
+	{
+		for ( int d = 0; d < n; ++d )
+		{
+			min[ d ] = ( int ) Math.max( center[ d ] - s, 0 );
+			max[ d ] = ( int ) Math.min( center[ d ] + s, grid.getGridDimension( d ) - 1 );
+		}
+		System.arraycopy( min, 0, cell, 0, n );
+		while ( true )
+		{
+			int row = 0;
+			boolean onRing = s == 0;
+			for ( int d = n - 1; d > 0; --d )
+			{
+				row = ( row + cell[ d ] ) * grid.getGridDimension( d - 1 );
+				onRing |= Math.abs( cell[ d ] - center[ d ] ) == s;
+			}
+			if ( onRing )
+				searchCells( row + min[ 0 ], row + max[ 0 ] );
+			else
+			{
+				if ( center[ 0 ] - s >= 0 )
+					searchCells( row + min[ 0 ], row + min[ 0 ] );
+				if ( center[ 0 ] + s < grid.getGridDimension( 0 ) )
+					searchCells( row + max[ 0 ], row + max[ 0 ] );
+			}
+
+			// next row
+			int d = 1;
+			for ( ; d < n; ++d )
+			{
+				if ( ++cell[ d ] <= max[ d ] )
+					break;
+				cell[ d ] = min[ d ];
+			}
+			if ( d >= n )
+				break;
+		}
+	}
+
+	/**
+	 * Consider all points in cells {@code first} to {@code last} (in flat
+	 * index order).
+	 */
+	private void searchCells( final int first, final int last )
+	{
+		final int to = grid.getCellStart( last + 1 );
+		for ( int k = grid.getCellStart( first ); k < to; ++k )
+		{
+			final double squDistance = grid.squDistance( k, pos );
+			if ( squDistance < bestSquDistance )
+			{
+				bestSquDistance = squDistance;
+				bestPoint = k;
+			}
+		}
+	}
+
+	@Override
+	public Sampler< T > getSampler()
+	{
+		return best;
+	}
+
+	@Override
+	public RealLocalizable getPosition()
+	{
+		return best;
+	}
+
+	@Override
+	public double getSquareDistance()
+	{
+		return bestSquDistance;
+	}
+
+	@Override
+	public double getDistance()
+	{
+		return Math.sqrt( bestSquDistance );
+	}
+
+	/**
+	 * @return the index (in iteration order of the source) of the nearest
+	 *         neighbor.
+	 */
+	public int getIndex()
+	{
+		return grid.getIndex( bestPoint );
+	}
+
+	@Override
+	public NearestNeighborSearchOnUniformGrid< T > copy()
+	{
+		final NearestNeighborSearchOnUniformGrid< T > copy = new NearestNeighborSearchOnUniformGrid<>( grid );
+		System.arraycopy( pos, 0, copy.pos, 0, pos.length );
+		copy.bestPoint = bestPoint;
+		copy.bestSquDistance = bestSquDistance;
+		copy.best.setPoint( bestPoint );
+		return copy;
+	}
+}
@@ -0,0 +1,87 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2018 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.neighborsearch;
+
+import java.util.Arrays;
+
+import net.imglib2.KDTree;
+import net.imglib2.KDTreeNode;
+
+/**
+ * Stack of the {@link KDTreeNode}s of a {@link KDTree} still to be visited by
+ * a search, with the squared distances of the query to the split planes of
+ * their parents, see {@link SearchStack}.
+ */
+final class NodeStack< T >
+{
+	int size;
+
+	KDTreeNode< T >[] nodes;
+
+	double[] squDistances;
+
+	/**
+	 * Create a stack for searching a balanced tree of {@code numPoints}
+	 * points.
+	 */
+	@SuppressWarnings( "unchecked" )
+	NodeStack( final long numPoints )
+	{
+		final int capacity = 2 + 2 * ( 64 - Long.numberOfLeadingZeros( numPoints ) );
+		nodes = ( KDTreeNode< T >[] ) new KDTreeNode< ? >[ capacity ];
+		squDistances = new double[ capacity ];
+	}
+
+	void push( final KDTreeNode< T > node, final double squDistance )
+	{
+		if ( size == nodes.length )
+		{
+			nodes = Arrays.copyOf( nodes, 2 * size );
+			squDistances = Arrays.copyOf( squDistances, 2 * size );
+		}
+		nodes[ size ] = node;
+		squDistances[ size ] = squDistance;
+		++size;
+	}
+
+	/**
+	 * Remove and return the top node. Its squared distance remains available
+	 * at {@code squDistances[ size ]}.
+	 */
+	KDTreeNode< T > pop()
+	{
+		return nodes[ --size ];
+	}
+}
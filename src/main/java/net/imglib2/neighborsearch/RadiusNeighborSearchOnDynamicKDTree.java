@@ -0,0 +1,221 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2018 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.neighborsearch;
+
+import java.util.Arrays;
+
+import net.imglib2.DynamicKDTree;
+import net.imglib2.FlatKDTree;
+import net.imglib2.RealLocalizable;
+import net.imglib2.Sampler;
+
+/**
+ * Implementation of {@link RadiusNeighborSearch} search for
+ * {@link DynamicKDTree}s. Buffered points are compared exhaustively, the tree
+ * of each level is traversed like in {@link RadiusNeighborSearchOnFlatKDTree}
+ * skipping removed points.
+ * <p>
+ * The {@link Sampler}s and {@link RealLocalizable}s returned for the results
+ * are reused and point to the new results after the next {@link #search}. For
+ * {@code i >= }{@link #numNeighbors()} they are {@code null}.
+ * </p>
+ */
+public class RadiusNeighborSearchOnDynamicKDTree< T > implements RadiusNeighborSearch< T >
+{
+	protected final DynamicKDTree< T > tree;
+
+	protected final int n;
+
+	protected final double[] pos;
+
+	protected int numNeighbors;
+
+	protected int[] resultIds = new int[ 16 ];
+
+	protected double[] resultSquDistances = new double[ 16 ];
+
+	protected DynamicKDTree< T >.Entry[] resultPoints;
+
+	/**
+	 * nodes still to visit, sized for the deepest possible level.
+	 */
+	private final SearchStack stack = new SearchStack( Integer.MAX_VALUE );
+
+	@SuppressWarnings( "unchecked" )
+	public RadiusNeighborSearchOnDynamicKDTree( final DynamicKDTree< T > tree )
+	{
+		this.tree = tree;
+		this.n = tree.numDimensions();
+		this.pos = new double[ n ];
+		this.resultPoints = ( DynamicKDTree< T >.Entry[] ) new DynamicKDTree< ? >.Entry[ 0 ];
+	}
+
+	@Override
+	public void search( final RealLocalizable reference, final double radius, final boolean sortResults )
+	{
+		assert radius >= 0;
+		reference.localize( pos );
+		numNeighbors = 0;
+		final double squRadius = radius * radius;
+		for ( int i = 0; i < tree.bufferSize(); ++i )
+		{
+			final int id = tree.getBufferId( i );
+			final double squDistance = tree.squDistance( id, pos );
+			if ( squDistance <= squRadius )
+				add( id, squDistance );
+		}
+		for ( int level = 0; level < tree.numLevels(); ++level )
+		{
+			final FlatKDTree< T > levelTree = tree.getTree( level );
+			if ( levelTree != null )
+				searchTree( levelTree, tree.getIds( level ), squRadius );
+		}
+		if ( sortResults )
+			DistanceOrder.sort( resultSquDistances, resultIds, 0, numNeighbors );
+	}
+
+	@Override
+	public int numDimensions()
+	{
+		return n;
+	}
+
+	/**
+	 * Search one level. {@code ids[ levelTree.getIndex( node ) ]} is the id of
+	 * the point at {@code node}.
+	 */
+	private void searchTree( final FlatKDTree< T > levelTree, final int[] ids, final double squRadius )
+	{
+		final double[] positions = levelTree.getPositions();
+		final int size = levelTree.numPoints();
+		stack.size = 0;
+		stack.push( 0, 0, 0 );
+		while ( stack.size > 0 )
+		{
+			final int top = --stack.size;
+			int current = stack.nodes[ top ];
+			int dCurrent = stack.dimensions[ top ];
+			while ( current < size )
+			{
+				// consider the current node, unless it has been removed
+				final double squDistance = levelTree.squDistance( current, pos );
+				if ( squDistance <= squRadius )
+				{
+					final int id = ids[ levelTree.getIndex( current ) ];
+					if ( tree.contains( id ) )
+						add( id, squDistance );
+				}
+
+				final double axisDiff = pos[ dCurrent ] - positions[ current * n + dCurrent ];
+				final boolean leftIsNearBranch = axisDiff < 0;
+				final int left = 2 * current + 1;
+				dCurrent = ( dCurrent + 1 == n ) ? 0 : dCurrent + 1;
+
+				// search the away branch later - maybe
+				final int awayChild = leftIsNearBranch ? left + 1 : left;
+				if ( awayChild < size && axisDiff * axisDiff <= squRadius )
+					stack.push( awayChild, dCurrent, 0 );
+
+				// search the near branch
+				current = leftIsNearBranch ? left : left + 1;
+			}
+		}
+	}
+
+	private void add( final int id, final double squDistance )
+	{
+		if ( numNeighbors == resultIds.length )
+		{
+			final int capacity = 2 * numNeighbors;
+			resultIds = Arrays.copyOf( resultIds, capacity );
+			resultSquDistances = Arrays.copyOf( resultSquDistances, capacity );
+		}
+		resultIds[ numNeighbors ] = id;
+		resultSquDistances[ numNeighbors ] = squDistance;
+		++numNeighbors;
+	}
+
+	@Override
+	public int numNeighbors()
+	{
+		return numNeighbors;
+	}
+
+	private DynamicKDTree< T >.Entry point( final int i )
+	{
+		if ( i >= resultPoints.length )
+		{
+			final int oldLength = resultPoints.length;
+			resultPoints = Arrays.copyOf( resultPoints, Math.max( i + 1, 2 * oldLength ) );
+			for ( int j = oldLength; j < resultPoints.length; ++j )
+				resultPoints[ j ] = tree.createEntry();
+		}
+		final DynamicKDTree< T >.Entry point = resultPoints[ i ];
+		point.setId( resultIds[ i ] );
+		return point;
+	}
+
+	@Override
+	public Sampler< T > getSampler( final int i )
+	{
+		return i < numNeighbors ? point( i ) : null;
+	}
+
+	@Override
+	public RealLocalizable getPosition( final int i )
+	{
+		return i < numNeighbors ? point( i ) : null;
+	}
+
+	@Override
+	public double getSquareDistance( final int i )
+	{
+		return resultSquDistances[ i ];
+	}
+
+	@Override
+	public double getDistance( final int i )
+	{
+		return Math.sqrt( resultSquDistances[ i ] );
+	}
+
+	/**
+	 * @return the id of the i-th neighbor.
+	 */
+	public int getId( final int i )
+	{
+		return resultIds[ i ];
+	}
+}
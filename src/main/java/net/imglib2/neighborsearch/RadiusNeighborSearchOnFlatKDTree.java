@@ -0,0 +1,209 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2018 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.neighborsearch;
+
+import java.util.Arrays;
+
+import net.imglib2.FlatKDTree;
+import net.imglib2.RealLocalizable;
+import net.imglib2.Sampler;
+
+/**
+ * Implementation of {@link RadiusNeighborSearch} search for
+ * {@link FlatKDTree}s. The tree is traversed iteratively using a
+ * preallocated stack, and results are collected in primitive arrays that grow
+ * as needed and are reused across searches.
+ * <p>
+ * The {@link Sampler}s and {@link RealLocalizable}s returned for the results
+ * are reused and point to the new results after the next {@link #search}.
+ * </p>
+ */
+public class RadiusNeighborSearchOnFlatKDTree< T > implements RadiusNeighborSearch< T >
+{
+	protected final FlatKDTree< T > tree;
+
+	protected final int n;
+
+	protected final double[] pos;
+
+	protected final double[] positions;
+
+	protected final int size;
+
+	protected int numNeighbors;
+
+	protected int[] resultNodes = new int[ 16 ];
+
+	protected double[] resultSquDistances = new double[ 16 ];
+
+	protected FlatKDTree< T >.Node[] resultPoints;
+
+	/**
+	 * nodes still to visit.
+	 */
+	private final SearchStack stack;
+
+	@SuppressWarnings( "unchecked" )
+	public RadiusNeighborSearchOnFlatKDTree( final FlatKDTree< T > tree )
+	{
+		this.tree = tree;
+		this.n = tree.numDimensions();
+		this.pos = new double[ n ];
+		this.positions = tree.getPositions();
+		this.size = tree.numPoints();
+		this.resultPoints = ( FlatKDTree< T >.Node[] ) new FlatKDTree< ? >.Node[ 0 ];
+		this.stack = new SearchStack( size );
+	}
+
+	@Override
+	public void search( final RealLocalizable reference, final double radius, final boolean sortResults )
+	{
+		assert radius >= 0;
+		reference.localize( pos );
+		numNeighbors = 0;
+		searchNode( 0, 0, radius * radius );
+		if ( sortResults )
+			DistanceOrder.sort( resultSquDistances, resultNodes, 0, numNeighbors );
+	}
+
+	@Override
+	public int numDimensions()
+	{
+		return n;
+	}
+
+	/**
+	 * Collect all nodes of the subtree rooted at {@code root}, which splits
+	 * along dimension {@code d}, within {@code sqrt( squRadius )} of the
+	 * query. The near branch of each node is descended immediately, the away
+	 * branch is pushed onto the stack if its split plane is within the radius.
+	 */
+	protected void searchNode( final int root, final int d, final double squRadius )
+	{
+		stack.size = 0;
+		stack.push( root, d, 0 );
+		while ( stack.size > 0 )
+		{
+			final int top = --stack.size;
+			int current = stack.nodes[ top ];
+			int dCurrent = stack.dimensions[ top ];
+			while ( current < size )
+			{
+				// consider the current node
+				final double squDistance = tree.squDistance( current, pos );
+				if ( squDistance <= squRadius )
+					add( current, squDistance );
+
+				final double axisDiff = pos[ dCurrent ] - positions[ current * n + dCurrent ];
+				final boolean leftIsNearBranch = axisDiff < 0;
+				final int left = 2 * current + 1;
+				dCurrent = ( dCurrent + 1 == n ) ? 0 : dCurrent + 1;
+
+				// search the away branch later - maybe
+				final int awayChild = leftIsNearBranch ? left + 1 : left;
+				if ( awayChild < size && axisDiff * axisDiff <= squRadius )
+					stack.push( awayChild, dCurrent, 0 );
+
+				// search the near branch
+				current = leftIsNearBranch ? left : left + 1;
+			}
+		}
+	}
+
+	private void add( final int node, final double squDistance )
+	{
+		if ( numNeighbors == resultNodes.length )
+		{
+			final int capacity = 2 * numNeighbors;
+			resultNodes = Arrays.copyOf( resultNodes, capacity );
+			resultSquDistances = Arrays.copyOf( resultSquDistances, capacity );
+		}
+		resultNodes[ numNeighbors ] = node;
+		resultSquDistances[ numNeighbors ] = squDistance;
+		++numNeighbors;
+	}
+
+	@Override
+	public int numNeighbors()
+	{
+		return numNeighbors;
+	}
+
+	private FlatKDTree< T >.Node point( final int i )
+	{
+		if ( i >= resultPoints.length )
+		{
+			final int oldLength = resultPoints.length;
+			resultPoints = Arrays.copyOf( resultPoints, Math.max( i + 1, 2 * oldLength ) );
+			for ( int j = oldLength; j < resultPoints.length; ++j )
+				resultPoints[ j ] = tree.createNode();
+		}
+		final FlatKDTree< T >.Node point = resultPoints[ i ];
+		point.setNode( resultNodes[ i ] );
+		return point;
+	}
+
+	@Override
+	public Sampler< T > getSampler( final int i )
+	{
+		return point( i );
+	}
+
+	@Override
+	public RealLocalizable getPosition( final int i )
+	{
+		return point( i );
+	}
+
+	@Override
+	public double getSquareDistance( final int i )
+	{
+		return resultSquDistances[ i ];
+	}
+
+	@Override
+	public double getDistance( final int i )
+	{
+		return Math.sqrt( resultSquDistances[ i ] );
+	}
+
+	/**
+	 * @return the index into the list of values of the i-th neighbor.
+	 */
+	public int getIndex( final int i )
+	{
+		return tree.getIndex( resultNodes[ i ] );
+	}
+}
@@ -34,18 +34,23 @@
 
 package net.imglib2.neighborsearch;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
+import java.util.Arrays;
 
 import net.imglib2.KDTree;
 import net.imglib2.KDTreeNode;
 import net.imglib2.RealLocalizable;
 import net.imglib2.Sampler;
-import net.imglib2.util.ValuePair;
 
 /**
  * Implementation of {@link RadiusNeighborSearch} search for kd-trees.
+ * <p>
+ * The tree is traversed iteratively using a preallocated stack, and results
+ * are collected in arrays of nodes and squared distances that grow as needed
+ * and are reused across searches. The former protected {@code resultPoints}
+ * list and {@code searchNode} method have been removed; subclasses access the
+ * results through {@link #numNeighbors()}, {@link #getSampler(int)}, and
+ * {@link #getSquareDistance(int)}.
+ * </p>
  * 
  * @author Tobias Pietzsch
  */
@@ -57,14 +62,26 @@ public class RadiusNeighborSearchOnKDTree< T > implements RadiusNeighborSearch<
 
 	protected final double[] pos;
 
-	protected ArrayList< ValuePair< KDTreeNode< T >, Double > > resultPoints;
+	private int numNeighbors;
 
+	private KDTreeNode< T >[] resultNodes;
+
+	private double[] resultSquDistances;
+
+	/**
+	 * nodes still to visit.
+	 */
+	private final NodeStack< T > stack;
+
+	@SuppressWarnings( "unchecked" )
 	public RadiusNeighborSearchOnKDTree( final KDTree< T > tree )
 	{
 		this.tree = tree;
 		this.n = tree.numDimensions();
 		this.pos = new double[ n ];
-		this.resultPoints = new ArrayList< ValuePair< KDTreeNode< T >, Double > >();
+		this.resultNodes = ( KDTreeNode< T >[] ) new KDTreeNode< ? >[ 16 ];
+		this.resultSquDistances = new double[ 16 ];
+		this.stack = new NodeStack<>( tree.size() );
 	}
 
 	@Override
@@ -72,19 +89,11 @@ public class RadiusNeighborSearchOnKDTree< T > implements RadiusNeighborSearch<
 	{
 		assert radius >= 0;
 		reference.localize( pos );
-		resultPoints.clear();
+		Arrays.fill( resultNodes, 0, numNeighbors, null );
+		numNeighbors = 0;
 		searchNode( tree.getRoot(), radius * radius );
 		if ( sortResults )
-		{
-			Collections.sort( resultPoints, new Comparator< ValuePair< KDTreeNode< T >, Double > >()
-			{
-				@Override
-				public int compare( final ValuePair< KDTreeNode< T >, Double > o1, final ValuePair< KDTreeNode< T >, Double > o2 )
-				{
-					return Double.compare( o1.b, o2.b );
-				}
-			} );
-		}
+			DistanceOrder.sort( resultSquDistances, resultNodes, 0, numNeighbors );
 	}
 
 	@Override
@@ -93,57 +102,79 @@ public class RadiusNeighborSearchOnKDTree< T > implements RadiusNeighborSearch<
 		return n;
 	}
 
-	protected void searchNode( final KDTreeNode< T > current, final double squRadius )
+	/**
+	 * Collect all nodes of the subtree rooted at {@code root} within
+	 * {@code sqrt( squRadius )} of the query. The near branch of each node is
+	 * descended immediately, the away branch is pushed onto the stack if its
+	 * split plane is within the radius.
+	 */
+	private void searchNode( final KDTreeNode< T > root, final double squRadius )
 	{
-		// consider the current node
-		final double squDistance = current.squDistanceTo( pos );
-		if ( squDistance <= squRadius )
+		stack.size = 0;
+		stack.push( root, 0 );
+		while ( stack.size > 0 )
 		{
-			resultPoints.add( new ValuePair< KDTreeNode< T >, Double >( current, squDistance ) );
+			KDTreeNode< T > current = stack.pop();
+			while ( current != null )
+			{
+				// consider the current node
+				final double squDistance = current.squDistanceTo( pos );
+				if ( squDistance <= squRadius )
+					add( current, squDistance );
+
+				final double axisDiff = pos[ current.getSplitDimension() ] - current.getSplitCoordinate();
+				final boolean leftIsNearBranch = axisDiff < 0;
+
+				// search the away branch later - maybe
+				final KDTreeNode< T > awayChild = leftIsNearBranch ? current.right : current.left;
+				if ( awayChild != null && axisDiff * axisDiff <= squRadius )
+					stack.push( awayChild, 0 );
+
+				// search the near branch
+				current = leftIsNearBranch ? current.left : current.right;
+			}
 		}
+	}
 
-		final double axisDiff = pos[ current.getSplitDimension() ] - current.getSplitCoordinate();
-		final double axisSquDistance = axisDiff * axisDiff;
-		final boolean leftIsNearBranch = axisDiff < 0;
-
-		// search the near branch
-		final KDTreeNode< T > nearChild = leftIsNearBranch ? current.left : current.right;
-		final KDTreeNode< T > awayChild = leftIsNearBranch ? current.right : current.left;
-		if ( nearChild != null )
-			searchNode( nearChild, squRadius );
-
-		// search the away branch - maybe
-		if ( ( axisSquDistance <= squRadius ) && ( awayChild != null ) )
-			searchNode( awayChild, squRadius );
+	private void add( final KDTreeNode< T > node, final double squDistance )
+	{
+		if ( numNeighbors == resultNodes.length )
+		{
+			resultNodes = Arrays.copyOf( resultNodes, 2 * numNeighbors );
+			resultSquDistances = Arrays.copyOf( resultSquDistances, 2 * numNeighbors );
+		}
+		resultNodes[ numNeighbors ] = node;
+		resultSquDistances[ numNeighbors ] = squDistance;
+		++numNeighbors;
 	}
 
 	@Override
 	public int numNeighbors()
 	{
-		return resultPoints.size();
+		return numNeighbors;
 	}
 
 	@Override
 	public Sampler< T > getSampler( final int i )
 	{
-		return resultPoints.get( i ).a;
+		return resultNodes[ i ];
 	}
 
 	@Override
 	public RealLocalizable getPosition( final int i )
 	{
-		return resultPoints.get( i ).a;
+		return resultNodes[ i ];
 	}
 
 	@Override
 	public double getSquareDistance( final int i )
 	{
-		return resultPoints.get( i ).b;
+		return resultSquDistances[ i ];
 	}
 
 	@Override
 	public double getDistance( final int i )
 	{
-		return Math.sqrt( resultPoints.get( i ).b );
+		return Math.sqrt( resultSquDistances[ i ] );
 	}
 }
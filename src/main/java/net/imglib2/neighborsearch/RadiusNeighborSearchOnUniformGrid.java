@@ -0,0 +1,210 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2018 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.neighborsearch;
+
+import java.util.Arrays;
+
+import net.imglib2.RealLocalizable;
+import net.imglib2.Sampler;
+import net.imglib2.UniformGrid;
+
+/**
+ * Implementation of {@link RadiusNeighborSearch} search for
+ * {@link UniformGrid}s. All cells overlapping the bounding box of the query
+ * sphere are scanned, one contiguous run of cells along dimension 0 at a time.
+ * Results are collected in primitive arrays that grow as needed and are reused
+ * across searches.
+ * <p>
+ * The {@link Sampler}s and {@link RealLocalizable}s returned for the results
+ * are reused and point to the new results after the next {@link #search}.
+ * </p>
+ */
+public class RadiusNeighborSearchOnUniformGrid< T > implements RadiusNeighborSearch< T >
+{
+	protected final UniformGrid< T > grid;
+
+	protected final int n;
+
+	protected final double[] pos;
+
+	protected int numNeighbors;
+
+	protected int[] resultPoints = new int[ 16 ];
+
+	protected double[] resultSquDistances = new double[ 16 ];
+
+	protected UniformGrid< T >.Entry[] resultEntries;
+
+	private final int[] min;
+
+	private final int[] max;
+
+	private final int[] cell;
+
+	@SuppressWarnings( "unchecked" )
+	public RadiusNeighborSearchOnUniformGrid( final UniformGrid< T > grid )
+	{
+		this.grid = grid;
+		this.n = grid.numDimensions();
+		this.pos = new double[ n ];
+		this.resultEntries = ( UniformGrid< T >.Entry[] ) new UniformGrid< ? >.Entry[ 0 ];
+		this.min = new int[ n ];
+		this.max = new int[ n ];
+		this.cell = new int[ n ];
+	}
+
+	@Override
+	public void search( final RealLocalizable reference, final double radius, final boolean sortResults )
+	{
+		assert radius >= 0;
+		reference.localize( pos );
+		numNeighbors = 0;
+		if ( grid.numPoints() == 0 )
+			return;
+
+		for ( int d = 0; d < n; ++d )
+		{
+			final long lo = grid.cellCoordinate( pos[ d ] - radius, d );
+			final long hi = grid.cellCoordinate( pos[ d ] + radius, d );
+			if ( hi < 0 || lo >= grid.getGridDimension( d ) )
+				return;
+			min[ d ] = ( int ) Math.max( lo, 0 );
+			max[ d ] = ( int ) Math.min( hi, grid.getGridDimension( d ) - 1 );
+		}
+
+		final double squRadius = radius * radius;
+		System.arraycopy( min, 0, cell, 0, n );
+		while ( true )
+		{
+			// offset of the current row of cells along dimension 0
+			int row = 0;
+			for ( int d = n - 1; d > 0; --d )
+				row = ( row + cell[ d ] ) * grid.getGridDimension( d - 1 );
+			final int to = grid.getCellStart( row + max[ 0 ] + 1 );
+			for ( int k = grid.getCellStart( row + min[ 0 ] ); k < to; ++k )
+			{
+				final double squDistance = grid.squDistance( k, pos );
+				if ( squDistance <= squRadius )
+					add( k, squDistance );
+			}
+
+			// next row
+			int d = 1;
+			for ( ; d < n; ++d )
+			{
+				if ( ++cell[ d ] <= max[ d ] )
+					break;
+				cell[ d ] = min[ d ];
+			}
+			if ( d >= n )
+				break;
+		}
+
+		if ( sortResults )
+			DistanceOrder.sort( resultSquDistances, resultPoints, 0, numNeighbors );
+	}
+
+	@Override
+	public int numDimensions()
+	{
+		return n;
+	}
+
+	private void add( final int k, final double squDistance )
+	{
+		if ( numNeighbors == resultPoints.length )
+		{
+			final int capacity = 2 * numNeighbors;
+			resultPoints = Arrays.copyOf( resultPoints, capacity );
+			resultSquDistances = Arrays.copyOf( resultSquDistances, capacity );
+		}
+		resultPoints[ numNeighbors ] = k;
+		resultSquDistances[ numNeighbors ] = squDistance;
+		++numNeighbors;
+	}
+
+	@Override
+	public int numNeighbors()
+	{
+		return numNeighbors;
+	}
+
+	private UniformGrid< T >.Entry entry( final int i )
+	{
+		if ( i >= resultEntries.length )
+		{
+			final int oldLength = resultEntries.length;
+			resultEntries = Arrays.copyOf( resultEntries, Math.max( i + 1, 2 * oldLength ) );
+			for ( int j = oldLength; j < resultEntries.length; ++j )
+				resultEntries[ j ] = grid.createEntry();
+		}
+		final UniformGrid< T >.Entry entry = resultEntries[ i ];
+		entry.setPoint( resultPoints[ i ] );
+		return entry;
+	}
+
+	@Override
+	public Sampler< T > getSampler( final int i )
+	{
+		return entry( i );
+	}
+
+	@Override
+	public RealLocalizable getPosition( final int i )
+	{
+		return entry( i );
+	}
+
+	@Override
+	public double getSquareDistance( final int i )
+	{
+		return resultSquDistances[ i ];
+	}
+
+	@Override
+	public double getDistance( final int i )
+	{
+		return Math.sqrt( resultSquDistances[ i ] );
+	}
+
+	/**
+	 * @return the index (in iteration order of the source) of the i-th
+	 *         neighbor.
+	 */
+	public int getIndex( final int i )
+	{
+		return grid.getIndex( resultPoints[ i ] );
+	}
+}
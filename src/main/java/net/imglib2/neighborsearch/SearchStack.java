@@ -0,0 +1,83 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2018 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.neighborsearch;
+
+import java.util.Arrays;
+
+import net.imglib2.FlatKDTree;
+
+/**
+ * Stack of the nodes of a {@link FlatKDTree} still to be visited by a search,
+ * with their split dimensions and the squared distances of the query to the
+ * split planes of their parents. Searches descend the near branch of each node
+ * directly and push the away branch. The stack grows if the tree is deeper
+ * than expected.
+ */
+final class SearchStack
+{
+	int size;
+
+	int[] nodes;
+
+	int[] dimensions;
+
+	double[] squDistances;
+
+	/**
+	 * Create a stack for searching a balanced tree of {@code numPoints}
+	 * points.
+	 */
+	SearchStack( final int numPoints )
+	{
+		final int capacity = 2 + 2 * ( 32 - Integer.numberOfLeadingZeros( numPoints ) );
+		nodes = new int[ capacity ];
+		dimensions = new int[ capacity ];
+		squDistances = new double[ capacity ];
+	}
+
+	void push( final int node, final int d, final double squDistance )
+	{
+		if ( size == nodes.length )
+		{
+			nodes = Arrays.copyOf( nodes, 2 * size );
+			dimensions = Arrays.copyOf( dimensions, 2 * size );
+			squDistances = Arrays.copyOf( squDistances, 2 * size );
+		}
+		nodes[ size ] = node;
+		dimensions[ size ] = d;
+		squDistances[ size ] = squDistance;
+		++size;
+	}
+}
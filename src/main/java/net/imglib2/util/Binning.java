@@ -34,6 +34,14 @@
 
 package net.imglib2.util;
 
+import java.util.Arrays;
+
+import net.imglib2.IterableInterval;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.cell.AbstractCellImg;
+import net.imglib2.img.planar.PlanarImg;
+import net.imglib2.type.numeric.RealType;
+
 /**
  * Static utility methods to convert from a value to a bin, useful for dealing
  * with histograms and LUTs.
@@ -42,6 +50,11 @@ package net.imglib2.util;
  */
 public class Binning
 {
+	/**
+	 * Number of values converted at a time by
+	 * {@link #valuesToBins(int, double, double, IterableInterval, int[])}.
+	 */
+	private static final int BLOCK_SIZE = 4096;
 
 	// -- Utility methods --
 
@@ -98,6 +111,102 @@ public class Binning
 		return bin;
 	}
 
+	/**
+	 * Convert values to bin numbers, see
+	 * {@link #valuesToBins(int, double, double, double[], int, int, int[], int)}.
+	 *
+	 * @return bin numbers 0...(bins-1), one per value
+	 */
+	public static int[] valuesToBins( final int bins, final double min, final double max, final double[] values )
+	{
+		final int[] result = new int[ values.length ];
+		valuesToBins( bins, min, max, values, 0, values.length, result, 0 );
+		return result;
+	}
+
+	/**
+	 * Convert values to bin numbers, see
+	 * {@link #valuesToBins(int, double, double, double[], int, int, int[], int)}.
+	 *
+	 * @return bin numbers 0...(bins-1), one per value
+	 */
+	public static int[] valuesToBins( final int bins, final double min, final double max, final float[] values )
+	{
+		final int[] result = new int[ values.length ];
+		valuesToBins( bins, min, max, values, 0, values.length, result, 0 );
+		return result;
+	}
+
+	/**
+	 * Convert the values from index {@code from} (inclusive) to {@code to}
+	 * (exclusive) to bin numbers, and store them in {@code result} starting at
+	 * index {@code offset}.
+	 * <p>
+	 * Like {@link #valueToBin(int, double, double, double)}, this variant is
+	 * inclusive, it assigns all values to the range 0..(bins-1). The scale from
+	 * values to bins is computed once, and the loop has no branches. A value
+	 * within rounding error of a bin edge may therefore be assigned to the
+	 * neighboring bin of the one returned by
+	 * {@link #valueToBin(int, double, double, double)}.
+	 * </p>
+	 */
+	public static void valuesToBins( final int bins, final double min, final double max, final double[] values, final int from, final int to, final int[] result, final int offset )
+	{
+		if ( max == min )
+		{
+			Arrays.fill( result, offset, offset + to - from, bins / 2 );
+			return;
+		}
+		final double scale = bins / ( max - min );
+		final int last = bins - 1;
+		for ( int i = from, j = offset; i < to; ++i, ++j )
+			result[ j ] = Math.min( Math.max( ( int ) Math.floor( ( values[ i ] - min ) * scale ), 0 ), last );
+	}
+
+	/**
+	 * Convert the values from index {@code from} (inclusive) to {@code to}
+	 * (exclusive) to bin numbers, and store them in {@code result} starting at
+	 * index {@code offset}, see
+	 * {@link #valuesToBins(int, double, double, double[], int, int, int[], int)}.
+	 */
+	public static void valuesToBins( final int bins, final double min, final double max, final float[] values, final int from, final int to, final int[] result, final int offset )
+	{
+		if ( max == min )
+		{
+			Arrays.fill( result, offset, offset + to - from, bins / 2 );
+			return;
+		}
+		final double scale = bins / ( max - min );
+		final int last = bins - 1;
+		for ( int i = from, j = offset; i < to; ++i, ++j )
+			result[ j ] = Math.min( Math.max( ( int ) Math.floor( ( values[ i ] - min ) * scale ), 0 ), last );
+	}
+
+	/**
+	 * Convert all values of {@code data} to bin numbers, and store them in
+	 * {@code result} in iteration order, see
+	 * {@link #valuesToBins(int, double, double, double[], int, int, int[], int)}.
+	 * The storage arrays of {@link ArrayImg}, {@link PlanarImg}, and
+	 * {@link AbstractCellImg} of the standard real types are read directly.
+	 *
+	 * @param result
+	 *            must have at least {@code data.size()} elements
+	 */
+	public static void valuesToBins( final int bins, final double min, final double max, final IterableInterval< ? extends RealType< ? > > data, final int[] result )
+	{
+		if ( data.size() > result.length )
+			throw new IllegalArgumentException( "result array is too small for " + data.size() + " values" );
+		final PrimitiveStorage.Chunks chunks = new PrimitiveStorage.Chunks( data, BLOCK_SIZE, PrimitiveStorage.Kind.FLOAT, PrimitiveStorage.Kind.DOUBLE );
+		final int[] offset = { 0 };
+		chunks.forEach( 0, data.size(), ( values, from, to ) -> {
+			if ( values instanceof float[] )
+				valuesToBins( bins, min, max, ( float[] ) values, from, to, result, offset[ 0 ] );
+			else
+				valuesToBins( bins, min, max, ( double[] ) values, from, to, result, offset[ 0 ] );
+			offset[ 0 ] += to - from;
+		} );
+	}
+
 	/**
 	 * Returns array of left edge values for each bin.
 	 */
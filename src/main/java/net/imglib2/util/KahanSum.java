@@ -0,0 +1,155 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2018 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.util;
+
+/**
+ * {@link KahanSum} sums double precision numbers with compensation: the
+ * rounding error of each addition is accumulated separately and added to the
+ * sum at the end. The Neumaier variant of Kahan summation is used, which also
+ * compensates when the summand is larger than the running sum. The error is
+ * independent of the number of summands, at the cost of a few additional
+ * floating point operations per element, and no memory besides two doubles.
+ * <p>
+ * Partial sums can be merged with {@link #add(KahanSum)}, e.g., to combine the
+ * results of parallel summation.
+ * </p>
+ *
+ * @see RealSum
+ * @see Sums
+ */
+public class KahanSum
+{
+	private double sum;
+
+	private double compensation;
+
+	/**
+	 * Create a new {@link KahanSum} with sum 0.
+	 */
+	public KahanSum()
+	{
+		sum = 0;
+		compensation = 0;
+	}
+
+	/**
+	 * Get the current sum.
+	 */
+	public double getSum()
+	{
+		return sum + compensation;
+	}
+
+	/**
+	 * Reset the sum to 0.
+	 */
+	public void reset()
+	{
+		sum = 0;
+		compensation = 0;
+	}
+
+	/**
+	 * Add an element to the sum.
+	 *
+	 * @param a
+	 *            the summand to be added
+	 */
+	public void add( final double a )
+	{
+		final double t = sum + a;
+		if ( Math.abs( sum ) >= Math.abs( a ) )
+			compensation += ( sum - t ) + a;
+		else
+			compensation += ( a - t ) + sum;
+		sum = t;
+	}
+
+	/**
+	 * Add the elements of {@code values} from index {@code from} (inclusive)
+	 * to {@code to} (exclusive).
+	 */
+	public void add( final double[] values, final int from, final int to )
+	{
+		double s = sum;
+		double c = compensation;
+		for ( int i = from; i < to; ++i )
+		{
+			final double a = values[ i ];
+			final double t = s + a;
+			if ( Math.abs( s ) >= Math.abs( a ) )
+				c += ( s - t ) + a;
+			else
+				c += ( a - t ) + s;
+			s = t;
+		}
+		sum = s;
+		compensation = c;
+	}
+
+	/**
+	 * Add the elements of {@code values} from index {@code from} (inclusive)
+	 * to {@code to} (exclusive).
+	 */
+	public void add( final float[] values, final int from, final int to )
+	{
+		double s = sum;
+		double c = compensation;
+		for ( int i = from; i < to; ++i )
+		{
+			final double a = values[ i ];
+			final double t = s + a;
+			if ( Math.abs( s ) >= Math.abs( a ) )
+				c += ( s - t ) + a;
+			else
+				c += ( a - t ) + s;
+			s = t;
+		}
+		sum = s;
+		compensation = c;
+	}
+
+	/**
+	 * Add the sum of {@code other}, including its compensation.
+	 *
+	 * @param other
+	 *            the sum to be added, not modified
+	 */
+	public void add( final KahanSum other )
+	{
+		add( other.sum );
+		compensation += other.compensation;
+	}
+}
@@ -39,13 +39,37 @@ import static net.imglib2.util.Partition.partitionSubList;
 import java.util.Comparator;
 import java.util.List;
 import java.util.ListIterator;
+import java.util.concurrent.ExecutorService;
 
 /**
- * TODO
- *
+ * Selection of the k-th smallest element of an array or list.
+ * <p>
+ * For primitive arrays, introselect is used: quickselect with a median of
+ * three (or nine) pivot and three-way partitioning, which handles many equal
+ * values efficiently. If the partitioning does not converge quickly, e.g. for
+ * adversarial inputs, pivots are chosen by the median-of-medians method,
+ * which guarantees linear time in the worst case. Very large primitive arrays
+ * can be partitioned in parallel.
+ * </p>
  */
 public class KthElement
 {
+	/**
+	 * Subarrays with fewer elements are sorted by insertion sort.
+	 */
+	private static final int INSERTION_SORT_THRESHOLD = 16;
+
+	/**
+	 * Pivots of subarrays with at least this many elements are the median of
+	 * nine samples instead of three.
+	 */
+	private static final int NINTHER_THRESHOLD = 128;
+
+	/**
+	 * Subarrays with more elements are partitioned in parallel by the
+	 * {@code kthElement} overloads that take an {@link ExecutorService}.
+	 */
+	public static final int PARALLEL_THRESHOLD = 1 << 20;
 	/**
 	 * Partition a subarray of {@code values} such that the k-th smallest value
 	 * is at position {@code k}, elements before the k-th are smaller or equal
@@ -60,24 +84,9 @@ public class KthElement
 	 * @param values
 	 *            array
 	 */
-	public static void kthElement( int i, int j, final int k, final byte[] values )
+	public static void kthElement( final int i, final int j, final int k, final byte[] values )
 	{
-		while ( true )
-		{
-			final int pivotpos = partitionSubList( i, j, values );
-			if ( pivotpos > k )
-			{
-				// partition lower half
-				j = pivotpos - 1;
-			}
-			else if ( pivotpos < k )
-			{
-				// partition upper half
-				i = pivotpos + 1;
-			}
-			else
-				return;
-		}
+		select( i, j, k, values, 2 * ( 32 - Integer.numberOfLeadingZeros( j - i + 1 ) ) );
 	}
 
 	/**
@@ -99,6 +108,12 @@ public class KthElement
 	 * Partition a subarray of {@code values} such that the k-th smallest value
 	 * is at position {@code k}, elements before the k-th are smaller or equal
 	 * and elements after the k-th are larger or equal.
+	 * <p>
+	 * While the subarray has more than {@link #PARALLEL_THRESHOLD} elements,
+	 * it is partitioned in parallel by {@code executor}, using a temporary
+	 * array of the size of the subarray. Smaller subarrays are processed in
+	 * the calling thread.
+	 * </p>
 	 *
 	 * @param i
 	 *            index of first element of subarray
@@ -108,25 +123,47 @@ public class KthElement
 	 *            index for k-th smallest value. {@code i <= k <= j}.
 	 * @param values
 	 *            array
+	 * @param executor
+	 *            used to partition large subarrays
 	 */
-	public static void kthElement( int i, int j, final int k, final short[] values )
+	public static void kthElement( int i, int j, final int k, final byte[] values, final ExecutorService executor )
 	{
-		while ( true )
+		final int[] range = new int[ 2 ];
+		while ( j - i >= PARALLEL_THRESHOLD )
 		{
-			final int pivotpos = partitionSubList( i, j, values );
-			if ( pivotpos > k )
-			{
-				// partition lower half
-				j = pivotpos - 1;
-			}
-			else if ( pivotpos < k )
-			{
-				// partition upper half
-				i = pivotpos + 1;
-			}
+			final int size = j - i + 1;
+			partitionSubList( i, j, values[ pivot( i, j, values ) ], values, range, executor );
+			if ( k < range[ 0 ] )
+				j = range[ 0 ] - 1;
+			else if ( k > range[ 1 ] )
+				i = range[ 1 ] + 1;
 			else
 				return;
+			// continue serially with a guaranteed linear worst case if the
+			// pivot was bad
+			if ( 4 * ( long ) ( j - i + 1 ) > 3 * ( long ) size )
+				break;
 		}
+		kthElement( i, j, k, values );
+	}
+
+	/**
+	 * Partition a subarray of {@code values} such that the k-th smallest value
+	 * is at position {@code k}, elements before the k-th are smaller or equal
+	 * and elements after the k-th are larger or equal.
+	 *
+	 * @param i
+	 *            index of first element of subarray
+	 * @param j
+	 *            index of last element of subarray
+	 * @param k
+	 *            index for k-th smallest value. {@code i <= k <= j}.
+	 * @param values
+	 *            array
+	 */
+	public static void kthElement( final int i, final int j, final int k, final short[] values )
+	{
+		select( i, j, k, values, 2 * ( 32 - Integer.numberOfLeadingZeros( j - i + 1 ) ) );
 	}
 
 	/**
@@ -148,6 +185,12 @@ public class KthElement
 	 * Partition a subarray of {@code values} such that the k-th smallest value
 	 * is at position {@code k}, elements before the k-th are smaller or equal
 	 * and elements after the k-th are larger or equal.
+	 * <p>
+	 * While the subarray has more than {@link #PARALLEL_THRESHOLD} elements,
+	 * it is partitioned in parallel by {@code executor}, using a temporary
+	 * array of the size of the subarray. Smaller subarrays are processed in
+	 * the calling thread.
+	 * </p>
 	 *
 	 * @param i
 	 *            index of first element of subarray
@@ -157,25 +200,47 @@ public class KthElement
 	 *            index for k-th smallest value. {@code i <= k <= j}.
 	 * @param values
 	 *            array
+	 * @param executor
+	 *            used to partition large subarrays
 	 */
-	public static void kthElement( int i, int j, final int k, final int[] values )
+	public static void kthElement( int i, int j, final int k, final short[] values, final ExecutorService executor )
 	{
-		while ( true )
+		final int[] range = new int[ 2 ];
+		while ( j - i >= PARALLEL_THRESHOLD )
 		{
-			final int pivotpos = partitionSubList( i, j, values );
-			if ( pivotpos > k )
-			{
-				// partition lower half
-				j = pivotpos - 1;
-			}
-			else if ( pivotpos < k )
-			{
-				// partition upper half
-				i = pivotpos + 1;
-			}
+			final int size = j - i + 1;
+			partitionSubList( i, j, values[ pivot( i, j, values ) ], values, range, executor );
+			if ( k < range[ 0 ] )
+				j = range[ 0 ] - 1;
+			else if ( k > range[ 1 ] )
+				i = range[ 1 ] + 1;
 			else
 				return;
+			// continue serially with a guaranteed linear worst case if the
+			// pivot was bad
+			if ( 4 * ( long ) ( j - i + 1 ) > 3 * ( long ) size )
+				break;
 		}
+		kthElement( i, j, k, values );
+	}
+
+	/**
+	 * Partition a subarray of {@code values} such that the k-th smallest value
+	 * is at position {@code k}, elements before the k-th are smaller or equal
+	 * and elements after the k-th are larger or equal.
+	 *
+	 * @param i
+	 *            index of first element of subarray
+	 * @param j
+	 *            index of last element of subarray
+	 * @param k
+	 *            index for k-th smallest value. {@code i <= k <= j}.
+	 * @param values
+	 *            array
+	 */
+	public static void kthElement( final int i, final int j, final int k, final int[] values )
+	{
+		select( i, j, k, values, 2 * ( 32 - Integer.numberOfLeadingZeros( j - i + 1 ) ) );
 	}
 
 	/**
@@ -197,6 +262,12 @@ public class KthElement
 	 * Partition a subarray of {@code values} such that the k-th smallest value
 	 * is at position {@code k}, elements before the k-th are smaller or equal
 	 * and elements after the k-th are larger or equal.
+	 * <p>
+	 * While the subarray has more than {@link #PARALLEL_THRESHOLD} elements,
+	 * it is partitioned in parallel by {@code executor}, using a temporary
+	 * array of the size of the subarray. Smaller subarrays are processed in
+	 * the calling thread.
+	 * </p>
 	 *
 	 * @param i
 	 *            index of first element of subarray
@@ -206,25 +277,47 @@ public class KthElement
 	 *            index for k-th smallest value. {@code i <= k <= j}.
 	 * @param values
 	 *            array
+	 * @param executor
+	 *            used to partition large subarrays
 	 */
-	public static void kthElement( int i, int j, final int k, final long[] values )
+	public static void kthElement( int i, int j, final int k, final int[] values, final ExecutorService executor )
 	{
-		while ( true )
+		final int[] range = new int[ 2 ];
+		while ( j - i >= PARALLEL_THRESHOLD )
 		{
-			final int pivotpos = partitionSubList( i, j, values );
-			if ( pivotpos > k )
-			{
-				// partition lower half
-				j = pivotpos - 1;
-			}
-			else if ( pivotpos < k )
-			{
-				// partition upper half
-				i = pivotpos + 1;
-			}
+			final int size = j - i + 1;
+			partitionSubList( i, j, values[ pivot( i, j, values ) ], values, range, executor );
+			if ( k < range[ 0 ] )
+				j = range[ 0 ] - 1;
+			else if ( k > range[ 1 ] )
+				i = range[ 1 ] + 1;
 			else
 				return;
+			// continue serially with a guaranteed linear worst case if the
+			// pivot was bad
+			if ( 4 * ( long ) ( j - i + 1 ) > 3 * ( long ) size )
+				break;
 		}
+		kthElement( i, j, k, values );
+	}
+
+	/**
+	 * Partition a subarray of {@code values} such that the k-th smallest value
+	 * is at position {@code k}, elements before the k-th are smaller or equal
+	 * and elements after the k-th are larger or equal.
+	 *
+	 * @param i
+	 *            index of first element of subarray
+	 * @param j
+	 *            index of last element of subarray
+	 * @param k
+	 *            index for k-th smallest value. {@code i <= k <= j}.
+	 * @param values
+	 *            array
+	 */
+	public static void kthElement( final int i, final int j, final int k, final long[] values )
+	{
+		select( i, j, k, values, 2 * ( 32 - Integer.numberOfLeadingZeros( j - i + 1 ) ) );
 	}
 
 	/**
@@ -246,6 +339,12 @@ public class KthElement
 	 * Partition a subarray of {@code values} such that the k-th smallest value
 	 * is at position {@code k}, elements before the k-th are smaller or equal
 	 * and elements after the k-th are larger or equal.
+	 * <p>
+	 * While the subarray has more than {@link #PARALLEL_THRESHOLD} elements,
+	 * it is partitioned in parallel by {@code executor}, using a temporary
+	 * array of the size of the subarray. Smaller subarrays are processed in
+	 * the calling thread.
+	 * </p>
 	 *
 	 * @param i
 	 *            index of first element of subarray
@@ -255,25 +354,47 @@ public class KthElement
 	 *            index for k-th smallest value. {@code i <= k <= j}.
 	 * @param values
 	 *            array
+	 * @param executor
+	 *            used to partition large subarrays
 	 */
-	public static void kthElement( int i, int j, final int k, final float[] values )
+	public static void kthElement( int i, int j, final int k, final long[] values, final ExecutorService executor )
 	{
-		while ( true )
+		final int[] range = new int[ 2 ];
+		while ( j - i >= PARALLEL_THRESHOLD )
 		{
-			final int pivotpos = partitionSubList( i, j, values );
-			if ( pivotpos > k )
-			{
-				// partition lower half
-				j = pivotpos - 1;
-			}
-			else if ( pivotpos < k )
-			{
-				// partition upper half
-				i = pivotpos + 1;
-			}
+			final int size = j - i + 1;
+			partitionSubList( i, j, values[ pivot( i, j, values ) ], values, range, executor );
+			if ( k < range[ 0 ] )
+				j = range[ 0 ] - 1;
+			else if ( k > range[ 1 ] )
+				i = range[ 1 ] + 1;
 			else
 				return;
+			// continue serially with a guaranteed linear worst case if the
+			// pivot was bad
+			if ( 4 * ( long ) ( j - i + 1 ) > 3 * ( long ) size )
+				break;
 		}
+		kthElement( i, j, k, values );
+	}
+
+	/**
+	 * Partition a subarray of {@code values} such that the k-th smallest value
+	 * is at position {@code k}, elements before the k-th are smaller or equal
+	 * and elements after the k-th are larger or equal.
+	 *
+	 * @param i
+	 *            index of first element of subarray
+	 * @param j
+	 *            index of last element of subarray
+	 * @param k
+	 *            index for k-th smallest value. {@code i <= k <= j}.
+	 * @param values
+	 *            array
+	 */
+	public static void kthElement( final int i, final int j, final int k, final float[] values )
+	{
+		select( i, j, k, values, 2 * ( 32 - Integer.numberOfLeadingZeros( j - i + 1 ) ) );
 	}
 
 	/**
@@ -295,6 +416,12 @@ public class KthElement
 	 * Partition a subarray of {@code values} such that the k-th smallest value
 	 * is at position {@code k}, elements before the k-th are smaller or equal
 	 * and elements after the k-th are larger or equal.
+	 * <p>
+	 * While the subarray has more than {@link #PARALLEL_THRESHOLD} elements,
+	 * it is partitioned in parallel by {@code executor}, using a temporary
+	 * array of the size of the subarray. Smaller subarrays are processed in
+	 * the calling thread.
+	 * </p>
 	 *
 	 * @param i
 	 *            index of first element of subarray
@@ -304,25 +431,47 @@ public class KthElement
 	 *            index for k-th smallest value. {@code i <= k <= j}.
 	 * @param values
 	 *            array
+	 * @param executor
+	 *            used to partition large subarrays
 	 */
-	public static void kthElement( int i, int j, final int k, final double[] values )
+	public static void kthElement( int i, int j, final int k, final float[] values, final ExecutorService executor )
 	{
-		while ( true )
+		final int[] range = new int[ 2 ];
+		while ( j - i >= PARALLEL_THRESHOLD )
 		{
-			final int pivotpos = partitionSubList( i, j, values );
-			if ( pivotpos > k )
-			{
-				// partition lower half
-				j = pivotpos - 1;
-			}
-			else if ( pivotpos < k )
-			{
-				// partition upper half
-				i = pivotpos + 1;
-			}
+			final int size = j - i + 1;
+			partitionSubList( i, j, values[ pivot( i, j, values ) ], values, range, executor );
+			if ( k < range[ 0 ] )
+				j = range[ 0 ] - 1;
+			else if ( k > range[ 1 ] )
+				i = range[ 1 ] + 1;
 			else
 				return;
+			// continue serially with a guaranteed linear worst case if the
+			// pivot was bad
+			if ( 4 * ( long ) ( j - i + 1 ) > 3 * ( long ) size )
+				break;
 		}
+		kthElement( i, j, k, values );
+	}
+
+	/**
+	 * Partition a subarray of {@code values} such that the k-th smallest value
+	 * is at position {@code k}, elements before the k-th are smaller or equal
+	 * and elements after the k-th are larger or equal.
+	 *
+	 * @param i
+	 *            index of first element of subarray
+	 * @param j
+	 *            index of last element of subarray
+	 * @param k
+	 *            index for k-th smallest value. {@code i <= k <= j}.
+	 * @param values
+	 *            array
+	 */
+	public static void kthElement( final int i, final int j, final int k, final double[] values )
+	{
+		select( i, j, k, values, 2 * ( 32 - Integer.numberOfLeadingZeros( j - i + 1 ) ) );
 	}
 
 	/**
@@ -344,6 +493,12 @@ public class KthElement
 	 * Partition a subarray of {@code values} such that the k-th smallest value
 	 * is at position {@code k}, elements before the k-th are smaller or equal
 	 * and elements after the k-th are larger or equal.
+	 * <p>
+	 * While the subarray has more than {@link #PARALLEL_THRESHOLD} elements,
+	 * it is partitioned in parallel by {@code executor}, using a temporary
+	 * array of the size of the subarray. Smaller subarrays are processed in
+	 * the calling thread.
+	 * </p>
 	 *
 	 * @param i
 	 *            index of first element of subarray
@@ -353,25 +508,47 @@ public class KthElement
 	 *            index for k-th smallest value. {@code i <= k <= j}.
 	 * @param values
 	 *            array
+	 * @param executor
+	 *            used to partition large subarrays
 	 */
-	public static void kthElement( int i, int j, final int k, final char[] values )
+	public static void kthElement( int i, int j, final int k, final double[] values, final ExecutorService executor )
 	{
-		while ( true )
+		final int[] range = new int[ 2 ];
+		while ( j - i >= PARALLEL_THRESHOLD )
 		{
-			final int pivotpos = partitionSubList( i, j, values );
-			if ( pivotpos > k )
-			{
-				// partition lower half
-				j = pivotpos - 1;
-			}
-			else if ( pivotpos < k )
-			{
-				// partition upper half
-				i = pivotpos + 1;
-			}
+			final int size = j - i + 1;
+			partitionSubList( i, j, values[ pivot( i, j, values ) ], values, range, executor );
+			if ( k < range[ 0 ] )
+				j = range[ 0 ] - 1;
+			else if ( k > range[ 1 ] )
+				i = range[ 1 ] + 1;
 			else
 				return;
+			// continue serially with a guaranteed linear worst case if the
+			// pivot was bad
+			if ( 4 * ( long ) ( j - i + 1 ) > 3 * ( long ) size )
+				break;
 		}
+		kthElement( i, j, k, values );
+	}
+
+	/**
+	 * Partition a subarray of {@code values} such that the k-th smallest value
+	 * is at position {@code k}, elements before the k-th are smaller or equal
+	 * and elements after the k-th are larger or equal.
+	 *
+	 * @param i
+	 *            index of first element of subarray
+	 * @param j
+	 *            index of last element of subarray
+	 * @param k
+	 *            index for k-th smallest value. {@code i <= k <= j}.
+	 * @param values
+	 *            array
+	 */
+	public static void kthElement( final int i, final int j, final int k, final char[] values )
+	{
+		select( i, j, k, values, 2 * ( 32 - Integer.numberOfLeadingZeros( j - i + 1 ) ) );
 	}
 
 	/**
@@ -389,6 +566,49 @@ public class KthElement
 		kthElement( 0, values.length - 1, k, values );
 	}
 
+	/**
+	 * Partition a subarray of {@code values} such that the k-th smallest value
+	 * is at position {@code k}, elements before the k-th are smaller or equal
+	 * and elements after the k-th are larger or equal.
+	 * <p>
+	 * While the subarray has more than {@link #PARALLEL_THRESHOLD} elements,
+	 * it is partitioned in parallel by {@code executor}, using a temporary
+	 * array of the size of the subarray. Smaller subarrays are processed in
+	 * the calling thread.
+	 * </p>
+	 *
+	 * @param i
+	 *            index of first element of subarray
+	 * @param j
+	 *            index of last element of subarray
+	 * @param k
+	 *            index for k-th smallest value. {@code i <= k <= j}.
+	 * @param values
+	 *            array
+	 * @param executor
+	 *            used to partition large subarrays
+	 */
+	public static void kthElement( int i, int j, final int k, final char[] values, final ExecutorService executor )
+	{
+		final int[] range = new int[ 2 ];
+		while ( j - i >= PARALLEL_THRESHOLD )
+		{
+			final int size = j - i + 1;
+			partitionSubList( i, j, values[ pivot( i, j, values ) ], values, range, executor );
+			if ( k < range[ 0 ] )
+				j = range[ 0 ] - 1;
+			else if ( k > range[ 1 ] )
+				i = range[ 1 ] + 1;
+			else
+				return;
+			// continue serially with a guaranteed linear worst case if the
+			// pivot was bad
+			if ( 4 * ( long ) ( j - i + 1 ) > 3 * ( long ) size )
+				break;
+		}
+		kthElement( i, j, k, values );
+	}
+
 	/**
 	 * Partition a sublist of {@code values} such that the k-th smallest value
 	 * is at position {@code k}, elements before the k-th are smaller or equal
@@ -870,4 +1090,732 @@ public class KthElement
 				return;
 		}
 	}
+
+	/**
+	 * Introselect: quickselect around the median of three (or nine) samples,
+	 * switching to median-of-medians pivots after {@code depthLimit}
+	 * partitioning steps. If the pivot equals another sample, or with
+	 * median-of-medians pivots, elements equal to the pivot are partitioned
+	 * into a separate range, which makes progress on repeated values.
+	 */
+	private static void select( int i, int j, final int k, final byte[] values, int depthLimit )
+	{
+		final int[] range = new int[ 2 ];
+		while ( j - i >= INSERTION_SORT_THRESHOLD )
+		{
+			final boolean linear = depthLimit-- <= 0;
+			final int p = linear ? medianOfMedians( i, j, values ) : pivot( i, j, values );
+			final byte pivot = values[ p ];
+			final int mid = i + ( j - i ) / 2;
+			if ( linear || ( p != i && values[ i ] == pivot ) || ( p != mid && values[ mid ] == pivot ) || ( p != j && values[ j ] == pivot ) )
+			{
+				// the samples indicate duplicates: three-way partition
+				partitionSubList( i, j, pivot, values, range );
+			}
+			else
+			{
+				values[ p ] = values[ j ];
+				values[ j ] = pivot;
+				range[ 0 ] = range[ 1 ] = partitionSubList( i, j, values );
+			}
+			if ( k < range[ 0 ] )
+				j = range[ 0 ] - 1;
+			else if ( k > range[ 1 ] )
+				i = range[ 1 ] + 1;
+			else
+				return;
+		}
+		insertionSort( i, j, values );
+	}
+
+	/**
+	 * Returns the index of the median of the first, middle, and last element
+	 * of the subarray, or of Tukey's ninther for larger subarrays.
+	 */
+	private static int pivot( final int i, final int j, final byte[] values )
+	{
+		final int mid = i + ( j - i ) / 2;
+		if ( j - i < NINTHER_THRESHOLD )
+			return median( i, mid, j, values );
+		final int s = ( j - i ) / 8;
+		return median(
+				median( i, i + s, i + 2 * s, values ),
+				median( mid - s, mid, mid + s, values ),
+				median( j - 2 * s, j - s, j, values ),
+				values );
+	}
+
+	/**
+	 * Returns the index of the median of {@code values[a]},
+	 * {@code values[b]}, and {@code values[c]}.
+	 */
+	private static int median( final int a, final int b, final int c, final byte[] values )
+	{
+		final byte va = values[ a ];
+		final byte vb = values[ b ];
+		final byte vc = values[ c ];
+		return va < vb
+				? ( vb < vc ? b : va < vc ? c : a )
+				: ( va < vc ? a : vb < vc ? c : b );
+	}
+
+	/**
+	 * Returns the index of the median of the medians of groups of five
+	 * elements, which is guaranteed to be larger than 30% and smaller than 30%
+	 * of the elements. The group medians are moved to the front of the
+	 * subarray.
+	 */
+	private static int medianOfMedians( final int i, final int j, final byte[] values )
+	{
+		int m = i;
+		for ( int g = i; g <= j; g += 5 )
+		{
+			final int e = Math.min( g + 4, j );
+			insertionSort( g, e, values );
+			final int median = g + ( e - g ) / 2;
+			final byte tmp = values[ m ];
+			values[ m ] = values[ median ];
+			values[ median ] = tmp;
+			++m;
+		}
+		final int mid = i + ( m - 1 - i ) / 2;
+		select( i, m - 1, mid, values, 0 );
+		return mid;
+	}
+
+	private static void insertionSort( final int i, final int j, final byte[] values )
+	{
+		for ( int p = i + 1; p <= j; ++p )
+		{
+			final byte v = values[ p ];
+			int q = p - 1;
+			for ( ; q >= i && values[ q ] > v; --q )
+				values[ q + 1 ] = values[ q ];
+			values[ q + 1 ] = v;
+		}
+	}
+
+	/**
+	 * Introselect: quickselect around the median of three (or nine) samples,
+	 * switching to median-of-medians pivots after {@code depthLimit}
+	 * partitioning steps. If the pivot equals another sample, or with
+	 * median-of-medians pivots, elements equal to the pivot are partitioned
+	 * into a separate range, which makes progress on repeated values.
+	 */
+	private static void select( int i, int j, final int k, final short[] values, int depthLimit )
+	{
+		final int[] range = new int[ 2 ];
+		while ( j - i >= INSERTION_SORT_THRESHOLD )
+		{
+			final boolean linear = depthLimit-- <= 0;
+			final int p = linear ? medianOfMedians( i, j, values ) : pivot( i, j, values );
+			final short pivot = values[ p ];
+			final int mid = i + ( j - i ) / 2;
+			if ( linear || ( p != i && values[ i ] == pivot ) || ( p != mid && values[ mid ] == pivot ) || ( p != j && values[ j ] == pivot ) )
+			{
+				// the samples indicate duplicates: three-way partition
+				partitionSubList( i, j, pivot, values, range );
+			}
+			else
+			{
+				values[ p ] = values[ j ];
+				values[ j ] = pivot;
+				range[ 0 ] = range[ 1 ] = partitionSubList( i, j, values );
+			}
+			if ( k < range[ 0 ] )
+				j = range[ 0 ] - 1;
+			else if ( k > range[ 1 ] )
+				i = range[ 1 ] + 1;
+			else
+				return;
+		}
+		insertionSort( i, j, values );
+	}
+
+	/**
+	 * Returns the index of the median of the first, middle, and last element
+	 * of the subarray, or of Tukey's ninther for larger subarrays.
+	 */
+	private static int pivot( final int i, final int j, final short[] values )
+	{
+		final int mid = i + ( j - i ) / 2;
+		if ( j - i < NINTHER_THRESHOLD )
+			return median( i, mid, j, values );
+		final int s = ( j - i ) / 8;
+		return median(
+				median( i, i + s, i + 2 * s, values ),
+				median( mid - s, mid, mid + s, values ),
+				median( j - 2 * s, j - s, j, values ),
+				values );
+	}
+
+	/**
+	 * Returns the index of the median of {@code values[a]},
+	 * {@code values[b]}, and {@code values[c]}.
+	 */
+	private static int median( final int a, final int b, final int c, final short[] values )
+	{
+		final short va = values[ a ];
+		final short vb = values[ b ];
+		final short vc = values[ c ];
+		return va < vb
+				? ( vb < vc ? b : va < vc ? c : a )
+				: ( va < vc ? a : vb < vc ? c : b );
+	}
+
+	/**
+	 * Returns the index of the median of the medians of groups of five
+	 * elements, which is guaranteed to be larger than 30% and smaller than 30%
+	 * of the elements. The group medians are moved to the front of the
+	 * subarray.
+	 */
+	private static int medianOfMedians( final int i, final int j, final short[] values )
+	{
+		int m = i;
+		for ( int g = i; g <= j; g += 5 )
+		{
+			final int e = Math.min( g + 4, j );
+			insertionSort( g, e, values );
+			final int median = g + ( e - g ) / 2;
+			final short tmp = values[ m ];
+			values[ m ] = values[ median ];
+			values[ median ] = tmp;
+			++m;
+		}
+		final int mid = i + ( m - 1 - i ) / 2;
+		select( i, m - 1, mid, values, 0 );
+		return mid;
+	}
+
+	private static void insertionSort( final int i, final int j, final short[] values )
+	{
+		for ( int p = i + 1; p <= j; ++p )
+		{
+			final short v = values[ p ];
+			int q = p - 1;
+			for ( ; q >= i && values[ q ] > v; --q )
+				values[ q + 1 ] = values[ q ];
+			values[ q + 1 ] = v;
+		}
+	}
+
+	/**
+	 * Introselect: quickselect around the median of three (or nine) samples,
+	 * switching to median-of-medians pivots after {@code depthLimit}
+	 * partitioning steps. If the pivot equals another sample, or with
+	 * median-of-medians pivots, elements equal to the pivot are partitioned
+	 * into a separate range, which makes progress on repeated values.
+	 */
+	private static void select( int i, int j, final int k, final int[] values, int depthLimit )
+	{
+		final int[] range = new int[ 2 ];
+		while ( j - i >= INSERTION_SORT_THRESHOLD )
+		{
+			final boolean linear = depthLimit-- <= 0;
+			final int p = linear ? medianOfMedians( i, j, values ) : pivot( i, j, values );
+			final int pivot = values[ p ];
+			final int mid = i + ( j - i ) / 2;
+			if ( linear || ( p != i && values[ i ] == pivot ) || ( p != mid && values[ mid ] == pivot ) || ( p != j && values[ j ] == pivot ) )
+			{
+				// the samples indicate duplicates: three-way partition
+				partitionSubList( i, j, pivot, values, range );
+			}
+			else
+			{
+				values[ p ] = values[ j ];
+				values[ j ] = pivot;
+				range[ 0 ] = range[ 1 ] = partitionSubList( i, j, values );
+			}
+			if ( k < range[ 0 ] )
+				j = range[ 0 ] - 1;
+			else if ( k > range[ 1 ] )
+				i = range[ 1 ] + 1;
+			else
+				return;
+		}
+		insertionSort( i, j, values );
+	}
+
+	/**
+	 * Returns the index of the median of the first, middle, and last element
+	 * of the subarray, or of Tukey's ninther for larger subarrays.
+	 */
+	private static int pivot( final int i, final int j, final int[] values )
+	{
+		final int mid = i + ( j - i ) / 2;
+		if ( j - i < NINTHER_THRESHOLD )
+			return median( i, mid, j, values );
+		final int s = ( j - i ) / 8;
+		return median(
+				median( i, i + s, i + 2 * s, values ),
+				median( mid - s, mid, mid + s, values ),
+				median( j - 2 * s, j - s, j, values ),
+				values );
+	}
+
+	/**
+	 * Returns the index of the median of {@code values[a]},
+	 * {@code values[b]}, and {@code values[c]}.
+	 */
+	private static int median( final int a, final int b, final int c, final int[] values )
+	{
+		final int va = values[ a ];
+		final int vb = values[ b ];
+		final int vc = values[ c ];
+		return va < vb
+				? ( vb < vc ? b : va < vc ? c : a )
+				: ( va < vc ? a : vb < vc ? c : b );
+	}
+
+	/**
+	 * Returns the index of the median of the medians of groups of five
+	 * elements, which is guaranteed to be larger than 30% and smaller than 30%
+	 * of the elements. The group medians are moved to the front of the
+	 * subarray.
+	 */
+	private static int medianOfMedians( final int i, final int j, final int[] values )
+	{
+		int m = i;
+		for ( int g = i; g <= j; g += 5 )
+		{
+			final int e = Math.min( g + 4, j );
+			insertionSort( g, e, values );
+			final int median = g + ( e - g ) / 2;
+			final int tmp = values[ m ];
+			values[ m ] = values[ median ];
+			values[ median ] = tmp;
+			++m;
+		}
+		final int mid = i + ( m - 1 - i ) / 2;
+		select( i, m - 1, mid, values, 0 );
+		return mid;
+	}
+
+	private static void insertionSort( final int i, final int j, final int[] values )
+	{
+		for ( int p = i + 1; p <= j; ++p )
+		{
+			final int v = values[ p ];
+			int q = p - 1;
+			for ( ; q >= i && values[ q ] > v; --q )
+				values[ q + 1 ] = values[ q ];
+			values[ q + 1 ] = v;
+		}
+	}
+
+	/**
+	 * Introselect: quickselect around the median of three (or nine) samples,
+	 * switching to median-of-medians pivots after {@code depthLimit}
+	 * partitioning steps. If the pivot equals another sample, or with
+	 * median-of-medians pivots, elements equal to the pivot are partitioned
+	 * into a separate range, which makes progress on repeated values.
+	 */
+	private static void select( int i, int j, final int k, final long[] values, int depthLimit )
+	{
+		final int[] range = new int[ 2 ];
+		while ( j - i >= INSERTION_SORT_THRESHOLD )
+		{
+			final boolean linear = depthLimit-- <= 0;
+			final int p = linear ? medianOfMedians( i, j, values ) : pivot( i, j, values );
+			final long pivot = values[ p ];
+			final int mid = i + ( j - i ) / 2;
+			if ( linear || ( p != i && values[ i ] == pivot ) || ( p != mid && values[ mid ] == pivot ) || ( p != j && values[ j ] == pivot ) )
+			{
+				// the samples indicate duplicates: three-way partition
+				partitionSubList( i, j, pivot, values, range );
+			}
+			else
+			{
+				values[ p ] = values[ j ];
+				values[ j ] = pivot;
+				range[ 0 ] = range[ 1 ] = partitionSubList( i, j, values );
+			}
+			if ( k < range[ 0 ] )
+				j = range[ 0 ] - 1;
+			else if ( k > range[ 1 ] )
+				i = range[ 1 ] + 1;
+			else
+				return;
+		}
+		insertionSort( i, j, values );
+	}
+
+	/**
+	 * Returns the index of the median of the first, middle, and last element
+	 * of the subarray, or of Tukey's ninther for larger subarrays.
+	 */
+	private static int pivot( final int i, final int j, final long[] values )
+	{
+		final int mid = i + ( j - i ) / 2;
+		if ( j - i < NINTHER_THRESHOLD )
+			return median( i, mid, j, values );
+		final int s = ( j - i ) / 8;
+		return median(
+				median( i, i + s, i + 2 * s, values ),
+				median( mid - s, mid, mid + s, values ),
+				median( j - 2 * s, j - s, j, values ),
+				values );
+	}
+
+	/**
+	 * Returns the index of the median of {@code values[a]},
+	 * {@code values[b]}, and {@code values[c]}.
+	 */
+	private static int median( final int a, final int b, final int c, final long[] values )
+	{
+		final long va = values[ a ];
+		final long vb = values[ b ];
+		final long vc = values[ c ];
+		return va < vb
+				? ( vb < vc ? b : va < vc ? c : a )
+				: ( va < vc ? a : vb < vc ? c : b );
+	}
+
+	/**
+	 * Returns the index of the median of the medians of groups of five
+	 * elements, which is guaranteed to be larger than 30% and smaller than 30%
+	 * of the elements. The group medians are moved to the front of the
+	 * subarray.
+	 */
+	private static int medianOfMedians( final int i, final int j, final long[] values )
+	{
+		int m = i;
+		for ( int g = i; g <= j; g += 5 )
+		{
+			final int e = Math.min( g + 4, j );
+			insertionSort( g, e, values );
+			final int median = g + ( e - g ) / 2;
+			final long tmp = values[ m ];
+			values[ m ] = values[ median ];
+			values[ median ] = tmp;
+			++m;
+		}
+		final int mid = i + ( m - 1 - i ) / 2;
+		select( i, m - 1, mid, values, 0 );
+		return mid;
+	}
+
+	private static void insertionSort( final int i, final int j, final long[] values )
+	{
+		for ( int p = i + 1; p <= j; ++p )
+		{
+			final long v = values[ p ];
+			int q = p - 1;
+			for ( ; q >= i && values[ q ] > v; --q )
+				values[ q + 1 ] = values[ q ];
+			values[ q + 1 ] = v;
+		}
+	}
+
+	/**
+	 * Introselect: quickselect around the median of three (or nine) samples,
+	 * switching to median-of-medians pivots after {@code depthLimit}
+	 * partitioning steps. If the pivot equals another sample, or with
+	 * median-of-medians pivots, elements equal to the pivot are partitioned
+	 * into a separate range, which makes progress on repeated values.
+	 */
+	private static void select( int i, int j, final int k, final float[] values, int depthLimit )
+	{
+		final int[] range = new int[ 2 ];
+		while ( j - i >= INSERTION_SORT_THRESHOLD )
+		{
+			final boolean linear = depthLimit-- <= 0;
+			final int p = linear ? medianOfMedians( i, j, values ) : pivot( i, j, values );
+			final float pivot = values[ p ];
+			final int mid = i + ( j - i ) / 2;
+			if ( linear || ( p != i && values[ i ] == pivot ) || ( p != mid && values[ mid ] == pivot ) || ( p != j && values[ j ] == pivot ) )
+			{
+				// the samples indicate duplicates: three-way partition
+				partitionSubList( i, j, pivot, values, range );
+			}
+			else
+			{
+				values[ p ] = values[ j ];
+				values[ j ] = pivot;
+				range[ 0 ] = range[ 1 ] = partitionSubList( i, j, values );
+			}
+			if ( k < range[ 0 ] )
+				j = range[ 0 ] - 1;
+			else if ( k > range[ 1 ] )
+				i = range[ 1 ] + 1;
+			else
+				return;
+		}
+		insertionSort( i, j, values );
+	}
+
+	/**
+	 * Returns the index of the median of the first, middle, and last element
+	 * of the subarray, or of Tukey's ninther for larger subarrays.
+	 */
+	private static int pivot( final int i, final int j, final float[] values )
+	{
+		final int mid = i + ( j - i ) / 2;
+		if ( j - i < NINTHER_THRESHOLD )
+			return median( i, mid, j, values );
+		final int s = ( j - i ) / 8;
+		return median(
+				median( i, i + s, i + 2 * s, values ),
+				median( mid - s, mid, mid + s, values ),
+				median( j - 2 * s, j - s, j, values ),
+				values );
+	}
+
+	/**
+	 * Returns the index of the median of {@code values[a]},
+	 * {@code values[b]}, and {@code values[c]}.
+	 */
+	private static int median( final int a, final int b, final int c, final float[] values )
+	{
+		final float va = values[ a ];
+		final float vb = values[ b ];
+		final float vc = values[ c ];
+		return va < vb
+				? ( vb < vc ? b : va < vc ? c : a )
+				: ( va < vc ? a : vb < vc ? c : b );
+	}
+
+	/**
+	 * Returns the index of the median of the medians of groups of five
+	 * elements, which is guaranteed to be larger than 30% and smaller than 30%
+	 * of the elements. The group medians are moved to the front of the
+	 * subarray.
+	 */
+	private static int medianOfMedians( final int i, final int j, final float[] values )
+	{
+		int m = i;
+		for ( int g = i; g <= j; g += 5 )
+		{
+			final int e = Math.min( g + 4, j );
+			insertionSort( g, e, values );
+			final int median = g + ( e - g ) / 2;
+			final float tmp = values[ m ];
+			values[ m ] = values[ median ];
+			values[ median ] = tmp;
+			++m;
+		}
+		final int mid = i + ( m - 1 - i ) / 2;
+		select( i, m - 1, mid, values, 0 );
+		return mid;
+	}
+
+	private static void insertionSort( final int i, final int j, final float[] values )
+	{
+		for ( int p = i + 1; p <= j; ++p )
+		{
+			final float v = values[ p ];
+			int q = p - 1;
+			for ( ; q >= i && values[ q ] > v; --q )
+				values[ q + 1 ] = values[ q ];
+			values[ q + 1 ] = v;
+		}
+	}
+
+	/**
+	 * Introselect: quickselect around the median of three (or nine) samples,
+	 * switching to median-of-medians pivots after {@code depthLimit}
+	 * partitioning steps. If the pivot equals another sample, or with
+	 * median-of-medians pivots, elements equal to the pivot are partitioned
+	 * into a separate range, which makes progress on repeated values.
+	 */
+	private static void select( int i, int j, final int k, final double[] values, int depthLimit )
+	{
+		final int[] range = new int[ 2 ];
+		while ( j - i >= INSERTION_SORT_THRESHOLD )
+		{
+			final boolean linear = depthLimit-- <= 0;
+			final int p = linear ? medianOfMedians( i, j, values ) : pivot( i, j, values );
+			final double pivot = values[ p ];
+			final int mid = i + ( j - i ) / 2;
+			if ( linear || ( p != i && values[ i ] == pivot ) || ( p != mid && values[ mid ] == pivot ) || ( p != j && values[ j ] == pivot ) )
+			{
+				// the samples indicate duplicates: three-way partition
+				partitionSubList( i, j, pivot, values, range );
+			}
+			else
+			{
+				values[ p ] = values[ j ];
+				values[ j ] = pivot;
+				range[ 0 ] = range[ 1 ] = partitionSubList( i, j, values );
+			}
+			if ( k < range[ 0 ] )
+				j = range[ 0 ] - 1;
+			else if ( k > range[ 1 ] )
+				i = range[ 1 ] + 1;
+			else
+				return;
+		}
+		insertionSort( i, j, values );
+	}
+
+	/**
+	 * Returns the index of the median of the first, middle, and last element
+	 * of the subarray, or of Tukey's ninther for larger subarrays.
+	 */
+	private static int pivot( final int i, final int j, final double[] values )
+	{
+		final int mid = i + ( j - i ) / 2;
+		if ( j - i < NINTHER_THRESHOLD )
+			return median( i, mid, j, values );
+		final int s = ( j - i ) / 8;
+		return median(
+				median( i, i + s, i + 2 * s, values ),
+				median( mid - s, mid, mid + s, values ),
+				median( j - 2 * s, j - s, j, values ),
+				values );
+	}
+
+	/**
+	 * Returns the index of the median of {@code values[a]},
+	 * {@code values[b]}, and {@code values[c]}.
+	 */
+	private static int median( final int a, final int b, final int c, final double[] values )
+	{
+		final double va = values[ a ];
+		final double vb = values[ b ];
+		final double vc = values[ c ];
+		return va < vb
+				? ( vb < vc ? b : va < vc ? c : a )
+				: ( va < vc ? a : vb < vc ? c : b );
+	}
+
+	/**
+	 * Returns the index of the median of the medians of groups of five
+	 * elements, which is guaranteed to be larger than 30% and smaller than 30%
+	 * of the elements. The group medians are moved to the front of the
+	 * subarray.
+	 */
+	private static int medianOfMedians( final int i, final int j, final double[] values )
+	{
+		int m = i;
+		for ( int g = i; g <= j; g += 5 )
+		{
+			final int e = Math.min( g + 4, j );
+			insertionSort( g, e, values );
+			final int median = g + ( e - g ) / 2;
+			final double tmp = values[ m ];
+			values[ m ] = values[ median ];
+			values[ median ] = tmp;
+			++m;
+		}
+		final int mid = i + ( m - 1 - i ) / 2;
+		select( i, m - 1, mid, values, 0 );
+		return mid;
+	}
+
+	private static void insertionSort( final int i, final int j, final double[] values )
+	{
+		for ( int p = i + 1; p <= j; ++p )
+		{
+			final double v = values[ p ];
+			int q = p - 1;
+			for ( ; q >= i && values[ q ] > v; --q )
+				values[ q + 1 ] = values[ q ];
+			values[ q + 1 ] = v;
+		}
+	}
+
+	/**
+	 * Introselect: quickselect around the median of three (or nine) samples,
+	 * switching to median-of-medians pivots after {@code depthLimit}
+	 * partitioning steps. If the pivot equals another sample, or with
+	 * median-of-medians pivots, elements equal to the pivot are partitioned
+	 * into a separate range, which makes progress on repeated values.
+	 */
+	private static void select( int i, int j, final int k, final char[] values, int depthLimit )
+	{
+		final int[] range = new int[ 2 ];
+		while ( j - i >= INSERTION_SORT_THRESHOLD )
+		{
+			final boolean linear = depthLimit-- <= 0;
+			final int p = linear ? medianOfMedians( i, j, values ) : pivot( i, j, values );
+			final char pivot = values[ p ];
+			final int mid = i + ( j - i ) / 2;
+			if ( linear || ( p != i && values[ i ] == pivot ) || ( p != mid && values[ mid ] == pivot ) || ( p != j && values[ j ] == pivot ) )
+			{
+				// the samples indicate duplicates: three-way partition
+				partitionSubList( i, j, pivot, values, range );
+			}
+			else
+			{
+				values[ p ] = values[ j ];
+				values[ j ] = pivot;
+				range[ 0 ] = range[ 1 ] = partitionSubList( i, j, values );
+			}
+			if ( k < range[ 0 ] )
+				j = range[ 0 ] - 1;
+			else if ( k > range[ 1 ] )
+				i = range[ 1 ] + 1;
+			else
+				return;
+		}
+		insertionSort( i, j, values );
+	}
+
+	/**
+	 * Returns the index of the median of the first, middle, and last element
+	 * of the subarray, or of Tukey's ninther for larger subarrays.
+	 */
+	private static int pivot( final int i, final int j, final char[] values )
+	{
+		final int mid = i + ( j - i ) / 2;
+		if ( j - i < NINTHER_THRESHOLD )
+			return median( i, mid, j, values );
+		final int s = ( j - i ) / 8;
+		return median(
+				median( i, i + s, i + 2 * s, values ),
+				median( mid - s, mid, mid + s, values ),
+				median( j - 2 * s, j - s, j, values ),
+				values );
+	}
+
+	/**
+	 * Returns the index of the median of {@code values[a]},
+	 * {@code values[b]}, and {@code values[c]}.
+	 */
+	private static int median( final int a, final int b, final int c, final char[] values )
+	{
+		final char va = values[ a ];
+		final char vb = values[ b ];
+		final char vc = values[ c ];
+		return va < vb
+				? ( vb < vc ? b : va < vc ? c : a )
+				: ( va < vc ? a : vb < vc ? c : b );
+	}
+
+	/**
+	 * Returns the index of the median of the medians of groups of five
+	 * elements, which is guaranteed to be larger than 30% and smaller than 30%
+	 * of the elements. The group medians are moved to the front of the
+	 * subarray.
+	 */
+	private static int medianOfMedians( final int i, final int j, final char[] values )
+	{
+		int m = i;
+		for ( int g = i; g <= j; g += 5 )
+		{
+			final int e = Math.min( g + 4, j );
+			insertionSort( g, e, values );
+			final int median = g + ( e - g ) / 2;
+			final char tmp = values[ m ];
+			values[ m ] = values[ median ];
+			values[ median ] = tmp;
+			++m;
+		}
+		final int mid = i + ( m - 1 - i ) / 2;
+		select( i, m - 1, mid, values, 0 );
+		return mid;
+	}
+
+	private static void insertionSort( final int i, final int j, final char[] values )
+	{
+		for ( int p = i + 1; p <= j; ++p )
+		{
+			final char v = values[ p ];
+			int q = p - 1;
+			for ( ; q >= i && values[ q ] > v; --q )
+				values[ q + 1 ] = values[ q ];
+			values[ q + 1 ] = v;
+		}
+	}
 }
@@ -0,0 +1,201 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2018 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Run tasks with an {@link ExecutorService} and wait for their results, and
+ * split work items into contiguous ranges processed in parallel.
+ * <p>
+ * This class is internal to ImgLib2, it is public only to be shared across
+ * packages. It is not part of the API and may change without notice.
+ * </p>
+ */
+public final class ParallelTasks
+{
+	private ParallelTasks()
+	{}
+
+	public interface RangeTask
+	{
+		/**
+		 * Process the work items from {@code from} (inclusive) to {@code to}
+		 * (exclusive).
+		 */
+		void run( int from, int to );
+	}
+
+	public interface RangeFunction< R >
+	{
+		/**
+		 * Compute the result for the work items from {@code from} (inclusive)
+		 * to {@code to} (exclusive).
+		 */
+		R apply( int from, int to );
+	}
+
+	/**
+	 * Split {@code n} work items into one contiguous range per available
+	 * processor, and run {@code task} on each range with {@code executor}, or
+	 * on all items in the calling thread if {@code executor} is {@code null}.
+	 */
+	public static void forEachRange( final int n, final ExecutorService executor, final RangeTask task )
+	{
+		if ( executor == null )
+		{
+			task.run( 0, n );
+			return;
+		}
+		final int numTasks = numRanges( n );
+		final List< Runnable > tasks = new ArrayList<>();
+		for ( int t = 0; t < numTasks; ++t )
+		{
+			final int from = rangeBound( n, numTasks, t );
+			final int to = rangeBound( n, numTasks, t + 1 );
+			tasks.add( () -> task.run( from, to ) );
+		}
+		runAll( executor, tasks );
+	}
+
+	/**
+	 * Split {@code n} work items into one contiguous range per available
+	 * processor, and compute a result for each range with {@code task}, with
+	 * {@code executor}, or in the calling thread if {@code executor} is
+	 * {@code null}. The ranges do not depend on {@code executor}, so merging
+	 * the results in order gives the same result serially and in parallel.
+	 *
+	 * @return the results of the ranges in order.
+	 */
+	public static < R > List< R > mapRanges( final int n, final ExecutorService executor, final RangeFunction< R > task )
+	{
+		final int numTasks = numRanges( n );
+		if ( executor == null )
+		{
+			final List< R > results = new ArrayList<>();
+			for ( int t = 0; t < numTasks; ++t )
+				results.add( task.apply( rangeBound( n, numTasks, t ), rangeBound( n, numTasks, t + 1 ) ) );
+			return results;
+		}
+		final List< Callable< R > > tasks = new ArrayList<>();
+		for ( int t = 0; t < numTasks; ++t )
+		{
+			final int from = rangeBound( n, numTasks, t );
+			final int to = rangeBound( n, numTasks, t + 1 );
+			tasks.add( () -> task.apply( from, to ) );
+		}
+		return invokeAll( executor, tasks );
+	}
+
+	private static int numRanges( final int n )
+	{
+		return Math.min( n, Runtime.getRuntime().availableProcessors() );
+	}
+
+	private static int rangeBound( final int n, final int numRanges, final int t )
+	{
+		return ( int ) ( ( long ) n * t / numRanges );
+	}
+
+	/**
+	 * Run {@code tasks} with {@code executor} and wait until all are done.
+	 *
+	 * @throws RuntimeException
+	 *             wrapping the exception thrown by a task, or the
+	 *             {@link InterruptedException} if the calling thread was
+	 *             interrupted while waiting.
+	 * @see #invokeAll(ExecutorService, List)
+	 */
+	public static void runAll( final ExecutorService executor, final List< ? extends Runnable > tasks )
+	{
+		final List< Callable< Object > > callables = new ArrayList<>();
+		for ( final Runnable task : tasks )
+			callables.add( Executors.callable( task ) );
+		invokeAll( executor, callables );
+	}
+
+	/**
+	 * Run {@code tasks} with {@code executor} and wait until all are done. If
+	 * a task fails or the calling thread is interrupted, the tasks that have
+	 * not completed yet are cancelled.
+	 *
+	 * @return the results of {@code tasks}, in order.
+	 * @throws RuntimeException
+	 *             wrapping the exception thrown by a task, or the
+	 *             {@link InterruptedException} if the calling thread was
+	 *             interrupted while waiting.
+	 */
+	public static < R > List< R > invokeAll( final ExecutorService executor, final List< ? extends Callable< R > > tasks )
+	{
+		final List< Future< R > > futures = new ArrayList<>();
+		final List< R > results = new ArrayList<>();
+		try
+		{
+			for ( final Callable< R > task : tasks )
+				futures.add( executor.submit( task ) );
+			for ( final Future< R > future : futures )
+				results.add( future.get() );
+		}
+		catch ( final InterruptedException e )
+		{
+			cancel( futures );
+			Thread.currentThread().interrupt();
+			throw new RuntimeException( e );
+		}
+		catch ( final ExecutionException e )
+		{
+			cancel( futures );
+			throw new RuntimeException( e.getCause() );
+		}
+		catch ( final RuntimeException e )
+		{
+			cancel( futures );
+			throw e;
+		}
+		return results;
+	}
+
+	private static void cancel( final List< ? extends Future< ? > > futures )
+	{
+		for ( final Future< ? > future : futures )
+			future.cancel( true );
+	}
+}
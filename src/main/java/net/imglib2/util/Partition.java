@@ -37,6 +37,8 @@ package net.imglib2.util;
 import java.util.Comparator;
 import java.util.List;
 import java.util.ListIterator;
+import java.util.concurrent.ExecutorService;
+import java.util.function.IntConsumer;
 
 /**
  * TODO
@@ -112,6 +114,117 @@ public class Partition
 		return i;
 	}
 
+	/**
+	 * Three-way partition a subarray of {@code values} around {@code pivot}.
+	 *
+	 * The elements {@code [i,j]} are reordered, such that all elements smaller
+	 * than the pivot come first, followed by all elements equal to the pivot,
+	 * followed by all elements larger than the pivot. Runs of equal elements,
+	 * e.g., saturated pixels, are thereby excluded from further partitioning.
+	 *
+	 * @param i
+	 *            index of first element of subarray
+	 * @param j
+	 *            index of last element of subarray
+	 * @param pivot
+	 *            pivot value
+	 * @param values
+	 *            array
+	 * @param range
+	 *            receives the index of the first and the last element equal
+	 *            to the pivot. If there is no such element, {@code range[0]}
+	 *            is the index of the first element larger than the pivot and
+	 *            {@code range[1] = range[0] - 1}.
+	 */
+	public static void partitionSubList( final int i, final int j, final byte pivot, final byte[] values, final int[] range )
+	{
+		int lt = i;
+		int gt = j;
+		int x = i;
+		while ( x <= gt )
+		{
+			final byte v = values[ x ];
+			if ( v < pivot )
+			{
+				values[ x++ ] = values[ lt ];
+				values[ lt++ ] = v;
+			}
+			else if ( v > pivot )
+			{
+				values[ x ] = values[ gt ];
+				values[ gt-- ] = v;
+			}
+			else
+				++x;
+		}
+		range[ 0 ] = lt;
+		range[ 1 ] = gt;
+	}
+
+	/**
+	 * Three-way partition a subarray of {@code values} around {@code pivot}
+	 * in parallel, see
+	 * {@link #partitionSubList(int, int, byte, byte[], int[])}.
+	 *
+	 * The subarray is split into one block per task. Each task counts the
+	 * elements of its block that are smaller than, equal to, and larger than
+	 * the pivot, and then copies them to their final positions in a
+	 * temporary array, which is finally copied back to {@code values}. The
+	 * order of the elements within each of the three parts is preserved.
+	 *
+	 * @param i
+	 *            index of first element of subarray
+	 * @param j
+	 *            index of last element of subarray
+	 * @param pivot
+	 *            pivot value
+	 * @param values
+	 *            array
+	 * @param range
+	 *            receives the index of the first and the last element equal
+	 *            to the pivot.
+	 * @param executor
+	 *            runs the tasks
+	 */
+	public static void partitionSubList( final int i, final int j, final byte pivot, final byte[] values, final int[] range, final ExecutorService executor )
+	{
+		final int[] bounds = blocks( i, j );
+		final int numBlocks = bounds.length - 1;
+		final int[] counts = new int[ 2 * numBlocks ];
+		forEachBlock( numBlocks, executor, b -> {
+			int lt = 0;
+			int eq = 0;
+			for ( int p = bounds[ b ]; p < bounds[ b + 1 ]; ++p )
+			{
+				final byte v = values[ p ];
+				if ( v < pivot )
+					++lt;
+				else if ( !( v > pivot ) )
+					++eq;
+			}
+			counts[ 2 * b ] = lt;
+			counts[ 2 * b + 1 ] = eq;
+		} );
+		final int[] offsets = offsets( i, j, counts, range );
+		final byte[] tmp = new byte[ j - i + 1 ];
+		forEachBlock( numBlocks, executor, b -> {
+			int lt = offsets[ 3 * b ] - i;
+			int eq = offsets[ 3 * b + 1 ] - i;
+			int gt = offsets[ 3 * b + 2 ] - i;
+			for ( int p = bounds[ b ]; p < bounds[ b + 1 ]; ++p )
+			{
+				final byte v = values[ p ];
+				if ( v < pivot )
+					tmp[ lt++ ] = v;
+				else if ( v > pivot )
+					tmp[ gt++ ] = v;
+				else
+					tmp[ eq++ ] = v;
+			}
+		} );
+		forEachBlock( numBlocks, executor, b -> System.arraycopy( tmp, bounds[ b ] - i, values, bounds[ b ], bounds[ b + 1 ] - bounds[ b ] ) );
+	}
+
 	/**
 	 * Partition a subarray of {@code values}.
 	 *
@@ -180,6 +293,117 @@ public class Partition
 		return i;
 	}
 
+	/**
+	 * Three-way partition a subarray of {@code values} around {@code pivot}.
+	 *
+	 * The elements {@code [i,j]} are reordered, such that all elements smaller
+	 * than the pivot come first, followed by all elements equal to the pivot,
+	 * followed by all elements larger than the pivot. Runs of equal elements,
+	 * e.g., saturated pixels, are thereby excluded from further partitioning.
+	 *
+	 * @param i
+	 *            index of first element of subarray
+	 * @param j
+	 *            index of last element of subarray
+	 * @param pivot
+	 *            pivot value
+	 * @param values
+	 *            array
+	 * @param range
+	 *            receives the index of the first and the last element equal
+	 *            to the pivot. If there is no such element, {@code range[0]}
+	 *            is the index of the first element larger than the pivot and
+	 *            {@code range[1] = range[0] - 1}.
+	 */
+	public static void partitionSubList( final int i, final int j, final short pivot, final short[] values, final int[] range )
+	{
+		int lt = i;
+		int gt = j;
+		int x = i;
+		while ( x <= gt )
+		{
+			final short v = values[ x ];
+			if ( v < pivot )
+			{
+				values[ x++ ] = values[ lt ];
+				values[ lt++ ] = v;
+			}
+			else if ( v > pivot )
+			{
+				values[ x ] = values[ gt ];
+				values[ gt-- ] = v;
+			}
+			else
+				++x;
+		}
+		range[ 0 ] = lt;
+		range[ 1 ] = gt;
+	}
+
+	/**
+	 * Three-way partition a subarray of {@code values} around {@code pivot}
+	 * in parallel, see
+	 * {@link #partitionSubList(int, int, short, short[], int[])}.
+	 *
+	 * The subarray is split into one block per task. Each task counts the
+	 * elements of its block that are smaller than, equal to, and larger than
+	 * the pivot, and then copies them to their final positions in a
+	 * temporary array, which is finally copied back to {@code values}. The
+	 * order of the elements within each of the three parts is preserved.
+	 *
+	 * @param i
+	 *            index of first element of subarray
+	 * @param j
+	 *            index of last element of subarray
+	 * @param pivot
+	 *            pivot value
+	 * @param values
+	 *            array
+	 * @param range
+	 *            receives the index of the first and the last element equal
+	 *            to the pivot.
+	 * @param executor
+	 *            runs the tasks
+	 */
+	public static void partitionSubList( final int i, final int j, final short pivot, final short[] values, final int[] range, final ExecutorService executor )
+	{
+		final int[] bounds = blocks( i, j );
+		final int numBlocks = bounds.length - 1;
+		final int[] counts = new int[ 2 * numBlocks ];
+		forEachBlock( numBlocks, executor, b -> {
+			int lt = 0;
+			int eq = 0;
+			for ( int p = bounds[ b ]; p < bounds[ b + 1 ]; ++p )
+			{
+				final short v = values[ p ];
+				if ( v < pivot )
+					++lt;
+				else if ( !( v > pivot ) )
+					++eq;
+			}
+			counts[ 2 * b ] = lt;
+			counts[ 2 * b + 1 ] = eq;
+		} );
+		final int[] offsets = offsets( i, j, counts, range );
+		final short[] tmp = new short[ j - i + 1 ];
+		forEachBlock( numBlocks, executor, b -> {
+			int lt = offsets[ 3 * b ] - i;
+			int eq = offsets[ 3 * b + 1 ] - i;
+			int gt = offsets[ 3 * b + 2 ] - i;
+			for ( int p = bounds[ b ]; p < bounds[ b + 1 ]; ++p )
+			{
+				final short v = values[ p ];
+				if ( v < pivot )
+					tmp[ lt++ ] = v;
+				else if ( v > pivot )
+					tmp[ gt++ ] = v;
+				else
+					tmp[ eq++ ] = v;
+			}
+		} );
+		forEachBlock( numBlocks, executor, b -> System.arraycopy( tmp, bounds[ b ] - i, values, bounds[ b ], bounds[ b + 1 ] - bounds[ b ] ) );
+	}
+
 	/**
 	 * Partition a subarray of {@code values}.
 	 *
@@ -248,6 +472,117 @@ public class Partition
 		return i;
 	}
 
+	/**
+	 * Three-way partition a subarray of {@code values} around {@code pivot}.
+	 *
+	 * The elements {@code [i,j]} are reordered, such that all elements smaller
+	 * than the pivot come first, followed by all elements equal to the pivot,
+	 * followed by all elements larger than the pivot. Runs of equal elements,
+	 * e.g., saturated pixels, are thereby excluded from further partitioning.
+	 *
+	 * @param i
+	 *            index of first element of subarray
+	 * @param j
+	 *            index of last element of subarray
+	 * @param pivot
+	 *            pivot value
+	 * @param values
+	 *            array
+	 * @param range
+	 *            receives the index of the first and the last element equal
+	 *            to the pivot. If there is no such element, {@code range[0]}
+	 *            is the index of the first element larger than the pivot and
+	 *            {@code range[1] = range[0] - 1}.
+	 */
+	public static void partitionSubList( final int i, final int j, final int pivot, final int[] values, final int[] range )
+	{
+		int lt = i;
+		int gt = j;
+		int x = i;
+		while ( x <= gt )
+		{
+			final int v = values[ x ];
+			if ( v < pivot )
+			{
+				values[ x++ ] = values[ lt ];
+				values[ lt++ ] = v;
+			}
+			else if ( v > pivot )
+			{
+				values[ x ] = values[ gt ];
+				values[ gt-- ] = v;
+			}
+			else
+				++x;
+		}
+		range[ 0 ] = lt;
+		range[ 1 ] = gt;
+	}
+
+	/**
+	 * Three-way partition a subarray of {@code values} around {@code pivot}
+	 * in parallel, see
+	 * {@link #partitionSubList(int, int, int, int[], int[])}.
+	 *
+	 * The subarray is split into one block per task. Each task counts the
+	 * elements of its block that are smaller than, equal to, and larger than
+	 * the pivot, and then copies them to their final positions in a
+	 * temporary array, which is finally copied back to {@code values}. The
+	 * order of the elements within each of the three parts is preserved.
+	 *
+	 * @param i
+	 *            index of first element of subarray
+	 * @param j
+	 *            index of last element of subarray
+	 * @param pivot
+	 *            pivot value
+	 * @param values
+	 *            array
+	 * @param range
+	 *            receives the index of the first and the last element equal
+	 *            to the pivot.
+	 * @param executor
+	 *            runs the tasks
+	 */
+	public static void partitionSubList( final int i, final int j, final int pivot, final int[] values, final int[] range, final ExecutorService executor )
+	{
+		final int[] bounds = blocks( i, j );
+		final int numBlocks = bounds.length - 1;
+		final int[] counts = new int[ 2 * numBlocks ];
+		forEachBlock( numBlocks, executor, b -> {
+			int lt = 0;
+			int eq = 0;
+			for ( int p = bounds[ b ]; p < bounds[ b + 1 ]; ++p )
+			{
+				final int v = values[ p ];
+				if ( v < pivot )
+					++lt;
+				else if ( !( v > pivot ) )
+					++eq;
+			}
+			counts[ 2 * b ] = lt;
+			counts[ 2 * b + 1 ] = eq;
+		} );
+		final int[] offsets = offsets( i, j, counts, range );
+		final int[] tmp = new int[ j - i + 1 ];
+		forEachBlock( numBlocks, executor, b -> {
+			int lt = offsets[ 3 * b ] - i;
+			int eq = offsets[ 3 * b + 1 ] - i;
+			int gt = offsets[ 3 * b + 2 ] - i;
+			for ( int p = bounds[ b ]; p < bounds[ b + 1 ]; ++p )
+			{
+				final int v = values[ p ];
+				if ( v < pivot )
+					tmp[ lt++ ] = v;
+				else if ( v > pivot )
+					tmp[ gt++ ] = v;
+				else
+					tmp[ eq++ ] = v;
+			}
+		} );
+		forEachBlock( numBlocks, executor, b -> System.arraycopy( tmp, bounds[ b ] - i, values, bounds[ b ], bounds[ b + 1 ] - bounds[ b ] ) );
+	}
+
 	/**
 	 * Partition a subarray of {@code values}.
 	 *
@@ -316,6 +651,117 @@ public class Partition
 		return i;
 	}
 
+	/**
+	 * Three-way partition a subarray of {@code values} around {@code pivot}.
+	 *
+	 * The elements {@code [i,j]} are reordered, such that all elements smaller
+	 * than the pivot come first, followed by all elements equal to the pivot,
+	 * followed by all elements larger than the pivot. Runs of equal elements,
+	 * e.g., saturated pixels, are thereby excluded from further partitioning.
+	 *
+	 * @param i
+	 *            index of first element of subarray
+	 * @param j
+	 *            index of last element of subarray
+	 * @param pivot
+	 *            pivot value
+	 * @param values
+	 *            array
+	 * @param range
+	 *            receives the index of the first and the last element equal
+	 *            to the pivot. If there is no such element, {@code range[0]}
+	 *            is the index of the first element larger than the pivot and
+	 *            {@code range[1] = range[0] - 1}.
+	 */
+	public static void partitionSubList( final int i, final int j, final long pivot, final long[] values, final int[] range )
+	{
+		int lt = i;
+		int gt = j;
+		int x = i;
+		while ( x <= gt )
+		{
+			final long v = values[ x ];
+			if ( v < pivot )
+			{
+				values[ x++ ] = values[ lt ];
+				values[ lt++ ] = v;
+			}
+			else if ( v > pivot )
+			{
+				values[ x ] = values[ gt ];
+				values[ gt-- ] = v;
+			}
+			else
+				++x;
+		}
+		range[ 0 ] = lt;
+		range[ 1 ] = gt;
+	}
+
+	/**
+	 * Three-way partition a subarray of {@code values} around {@code pivot}
+	 * in parallel, see
+	 * {@link #partitionSubList(int, int, long, long[], int[])}.
+	 *
+	 * The subarray is split into one block per task. Each task counts the
+	 * elements of its block that are smaller than, equal to, and larger than
+	 * the pivot, and then copies them to their final positions in a
+	 * temporary array, which is finally copied back to {@code values}. The
+	 * order of the elements within each of the three parts is preserved.
+	 *
+	 * @param i
+	 *            index of first element of subarray
+	 * @param j
+	 *            index of last element of subarray
+	 * @param pivot
+	 *            pivot value
+	 * @param values
+	 *            array
+	 * @param range
+	 *            receives the index of the first and the last element equal
+	 *            to the pivot.
+	 * @param executor
+	 *            runs the tasks
+	 */
+	public static void partitionSubList( final int i, final int j, final long pivot, final long[] values, final int[] range, final ExecutorService executor )
+	{
+		final int[] bounds = blocks( i, j );
+		final int numBlocks = bounds.length - 1;
+		final int[] counts = new int[ 2 * numBlocks ];
+		forEachBlock( numBlocks, executor, b -> {
+			int lt = 0;
+			int eq = 0;
+			for ( int p = bounds[ b ]; p < bounds[ b + 1 ]; ++p )
+			{
+				final long v = values[ p ];
+				if ( v < pivot )
+					++lt;
+				else if ( !( v > pivot ) )
+					++eq;
+			}
+			counts[ 2 * b ] = lt;
+			counts[ 2 * b + 1 ] = eq;
+		} );
+		final int[] offsets = offsets( i, j, counts, range );
+		final long[] tmp = new long[ j - i + 1 ];
+		forEachBlock( numBlocks, executor, b -> {
+			int lt = offsets[ 3 * b ] - i;
+			int eq = offsets[ 3 * b + 1 ] - i;
+			int gt = offsets[ 3 * b + 2 ] - i;
+			for ( int p = bounds[ b ]; p < bounds[ b + 1 ]; ++p )
+			{
+				final long v = values[ p ];
+				if ( v < pivot )
+					tmp[ lt++ ] = v;
+				else if ( v > pivot )
+					tmp[ gt++ ] = v;
+				else
+					tmp[ eq++ ] = v;
+			}
+		} );
+		forEachBlock( numBlocks, executor, b -> System.arraycopy( tmp, bounds[ b ] - i, values, bounds[ b ], bounds[ b + 1 ] - bounds[ b ] ) );
+	}
+
 	/**
 	 * Partition a subarray of {@code values}.
 	 *
@@ -384,6 +830,117 @@ public class Partition
 		return i;
 	}
 
+	/**
+	 * Three-way partition a subarray of {@code values} around {@code pivot}.
+	 *
+	 * The elements {@code [i,j]} are reordered, such that all elements smaller
+	 * than the pivot come first, followed by all elements equal to the pivot,
+	 * followed by all elements larger than the pivot. Runs of equal elements,
+	 * e.g., saturated pixels, are thereby excluded from further partitioning.
+	 *
+	 * @param i
+	 *            index of first element of subarray
+	 * @param j
+	 *            index of last element of subarray
+	 * @param pivot
+	 *            pivot value
+	 * @param values
+	 *            array
+	 * @param range
+	 *            receives the index of the first and the last element equal
+	 *            to the pivot. If there is no such element, {@code range[0]}
+	 *            is the index of the first element larger than the pivot and
+	 *            {@code range[1] = range[0] - 1}.
+	 */
+	public static void partitionSubList( final int i, final int j, final float pivot, final float[] values, final int[] range )
+	{
+		int lt = i;
+		int gt = j;
+		int x = i;
+		while ( x <= gt )
+		{
+			final float v = values[ x ];
+			if ( v < pivot )
+			{
+				values[ x++ ] = values[ lt ];
+				values[ lt++ ] = v;
+			}
+			else if ( v > pivot )
+			{
+				values[ x ] = values[ gt ];
+				values[ gt-- ] = v;
+			}
+			else
+				++x;
+		}
+		range[ 0 ] = lt;
+		range[ 1 ] = gt;
+	}
+
+	/**
+	 * Three-way partition a subarray of {@code values} around {@code pivot}
+	 * in parallel, see
+	 * {@link #partitionSubList(int, int, float, float[], int[])}.
+	 *
+	 * The subarray is split into one block per task. Each task counts the
+	 * elements of its block that are smaller than, equal to, and larger than
+	 * the pivot, and then copies them to their final positions in a
+	 * temporary array, which is finally copied back to {@code values}. The
+	 * order of the elements within each of the three parts is preserved.
+	 *
+	 * @param i
+	 *            index of first element of subarray
+	 * @param j
+	 *            index of last element of subarray
+	 * @param pivot
+	 *            pivot value
+	 * @param values
+	 *            array
+	 * @param range
+	 *            receives the index of the first and the last element equal
+	 *            to the pivot.
+	 * @param executor
+	 *            runs the tasks
+	 */
+	public static void partitionSubList( final int i, final int j, final float pivot, final float[] values, final int[] range, final ExecutorService executor )
+	{
+		final int[] bounds = blocks( i, j );
+		final int numBlocks = bounds.length - 1;
+		final int[] counts = new int[ 2 * numBlocks ];
+		forEachBlock( numBlocks, executor, b -> {
+			int lt = 0;
+			int eq = 0;
+			for ( int p = bounds[ b ]; p < bounds[ b + 1 ]; ++p )
+			{
+				final float v = values[ p ];
+				if ( v < pivot )
+					++lt;
+				else if ( !( v > pivot ) )
+					++eq;
+			}
+			counts[ 2 * b ] = lt;
+			counts[ 2 * b + 1 ] = eq;
+		} );
+		final int[] offsets = offsets( i, j, counts, range );
+		final float[] tmp = new float[ j - i + 1 ];
+		forEachBlock( numBlocks, executor, b -> {
+			int lt = offsets[ 3 * b ] - i;
+			int eq = offsets[ 3 * b + 1 ] - i;
+			int gt = offsets[ 3 * b + 2 ] - i;
+			for ( int p = bounds[ b ]; p < bounds[ b + 1 ]; ++p )
+			{
+				final float v = values[ p ];
+				if ( v < pivot )
+					tmp[ lt++ ] = v;
+				else if ( v > pivot )
+					tmp[ gt++ ] = v;
+				else
+					tmp[ eq++ ] = v;
+			}
+		} );
+		forEachBlock( numBlocks, executor, b -> System.arraycopy( tmp, bounds[ b ] - i, values, bounds[ b ], bounds[ b + 1 ] - bounds[ b ] ) );
+	}
+
 	/**
 	 * Partition a subarray of {@code values}.
 	 *
@@ -452,6 +1009,117 @@ public class Partition
 		return i;
 	}
 
+	/**
+	 * Three-way partition a subarray of {@code values} around {@code pivot}.
+	 *
+	 * The elements {@code [i,j]} are reordered, such that all elements smaller
+	 * than the pivot come first, followed by all elements equal to the pivot,
+	 * followed by all elements larger than the pivot. Runs of equal elements,
+	 * e.g., saturated pixels, are thereby excluded from further partitioning.
+	 *
+	 * @param i
+	 *            index of first element of subarray
+	 * @param j
+	 *            index of last element of subarray
+	 * @param pivot
+	 *            pivot value
+	 * @param values
+	 *            array
+	 * @param range
+	 *            receives the index of the first and the last element equal
+	 *            to the pivot. If there is no such element, {@code range[0]}
+	 *            is the index of the first element larger than the pivot and
+	 *            {@code range[1] = range[0] - 1}.
+	 */
+	public static void partitionSubList( final int i, final int j, final double pivot, final double[] values, final int[] range )
+	{
+		int lt = i;
+		int gt = j;
+		int x = i;
+		while ( x <= gt )
+		{
+			final double v = values[ x ];
+			if ( v < pivot )
+			{
+				values[ x++ ] = values[ lt ];
+				values[ lt++ ] = v;
+			}
+			else if ( v > pivot )
+			{
+				values[ x ] = values[ gt ];
+				values[ gt-- ] = v;
+			}
+			else
+				++x;
+		}
+		range[ 0 ] = lt;
+		range[ 1 ] = gt;
+	}
+
+	/**
+	 * Three-way partition a subarray of {@code values} around {@code pivot}
+	 * in parallel, see
+	 * {@link #partitionSubList(int, int, double, double[], int[])}.
+	 *
+	 * The subarray is split into one block per task. Each task counts the
+	 * elements of its block that are smaller than, equal to, and larger than
+	 * the pivot, and then copies them to their final positions in a
+	 * temporary array, which is finally copied back to {@code values}. The
+	 * order of the elements within each of the three parts is preserved.
+	 *
+	 * @param i
+	 *            index of first element of subarray
+	 * @param j
+	 *            index of last element of subarray
+	 * @param pivot
+	 *            pivot value
+	 * @param values
+	 *            array
+	 * @param range
+	 *            receives the index of the first and the last element equal
+	 *            to the pivot.
+	 * @param executor
+	 *            runs the tasks
+	 */
+	public static void partitionSubList( final int i, final int j, final double pivot, final double[] values, final int[] range, final ExecutorService executor )
+	{
+		final int[] bounds = blocks( i, j );
+		final int numBlocks = bounds.length - 1;
+		final int[] counts = new int[ 2 * numBlocks ];
+		forEachBlock( numBlocks, executor, b -> {
+			int lt = 0;
+			int eq = 0;
+			for ( int p = bounds[ b ]; p < bounds[ b + 1 ]; ++p )
+			{
+				final double v = values[ p ];
+				if ( v < pivot )
+					++lt;
+				else if ( !( v > pivot ) )
+					++eq;
+			}
+			counts[ 2 * b ] = lt;
+			counts[ 2 * b + 1 ] = eq;
+		} );
+		final int[] offsets = offsets( i, j, counts, range );
+		final double[] tmp = new double[ j - i + 1 ];
+		forEachBlock( numBlocks, executor, b -> {
+			int lt = offsets[ 3 * b ] - i;
+			int eq = offsets[ 3 * b + 1 ] - i;
+			int gt = offsets[ 3 * b + 2 ] - i;
+			for ( int p = bounds[ b ]; p < bounds[ b + 1 ]; ++p )
+			{
+				final double v = values[ p ];
+				if ( v < pivot )
+					tmp[ lt++ ] = v;
+				else if ( v > pivot )
+					tmp[ gt++ ] = v;
+				else
+					tmp[ eq++ ] = v;
+			}
+		} );
+		forEachBlock( numBlocks, executor, b -> System.arraycopy( tmp, bounds[ b ] - i, values, bounds[ b ], bounds[ b + 1 ] - bounds[ b ] ) );
+	}
+
 	/**
 	 * Partition a subarray of {@code values}.
 	 *
@@ -520,6 +1188,117 @@ public class Partition
 		return i;
 	}
 
+	/**
+	 * Three-way partition a subarray of {@code values} around {@code pivot}.
+	 *
+	 * The elements {@code [i,j]} are reordered, such that all elements smaller
+	 * than the pivot come first, followed by all elements equal to the pivot,
+	 * followed by all elements larger than the pivot. Runs of equal elements,
+	 * e.g., saturated pixels, are thereby excluded from further partitioning.
+	 *
+	 * @param i
+	 *            index of first element of subarray
+	 * @param j
+	 *            index of last element of subarray
+	 * @param pivot
+	 *            pivot value
+	 * @param values
+	 *            array
+	 * @param range
+	 *            receives the index of the first and the last element equal
+	 *            to the pivot. If there is no such element, {@code range[0]}
+	 *            is the index of the first element larger than the pivot and
+	 *            {@code range[1] = range[0] - 1}.
+	 */
+	public static void partitionSubList( final int i, final int j, final char pivot, final char[] values, final int[] range )
+	{
+		int lt = i;
+		int gt = j;
+		int x = i;
+		while ( x <= gt )
+		{
+			final char v = values[ x ];
+			if ( v < pivot )
+			{
+				values[ x++ ] = values[ lt ];
+				values[ lt++ ] = v;
+			}
+			else if ( v > pivot )
+			{
+				values[ x ] = values[ gt ];
+				values[ gt-- ] = v;
+			}
+			else
+				++x;
+		}
+		range[ 0 ] = lt;
+		range[ 1 ] = gt;
+	}
+
+	/**
+	 * Three-way partition a subarray of {@code values} around {@code pivot}
+	 * in parallel, see
+	 * {@link #partitionSubList(int, int, char, char[], int[])}.
+	 *
+	 * The subarray is split into one block per task. Each task counts the
+	 * elements of its block that are smaller than, equal to, and larger than
+	 * the pivot, and then copies them to their final positions in a
+	 * temporary array, which is finally copied back to {@code values}. The
+	 * order of the elements within each of the three parts is preserved.
+	 *
+	 * @param i
+	 *            index of first element of subarray
+	 * @param j
+	 *            index of last element of subarray
+	 * @param pivot
+	 *            pivot value
+	 * @param values
+	 *            array
+	 * @param range
+	 *            receives the index of the first and the last element equal
+	 *            to the pivot.
+	 * @param executor
+	 *            runs the tasks
+	 */
+	public static void partitionSubList( final int i, final int j, final char pivot, final char[] values, final int[] range, final ExecutorService executor )
+	{
+		final int[] bounds = blocks( i, j );
+		final int numBlocks = bounds.length - 1;
+		final int[] counts = new int[ 2 * numBlocks ];
+		forEachBlock( numBlocks, executor, b -> {
+			int lt = 0;
+			int eq = 0;
+			for ( int p = bounds[ b ]; p < bounds[ b + 1 ]; ++p )
+			{
+				final char v = values[ p ];
+				if ( v < pivot )
+					++lt;
+				else if ( !( v > pivot ) )
+					++eq;
+			}
+			counts[ 2 * b ] = lt;
+			counts[ 2 * b + 1 ] = eq;
+		} );
+		final int[] offsets = offsets( i, j, counts, range );
+		final char[] tmp = new char[ j - i + 1 ];
+		forEachBlock( numBlocks, executor, b -> {
+			int lt = offsets[ 3 * b ] - i;
+			int eq = offsets[ 3 * b + 1 ] - i;
+			int gt = offsets[ 3 * b + 2 ] - i;
+			for ( int p = bounds[ b ]; p < bounds[ b + 1 ]; ++p )
+			{
+				final char v = values[ p ];
+				if ( v < pivot )
+					tmp[ lt++ ] = v;
+				else if ( v > pivot )
+					tmp[ gt++ ] = v;
+				else
+					tmp[ eq++ ] = v;
+			}
+		} );
+		forEachBlock( numBlocks, executor, b -> System.arraycopy( tmp, bounds[ b ] - i, values, bounds[ b ], bounds[ b + 1 ] - bounds[ b ] ) );
+	}
+
 	/**
 	 * Partition a sublist of {@code values}.
 	 *
@@ -1175,4 +1954,76 @@ public class Partition
 		}
 		return;
 	}
+
+	/**
+	 * Subarrays are split into blocks of at least this many elements for
+	 * parallel partitioning.
+	 */
+	private static final int MIN_BLOCK_SIZE = 1 << 16;
+
+	/**
+	 * Split {@code [i,j]} into one block per available processor.
+	 *
+	 * @return block boundaries, block {@code b} is
+	 *         {@code [bounds[b], bounds[b+1])}.
+	 */
+	private static int[] blocks( final int i, final int j )
+	{
+		final long size = ( long ) j - i + 1;
+		final int numBlocks = ( int ) Math.max( 1, Math.min( Runtime.getRuntime().availableProcessors(), size / MIN_BLOCK_SIZE ) );
+		final int[] bounds = new int[ numBlocks + 1 ];
+		for ( int b = 0; b <= numBlocks; ++b )
+			bounds[ b ] = ( int ) ( i + size * b / numBlocks );
+		return bounds;
+	}
+
+	/**
+	 * Compute where each block puts its smaller, equal, and larger elements,
+	 * given the number of smaller and equal elements of each block in
+	 * {@code counts}. The range of elements equal to the pivot is stored in
+	 * {@code range}.
+	 *
+	 * @return for each block the start index of its smaller, equal, and
+	 *         larger elements.
+	 */
+	private static int[] offsets( final int i, final int j, final int[] counts, final int[] range )
+	{
+		final int numBlocks = counts.length / 2;
+		int numLt = 0;
+		int numEq = 0;
+		for ( int b = 0; b < numBlocks; ++b )
+		{
+			numLt += counts[ 2 * b ];
+			numEq += counts[ 2 * b + 1 ];
+		}
+		range[ 0 ] = i + numLt;
+		range[ 1 ] = i + numLt + numEq - 1;
+		final int[] offsets = new int[ 3 * numBlocks ];
+		int lt = i;
+		int eq = i + numLt;
+		int gt = i + numLt + numEq;
+		final int[] bounds = blocks( i, j );
+		for ( int b = 0; b < numBlocks; ++b )
+		{
+			offsets[ 3 * b ] = lt;
+			offsets[ 3 * b + 1 ] = eq;
+			offsets[ 3 * b + 2 ] = gt;
+			final int size = bounds[ b + 1 ] - bounds[ b ];
+			lt += counts[ 2 * b ];
+			eq += counts[ 2 * b + 1 ];
+			gt += size - counts[ 2 * b ] - counts[ 2 * b + 1 ];
+		}
+		return offsets;
+	}
+
+	/**
+	 * Run {@code task} for each block index with {@code executor}.
+	 */
+	private static void forEachBlock( final int numBlocks, final ExecutorService executor, final IntConsumer task )
+	{
+		ParallelTasks.forEachRange( numBlocks, executor, ( from, to ) -> {
+			for ( int b = from; b < to; ++b )
+				task.accept( b );
+		} );
+	}
 }
@@ -0,0 +1,418 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2018 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import net.imglib2.Cursor;
+import net.imglib2.IterableInterval;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.basictypeaccess.array.ArrayDataAccess;
+import net.imglib2.img.cell.AbstractCellImg;
+import net.imglib2.img.cell.Cell;
+import net.imglib2.img.planar.PlanarImg;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.type.numeric.integer.ByteType;
+import net.imglib2.type.numeric.integer.IntType;
+import net.imglib2.type.numeric.integer.LongType;
+import net.imglib2.type.numeric.integer.ShortType;
+import net.imglib2.type.numeric.integer.UnsignedByteType;
+import net.imglib2.type.numeric.integer.UnsignedIntType;
+import net.imglib2.type.numeric.integer.UnsignedShortType;
+import net.imglib2.type.numeric.real.DoubleType;
+import net.imglib2.type.numeric.real.FloatType;
+
+/**
+ * Direct access to the primitive arrays that store the values of
+ * {@link ArrayImg}, {@link PlanarImg}, and {@link AbstractCellImg} of the
+ * standard real types, and iteration over their values in chunks.
+ * <p>
+ * This class is internal to ImgLib2, it is public only to be shared across
+ * packages. It is not part of the API and may change without notice.
+ * </p>
+ */
+public final class PrimitiveStorage
+{
+	private PrimitiveStorage()
+	{}
+
+	/**
+	 * Real types whose values are stored one per primitive array element.
+	 */
+	public enum Kind
+	{
+		BYTE( ByteType.class, byte[].class ),
+		UNSIGNED_BYTE( UnsignedByteType.class, byte[].class ),
+		SHORT( ShortType.class, short[].class ),
+		UNSIGNED_SHORT( UnsignedShortType.class, short[].class ),
+		INT( IntType.class, int[].class ),
+		UNSIGNED_INT( UnsignedIntType.class, int[].class ),
+		LONG( LongType.class, long[].class ),
+		FLOAT( FloatType.class, float[].class ),
+		DOUBLE( DoubleType.class, double[].class );
+
+		final Class< ? > typeClass;
+
+		final Class< ? > arrayClass;
+
+		Kind( final Class< ? > typeClass, final Class< ? > arrayClass )
+		{
+			this.typeClass = typeClass;
+			this.arrayClass = arrayClass;
+		}
+	}
+
+	/**
+	 * Returns the {@link Kind} of the elements of {@code data}, or
+	 * {@code null} if {@code data} is empty or its type is not one of the
+	 * standard real types. Subclasses of the standard types are not
+	 * recognized, as they may interpret the stored values differently.
+	 */
+	public static Kind kind( final IterableInterval< ? > data )
+	{
+		if ( data.size() == 0 )
+			return null;
+		final Class< ? > type = data.firstElement().getClass();
+		for ( final Kind kind : Kind.values() )
+			if ( kind.typeClass == type )
+				return kind;
+		return null;
+	}
+
+	/**
+	 * Collect the primitive arrays that store the values of {@code data}, in
+	 * iteration order, and the number of values in each.
+	 *
+	 * @return false if {@code data} is not an {@link ArrayImg},
+	 *         {@link PlanarImg}, or {@link AbstractCellImg} whose values are
+	 *         stored in primitive arrays of {@code kind}.
+	 */
+	public static boolean arrays( final Iterable< ? > data, final Kind kind, final List< Object > arrays, final List< Integer > sizes )
+	{
+		if ( kind == null )
+			return false;
+		if ( data instanceof ArrayImg )
+		{
+			final ArrayImg< ?, ? > img = ( ArrayImg< ?, ? > ) data;
+			return add( img.update( null ), kind, ( int ) img.size(), arrays, sizes );
+		}
+		if ( data instanceof PlanarImg )
+		{
+			final PlanarImg< ?, ? > img = ( PlanarImg< ?, ? > ) data;
+			final int planeSize = ( int ) ( img.size() / img.numSlices() );
+			for ( int i = 0; i < img.numSlices(); ++i )
+				if ( !add( img.getPlane( i ), kind, planeSize, arrays, sizes ) )
+					return false;
+			return true;
+		}
+		if ( data instanceof AbstractCellImg )
+		{
+			for ( final Object cell : ( ( AbstractCellImg< ?, ?, ?, ? > ) data ).getCells() )
+				if ( !add( ( ( Cell< ? > ) cell ).getData(), kind, ( int ) ( ( Cell< ? > ) cell ).size(), arrays, sizes ) )
+					return false;
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Returns the number of values in each cell or plane of {@code data}, in
+	 * iteration order, or {@code null} if {@code data} is not a
+	 * {@link PlanarImg} or {@link AbstractCellImg}.
+	 */
+	public static long[] segmentSizes( final Iterable< ? > data )
+	{
+		if ( data instanceof PlanarImg )
+		{
+			final PlanarImg< ?, ? > img = ( PlanarImg< ?, ? > ) data;
+			final long[] sizes = new long[ img.numSlices() ];
+			Arrays.fill( sizes, img.size() / img.numSlices() );
+			return sizes;
+		}
+		if ( data instanceof AbstractCellImg )
+		{
+			final IterableInterval< ? > cells = ( ( AbstractCellImg< ?, ?, ?, ? > ) data ).getCells();
+			final long[] sizes = new long[ ( int ) cells.size() ];
+			int i = 0;
+			for ( final Object cell : cells )
+				sizes[ i++ ] = ( ( Cell< ? > ) cell ).size();
+			return sizes;
+		}
+		return null;
+	}
+
+	private static boolean add( final Object access, final Kind kind, final int size, final List< Object > arrays, final List< Integer > sizes )
+	{
+		if ( !( access instanceof ArrayDataAccess ) )
+			return false;
+		final Object array = ( ( ArrayDataAccess< ? > ) access ).getCurrentStorageArray();
+		if ( array == null || array.getClass() != kind.arrayClass )
+			return false;
+		arrays.add( array );
+		sizes.add( size );
+		return true;
+	}
+
+	/**
+	 * Convert the values of {@code array} from index {@code from} (inclusive)
+	 * to {@code to} (exclusive) to {@code double}, and store them in
+	 * {@code buffer} starting at index 0.
+	 */
+	public static void toDoubles( final Object array, final Kind kind, final int from, final int to, final double[] buffer )
+	{
+		switch ( kind )
+		{
+		case BYTE:
+		{
+			final byte[] a = ( byte[] ) array;
+			for ( int i = from; i < to; ++i )
+				buffer[ i - from ] = a[ i ];
+			break;
+		}
+		case UNSIGNED_BYTE:
+		{
+			final byte[] a = ( byte[] ) array;
+			for ( int i = from; i < to; ++i )
+				buffer[ i - from ] = a[ i ] & 0xff;
+			break;
+		}
+		case SHORT:
+		{
+			final short[] a = ( short[] ) array;
+			for ( int i = from; i < to; ++i )
+				buffer[ i - from ] = a[ i ];
+			break;
+		}
+		case UNSIGNED_SHORT:
+		{
+			final short[] a = ( short[] ) array;
+			for ( int i = from; i < to; ++i )
+				buffer[ i - from ] = a[ i ] & 0xffff;
+			break;
+		}
+		case INT:
+		{
+			final int[] a = ( int[] ) array;
+			for ( int i = from; i < to; ++i )
+				buffer[ i - from ] = a[ i ];
+			break;
+		}
+		case UNSIGNED_INT:
+		{
+			final int[] a = ( int[] ) array;
+			for ( int i = from; i < to; ++i )
+				buffer[ i - from ] = a[ i ] & 0xffffffffL;
+			break;
+		}
+		case LONG:
+		{
+			final long[] a = ( long[] ) array;
+			for ( int i = from; i < to; ++i )
+				buffer[ i - from ] = a[ i ];
+			break;
+		}
+		case FLOAT:
+		{
+			final float[] a = ( float[] ) array;
+			for ( int i = from; i < to; ++i )
+				buffer[ i - from ] = a[ i ];
+			break;
+		}
+		case DOUBLE:
+			System.arraycopy( array, from, buffer, 0, to - from );
+			break;
+		}
+	}
+
+	/**
+	 * Visitor for {@link Chunks#forEach}.
+	 */
+	public interface ChunkConsumer
+	{
+		/**
+		 * @param values
+		 *            a storage array of one of the kinds read directly, or a
+		 *            {@code double[]} buffer; the chunk is from {@code from}
+		 *            (inclusive) to {@code to} (exclusive)
+		 */
+		void accept( Object values, int from, int to );
+	}
+
+	/**
+	 * The values of an {@link IterableInterval} in iteration order, in pieces
+	 * of at most {@code chunkSize} values. The pieces do not cross multiples of
+	 * {@code chunkSize} of the flat iteration index, nor the borders of
+	 * storage arrays, so they do not depend on how a range of values is split
+	 * up into tasks.
+	 * <p>
+	 * Storage arrays of the kinds read directly are passed as they are. Other
+	 * storage arrays are converted to {@code double} with
+	 * {@link PrimitiveStorage#toDoubles}, and data that is not stored in
+	 * primitive arrays is read with a {@link Cursor}, into a buffer. Only data
+	 * of a {@link RealType} can be read into a buffer.
+	 * </p>
+	 */
+	public static final class Chunks
+	{
+		private final IterableInterval< ? > data;
+
+		private final int chunkSize;
+
+		private final long size;
+
+		/**
+		 * The kind of the storage arrays, or {@code null} if {@link #data} is
+		 * read with a {@link Cursor}.
+		 */
+		private final Kind kind;
+
+		private final boolean direct;
+
+		private final List< Object > arrays;
+
+		/**
+		 * The values of {@code arrays.get( a )} have flat iteration index
+		 * {@code starts[ a ]} (inclusive) to {@code starts[ a + 1 ]}
+		 * (exclusive).
+		 */
+		private final long[] starts;
+
+		/**
+		 * @param directKinds
+		 *            the kinds of storage arrays passed to the
+		 *            {@link ChunkConsumer} as they are
+		 */
+		public Chunks( final IterableInterval< ? > data, final int chunkSize, final Kind... directKinds )
+		{
+			this.data = data;
+			this.chunkSize = chunkSize;
+			size = data.size();
+			final Kind k = kind( data );
+			final List< Object > a = new ArrayList<>();
+			final List< Integer > sizes = new ArrayList<>();
+			if ( PrimitiveStorage.arrays( data, k, a, sizes ) )
+			{
+				kind = k;
+				direct = Arrays.asList( directKinds ).contains( k );
+				arrays = a;
+				starts = new long[ a.size() + 1 ];
+				for ( int i = 0; i < a.size(); ++i )
+					starts[ i + 1 ] = starts[ i ] + sizes.get( i );
+			}
+			else
+			{
+				kind = null;
+				direct = false;
+				arrays = null;
+				starts = null;
+			}
+		}
+
+		/**
+		 * Returns the number of multiples of {@code chunkSize} of the flat
+		 * iteration index, see {@link #forEachChunk(int, int, ChunkConsumer)}.
+		 */
+		public int numChunks()
+		{
+			return ( int ) ( ( size + chunkSize - 1 ) / chunkSize );
+		}
+
+		/**
+		 * Returns whether all values are passed in storage arrays of the kinds
+		 * read directly.
+		 */
+		public boolean isDirect()
+		{
+			return direct;
+		}
+
+		/**
+		 * Visit the values with flat iteration index from
+		 * {@code from * chunkSize} (inclusive) to {@code to * chunkSize}
+		 * (exclusive) in order.
+		 */
+		public void forEachChunk( final int from, final int to, final ChunkConsumer consumer )
+		{
+			forEach( ( long ) from * chunkSize, Math.min( ( long ) to * chunkSize, size ), consumer );
+		}
+
+		/**
+		 * Visit the values with flat iteration index {@code from} (inclusive)
+		 * to {@code to} (exclusive) in order.
+		 */
+		public void forEach( final long from, final long to, final ChunkConsumer consumer )
+		{
+			if ( from >= to )
+				return;
+			final double[] buffer = direct ? null : new double[ ( int ) Math.min( chunkSize, to - from ) ];
+			if ( arrays != null )
+			{
+				int a = 0;
+				for ( long i = from; i < to; )
+				{
+					while ( starts[ a + 1 ] <= i )
+						++a;
+					final long end = Math.min( Math.min( to, starts[ a + 1 ] ), ( i / chunkSize + 1 ) * chunkSize );
+					final int lo = ( int ) ( i - starts[ a ] );
+					final int hi = ( int ) ( end - starts[ a ] );
+					if ( direct )
+						consumer.accept( arrays.get( a ), lo, hi );
+					else
+					{
+						toDoubles( arrays.get( a ), kind, lo, hi, buffer );
+						consumer.accept( buffer, 0, hi - lo );
+					}
+					i = end;
+				}
+			}
+			else
+			{
+				final Cursor< ? > cursor = data.cursor();
+				cursor.jumpFwd( from );
+				for ( long i = from; i < to; )
+				{
+					final long end = Math.min( to, ( i / chunkSize + 1 ) * chunkSize );
+					final int n = ( int ) ( end - i );
+					for ( int j = 0; j < n; ++j )
+						buffer[ j ] = ( ( RealType< ? > ) cursor.next() ).getRealDouble();
+					consumer.accept( buffer, 0, n );
+					i = end;
+				}
+			}
+		}
+	}
+}
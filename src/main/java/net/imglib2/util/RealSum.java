@@ -34,6 +34,8 @@
 
 package net.imglib2.util;
 
+import java.util.Arrays;
+
 /**
  * {@link RealSum} implements a method to reduce numerical instabilities when
  * summing up a very large number of double precision numbers. Numerical
@@ -134,4 +136,43 @@ public class RealSum
 			expand( s );
 		}
 	}
+
+	/**
+	 * Add all elements summed by {@code other}. The intermediate sums of
+	 * {@code other} are added at the level of their number of summands, so
+	 * partial sums of a large stream can be computed independently (e.g., in
+	 * parallel) and merged without losing precision.
+	 * 
+	 * @param other
+	 *            the sum to be added, not modified
+	 */
+	final public void add( final RealSum other )
+	{
+		for ( int level = 0; level < other.sums.length; ++level )
+			if ( other.flags[ level ] )
+				add( other.sums[ level ], level );
+	}
+
+	/**
+	 * Add an intermediate sum of {@code 2^level} elements.
+	 */
+	final protected void add( final double a, final int level )
+	{
+		int i = level;
+		double s = a;
+		while ( i < flags.length && flags[ i ] )
+		{
+			flags[ i ] = false;
+			s += sums[ i ];
+			sums[ i ] = 0.0;
+			++i;
+		}
+		if ( i >= flags.length )
+		{
+			sums = Arrays.copyOf( sums, i + 1 );
+			flags = Arrays.copyOf( flags, i + 1 );
+		}
+		flags[ i ] = true;
+		sums[ i ] = s;
+	}
 }
@@ -0,0 +1,367 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2018 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.util;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+
+import net.imglib2.Cursor;
+import net.imglib2.IterableInterval;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.cell.AbstractCellImg;
+import net.imglib2.img.planar.PlanarImg;
+import net.imglib2.type.numeric.RealType;
+
+/**
+ * Count, minimum, maximum, mean, and central moments up to the fourth of a
+ * sequence of values, e.g., the pixel values of an image.
+ * <p>
+ * The statistics are updated one value at a time with {@link #add(double)}
+ * (the Welford update, extended to higher moments), and partial statistics of
+ * disjoint parts of the data can be merged with {@link #add(Statistics)}. The
+ * update and merge formulas are those of Pébay, "Formulas for robust,
+ * one-pass parallel computation of covariances and arbitrary-order
+ * statistical moments" (2008). They avoid the cancellation of the textbook
+ * formulas based on sums of powers.
+ * </p>
+ * <p>
+ * {@link #of(IterableInterval)} and
+ * {@link #of(IterableInterval, ExecutorService)} gather all statistics of an
+ * image in one pass over its values. The values are processed in blocks of
+ * {@value #BLOCK_SIZE}. The storage arrays of {@link ArrayImg},
+ * {@link PlanarImg}, and {@link AbstractCellImg} of the standard real types
+ * are read directly (and converted to {@code double} block by block), other
+ * data is read with a {@link Cursor}. For each block, min, max, and mean are
+ * computed in one loop, and the central moments in a second loop over the
+ * block, while it is in cache. The values are split into one range of blocks
+ * per available processor. The block statistics are merged in iteration order
+ * into one partial result per range, and the partial results in range order.
+ * The ranges are the same with and without an {@link ExecutorService}, so the
+ * result does not depend on the number of threads.
+ * </p>
+ */
+public class Statistics
+{
+	/**
+	 * Number of values processed at a time by
+	 * {@link #of(IterableInterval, ExecutorService)}.
+	 */
+	public static final int BLOCK_SIZE = 4096;
+
+	private long n;
+
+	private double min;
+
+	private double max;
+
+	private double mean;
+
+	private double m2;
+
+	private double m3;
+
+	private double m4;
+
+	/**
+	 * Create empty {@link Statistics}.
+	 */
+	public Statistics()
+	{
+		reset();
+	}
+
+	/**
+	 * Remove all values.
+	 */
+	public void reset()
+	{
+		n = 0;
+		min = Double.POSITIVE_INFINITY;
+		max = Double.NEGATIVE_INFINITY;
+		mean = 0;
+		m2 = 0;
+		m3 = 0;
+		m4 = 0;
+	}
+
+	/**
+	 * Add a value.
+	 */
+	public void add( final double value )
+	{
+		add( 1, value, value, value, 0, 0, 0 );
+	}
+
+	/**
+	 * Add all values of {@code other}.
+	 *
+	 * @param other
+	 *            statistics of values disjoint from those of this, not
+	 *            modified
+	 */
+	public void add( final Statistics other )
+	{
+		add( other.n, other.min, other.max, other.mean, other.m2, other.m3, other.m4 );
+	}
+
+	/**
+	 * Merge the statistics of {@code nb} values with minimum {@code minb},
+	 * maximum {@code maxb}, mean {@code meanb}, and sums of the second, third,
+	 * and fourth power of the deviations from the mean {@code m2b},
+	 * {@code m3b}, and {@code m4b}.
+	 */
+	private void add( final long nb, final double minb, final double maxb, final double meanb, final double m2b, final double m3b, final double m4b )
+	{
+		if ( nb == 0 )
+			return;
+		if ( n == 0 )
+		{
+			n = nb;
+			min = minb;
+			max = maxb;
+			mean = meanb;
+			m2 = m2b;
+			m3 = m3b;
+			m4 = m4b;
+			return;
+		}
+		final double na = n;
+		final double nn = na + nb;
+		final double delta = meanb - mean;
+		final double d = delta / nn;
+		final double d2 = d * d;
+		final double nab = na * nb;
+
+		m4 += m4b + d2 * d2 * nab * ( na * na - nab + ( double ) nb * nb ) * nn
+				+ 6 * d2 * ( na * na * m2b + ( double ) nb * nb * m2 )
+				+ 4 * d * ( na * m3b - nb * m3 );
+		m3 += m3b + d2 * d * nab * ( na - nb ) * nn
+				+ 3 * d * ( na * m2b - nb * m2 );
+		m2 += m2b + d * delta * nab;
+		mean += d * nb;
+		n += nb;
+		if ( minb < min )
+			min = minb;
+		if ( maxb > max )
+			max = maxb;
+	}
+
+	/**
+	 * Add the values of {@code values} from index {@code from} (inclusive) to
+	 * {@code to} (exclusive): min, max, and mean in a first loop, central
+	 * moments in a second.
+	 */
+	private void add( final double[] values, final int from, final int to )
+	{
+		if ( from >= to )
+			return;
+		double bmin = values[ from ];
+		double bmax = values[ from ];
+		double sum = 0;
+		for ( int i = from; i < to; ++i )
+		{
+			final double v = values[ i ];
+			sum += v;
+			if ( v < bmin )
+				bmin = v;
+			if ( v > bmax )
+				bmax = v;
+		}
+		final int size = to - from;
+		final double bmean = sum / size;
+		double s2 = 0;
+		double s3 = 0;
+		double s4 = 0;
+		for ( int i = from; i < to; ++i )
+		{
+			final double dv = values[ i ] - bmean;
+			final double dv2 = dv * dv;
+			s2 += dv2;
+			s3 += dv2 * dv;
+			s4 += dv2 * dv2;
+		}
+		add( size, bmin, bmax, bmean, s2, s3, s4 );
+	}
+
+	/**
+	 * Returns the number of values.
+	 */
+	public long count()
+	{
+		return n;
+	}
+
+	/**
+	 * Returns the minimum, {@link Double#POSITIVE_INFINITY} if there are no
+	 * values.
+	 */
+	public double min()
+	{
+		return min;
+	}
+
+	/**
+	 * Returns the maximum, {@link Double#NEGATIVE_INFINITY} if there are no
+	 * values.
+	 */
+	public double max()
+	{
+		return max;
+	}
+
+	/**
+	 * Returns the sum of the values.
+	 */
+	public double sum()
+	{
+		return mean * n;
+	}
+
+	/**
+	 * Returns the mean, {@code NaN} if there are no values.
+	 */
+	public double mean()
+	{
+		return n == 0 ? Double.NaN : mean;
+	}
+
+	/**
+	 * Returns the sample variance (normalized by {@code n - 1}), {@code NaN}
+	 * if there are fewer than two values.
+	 */
+	public double variance()
+	{
+		return n < 2 ? Double.NaN : m2 / ( n - 1 );
+	}
+
+	/**
+	 * Returns the population variance (normalized by {@code n}), {@code NaN}
+	 * if there are no values.
+	 */
+	public double populationVariance()
+	{
+		return n == 0 ? Double.NaN : m2 / n;
+	}
+
+	/**
+	 * Returns the sample standard deviation, the square root of
+	 * {@link #variance()}.
+	 */
+	public double standardDeviation()
+	{
+		return Math.sqrt( variance() );
+	}
+
+	/**
+	 * Returns the {@code k}-th central moment (normalized by {@code n}) for
+	 * {@code k} from 0 to 4, {@code NaN} if there are no values.
+	 */
+	public double centralMoment( final int k )
+	{
+		if ( n == 0 )
+			return Double.NaN;
+		switch ( k )
+		{
+		case 0:
+			return 1;
+		case 1:
+			return 0;
+		case 2:
+			return m2 / n;
+		case 3:
+			return m3 / n;
+		case 4:
+			return m4 / n;
+		default:
+			throw new IllegalArgumentException( "central moments are computed up to order 4, not " + k );
+		}
+	}
+
+	/**
+	 * Returns the skewness {@code m3 / m2^(3/2)}, where {@code mk} is the
+	 * {@code k}-th central moment. {@code NaN} if all values are equal.
+	 */
+	public double skewness()
+	{
+		return Math.sqrt( n ) * m3 / Math.pow( m2, 1.5 );
+	}
+
+	/**
+	 * Returns the excess kurtosis {@code m4 / m2^2 - 3}, where {@code mk} is
+	 * the {@code k}-th central moment. {@code NaN} if all values are equal.
+	 */
+	public double kurtosis()
+	{
+		return n * m4 / ( m2 * m2 ) - 3;
+	}
+
+	@Override
+	public String toString()
+	{
+		return getClass().getSimpleName() + "(n = " + n + ", min = " + min + ", max = " + max + ", mean = " + mean() + ", sd = " + standardDeviation() + ")";
+	}
+
+	/**
+	 * Gather the statistics of the values of {@code data} in one pass.
+	 */
+	public static Statistics of( final IterableInterval< ? extends RealType< ? > > data )
+	{
+		return of( data, null );
+	}
+
+	/**
+	 * Gather the statistics of the values of {@code data} in one pass,
+	 * computed in parallel by {@code executor}, or serially if
+	 * {@code executor} is {@code null}.
+	 */
+	public static Statistics of( final IterableInterval< ? extends RealType< ? > > data, final ExecutorService executor )
+	{
+		final PrimitiveStorage.Chunks chunks = new PrimitiveStorage.Chunks( data, BLOCK_SIZE, PrimitiveStorage.Kind.DOUBLE );
+		final List< Statistics > partials = ParallelTasks.mapRanges( chunks.numChunks(), executor, ( from, to ) -> {
+			final Statistics partial = new Statistics();
+			final Statistics block = new Statistics();
+			chunks.forEachChunk( from, to, ( values, f, t ) -> {
+				block.reset();
+				block.add( ( double[] ) values, f, t );
+				partial.add( block );
+			} );
+			return partial;
+		} );
+		final Statistics statistics = new Statistics();
+		for ( final Statistics partial : partials )
+			statistics.add( partial );
+		return statistics;
+	}
+}
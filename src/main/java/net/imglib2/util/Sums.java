@@ -0,0 +1,288 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2018 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.util;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+
+import net.imglib2.Cursor;
+import net.imglib2.IterableInterval;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.cell.AbstractCellImg;
+import net.imglib2.img.planar.PlanarImg;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.type.numeric.real.DoubleType;
+import net.imglib2.type.numeric.real.FloatType;
+
+/**
+ * Accurate and fast sums of primitive arrays and image data.
+ * <p>
+ * Arrays are summed pairwise: blocks of {@value #BLOCK_SIZE} elements are
+ * summed with four independent accumulators (which also lets the processor
+ * overlap the additions), and the block sums are added recursively in pairs.
+ * The rounding error grows with the logarithm of the number of elements
+ * rather than linearly as for a simple loop.
+ * </p>
+ * <p>
+ * Image data is processed in chunks of {@value #CHUNK_SIZE} elements. For
+ * {@link FloatType} and {@link DoubleType} images backed by primitive arrays
+ * ({@link ArrayImg}, {@link PlanarImg}, and {@link AbstractCellImg}) the
+ * storage arrays are summed directly, other data is converted or read with a
+ * {@link Cursor} into a buffer, chunk by chunk (see
+ * {@link PrimitiveStorage.Chunks}). The chunks are split into one
+ * range per available processor. The chunk results are combined in order into
+ * one partial result per range, and the partial results in range order. The
+ * ranges are the same with and without an {@link ExecutorService}, so the
+ * result does not depend on the number of threads used.
+ * </p>
+ */
+public class Sums
+{
+	private Sums()
+	{}
+
+	/**
+	 * Number of elements summed with independent accumulators before the
+	 * block sums are added pairwise.
+	 */
+	public static final int BLOCK_SIZE = 128;
+
+	/**
+	 * Number of elements of image data summed by one task.
+	 */
+	public static final int CHUNK_SIZE = 1 << 14;
+
+	/**
+	 * Returns the sum of {@code values}.
+	 */
+	public static double sum( final double[] values )
+	{
+		return sum( values, 0, values.length );
+	}
+
+	/**
+	 * Returns the sum of the elements of {@code values} from index
+	 * {@code from} (inclusive) to {@code to} (exclusive).
+	 */
+	public static double sum( final double[] values, final int from, final int to )
+	{
+		final int n = to - from;
+		if ( n > BLOCK_SIZE )
+		{
+			final int mid = from + ( ( n / BLOCK_SIZE + 1 ) / 2 ) * BLOCK_SIZE;
+			return sum( values, from, mid ) + sum( values, mid, to );
+		}
+		double s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+		int i = from;
+		for ( ; i + 3 < to; i += 4 )
+		{
+			s0 += values[ i ];
+			s1 += values[ i + 1 ];
+			s2 += values[ i + 2 ];
+			s3 += values[ i + 3 ];
+		}
+		for ( ; i < to; ++i )
+			s0 += values[ i ];
+		return ( s0 + s1 ) + ( s2 + s3 );
+	}
+
+	/**
+	 * Returns the sum of {@code values}, computed in double precision.
+	 */
+	public static double sum( final float[] values )
+	{
+		return sum( values, 0, values.length );
+	}
+
+	/**
+	 * Returns the sum of the elements of {@code values} from index
+	 * {@code from} (inclusive) to {@code to} (exclusive), computed in double
+	 * precision.
+	 */
+	public static double sum( final float[] values, final int from, final int to )
+	{
+		final int n = to - from;
+		if ( n > BLOCK_SIZE )
+		{
+			final int mid = from + ( ( n / BLOCK_SIZE + 1 ) / 2 ) * BLOCK_SIZE;
+			return sum( values, from, mid ) + sum( values, mid, to );
+		}
+		double s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+		int i = from;
+		for ( ; i + 3 < to; i += 4 )
+		{
+			s0 += values[ i ];
+			s1 += values[ i + 1 ];
+			s2 += values[ i + 2 ];
+			s3 += values[ i + 3 ];
+		}
+		for ( ; i < to; ++i )
+			s0 += values[ i ];
+		return ( s0 + s1 ) + ( s2 + s3 );
+	}
+
+	/**
+	 * Returns the sum of {@code (values[i] - mean)^2} for {@code from <= i < to},
+	 * added pairwise as in {@link #sum(double[], int, int)}.
+	 */
+	public static double sumOfSquaredDeviations( final double[] values, final int from, final int to, final double mean )
+	{
+		final int n = to - from;
+		if ( n > BLOCK_SIZE )
+		{
+			final int mid = from + ( ( n / BLOCK_SIZE + 1 ) / 2 ) * BLOCK_SIZE;
+			return sumOfSquaredDeviations( values, from, mid, mean ) + sumOfSquaredDeviations( values, mid, to, mean );
+		}
+		double s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+		int i = from;
+		for ( ; i + 3 < to; i += 4 )
+		{
+			final double d0 = values[ i ] - mean;
+			final double d1 = values[ i + 1 ] - mean;
+			final double d2 = values[ i + 2 ] - mean;
+			final double d3 = values[ i + 3 ] - mean;
+			s0 += d0 * d0;
+			s1 += d1 * d1;
+			s2 += d2 * d2;
+			s3 += d3 * d3;
+		}
+		for ( ; i < to; ++i )
+		{
+			final double d = values[ i ] - mean;
+			s0 += d * d;
+		}
+		return ( s0 + s1 ) + ( s2 + s3 );
+	}
+
+	/**
+	 * Returns the sum of {@code (values[i] - mean)^2} for {@code from <= i < to},
+	 * added pairwise as in {@link #sum(float[], int, int)}.
+	 */
+	public static double sumOfSquaredDeviations( final float[] values, final int from, final int to, final double mean )
+	{
+		final int n = to - from;
+		if ( n > BLOCK_SIZE )
+		{
+			final int mid = from + ( ( n / BLOCK_SIZE + 1 ) / 2 ) * BLOCK_SIZE;
+			return sumOfSquaredDeviations( values, from, mid, mean ) + sumOfSquaredDeviations( values, mid, to, mean );
+		}
+		double s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+		int i = from;
+		for ( ; i + 3 < to; i += 4 )
+		{
+			final double d0 = values[ i ] - mean;
+			final double d1 = values[ i + 1 ] - mean;
+			final double d2 = values[ i + 2 ] - mean;
+			final double d3 = values[ i + 3 ] - mean;
+			s0 += d0 * d0;
+			s1 += d1 * d1;
+			s2 += d2 * d2;
+			s3 += d3 * d3;
+		}
+		for ( ; i < to; ++i )
+		{
+			final double d = values[ i ] - mean;
+			s0 += d * d;
+		}
+		return ( s0 + s1 ) + ( s2 + s3 );
+	}
+
+	/**
+	 * Returns the sum of the values of {@code data}.
+	 */
+	public static double sum( final IterableInterval< ? extends RealType< ? > > data )
+	{
+		return sum( data, null );
+	}
+
+	/**
+	 * Returns the sum of the values of {@code data}, computed in parallel by
+	 * {@code executor}, or serially if {@code executor} is {@code null}.
+	 */
+	public static double sum( final IterableInterval< ? extends RealType< ? > > data, final ExecutorService executor )
+	{
+		final PrimitiveStorage.Chunks chunks = new PrimitiveStorage.Chunks( data, CHUNK_SIZE, PrimitiveStorage.Kind.FLOAT, PrimitiveStorage.Kind.DOUBLE );
+		final List< Double > partials = ParallelTasks.mapRanges( chunks.numChunks(), executor, ( from, to ) -> {
+			final KahanSum sum = new KahanSum();
+			chunks.forEachChunk( from, to, ( values, f, t ) -> sum.add( values instanceof float[]
+					? sum( ( float[] ) values, f, t )
+					: sum( ( double[] ) values, f, t ) ) );
+			return sum.getSum();
+		} );
+		final KahanSum sum = new KahanSum();
+		for ( final double partial : partials )
+			sum.add( partial );
+		return sum.getSum();
+	}
+
+	/**
+	 * Returns the mean of the values of {@code data}, or {@code NaN} if
+	 * {@code data} is empty.
+	 */
+	public static double mean( final IterableInterval< ? extends RealType< ? > > data )
+	{
+		return mean( data, null );
+	}
+
+	/**
+	 * Returns the mean of the values of {@code data}, computed in parallel by
+	 * {@code executor}, or serially if {@code executor} is {@code null}.
+	 */
+	public static double mean( final IterableInterval< ? extends RealType< ? > > data, final ExecutorService executor )
+	{
+		return data.size() == 0 ? Double.NaN : sum( data, executor ) / data.size();
+	}
+
+	/**
+	 * Returns the sample variance (normalized by {@code n - 1}) of the values
+	 * of {@code data}, or {@code NaN} if {@code data} has fewer than two
+	 * values.
+	 */
+	public static double variance( final IterableInterval< ? extends RealType< ? > > data )
+	{
+		return variance( data, null );
+	}
+
+	/**
+	 * Returns the sample variance (normalized by {@code n - 1}) of the values
+	 * of {@code data}, computed in parallel by {@code executor}, or serially if
+	 * {@code executor} is {@code null}, see
+	 * {@link Statistics#of(IterableInterval, ExecutorService)}.
+	 */
+	public static double variance( final IterableInterval< ? extends RealType< ? > > data, final ExecutorService executor )
+	{
+		return Statistics.of( data, executor ).variance();
+	}
+}
@@ -0,0 +1,617 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2018 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.view;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+import net.imglib2.AbstractInterval;
+import net.imglib2.AbstractLocalizable;
+import net.imglib2.Cursor;
+import net.imglib2.FlatIterationOrder;
+import net.imglib2.Interval;
+import net.imglib2.IterableInterval;
+import net.imglib2.Localizable;
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.View;
+import net.imglib2.util.Intervals;
+
+/**
+ * Concatenation of <em>n</em>-dimensional {@link RandomAccessibleInterval}s
+ * along one axis.
+ * <p>
+ * Each source contributes a segment of the concatenation axis. The
+ * concatenation axis starts at 0. All other dimensions have the interval of
+ * the sources, which must be the same for all non-empty sources, and
+ * coordinates in these dimensions are passed to the sources unchanged. Empty
+ * sources are skipped.
+ * </p>
+ * <p>
+ * A {@link RandomAccess} on the {@link ConcatenateView} keeps one
+ * {@link RandomAccess} per source. Position changes are applied to the
+ * {@link RandomAccess} of the active segment only. When the position crosses
+ * a segment boundary, the {@link RandomAccess} of the new segment becomes
+ * active and is set to the current position. This is the behavior of
+ * {@link StackView.StackAccessMode#DEFAULT} per segment rather than per
+ * hyperslice.
+ * </p>
+ * <p>
+ * The {@link ConcatenateView} is iterated in flat order. If the
+ * concatenation axis is the last dimension, the {@link #cursor()} iterates
+ * each source with its own flat-iteration cursor in turn.
+ * </p>
+ *
+ * @param <T>
+ *            the pixel type.
+ */
+public class ConcatenateView< T > extends AbstractInterval implements RandomAccessibleInterval< T >, IterableInterval< T >, View
+{
+	private final List< RandomAccessibleInterval< T > > sources;
+
+	/**
+	 * The non-empty sources, or the first source if all are empty.
+	 */
+	private final RandomAccessibleInterval< T >[] segments;
+
+	private final int axis;
+
+	/**
+	 * {@code segmentMin[ i ]} is the coordinate of the first position of
+	 * segment {@code i} along the concatenation axis. The last element is the
+	 * size of the concatenation axis.
+	 */
+	private final long[] segmentMin;
+
+	/**
+	 * Source coordinates along the concatenation axis are obtained by adding
+	 * {@code axisOffsets[ i ]} to view coordinates. Other coordinates are the
+	 * same in view and source.
+	 */
+	private final long[] axisOffsets;
+
+	private final long size;
+
+	@SuppressWarnings( "unchecked" )
+	public ConcatenateView( final int axis, final List< ? extends RandomAccessibleInterval< T > > sources )
+	{
+		super( sources.get( 0 ).numDimensions() );
+		this.axis = axis;
+		this.sources = Collections.unmodifiableList( new ArrayList<>( sources ) );
+
+		final List< RandomAccessibleInterval< T > > nonEmpty = new ArrayList<>();
+		for ( final RandomAccessibleInterval< T > source : sources )
+		{
+			if ( source.numDimensions() != n )
+				throw new IllegalArgumentException( "All sources must have the same number of dimensions." );
+			if ( Intervals.isEmpty( source ) )
+				continue;
+			if ( !nonEmpty.isEmpty() )
+			{
+				final RandomAccessibleInterval< T > first = nonEmpty.get( 0 );
+				for ( int d = 0; d < n; ++d )
+					if ( d != axis && ( source.min( d ) != first.min( d ) || source.max( d ) != first.max( d ) ) )
+						throw new IllegalArgumentException( "All sources must have the same interval in all dimensions except the concatenation axis." );
+			}
+			nonEmpty.add( source );
+		}
+		if ( nonEmpty.isEmpty() )
+			nonEmpty.add( sources.get( 0 ) );
+		segments = nonEmpty.toArray( ( RandomAccessibleInterval< T >[] ) new RandomAccessibleInterval< ? >[ nonEmpty.size() ] );
+
+		final int numSegments = segments.length;
+		segmentMin = new long[ numSegments + 1 ];
+		axisOffsets = new long[ numSegments ];
+		for ( int i = 0; i < numSegments; ++i )
+		{
+			segmentMin[ i + 1 ] = segmentMin[ i ] + Math.max( 0, segments[ i ].dimension( axis ) );
+			axisOffsets[ i ] = segments[ i ].min( axis ) - segmentMin[ i ];
+		}
+
+		final RandomAccessibleInterval< T > first = segments[ 0 ];
+		for ( int d = 0; d < n; ++d )
+		{
+			min[ d ] = d == axis ? 0 : first.min( d );
+			max[ d ] = d == axis ? segmentMin[ numSegments ] - 1 : first.max( d );
+		}
+
+		long s = 1;
+		for ( int d = 0; d < n; ++d )
+			s *= dimension( d );
+		size = s;
+	}
+
+	/**
+	 * @return the concatenation axis.
+	 */
+	public int getConcatenationAxis()
+	{
+		return axis;
+	}
+
+	/**
+	 * @return list of source intervals, in order of concatenation.
+	 */
+	public List< RandomAccessibleInterval< T > > getSources()
+	{
+		return sources;
+	}
+
+	@Override
+	public RandomAccess< T > randomAccess()
+	{
+		return new ConcatenateRandomAccess<>( this );
+	}
+
+	@Override
+	public RandomAccess< T > randomAccess( final Interval interval )
+	{
+		return randomAccess();
+	}
+
+	@Override
+	public Cursor< T > cursor()
+	{
+		if ( axis == n - 1 )
+			return new ConcatenateCursor<>( this );
+		return new RandomAccessibleIntervalCursor<>( this );
+	}
+
+	@Override
+	public Cursor< T > localizingCursor()
+	{
+		return cursor();
+	}
+
+	@Override
+	public long size()
+	{
+		return size;
+	}
+
+	@Override
+	public T firstElement()
+	{
+		return cursor().next();
+	}
+
+	@Override
+	public FlatIterationOrder iterationOrder()
+	{
+		return new FlatIterationOrder( this );
+	}
+
+	@Override
+	public Iterator< T > iterator()
+	{
+		return cursor();
+	}
+
+	/**
+	 * Get the index of the segment containing the given coordinate along the
+	 * concatenation axis. Coordinates outside the view are assigned to the
+	 * first or last segment.
+	 */
+	private int segmentOf( final long position )
+	{
+		final int i = Arrays.binarySearch( segmentMin, position );
+		final int segment = i >= 0 ? i : -i - 2;
+		return Math.max( 0, Math.min( segments.length - 1, segment ) );
+	}
+
+	/**
+	 * A {@link RandomAccess} on a {@link ConcatenateView} that re-dispatches
+	 * to a different source only when crossing a segment boundary.
+	 */
+	public static final class ConcatenateRandomAccess< T > extends AbstractLocalizable implements RandomAccess< T >
+	{
+		private final ConcatenateView< T > view;
+
+		private final int axis;
+
+		private final RandomAccess< T >[] accesses;
+
+		private final long[] tmp;
+
+		private int segment;
+
+		private RandomAccess< T > active;
+
+		/**
+		 * Bounds of the active segment along the concatenation axis.
+		 */
+		private long segmentMin, segmentMax;
+
+		@SuppressWarnings( "unchecked" )
+		public ConcatenateRandomAccess( final ConcatenateView< T > view )
+		{
+			super( view.numDimensions() );
+			this.view = view;
+			axis = view.axis;
+			accesses = ( RandomAccess< T >[] ) new RandomAccess< ? >[ view.segments.length ];
+			for ( int i = 0; i < accesses.length; ++i )
+				accesses[ i ] = view.segments[ i ].randomAccess();
+			tmp = new long[ n ];
+			view.min( position );
+			setSegment( view.segmentOf( position[ axis ] ) );
+		}
+
+		@SuppressWarnings( "unchecked" )
+		private ConcatenateRandomAccess( final ConcatenateRandomAccess< T > a )
+		{
+			super( a.position.clone() );
+			view = a.view;
+			axis = a.axis;
+			accesses = ( RandomAccess< T >[] ) new RandomAccess< ? >[ a.accesses.length ];
+			for ( int i = 0; i < accesses.length; ++i )
+				accesses[ i ] = a.accesses[ i ].copyRandomAccess();
+			tmp = new long[ n ];
+			segment = a.segment;
+			active = accesses[ segment ];
+			segmentMin = a.segmentMin;
+			segmentMax = a.segmentMax;
+		}
+
+		/**
+		 * Make {@code s} the active segment and set its {@link RandomAccess}
+		 * to the current position.
+		 */
+		private void setSegment( final int s )
+		{
+			segment = s;
+			active = accesses[ s ];
+			segmentMin = view.segmentMin[ s ];
+			segmentMax = view.segmentMin[ s + 1 ] - 1;
+			System.arraycopy( position, 0, tmp, 0, n );
+			tmp[ axis ] += view.axisOffsets[ s ];
+			active.setPosition( tmp );
+		}
+
+		/**
+		 * Returns {@code true} if the current position along the
+		 * concatenation axis is outside the active segment. The last (first)
+		 * segment also covers positions after (before) the view.
+		 */
+		private boolean leftSegment()
+		{
+			final long p = position[ axis ];
+			return ( p < segmentMin && segment > 0 ) || ( p > segmentMax && segment < accesses.length - 1 );
+		}
+
+		@Override
+		public void fwd( final int d )
+		{
+			++position[ d ];
+			if ( d == axis && leftSegment() )
+				setSegment( view.segmentOf( position[ axis ] ) );
+			else
+				active.fwd( d );
+		}
+
+		@Override
+		public void bck( final int d )
+		{
+			--position[ d ];
+			if ( d == axis && leftSegment() )
+				setSegment( view.segmentOf( position[ axis ] ) );
+			else
+				active.bck( d );
+		}
+
+		@Override
+		public void move( final int distance, final int d )
+		{
+			move( ( long ) distance, d );
+		}
+
+		@Override
+		public void move( final long distance, final int d )
+		{
+			position[ d ] += distance;
+			if ( d == axis && leftSegment() )
+				setSegment( view.segmentOf( position[ axis ] ) );
+			else
+				active.move( distance, d );
+		}
+
+		@Override
+		public void move( final Localizable localizable )
+		{
+			for ( int d = 0; d < n; ++d )
+				position[ d ] += localizable.getLongPosition( d );
+			if ( leftSegment() )
+				setSegment( view.segmentOf( position[ axis ] ) );
+			else
+				active.move( localizable );
+		}
+
+		@Override
+		public void move( final int[] distance )
+		{
+			for ( int d = 0; d < n; ++d )
+				position[ d ] += distance[ d ];
+			if ( leftSegment() )
+				setSegment( view.segmentOf( position[ axis ] ) );
+			else
+				active.move( distance );
+		}
+
+		@Override
+		public void move( final long[] distance )
+		{
+			for ( int d = 0; d < n; ++d )
+				position[ d ] += distance[ d ];
+			if ( leftSegment() )
+				setSegment( view.segmentOf( position[ axis ] ) );
+			else
+				active.move( distance );
+		}
+
+		@Override
+		public void setPosition( final Localizable localizable )
+		{
+			localizable.localize( position );
+			setSegment( leftSegment() ? view.segmentOf( position[ axis ] ) : segment );
+		}
+
+		@Override
+		public void setPosition( final int[] pos )
+		{
+			for ( int d = 0; d < n; ++d )
+				position[ d ] = pos[ d ];
+			setSegment( leftSegment() ? view.segmentOf( position[ axis ] ) : segment );
+		}
+
+		@Override
+		public void setPosition( final long[] pos )
+		{
+			for ( int d = 0; d < n; ++d )
+				position[ d ] = pos[ d ];
+			setSegment( leftSegment() ? view.segmentOf( position[ axis ] ) : segment );
+		}
+
+		@Override
+		public void setPosition( final int pos, final int d )
+		{
+			setPosition( ( long ) pos, d );
+		}
+
+		@Override
+		public void setPosition( final long pos, final int d )
+		{
+			position[ d ] = pos;
+			if ( d == axis && leftSegment() )
+				setSegment( view.segmentOf( position[ axis ] ) );
+			else
+				active.setPosition( d == axis ? pos + view.axisOffsets[ segment ] : pos, d );
+		}
+
+		@Override
+		public T get()
+		{
+			return active.get();
+		}
+
+		@Override
+		public ConcatenateRandomAccess< T > copy()
+		{
+			return new ConcatenateRandomAccess<>( this );
+		}
+
+		@Override
+		public ConcatenateRandomAccess< T > copyRandomAccess()
+		{
+			return copy();
+		}
+	}
+
+	/**
+	 * A {@link Cursor} on a {@link ConcatenateView} whose concatenation axis is
+	 * the last dimension. It iterates the sources one after the other, each
+	 * with its own flat-iteration {@link Cursor}.
+	 */
+	public static final class ConcatenateCursor< T > implements Cursor< T >
+	{
+		private final ConcatenateView< T > view;
+
+		private final int n;
+
+		private final int axis;
+
+		private final Cursor< T >[] cursors;
+
+		private final long[] segmentSize;
+
+		private final int lastSegment;
+
+		private int segment;
+
+		private Cursor< T > cursor;
+
+		/**
+		 * Source coordinate minus view coordinate along the concatenation
+		 * axis, for the active segment.
+		 */
+		private long offset;
+
+		/**
+		 * Number of {@link #fwd()} steps taken on the active cursor.
+		 */
+		private long index;
+
+		@SuppressWarnings( "unchecked" )
+		public ConcatenateCursor( final ConcatenateView< T > view )
+		{
+			this.view = view;
+			n = view.numDimensions();
+			axis = view.axis;
+			lastSegment = view.segments.length - 1;
+			cursors = ( Cursor< T >[] ) new Cursor< ? >[ view.segments.length ];
+			segmentSize = new long[ view.segments.length ];
+			for ( int i = 0; i < cursors.length; ++i )
+			{
+				final IterableInterval< T > iterable = Views.flatIterable( view.segments[ i ] );
+				cursors[ i ] = iterable.cursor();
+				segmentSize[ i ] = iterable.size();
+			}
+			reset();
+		}
+
+		@SuppressWarnings( "unchecked" )
+		private ConcatenateCursor( final ConcatenateCursor< T > c )
+		{
+			view = c.view;
+			n = c.n;
+			axis = c.axis;
+			lastSegment = c.lastSegment;
+			cursors = ( Cursor< T >[] ) new Cursor< ? >[ c.cursors.length ];
+			for ( int i = 0; i < cursors.length; ++i )
+				cursors[ i ] = c.cursors[ i ].copyCursor();
+			segmentSize = c.segmentSize;
+			segment = c.segment;
+			cursor = cursors[ segment ];
+			offset = c.offset;
+			index = c.index;
+		}
+
+		private void setSegment( final int s )
+		{
+			segment = s;
+			cursor = cursors[ s ];
+			cursor.reset();
+			offset = view.axisOffsets[ s ];
+			index = 0;
+		}
+
+		@Override
+		public T get()
+		{
+			return cursor.get();
+		}
+
+		@Override
+		public void fwd()
+		{
+			while ( index == segmentSize[ segment ] )
+				setSegment( segment + 1 );
+			cursor.fwd();
+			++index;
+		}
+
+		@Override
+		public void jumpFwd( final long steps )
+		{
+			long remaining = steps;
+			while ( remaining > segmentSize[ segment ] - index && segment < lastSegment )
+			{
+				remaining -= segmentSize[ segment ] - index;
+				setSegment( segment + 1 );
+			}
+			cursor.jumpFwd( remaining );
+			index += remaining;
+		}
+
+		@Override
+		public void reset()
+		{
+			setSegment( 0 );
+		}
+
+		@Override
+		public boolean hasNext()
+		{
+			return index < segmentSize[ segment ] || segment < lastSegment;
+		}
+
+		@Override
+		public T next()
+		{
+			fwd();
+			return get();
+		}
+
+		@Override
+		public void remove()
+		{}
+
+		@Override
+		public ConcatenateCursor< T > copy()
+		{
+			return new ConcatenateCursor<>( this );
+		}
+
+		@Override
+		public ConcatenateCursor< T > copyCursor()
+		{
+			return copy();
+		}
+
+		@Override
+		public int numDimensions()
+		{
+			return n;
+		}
+
+		@Override
+		public long getLongPosition( final int d )
+		{
+			return d == axis ? cursor.getLongPosition( d ) - offset : cursor.getLongPosition( d );
+		}
+
+		@Override
+		public void localize( final long[] position )
+		{
+			cursor.localize( position );
+			position[ axis ] -= offset;
+		}
+
+		@Override
+		public void localize( final float[] position )
+		{
+			for ( int d = 0; d < n; ++d )
+				position[ d ] = getLongPosition( d );
+		}
+
+		@Override
+		public void localize( final double[] position )
+		{
+			for ( int d = 0; d < n; ++d )
+				position[ d ] = getLongPosition( d );
+		}
+	}
+}
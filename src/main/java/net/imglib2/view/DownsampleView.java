@@ -0,0 +1,286 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2018 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.view;
+
+import java.util.Arrays;
+
+import net.imglib2.AbstractInterval;
+import net.imglib2.Interval;
+import net.imglib2.Point;
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.View;
+import net.imglib2.type.numeric.RealType;
+
+/**
+ * {@link DownsampleView} reduces each block of
+ * <em>f<sub>0</sub></em>&times;...&times;<em>f<sub>n-1</sub></em> source
+ * pixels to a single value. Unlike {@link SubsampleIntervalView}, which picks
+ * one pixel per block, the value is computed from all pixels of the block as
+ * their average, their maximum or their most frequent value (for label
+ * images), see {@link Mode}.
+ * <p>
+ * Like {@link SubsampleIntervalView}, the view has its origin at zero and
+ * <em>ceil(dimension<sub>d</sub> / f<sub>d</sub>)</em> pixels in dimension
+ * <em>d</em>. Blocks at the max border that are cut off by the source interval
+ * are reduced over the pixels that exist. Values are computed on-the-fly in
+ * {@link RandomAccess#get()}.
+ * </p>
+ */
+public class DownsampleView< T extends RealType< T > > extends AbstractInterval implements RandomAccessibleInterval< T >, View
+{
+	/**
+	 * How a block of source pixels is reduced to a single value.
+	 */
+	public enum Mode
+	{
+		/**
+		 * Arithmetic mean of the block. Integer types are rounded.
+		 */
+		AVERAGE,
+
+		/**
+		 * Maximum of the block.
+		 */
+		MAX,
+
+		/**
+		 * Most frequent value of the block, ties are resolved to the smaller
+		 * value. Use this for label images.
+		 */
+		MODE
+	}
+
+	private final RandomAccessibleInterval< T > source;
+
+	private final Mode mode;
+
+	private final long[] factors;
+
+	public DownsampleView( final RandomAccessibleInterval< T > source, final Mode mode, final long... factors )
+	{
+		super( downsampledDimensions( source, factors ) );
+		this.source = source;
+		this.mode = mode;
+		this.factors = factors.clone();
+	}
+
+	private static long[] downsampledDimensions( final RandomAccessibleInterval< ? > source, final long[] factors )
+	{
+		final int n = source.numDimensions();
+		if ( factors.length != n )
+			throw new IllegalArgumentException( "expected " + n + " downsampling factors" );
+		final long[] dimensions = new long[ n ];
+		for ( int d = 0; d < n; ++d )
+		{
+			if ( factors[ d ] < 1 )
+				throw new IllegalArgumentException( "downsampling factors must be >= 1" );
+			dimensions[ d ] = ( source.dimension( d ) + factors[ d ] - 1 ) / factors[ d ];
+		}
+		return dimensions;
+	}
+
+	public RandomAccessibleInterval< T > getSource()
+	{
+		return source;
+	}
+
+	public Mode getMode()
+	{
+		return mode;
+	}
+
+	public long[] getFactors()
+	{
+		return factors.clone();
+	}
+
+	public class DownsampleRandomAccess extends Point implements RandomAccess< T >
+	{
+		private final RandomAccess< T > sourceAccess;
+
+		private final T value;
+
+		private final long[] blockMin = new long[ n ];
+
+		private final long[] blockSize = new long[ n ];
+
+		private final long[] counts = new long[ n ];
+
+		/**
+		 * Values of the block for {@link Mode#MODE}, allocated when needed.
+		 */
+		private double[] buffer;
+
+		DownsampleRandomAccess()
+		{
+			super( DownsampleView.this.n );
+			sourceAccess = source.randomAccess();
+			value = sourceAccess.get().createVariable();
+		}
+
+		@Override
+		public T get()
+		{
+			for ( int d = 0; d < n; ++d )
+			{
+				final long min = source.min( d ) + position[ d ] * factors[ d ];
+				blockMin[ d ] = min;
+				blockSize[ d ] = Math.min( factors[ d ], source.max( d ) - min + 1 );
+				counts[ d ] = 0;
+			}
+			sourceAccess.setPosition( blockMin );
+
+			switch ( mode )
+			{
+			case AVERAGE:
+			{
+				double sum = 0;
+				long count = 0;
+				do
+				{
+					sum += sourceAccess.get().getRealDouble();
+					++count;
+				}
+				while ( next() );
+				value.setReal( sum / count );
+				break;
+			}
+			case MAX:
+			{
+				double max = Double.NEGATIVE_INFINITY;
+				do
+				{
+					final double v = sourceAccess.get().getRealDouble();
+					if ( v > max )
+						max = v;
+				}
+				while ( next() );
+				value.setReal( max );
+				break;
+			}
+			case MODE:
+			default:
+			{
+				long size = 1;
+				for ( int d = 0; d < n; ++d )
+					size *= blockSize[ d ];
+				if ( size > Integer.MAX_VALUE )
+					throw new IllegalArgumentException( "block size " + size + " too large for " + Mode.MODE );
+				if ( buffer == null || buffer.length < size )
+					buffer = new double[ ( int ) size ];
+				int count = 0;
+				do
+					buffer[ count++ ] = sourceAccess.get().getRealDouble();
+				while ( next() );
+				value.setReal( mode( buffer, count ) );
+			}
+			}
+			return value;
+		}
+
+		/**
+		 * Move {@code sourceAccess} to the next pixel of the block in flat
+		 * iteration order.
+		 *
+		 * @return false if all pixels of the block have been visited.
+		 */
+		private boolean next()
+		{
+			for ( int d = 0; d < n; ++d )
+			{
+				if ( ++counts[ d ] < blockSize[ d ] )
+				{
+					sourceAccess.fwd( d );
+					return true;
+				}
+				counts[ d ] = 0;
+				sourceAccess.setPosition( blockMin[ d ], d );
+			}
+			return false;
+		}
+
+		@Override
+		public DownsampleRandomAccess copy()
+		{
+			final DownsampleRandomAccess copy = new DownsampleRandomAccess();
+			copy.setPosition( this );
+			return copy;
+		}
+
+		@Override
+		public DownsampleRandomAccess copyRandomAccess()
+		{
+			return copy();
+		}
+	}
+
+	/**
+	 * Most frequent of the first {@code count} values in {@code buffer}. The
+	 * buffer is sorted as a side effect.
+	 */
+	static double mode( final double[] buffer, final int count )
+	{
+		Arrays.sort( buffer, 0, count );
+		double mode = buffer[ 0 ];
+		int modeCount = 0;
+		for ( int i = 0; i < count; )
+		{
+			final double v = buffer[ i ];
+			int j = i + 1;
+			while ( j < count && buffer[ j ] == v )
+				++j;
+			if ( j - i > modeCount )
+			{
+				mode = v;
+				modeCount = j - i;
+			}
+			i = j;
+		}
+		return mode;
+	}
+
+	@Override
+	public DownsampleRandomAccess randomAccess()
+	{
+		return new DownsampleRandomAccess();
+	}
+
+	@Override
+	public DownsampleRandomAccess randomAccess( final Interval interval )
+	{
+		return randomAccess();
+	}
+}
@@ -0,0 +1,352 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2018 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.view;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.img.NativeImg;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.basictypeaccess.array.ArrayDataAccess;
+import net.imglib2.img.cell.AbstractCellImg;
+import net.imglib2.img.cell.Cell;
+import net.imglib2.img.cell.CellGrid;
+import net.imglib2.img.planar.PlanarImg;
+import net.imglib2.type.NativeType;
+import net.imglib2.type.NativeTypeFactory;
+import net.imglib2.util.Intervals;
+
+/**
+ * Zero-copy access to hyperslices and blocks of {@link NativeImg}s whose
+ * storage layout makes the requested region a contiguous primitive array (or
+ * a list of them).
+ * <p>
+ * A plane of a {@link PlanarImg} or a {@link Cell} of an
+ * {@link AbstractCellImg} is returned as an {@link ArrayImg} that shares the
+ * underlying data access. The result has {@link ArrayImg} cursors and random
+ * accesses, and its primitive array can be passed to native code directly.
+ * Writes to the result are visible in the source image and vice versa.
+ * </p>
+ * <p>
+ * {@link #hyperSlice(RandomAccessibleInterval, int, long)} recognizes the
+ * aligned cases and falls back to
+ * {@link Views#hyperSlice(RandomAccessibleInterval, int, long)} otherwise.
+ * Conversely, {@link #stack(List)} assembles planes into a {@link PlanarImg}
+ * and falls back to {@link Views#stack(List)} otherwise.
+ * </p>
+ */
+public class Hyperslabs
+{
+	private Hyperslabs()
+	{}
+
+	/**
+	 * Take a <em>(n-1)</em>-dimensional slice of a <em>n</em>-dimensional
+	 * image, fixing the {@code d}-component of coordinates to {@code pos}.
+	 * <p>
+	 * If the slice is aligned with the storage layout of {@code source}, the
+	 * result shares the underlying data:
+	 * <ul>
+	 * <li>For a {@link PlanarImg} and {@code d >= 2}, the result is an
+	 * {@link ArrayImg} if the slice is a single plane, and a {@link PlanarImg}
+	 * on the subset of planes otherwise.</li>
+	 * <li>For an {@link AbstractCellImg} whose cells have size 1 in dimension
+	 * {@code d} and whose grid consists of a single cell in all other
+	 * dimensions, the result is an {@link ArrayImg} on the data of the cell
+	 * containing {@code pos}.</li>
+	 * </ul>
+	 * In all other cases the result of
+	 * {@link Views#hyperSlice(RandomAccessibleInterval, int, long)} is
+	 * returned.
+	 *
+	 * @param source
+	 *            the source image
+	 * @param d
+	 *            the dimension to slice
+	 * @param pos
+	 *            the position of the slice in dimension {@code d}
+	 * @return a <em>(n-1)</em>-dimensional slice of {@code source}
+	 */
+	@SuppressWarnings( { "unchecked", "rawtypes" } )
+	public static < T > RandomAccessibleInterval< T > hyperSlice( final RandomAccessibleInterval< T > source, final int d, final long pos )
+	{
+		if ( source instanceof PlanarImg && d >= 2 && source.numDimensions() > 2 )
+			return planarHyperSlice( ( PlanarImg ) source, d, pos );
+
+		if ( source instanceof AbstractCellImg && isCellAligned( ( ( AbstractCellImg ) source ).getCellGrid(), d ) )
+			return cellHyperSlice( ( AbstractCellImg ) source, d, pos );
+
+		return Views.hyperSlice( source, d, pos );
+	}
+
+	/**
+	 * Get plane {@code planeIndex} of a {@link PlanarImg} as a 2D (or 1D, if
+	 * {@code img} is 1D) {@link ArrayImg} sharing the plane's data access.
+	 *
+	 * @param img
+	 *            the source image
+	 * @param planeIndex
+	 *            flat index of the plane, see {@link PlanarImg#getPlane(int)}
+	 * @return the plane as an {@link ArrayImg}
+	 */
+	public static < T extends NativeType< T >, A extends ArrayDataAccess< A > > ArrayImg< T, A > plane( final PlanarImg< T, A > img, final int planeIndex )
+	{
+		final int n = Math.min( img.numDimensions(), 2 );
+		final long[] dimensions = new long[ n ];
+		for ( int d = 0; d < n; ++d )
+			dimensions[ d ] = img.dimension( d );
+		return wrap( img.getPlane( planeIndex ), dimensions, img.createLinkedType() );
+	}
+
+	/**
+	 * Get a plane of a {@link PlanarImg} as a 2D {@link ArrayImg} sharing the
+	 * plane's data access.
+	 *
+	 * @param img
+	 *            the source image
+	 * @param planePosition
+	 *            the position of the plane in dimensions {@code 2} to
+	 *            {@code n-1}.
+	 * @return the plane as an {@link ArrayImg}
+	 */
+	public static < T extends NativeType< T >, A extends ArrayDataAccess< A > > ArrayImg< T, A > plane( final PlanarImg< T, A > img, final long... planePosition )
+	{
+		final int n = img.numDimensions();
+		if ( planePosition.length != Math.max( n - 2, 0 ) )
+			throw new IllegalArgumentException( "expected " + Math.max( n - 2, 0 ) + " plane coordinates, got " + planePosition.length );
+		long index = 0;
+		for ( int d = n - 1; d >= 2; --d )
+			index = index * img.dimension( d ) + planePosition[ d - 2 ];
+		return plane( img, ( int ) index );
+	}
+
+	/**
+	 * Get a {@link Cell} of an {@link AbstractCellImg} as an {@link ArrayImg}
+	 * sharing the cell's data access. The returned image is zero-min, that
+	 * is, its origin corresponds to the min of the cell in {@code img}.
+	 *
+	 * @param img
+	 *            the source image
+	 * @param cellGridPosition
+	 *            position of the cell in the {@link CellGrid}
+	 * @return the cell as an {@link ArrayImg}
+	 */
+	public static < T extends NativeType< T >, A > ArrayImg< T, A > cell( final AbstractCellImg< T, A, ?, ? > img, final long... cellGridPosition )
+	{
+		final RandomAccess< ? extends Cell< A > > access = img.getCells().randomAccess();
+		access.setPosition( cellGridPosition );
+		final Cell< A > cell = access.get();
+		final long[] dimensions = new long[ cell.numDimensions() ];
+		cell.dimensions( dimensions );
+		return wrap( cell.getData(), dimensions, img.createLinkedType() );
+	}
+
+	/**
+	 * Form a <em>(n+1)</em>-dimensional {@link RandomAccessibleInterval} by
+	 * stacking <em>n</em>-dimensional {@link RandomAccessibleInterval}s.
+	 * <p>
+	 * If all {@code hyperslices} are 2D {@link ArrayImg}s or &ge;2D
+	 * {@link PlanarImg}s of identical size, pixel type and
+	 * {@link ArrayDataAccess} type, the result is a {@link PlanarImg} on the
+	 * planes of the {@code hyperslices}. It uses a single linked type for all
+	 * planes, its {@link RandomAccess} switches the plane data when moving
+	 * along the stack axis, and its cursors iterate the planes in flat order.
+	 * Otherwise, the result of {@link Views#stack(List)} is returned.
+	 * </p>
+	 *
+	 * @param hyperslices
+	 *            a list of <em>n</em>-dimensional
+	 *            {@link RandomAccessibleInterval} of identical sizes.
+	 * @return a <em>(n+1)</em>-dimensional {@link RandomAccessibleInterval}
+	 *         where the final dimension is the index of the hyperslice.
+	 */
+	@SuppressWarnings( { "unchecked", "rawtypes" } )
+	public static < T > RandomAccessibleInterval< T > stack( final List< ? extends RandomAccessibleInterval< T > > hyperslices )
+	{
+		final List< ArrayDataAccess > planes = planesOf( ( List ) hyperslices );
+		if ( planes == null )
+			return Views.stack( hyperslices );
+
+		final RandomAccessibleInterval< T > first = hyperslices.get( 0 );
+		final int n = first.numDimensions() + 1;
+		final long[] dimensions = new long[ n ];
+		first.dimensions( dimensions );
+		dimensions[ n - 1 ] = hyperslices.size();
+
+		final NativeType type = ( NativeType ) ( ( NativeImg ) first ).createLinkedType();
+		final PlanarImg stack = new PlanarImg( planes, dimensions, type.getEntitiesPerPixel() );
+		link( stack, type );
+		return stack;
+	}
+
+	/**
+	 * Form a <em>(n+1)</em>-dimensional {@link RandomAccessibleInterval} by
+	 * stacking <em>n</em>-dimensional {@link RandomAccessibleInterval}s.
+	 *
+	 * @see #stack(List)
+	 */
+	@SafeVarargs
+	public static < T > RandomAccessibleInterval< T > stack( final RandomAccessibleInterval< T >... hyperslices )
+	{
+		final List< RandomAccessibleInterval< T > > list = new ArrayList<>( hyperslices.length );
+		for ( final RandomAccessibleInterval< T > hyperslice : hyperslices )
+			list.add( hyperslice );
+		return stack( list );
+	}
+
+	/**
+	 * Collect the planes of a list of {@link ArrayImg}s and
+	 * {@link PlanarImg}s that can be stacked into a {@link PlanarImg}.
+	 *
+	 * @return the planes, or {@code null} if {@code hyperslices} cannot be
+	 *         stacked without copying.
+	 */
+	@SuppressWarnings( { "unchecked", "rawtypes" } )
+	private static List< ArrayDataAccess > planesOf( final List< RandomAccessibleInterval< ? > > hyperslices )
+	{
+		if ( hyperslices.isEmpty() )
+			return null;
+
+		final RandomAccessibleInterval< ? > first = hyperslices.get( 0 );
+		if ( first.numDimensions() < 2 || !( first instanceof NativeImg ) )
+			return null;
+		final Class< ? > typeClass = ( ( NativeImg ) first ).createLinkedType().getClass();
+
+		final List< ArrayDataAccess > planes = new ArrayList<>();
+		Class< ? > accessClass = null;
+		for ( final RandomAccessibleInterval< ? > slice : hyperslices )
+		{
+			if ( !( slice instanceof NativeImg ) || !Intervals.equalDimensions( first, slice ) || ( ( NativeImg ) slice ).createLinkedType().getClass() != typeClass )
+				return null;
+
+			if ( slice instanceof ArrayImg && slice.numDimensions() == 2 )
+			{
+				final Object data = ( ( ArrayImg ) slice ).update( null );
+				if ( !( data instanceof ArrayDataAccess ) )
+					return null;
+				planes.add( ( ArrayDataAccess ) data );
+			}
+			else if ( slice instanceof PlanarImg )
+			{
+				final PlanarImg< ?, ? > planar = ( PlanarImg ) slice;
+				for ( int i = 0; i < planar.numSlices(); ++i )
+					planes.add( planar.getPlane( i ) );
+			}
+			else
+				return null;
+
+			final ArrayDataAccess last = planes.get( planes.size() - 1 );
+			if ( last == null )
+				return null;
+			final Class< ? > c = last.getClass();
+			if ( accessClass == null )
+				accessClass = c;
+			else if ( c != accessClass )
+				return null;
+		}
+		return planes;
+	}
+
+	private static < T extends NativeType< T >, A extends ArrayDataAccess< A > > RandomAccessibleInterval< T > planarHyperSlice( final PlanarImg< T, A > img, final int d, final long pos )
+	{
+		final int n = img.numDimensions();
+		final long[] dimensions = new long[ n - 1 ];
+		for ( int e = 0, k = 0; e < n; ++e )
+			if ( e != d )
+				dimensions[ k++ ] = img.dimension( e );
+
+		// index of the first plane with coordinate pos in dimension d
+		long step = 1;
+		for ( int e = 2; e < d; ++e )
+			step *= img.dimension( e );
+		final long blockSize = step * img.dimension( d );
+
+		final List< A > planes = new ArrayList<>();
+		for ( long block = 0; block < img.numSlices(); block += blockSize )
+		{
+			final long first = block + pos * step;
+			for ( long i = 0; i < step; ++i )
+				planes.add( img.getPlane( ( int ) ( first + i ) ) );
+		}
+
+		if ( planes.size() == 1 )
+			return wrap( planes.get( 0 ), dimensions, img.createLinkedType() );
+
+		final T type = img.createLinkedType();
+		final PlanarImg< T, A > slice = new PlanarImg<>( planes, dimensions, type.getEntitiesPerPixel() );
+		link( slice, type );
+		return slice;
+	}
+
+	private static boolean isCellAligned( final CellGrid grid, final int d )
+	{
+		if ( grid.numDimensions() < 2 || grid.cellDimension( d ) != 1 )
+			return false;
+		for ( int e = 0; e < grid.numDimensions(); ++e )
+			if ( e != d && grid.gridDimension( e ) != 1 )
+				return false;
+		return true;
+	}
+
+	private static < T extends NativeType< T >, A > ArrayImg< T, A > cellHyperSlice( final AbstractCellImg< T, A, ?, ? > img, final int d, final long pos )
+	{
+		final int n = img.numDimensions();
+		final long[] cellGridPosition = new long[ n ];
+		cellGridPosition[ d ] = pos;
+		final RandomAccess< ? extends Cell< A > > access = img.getCells().randomAccess();
+		access.setPosition( cellGridPosition );
+		final long[] dimensions = new long[ n - 1 ];
+		for ( int e = 0, k = 0; e < n; ++e )
+			if ( e != d )
+				dimensions[ k++ ] = img.dimension( e );
+		return wrap( access.get().getData(), dimensions, img.createLinkedType() );
+	}
+
+	private static < T extends NativeType< T >, A > ArrayImg< T, A > wrap( final A data, final long[] dimensions, final T type )
+	{
+		final ArrayImg< T, A > img = new ArrayImg<>( data, dimensions, type.getEntitiesPerPixel() );
+		link( img, type );
+		return img;
+	}
+
+	@SuppressWarnings( { "unchecked", "rawtypes" } )
+	private static < T extends NativeType< T >, A > void link( final NativeImg< T, A > img, final T type )
+	{
+		final NativeTypeFactory< T, A > typeFactory = ( NativeTypeFactory ) type.getNativeTypeFactory();
+		img.setLinkedType( typeFactory.createLinkedType( img ) );
+	}
+}
@@ -616,6 +616,9 @@ public class Views
 	/**
 	 * take a (n-1)-dimensional slice of a n-dimensional view, fixing
 	 * d-component of coordinates to pos.
+	 *
+	 * @see Hyperslabs#hyperSlice(RandomAccessibleInterval, int, long) for a
+	 *      zero-copy variant on planar and cell images.
 	 */
 	public static < T > IntervalView< T > hyperSlice( final RandomAccessibleInterval< T > view, final int d, final long pos )
 	{
@@ -819,6 +822,8 @@ public class Views
 	 *            the source
 	 * @return an (<em>n</em>-1)-dimensional {@link CompositeIntervalView} of
 	 *         {@link RealComposite RealComposites}
+	 * @see net.imglib2.view.composite.FloatArrayComposite#collapse
+	 * @see net.imglib2.view.composite.DoubleArrayComposite#collapse
 	 */
 	public static < T extends RealType< T > > CompositeIntervalView< T, RealComposite< T > > collapseReal( final RandomAccessibleInterval< T > source )
 	{
@@ -967,6 +972,26 @@ public class Views
 		return new SubsampleView<>( source, steps );
 	}
 
+	/**
+	 * Reduce every block of <em>factor<sub>d</sub></em> pixels of a source
+	 * {@link RandomAccessibleInterval} to a single value, e.g. their average.
+	 * In contrast to {@link #subsample(RandomAccessibleInterval, long...)},
+	 * all pixels of a block contribute.
+	 *
+	 * @param source
+	 *            the source
+	 * @param mode
+	 *            how a block is reduced to a single value
+	 * @param factors
+	 *            the block sizes
+	 * @return a downsampled {@link RandomAccessibleInterval} with its origin
+	 *         coordinates at zero
+	 */
+	public static < T extends RealType< T > > DownsampleView< T > downsample( final RandomAccessibleInterval< T > source, final DownsampleView.Mode mode, final long... factors )
+	{
+		return new DownsampleView<>( source, mode, factors );
+	}
+
 	/**
 	 * Removes all unit dimensions (dimensions with size one) from the
 	 * RandomAccessibleInterval
@@ -1576,6 +1601,18 @@ public class Views
 	 * Concatenate a list of {@link RandomAccessibleInterval} along the provided
 	 * <code>concatenationAxis</code>. See {@link StackView.StackAccessMode} for
 	 * behaviors of {@link RandomAccess}.
+	 * <p>
+	 * For {@link StackView.StackAccessMode#DEFAULT}, the result is a
+	 * {@link ConcatenateView}, which switches between sources only when
+	 * crossing a segment boundary and iterates each source with its own
+	 * cursor if the <code>concatenationAxis</code> is the last dimension.
+	 * </p>
+	 * <p>
+	 * The result starts at 0 along the <code>concatenationAxis</code>. In all
+	 * other dimensions, every source is accessed at the coordinates of the
+	 * result. Non-empty sources must therefore have the same interval in
+	 * these dimensions; empty sources are skipped.
+	 * </p>
 	 *
 	 * @param concatenationAxis
 	 *            Concatenate along this axis.
@@ -1594,6 +1631,9 @@ public class Views
 	{
 		assert sources.size() > 0;
 
+		if ( mode == StackView.StackAccessMode.DEFAULT )
+			return new ConcatenateView<>( concatenationAxis, sources );
+
 		final ArrayList< RandomAccessibleInterval< T > > hyperSlices = new ArrayList<>();
 		for ( final RandomAccessibleInterval< T > source : sources )
 			for ( long index = source.min( concatenationAxis ); index <= source.max( concatenationAxis ); ++index )
@@ -0,0 +1,322 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2018 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.view.composite;
+
+import java.util.Arrays;
+
+import net.imglib2.img.NativeImg;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.basictypeaccess.DoubleAccess;
+import net.imglib2.img.basictypeaccess.array.DoubleArray;
+import net.imglib2.type.NativeType;
+import net.imglib2.type.NativeTypeFactory;
+import net.imglib2.type.numeric.real.DoubleType;
+import net.imglib2.util.Fraction;
+import net.imglib2.util.Util;
+
+/**
+ * A vector of {@link DoubleType} scalars stored contiguously in a
+ * {@link DoubleAccess}. Element <em>i</em> of the pixel at index <em>j</em> is
+ * stored at offset <em>j * length + i</em>.
+ * <p>
+ * This is a {@link NativeType} with {@code length} entities per pixel, so it
+ * can be the pixel type of a {@link NativeImg}. In particular,
+ * {@link #collapse(ArrayImg)} wraps an {@link ArrayImg} with interleaved
+ * channels (channels in dimension 0) as an {@link ArrayImg} of
+ * {@link DoubleArrayComposite} without copying. Per-pixel vector operations
+ * can then loop over the storage array directly.
+ * </p>
+ */
+public class DoubleArrayComposite implements Composite< DoubleType >, NativeType< DoubleArrayComposite >
+{
+	private final int length;
+
+	private final NativeImg< ?, ? extends DoubleAccess > img;
+
+	private DoubleAccess dataAccess;
+
+	private int i = 0;
+
+	private int offset = 0;
+
+	private DoubleType element;
+
+	private final NativeTypeFactory< DoubleArrayComposite, DoubleAccess > typeFactory;
+
+	/**
+	 * Collapse dimension 0 of an {@link ArrayImg} into
+	 * {@link DoubleArrayComposite}s. The result is an <em>(n-1)</em>-dimensional
+	 * {@link ArrayImg} sharing the data of {@code source}.
+	 *
+	 * @param source
+	 *            an <em>n</em>-dimensional {@link ArrayImg} with interleaved
+	 *            channels in dimension 0.
+	 * @return an <em>(n-1)</em>-dimensional {@link ArrayImg} of
+	 *         {@link DoubleArrayComposite}s of length
+	 *         {@code source.dimension( 0 )}.
+	 */
+	public static < A extends DoubleAccess > ArrayImg< DoubleArrayComposite, A > collapse( final ArrayImg< DoubleType, A > source )
+	{
+		final int n = source.numDimensions();
+		if ( n < 2 )
+			throw new IllegalArgumentException( "source must have at least 2 dimensions" );
+		final int length = ( int ) source.dimension( 0 );
+		final long[] dimensions = new long[ n - 1 ];
+		for ( int d = 1; d < n; ++d )
+			dimensions[ d - 1 ] = source.dimension( d );
+		final ArrayImg< DoubleArrayComposite, A > img = new ArrayImg<>( source.update( null ), dimensions, new Fraction( length, 1 ) );
+		img.setLinkedType( new DoubleArrayComposite( img, length ) );
+		return img;
+	}
+
+	// this is the constructor if you want it to read from an array
+	public DoubleArrayComposite( final NativeImg< ?, ? extends DoubleAccess > img, final int length )
+	{
+		this.img = img;
+		this.length = length;
+		typeFactory = NativeTypeFactory.DOUBLE( storage -> new DoubleArrayComposite( storage, length ) );
+	}
+
+	// this is the constructor if you want to specify the dataAccess
+	public DoubleArrayComposite( final DoubleAccess access, final int length )
+	{
+		this( ( NativeImg< ?, ? extends DoubleAccess > ) null, length );
+		dataAccess = access;
+	}
+
+	// this is the constructor if you want it to be a variable
+	public DoubleArrayComposite( final int length )
+	{
+		this( new DoubleArray( length ), length );
+	}
+
+	/**
+	 * @return the number of elements.
+	 */
+	public int getLength()
+	{
+		return length;
+	}
+
+	/**
+	 * @return the {@link DoubleAccess} storing the elements.
+	 */
+	public DoubleAccess getDataAccess()
+	{
+		return dataAccess;
+	}
+
+	/**
+	 * @return the offset of element 0 in {@link #getDataAccess()}.
+	 */
+	public int getOffset()
+	{
+		return offset;
+	}
+
+	/**
+	 * Get the <em>i</em><sup>th</sup> element as a {@link DoubleType} that
+	 * reads and writes the underlying storage. The returned instance is
+	 * reused by subsequent calls.
+	 */
+	@Override
+	public DoubleType get( final long i )
+	{
+		if ( element == null )
+			element = new DoubleType( dataAccess );
+		element.updateIndex( offset + ( int ) i );
+		return element;
+	}
+
+	public double getDouble( final int i )
+	{
+		return dataAccess.getValue( offset + i );
+	}
+
+	public void setDouble( final int i, final double value )
+	{
+		dataAccess.setValue( offset + i, value );
+	}
+
+	/**
+	 * Copy the elements into {@code values}.
+	 */
+	public void get( final double[] values )
+	{
+		for ( int k = 0; k < length; ++k )
+			values[ k ] = dataAccess.getValue( offset + k );
+	}
+
+	/**
+	 * Set the elements from {@code values}.
+	 */
+	public void set( final double[] values )
+	{
+		for ( int k = 0; k < length; ++k )
+			dataAccess.setValue( offset + k, values[ k ] );
+	}
+
+	/**
+	 * @return the dot product of this vector and {@code weights}.
+	 */
+	public double dot( final double[] weights )
+	{
+		double sum = 0;
+		for ( int k = 0; k < length; ++k )
+			sum += weights[ k ] * dataAccess.getValue( offset + k );
+		return sum;
+	}
+
+	@Override
+	public void set( final DoubleArrayComposite c )
+	{
+		for ( int k = 0; k < length; ++k )
+			dataAccess.setValue( offset + k, c.dataAccess.getValue( c.offset + k ) );
+	}
+
+	@Override
+	public DoubleArrayComposite createVariable()
+	{
+		return new DoubleArrayComposite( length );
+	}
+
+	@Override
+	public DoubleArrayComposite copy()
+	{
+		final DoubleArrayComposite copy = createVariable();
+		copy.set( this );
+		return copy;
+	}
+
+	@Override
+	public boolean valueEquals( final DoubleArrayComposite c )
+	{
+		if ( c.length != length )
+			return false;
+		for ( int k = 0; k < length; ++k )
+			if ( !DoubleType.equals( getDouble( k ), c.getDouble( k ) ) )
+				return false;
+		return true;
+	}
+
+	@Override
+	public boolean equals( final Object obj )
+	{
+		return Util.valueEqualsObject( this, obj );
+	}
+
+	@Override
+	public int hashCode()
+	{
+		int hash = length;
+		for ( int k = 0; k < length; ++k )
+			hash = Util.combineHash( hash, Double.hashCode( getDouble( k ) ) );
+		return hash;
+	}
+
+	@Override
+	public Fraction getEntitiesPerPixel()
+	{
+		return new Fraction( length, 1 );
+	}
+
+	@Override
+	public DoubleArrayComposite duplicateTypeOnSameNativeImg()
+	{
+		return new DoubleArrayComposite( img, length );
+	}
+
+	@Override
+	public NativeTypeFactory< DoubleArrayComposite, DoubleAccess > getNativeTypeFactory()
+	{
+		return typeFactory;
+	}
+
+	@Override
+	public void updateContainer( final Object c )
+	{
+		dataAccess = img.update( c );
+		element = null;
+	}
+
+	@Override
+	public void updateIndex( final int index )
+	{
+		i = index;
+		offset = index * length;
+	}
+
+	@Override
+	public int getIndex()
+	{
+		return i;
+	}
+
+	@Override
+	public void incIndex()
+	{
+		++i;
+		offset += length;
+	}
+
+	@Override
+	public void incIndex( final int increment )
+	{
+		i += increment;
+		offset += increment * length;
+	}
+
+	@Override
+	public void decIndex()
+	{
+		--i;
+		offset -= length;
+	}
+
+	@Override
+	public void decIndex( final int decrement )
+	{
+		i -= decrement;
+		offset -= decrement * length;
+	}
+
+	@Override
+	public String toString()
+	{
+		final double[] values = new double[ length ];
+		get( values );
+		return Arrays.toString( values );
+	}
+}
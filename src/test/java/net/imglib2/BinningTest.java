@@ -35,12 +35,22 @@
 package net.imglib2;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
-
+import java.util.Random;
+
+import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.img.cell.CellImgFactory;
+import net.imglib2.test.RandomImgs;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.type.numeric.integer.UnsignedShortType;
+import net.imglib2.type.numeric.real.FloatType;
 import net.imglib2.util.Binning;
+import net.imglib2.view.Views;
 
 import org.junit.After;
 import org.junit.AfterClass;
@@ -167,6 +177,83 @@ public class BinningTest
 		testHistogram( min, max, inc, bins );
 	}
 
+	/**
+	 * Tests bulk conversion against {@link Binning#valueToBin}.
+	 */
+	@Test
+	public void testValuesToBins()
+	{
+		final Random random = new Random( 1 );
+		final double[] values = new double[ 10000 ];
+		final float[] floats = new float[ values.length ];
+		for ( int i = 0; i < values.length; ++i )
+		{
+			values[ i ] = random.nextDouble() * 140 - 20;
+			floats[ i ] = ( float ) values[ i ];
+		}
+		values[ 0 ] = 0;
+		values[ 1 ] = 100;
+		values[ 2 ] = Double.NaN;
+		values[ 3 ] = Double.POSITIVE_INFINITY;
+		values[ 4 ] = Double.NEGATIVE_INFINITY;
+		for ( final int bins : new int[] { 1, 7, 256, 1000 } )
+		{
+			final int[] result = Binning.valuesToBins( bins, 0, 100, values );
+			final int[] floatResult = Binning.valuesToBins( bins, 0, 100, floats );
+			for ( int i = 0; i < values.length; ++i )
+			{
+				assertNearBin( Binning.valueToBin( bins, 0, 100, values[ i ] ), result[ i ] );
+				assertNearBin( Binning.valueToBin( bins, 0, 100, floats[ i ] ), floatResult[ i ] );
+			}
+		}
+
+		// sub range with offset
+		final int[] result = new int[ 20 ];
+		Arrays.fill( result, -1 );
+		Binning.valuesToBins( 10, 0, 100, values, 5, 15, result, 3 );
+		for ( int i = 0; i < 20; ++i )
+			if ( i < 3 || i >= 13 )
+				assertEquals( -1, result[ i ] );
+			else
+				assertNearBin( Binning.valueToBin( 10, 0, 100, values[ i + 2 ] ), result[ i ] );
+
+		// degenerate range
+		for ( final int bin : Binning.valuesToBins( 10, 5, 5, values ) )
+			assertEquals( 5, bin );
+	}
+
+	/**
+	 * Tests bulk conversion of images with and without direct access to the
+	 * storage arrays.
+	 */
+	@Test
+	public void testValuesToBinsImg()
+	{
+		final Img< UnsignedShortType > shorts = RandomImgs.seed( 1 ).randomize( new CellImgFactory<>( new UnsignedShortType(), 7 ).create( 30, 20 ) );
+		final Img< FloatType > floats = RandomImgs.seed( 2 ).randomize( ArrayImgs.floats( 10000 ) );
+		checkValuesToBins( shorts, 100, 1000, 60000 );
+		checkValuesToBins( Views.iterable( Views.interval( shorts, new long[] { 3, 4 }, new long[] { 25, 19 } ) ), 100, 1000, 60000 );
+		checkValuesToBins( floats, 256, -0.5, 0.5 );
+	}
+
+	private static void checkValuesToBins( final IterableInterval< ? extends RealType< ? > > data, final int bins, final double min, final double max )
+	{
+		final int[] result = new int[ ( int ) data.size() ];
+		Binning.valuesToBins( bins, min, max, data, result );
+		int i = 0;
+		for ( final RealType< ? > t : data )
+			assertNearBin( Binning.valueToBin( bins, min, max, t.getRealDouble() ), result[ i++ ] );
+	}
+
+	/**
+	 * Bulk conversion may assign values within rounding error of a bin edge to
+	 * the neighboring bin.
+	 */
+	private static void assertNearBin( final int expected, final int actual )
+	{
+		assertTrue( "expected bin " + expected + " +/- 1, but was " + actual, Math.abs( expected - actual ) <= 1 );
+	}
+
 	/**
 	 * Tests edge values array.
 	 */
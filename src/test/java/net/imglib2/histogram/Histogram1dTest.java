@@ -34,12 +34,22 @@
 
 package net.imglib2.histogram;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 
 import java.util.ArrayList;
 import java.util.List;
 
+import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.img.cell.CellImgFactory;
+import net.imglib2.img.planar.PlanarImgs;
+import net.imglib2.test.RandomImgs;
+import net.imglib2.type.numeric.RealType;
 import net.imglib2.type.numeric.integer.UnsignedByteType;
+import net.imglib2.type.numeric.integer.UnsignedShortType;
+import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.view.Views;
 
 import org.junit.Test;
 
@@ -120,4 +130,68 @@ public class Histogram1dTest
 		data.add( new UnsignedByteType( 5 ) );
 		return data;
 	}
+
+	/**
+	 * Compare counting of images, whose values are read from their primitive
+	 * arrays, with mapping each value individually.
+	 */
+	@Test
+	public void testPrimitiveCounting()
+	{
+		final long[] dims = { 37, 29, 5 };
+		final List< Iterable< UnsignedShortType > > shorts = new ArrayList<>();
+		shorts.add( RandomImgs.seed( 1 ).randomize( ArrayImgs.unsignedShorts( dims ) ) );
+		shorts.add( RandomImgs.seed( 2 ).randomize( PlanarImgs.unsignedShorts( dims ) ) );
+		shorts.add( RandomImgs.seed( 3 ).randomize( new CellImgFactory<>( new UnsignedShortType(), 8 ).create( dims ) ) );
+		shorts.add( Views.interval( ( Img< UnsignedShortType > ) shorts.get( 0 ), new long[] { 1, 2, 0 }, new long[] { 30, 20, 3 } ) );
+		for ( final Iterable< UnsignedShortType > data : shorts )
+		{
+			checkCounting( data, new Integer1dBinMapper< UnsignedShortType >( 0, 65536, false ) );
+			checkCounting( data, new Integer1dBinMapper< UnsignedShortType >( 20000, 1000, true ) );
+			checkCounting( data, new Integer1dBinMapper< UnsignedShortType >( 20000, 30000, false ) );
+			checkCounting( data, new Real1dBinMapper< UnsignedShortType >( 1000, 50000, 100, false ) );
+		}
+
+		final List< Iterable< UnsignedByteType > > bytes = new ArrayList<>();
+		bytes.add( RandomImgs.seed( 4 ).randomize( ArrayImgs.unsignedBytes( dims ) ) );
+		bytes.add( RandomImgs.seed( 5 ).randomize( PlanarImgs.unsignedBytes( dims ) ) );
+		bytes.add( RandomImgs.seed( 6 ).randomize( new CellImgFactory<>( new UnsignedByteType(), 8 ).create( dims ) ) );
+		bytes.add( getData1() );
+		for ( final Iterable< UnsignedByteType > data : bytes )
+		{
+			checkCounting( data, new Integer1dBinMapper< UnsignedByteType >( 0, 256, false ) );
+			checkCounting( data, new Integer1dBinMapper< UnsignedByteType >( 5, 100, true ) );
+			checkCounting( data, new Real1dBinMapper< UnsignedByteType >( 10, 200, 7, true ) );
+		}
+
+		checkCounting( RandomImgs.seed( 7 ).randomize( ArrayImgs.floats( dims ) ), new Real1dBinMapper< FloatType >( 0.1, 0.8, 13, false ) );
+	}
+
+	private static < T extends RealType< T > > void checkCounting( final Iterable< T > data, final BinMapper1d< T > mapper )
+	{
+		final long[] expected = new long[ ( int ) mapper.getBinCount() ];
+		long ignored = 0;
+		long size = 0;
+		for ( final T value : data )
+		{
+			final long bin = mapper.map( value );
+			if ( bin == Long.MIN_VALUE || bin == Long.MAX_VALUE )
+				++ignored;
+			else
+				++expected[ ( int ) bin ];
+			++size;
+		}
+
+		final Histogram1d< T > hist = new Histogram1d<>( data, mapper );
+		assertArrayEquals( expected, hist.toLongArray() );
+		assertEquals( ignored, hist.ignoredCount() );
+		assertEquals( size - ignored, hist.distributionCount() );
+
+		// counting twice and subtracting once gives the same result
+		hist.addData( data );
+		hist.subtractData( data );
+		assertArrayEquals( expected, hist.toLongArray() );
+		assertEquals( ignored, hist.ignoredCount() );
+		assertEquals( size - ignored, hist.distributionCount() );
+	}
 }
@@ -34,18 +34,24 @@
 
 package net.imglib2.histogram;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
 
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Random;
 
 import net.imglib2.Cursor;
+import net.imglib2.RandomAccess;
 import net.imglib2.img.Img;
 import net.imglib2.img.array.ArrayImgFactory;
 import net.imglib2.type.numeric.ARGBType;
 import net.imglib2.type.numeric.integer.IntType;
+import net.imglib2.type.numeric.integer.LongType;
 import net.imglib2.type.numeric.integer.UnsignedByteType;
 
 import org.junit.Test;
@@ -380,4 +386,137 @@ public class HistogramNdTest
 		}
 
 	}
+
+	@Test
+	public void testSparseMatchesDense()
+	{
+		final long[] binCounts = { 7, 5, 9 };
+		final DiscreteFrequencyDistribution dense = new DiscreteFrequencyDistribution( binCounts, false );
+		final DiscreteFrequencyDistribution sparse = new DiscreteFrequencyDistribution( binCounts, true );
+		assertFalse( dense.isSparse() );
+		assertTrue( sparse.isSparse() );
+
+		final Random random = new Random( 1 );
+		final long[] pos = new long[ 3 ];
+		for ( int i = 0; i < 5000; ++i )
+		{
+			for ( int d = 0; d < 3; ++d )
+				pos[ d ] = random.nextInt( ( int ) binCounts[ d ] / 2 + 1 );
+			final int op = random.nextInt( 10 );
+			if ( op == 0 )
+			{
+				final long value = random.nextInt( 4 );
+				dense.setFrequency( pos, value );
+				sparse.setFrequency( pos, value );
+			}
+			else if ( op < 4 && dense.frequency( pos ) > 0 )
+			{
+				dense.decrement( pos );
+				sparse.decrement( pos );
+			}
+			else
+			{
+				dense.increment( pos );
+				sparse.increment( pos );
+			}
+		}
+
+		assertEquals( dense.totalValues(), sparse.totalValues() );
+		assertEquals( dense.modeCount(), sparse.modeCount() );
+		final List< long[] > denseModes = dense.modePositions();
+		final List< long[] > sparseModes = sparse.modePositions();
+		assertEquals( denseModes.size(), sparseModes.size() );
+		for ( int i = 0; i < denseModes.size(); ++i )
+			assertArrayEquals( denseModes.get( i ), sparseModes.get( i ) );
+
+		// compare through the Img interface
+		assertEquals( dense.size(), sparse.size() );
+		final Cursor< LongType > denseCursor = dense.localizingCursor();
+		final RandomAccess< LongType > sparseAccess = sparse.randomAccess();
+		while ( denseCursor.hasNext() )
+		{
+			final long count = denseCursor.next().get();
+			sparseAccess.setPosition( denseCursor );
+			assertEquals( count, sparseAccess.get().get() );
+			denseCursor.localize( pos );
+			assertEquals( count, sparse.frequency( pos ) );
+		}
+
+		sparse.resetCounters();
+		assertEquals( 0, sparse.totalValues() );
+		assertEquals( 0, sparse.modeCount() );
+		assertTrue( sparse.modePositions().isEmpty() );
+
+		// a dense counter lists all bins if nothing was counted
+		dense.resetCounters();
+		assertEquals( 0, dense.modeCount() );
+		assertEquals( dense.size(), dense.modePositions().size() );
+	}
+
+	@Test
+	public void testSparseImgWrites()
+	{
+		final DiscreteFrequencyDistribution sparse = new DiscreteFrequencyDistribution( new long[] { 4, 3 }, true );
+		final RandomAccess< LongType > access = sparse.randomAccess();
+		access.setPosition( new long[] { 2, 1 } );
+		access.get().set( 5 );
+		assertEquals( 5, sparse.frequency( new long[] { 2, 1 } ) );
+		access.get().inc();
+		assertEquals( 6, sparse.frequency( new long[] { 2, 1 } ) );
+		access.setPosition( new long[] { 1, 2 } );
+		assertEquals( 0, access.get().get() );
+
+		final Cursor< LongType > cursor = sparse.localizingCursor();
+		while ( cursor.hasNext() )
+			cursor.next().add( new LongType( cursor.getLongPosition( 0 ) ) );
+		assertEquals( 8, sparse.frequency( new long[] { 2, 1 } ) );
+		assertEquals( 1, sparse.frequency( new long[] { 1, 2 } ) );
+		assertEquals( 0, sparse.frequency( new long[] { 0, 2 } ) );
+		assertArrayEquals( new long[] { 2, 1 }, sparse.modePositions().get( 0 ) );
+	}
+
+	@Test
+	public void testSparseJointHistogram()
+	{
+		// 4 channels with 256 bins each
+		final Random random = new Random( 2 );
+		final List< Iterable< UnsignedByteType > > data = new ArrayList<>();
+		for ( int c = 0; c < 4; ++c )
+		{
+			final List< UnsignedByteType > channel = new ArrayList<>();
+			for ( int i = 0; i < 1000; ++i )
+				channel.add( new UnsignedByteType( c == 0 ? i % 256 : random.nextInt( 256 ) ) );
+			data.add( channel );
+		}
+		final HistogramNd< UnsignedByteType > hist =
+				Integer1dBinMapper.histogramNd( new long[] { 1, 0, 0, 0 }, new long[] { 256, 256, 256, 256 }, new boolean[] { true, false, false, false } );
+		assertTrue( hist.dfd().isSparse() );
+		assertEquals( 1L << 32, hist.getBinCount() );
+
+		hist.countData( data );
+		assertEquals( 1000, hist.totalCount() );
+		assertEquals( 0, hist.ignoredCount() );
+		// channel 0 has the values 0..231 four times and 232..255 three times,
+		// values below 1 and above 254 go to the tails
+		assertEquals( 4, hist.lowerTailCount( 0 ) );
+		assertEquals( 3, hist.upperTailCount( 0 ) );
+		assertEquals( 1000 - 4 - 3, hist.valueCount( 0 ) );
+		assertEquals( 4, hist.distributionCount( 0, 10 ) );
+
+		final List< UnsignedByteType > values = new ArrayList<>();
+		final Iterator< UnsignedByteType > c0 = data.get( 0 ).iterator();
+		final Iterator< UnsignedByteType > c1 = data.get( 1 ).iterator();
+		final Iterator< UnsignedByteType > c2 = data.get( 2 ).iterator();
+		final Iterator< UnsignedByteType > c3 = data.get( 3 ).iterator();
+		values.add( c0.next() );
+		values.add( c1.next() );
+		values.add( c2.next() );
+		values.add( c3.next() );
+		assertTrue( hist.frequency( values ) >= 1 );
+		assertTrue( hist.dfd().modeCount() >= 1 );
+
+		hist.subtractData( data );
+		assertEquals( 0, hist.totalCount() );
+		assertEquals( 0, hist.frequency( values ) );
+	}
 }
@@ -0,0 +1,110 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2018 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.histogram;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Tests {@link LongLongHashMap}.
+ */
+public class LongLongHashMapTest
+{
+	@Test
+	public void testAgainstHashMap()
+	{
+		final Random random = new Random( 42 );
+		final LongLongHashMap map = new LongLongHashMap( 4 );
+		final Map< Long, Long > expected = new HashMap<>();
+		for ( int i = 0; i < 200000; ++i )
+		{
+			// few distinct keys, so that values often return to zero
+			final long key = random.nextInt( 3000 ) * 1000003L;
+			final int op = random.nextInt( 3 );
+			if ( op == 0 )
+			{
+				final long value = random.nextInt( 3 ) - 1;
+				map.put( key, value );
+				if ( value == 0 )
+					expected.remove( key );
+				else
+					expected.put( key, value );
+			}
+			else
+			{
+				final long delta = op == 1 ? 1 : -1;
+				final long value = expected.getOrDefault( key, 0L ) + delta;
+				assertEquals( value, map.add( key, delta ) );
+				if ( value == 0 )
+					expected.remove( key );
+				else
+					expected.put( key, value );
+			}
+		}
+		assertEquals( expected.size(), map.size() );
+		for ( long key = 0; key < 3000; ++key )
+			assertEquals( expected.getOrDefault( key * 1000003L, 0L ).longValue(), map.get( key * 1000003L ) );
+
+		int visited = 0;
+		for ( int i = 0; i < map.capacity(); ++i )
+		{
+			if ( map.keyAt( i ) != LongLongHashMap.FREE )
+			{
+				assertEquals( expected.get( map.keyAt( i ) ).longValue(), map.valueAt( i ) );
+				++visited;
+			}
+		}
+		assertEquals( expected.size(), visited );
+
+		final LongLongHashMap copy = map.copy();
+		map.clear();
+		assertEquals( 0, map.size() );
+		assertEquals( 0, map.get( 1000003L ) );
+		assertEquals( expected.size(), copy.size() );
+		for ( final Map.Entry< Long, Long > entry : expected.entrySet() )
+			assertEquals( entry.getValue().longValue(), copy.get( entry.getKey() ) );
+	}
+
+	@Test( expected = IllegalArgumentException.class )
+	public void testNegativeKey()
+	{
+		new LongLongHashMap().add( -5, 1 );
+	}
+}
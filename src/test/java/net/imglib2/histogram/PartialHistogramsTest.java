@@ -0,0 +1,222 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2018 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.histogram;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import net.imglib2.IterableInterval;
+import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.img.cell.Cell;
+import net.imglib2.img.cell.CellImg;
+import net.imglib2.img.cell.CellImgFactory;
+import net.imglib2.img.planar.PlanarImg;
+import net.imglib2.img.planar.PlanarImgs;
+import net.imglib2.test.RandomImgs;
+import net.imglib2.type.numeric.integer.UnsignedByteType;
+import net.imglib2.type.numeric.integer.UnsignedShortType;
+import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.view.Views;
+
+import org.junit.Test;
+
+/**
+ * Tests {@link PartialHistograms} and the parallel counting of
+ * {@link Histogram1d} and {@link HistogramNd}.
+ */
+public class PartialHistogramsTest
+{
+	private static final long[] DIMS = { 64, 48, 100 };
+
+	@Test
+	public void testSplitPlanes()
+	{
+		final PlanarImg< UnsignedShortType, ? > img = PlanarImgs.unsignedShorts( DIMS );
+		final long[] bounds = PartialHistograms.split( img, img.size(), 4 );
+		assertEquals( 5, bounds.length );
+		assertEquals( 0, bounds[ 0 ] );
+		assertEquals( img.size(), bounds[ 4 ] );
+		for ( int i = 1; i < bounds.length; ++i )
+		{
+			assertTrue( bounds[ i ] > bounds[ i - 1 ] );
+			assertEquals( 0, bounds[ i ] % ( DIMS[ 0 ] * DIMS[ 1 ] ) );
+		}
+	}
+
+	@Test
+	public void testSplitCells()
+	{
+		final CellImg< UnsignedShortType, ? > img = new CellImgFactory<>( new UnsignedShortType(), 32 ).create( DIMS );
+		final long[] bounds = PartialHistograms.split( img, img.size(), 4 );
+		assertEquals( 0, bounds[ 0 ] );
+		assertEquals( img.size(), bounds[ bounds.length - 1 ] );
+
+		// all bounds are at cell borders
+		final List< Long > cellEnds = new ArrayList<>();
+		long end = 0;
+		for ( final Object cell : img.getCells() )
+			cellEnds.add( end += ( ( Cell< ? > ) cell ).size() );
+		for ( int i = 1; i < bounds.length; ++i )
+		{
+			assertTrue( bounds[ i ] >= bounds[ i - 1 ] );
+			assertTrue( cellEnds.contains( bounds[ i ] ) );
+		}
+	}
+
+	@Test
+	public void testSplitSmall()
+	{
+		final Img< UnsignedShortType > img = ArrayImgs.unsignedShorts( 10, 10 );
+		assertArrayEquals( new long[] { 0, 100 }, PartialHistograms.split( img, img.size(), 8 ) );
+	}
+
+	@Test
+	public void testCountRanges()
+	{
+		final List< IterableInterval< UnsignedShortType > > shorts = new ArrayList<>();
+		shorts.add( RandomImgs.seed( 1 ).randomize( ArrayImgs.unsignedShorts( DIMS ) ) );
+		shorts.add( RandomImgs.seed( 2 ).randomize( PlanarImgs.unsignedShorts( DIMS ) ) );
+		shorts.add( RandomImgs.seed( 3 ).randomize( new CellImgFactory<>( new UnsignedShortType(), 20 ).create( DIMS ) ) );
+		shorts.add( Views.interval( ( Img< UnsignedShortType > ) shorts.get( 0 ), new long[] { 3, 1, 2 }, new long[] { 60, 40, 90 } ) );
+		for ( final IterableInterval< UnsignedShortType > data : shorts )
+		{
+			checkRanges( data, new Integer1dBinMapper< UnsignedShortType >( 10000, 20000, false ) );
+			checkRanges( data, new Real1dBinMapper< UnsignedShortType >( 0, 65535, 1000, true ) );
+		}
+		checkRanges(
+				RandomImgs.seed( 4 ).randomize( new CellImgFactory<>( new UnsignedByteType(), 16 ).create( DIMS ) ),
+				new Integer1dBinMapper< UnsignedByteType >( 0, 256, false ) );
+		checkRanges(
+				RandomImgs.seed( 5 ).randomize( ArrayImgs.floats( DIMS ) ),
+				new Real1dBinMapper< FloatType >( 0.2, 0.9, 77, false ) );
+	}
+
+	private static < T > void checkRanges( final IterableInterval< T > data, final BinMapper1d< T > mapper )
+	{
+		final Histogram1d< T > expected = new Histogram1d<>( data, mapper );
+
+		final Histogram1d< T > hist = new Histogram1d<>( mapper );
+		final Histogram1dCounter< T > prototype = new Histogram1dCounter<>( mapper ).copyFor( data );
+		final ExecutorService executor = Executors.newFixedThreadPool( 3 );
+		try
+		{
+			final long ignored = PartialHistograms.count( data, data.size(), 5, () -> {
+				final Histogram1dCounter< T > counter = prototype.copy();
+				return ( from, to, counts ) -> counter.count( data, from, to, counts );
+			}, hist.dfd(), 1, executor );
+			assertEquals( expected.ignoredCount(), ignored );
+		}
+		finally
+		{
+			executor.shutdown();
+		}
+		assertArrayEquals( expected.toLongArray(), hist.toLongArray() );
+		assertEquals( expected.distributionCount(), hist.distributionCount() );
+	}
+
+	@Test
+	public void testHistogram1d()
+	{
+		final Img< UnsignedShortType > img = RandomImgs.seed( 6 ).randomize( new CellImgFactory<>( new UnsignedShortType(), 16 ).create( DIMS ) );
+		final Integer1dBinMapper< UnsignedShortType > mapper = new Integer1dBinMapper<>( 1000, 60000, false );
+		final Histogram1d< UnsignedShortType > expected = new Histogram1d<>( img, mapper );
+
+		final ExecutorService executor = Executors.newFixedThreadPool( 3 );
+		try
+		{
+			final Histogram1d< UnsignedShortType > hist = new Histogram1d<>( mapper );
+			hist.countData( img, executor );
+			assertArrayEquals( expected.toLongArray(), hist.toLongArray() );
+			assertEquals( expected.ignoredCount(), hist.ignoredCount() );
+			assertEquals( expected.distributionCount(), hist.distributionCount() );
+			assertEquals( img.firstElement().get(), hist.firstDataValue().get() );
+
+			hist.addData( img, executor );
+			hist.subtractData( Views.flatIterable( img ), executor );
+			assertArrayEquals( expected.toLongArray(), hist.toLongArray() );
+			assertEquals( expected.ignoredCount(), hist.ignoredCount() );
+			assertEquals( expected.distributionCount(), hist.distributionCount() );
+		}
+		finally
+		{
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void testHistogramNd()
+	{
+		final Img< UnsignedByteType > img1 = RandomImgs.seed( 7 ).randomize( ArrayImgs.unsignedBytes( DIMS ) );
+		final Img< UnsignedByteType > img2 = RandomImgs.seed( 8 ).randomize( new CellImgFactory<>( new UnsignedByteType(), 16 ).create( DIMS ) );
+		final List< Iterable< UnsignedByteType > > serial = Arrays.asList( img1, img2 );
+		final List< Img< UnsignedByteType > > parallel = Arrays.asList( img1, img2 );
+
+		final long[] minVals = { 10, 0 };
+		final long[] numBins = { 200, 30 };
+		for ( final boolean tails : new boolean[] { false, true } )
+		{
+			final boolean[] tailBins = { tails, tails };
+			final HistogramNd< UnsignedByteType > expected = Integer1dBinMapper.histogramNd( minVals, numBins, tailBins );
+			expected.countData( serial );
+
+			final ExecutorService executor = Executors.newFixedThreadPool( 3 );
+			try
+			{
+				final HistogramNd< UnsignedByteType > hist = Integer1dBinMapper.histogramNd( minVals, numBins, tailBins );
+				hist.countData( parallel, executor );
+				assertArrayEquals( expected.dfd().array(), hist.dfd().array() );
+				assertEquals( expected.ignoredCount(), hist.ignoredCount() );
+				assertEquals( expected.distributionCount(), hist.distributionCount() );
+
+				hist.subtractData( parallel, executor );
+				assertArrayEquals( new long[ expected.dfd().array().length ], hist.dfd().array() );
+				assertEquals( 0, hist.ignoredCount() );
+				assertEquals( 0, hist.distributionCount() );
+			}
+			finally
+			{
+				executor.shutdown();
+			}
+		}
+	}
+}
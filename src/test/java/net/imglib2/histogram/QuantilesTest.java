@@ -0,0 +1,234 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2018 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.histogram;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import net.imglib2.Cursor;
+import net.imglib2.IterableInterval;
+import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.img.cell.CellImgFactory;
+import net.imglib2.test.RandomImgs;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.type.numeric.integer.IntType;
+import net.imglib2.type.numeric.integer.UnsignedShortType;
+import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.util.Util;
+
+import org.junit.Test;
+
+/**
+ * Tests {@link Quantiles} and {@link QuantileSketch}.
+ */
+public class QuantilesTest
+{
+	private static final double[] QUANTILES = { 0, 0.001, 0.01, 0.1, 0.25, 0.5, 0.75, 0.9, 0.99, 0.999, 1 };
+
+	@Test
+	public void testExactUnsignedShort()
+	{
+		final Img< UnsignedShortType > img = RandomImgs.seed( 1 ).randomize( new CellImgFactory<>( new UnsignedShortType(), 16 ).create( 50, 40, 30 ) );
+		final double[] expected = percentiles( img );
+		assertArrayEquals( expected, Quantiles.exact( img, QUANTILES ) );
+
+		final ExecutorService executor = Executors.newFixedThreadPool( 3 );
+		try
+		{
+			assertArrayEquals( expected, Quantiles.exact( img, executor, QUANTILES ) );
+		}
+		finally
+		{
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void testExactInt()
+	{
+		final Img< IntType > img = ArrayImgs.ints( 1000, 7 );
+		final Random random = new Random( 2 );
+		for ( final IntType t : img )
+			t.set( random.nextInt( 300000 ) - 100000 );
+		assertArrayEquals( percentiles( img ), Quantiles.exact( img, QUANTILES ) );
+	}
+
+	@Test( expected = IllegalArgumentException.class )
+	public void testExactRangeTooLarge()
+	{
+		final Img< IntType > img = ArrayImgs.ints( 2 );
+		img.firstElement().set( Integer.MIN_VALUE );
+		Quantiles.exact( img, 0.5 );
+	}
+
+	@Test
+	public void testEmpty()
+	{
+		final Img< UnsignedShortType > img = ArrayImgs.unsignedShorts( 0 );
+		assertTrue( Double.isNaN( Quantiles.exact( img, 0.5 )[ 0 ] ) );
+		assertTrue( Double.isNaN( Quantiles.sketch( img ).median() ) );
+		assertTrue( Double.isNaN( new QuantileSketch().rank( 1 ) ) );
+	}
+
+	@Test
+	public void testSketchAccuracy()
+	{
+		final Img< FloatType > img = ArrayImgs.floats( 1000, 1000 );
+		final Random random = new Random( 3 );
+		for ( final FloatType t : img )
+			t.set( ( float ) ( random.nextGaussian() * Math.exp( random.nextGaussian() ) ) );
+		final double[] sorted = sorted( img );
+
+		final QuantileSketch sketch = Quantiles.sketch( img );
+		assertEquals( img.size(), sketch.size() );
+		assertEquals( sorted[ 0 ], sketch.min(), 0 );
+		assertEquals( sorted[ sorted.length - 1 ], sketch.max(), 0 );
+		assertTrue( sketch.numRetained() < 4 * QuantileSketch.DEFAULT_K );
+		checkRankError( sorted, sketch, 0.02 );
+
+		// finer sketch
+		checkRankError( sorted, Quantiles.sketch( img, 1000 ), 0.005 );
+
+		final ExecutorService executor = Executors.newFixedThreadPool( 3 );
+		try
+		{
+			checkRankError( sorted, Quantiles.sketch( img, executor ), 0.02 );
+		}
+		finally
+		{
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void testSketchMerge()
+	{
+		final Random random = new Random( 4 );
+		final double[] values = new double[ 400000 ];
+		final QuantileSketch merged = new QuantileSketch( 200, new Random( 0 ) );
+		for ( int part = 0; part < 8; ++part )
+		{
+			// parts with different distributions
+			final QuantileSketch sketch = new QuantileSketch( 200, new Random( part + 1 ) );
+			for ( int i = part * 50000; i < ( part + 1 ) * 50000; ++i )
+			{
+				values[ i ] = part * 0.25 + random.nextDouble();
+				sketch.add( values[ i ] );
+			}
+			merged.merge( sketch );
+		}
+		Arrays.sort( values );
+		assertEquals( values.length, merged.size() );
+		assertTrue( merged.numRetained() < 4 * 200 );
+		checkRankError( values, merged, 0.02 );
+
+		// rank is roughly the inverse of quantile
+		assertEquals( 0.5, merged.rank( merged.median() ), 0.02 );
+		assertEquals( 0, merged.rank( values[ 0 ] - 1 ), 0 );
+		assertEquals( 1, merged.rank( values[ values.length - 1 ] ), 0 );
+	}
+
+	@Test
+	public void testSketchSmallIsExact()
+	{
+		// fewer than k values are not compacted
+		final double[] values = new double[ 150 ];
+		final QuantileSketch sketch = new QuantileSketch();
+		final Random random = new Random( 5 );
+		for ( int i = 0; i < values.length; ++i )
+			sketch.add( values[ i ] = random.nextInt( 50 ) );
+		for ( final double q : QUANTILES )
+			assertEquals( Util.percentile( values, q ), sketch.quantile( q ), 0 );
+	}
+
+	private static void checkRankError( final double[] sorted, final QuantileSketch sketch, final double tolerance )
+	{
+		final int n = sorted.length;
+		for ( final double q : QUANTILES )
+		{
+			final double estimate = sketch.quantile( q );
+			// range of ranks of the estimate in the data
+			final int lo = lowerBound( sorted, estimate );
+			final int hi = lowerBound( sorted, Math.nextUp( estimate ) ) - 1;
+			final long pos = Math.round( ( n - 1 ) * q );
+			final double error = pos < lo ? lo - pos : pos > hi ? pos - hi : 0;
+			assertTrue( "rank error " + error / n + " at " + q, error / n <= tolerance );
+		}
+	}
+
+	private static int lowerBound( final double[] sorted, final double value )
+	{
+		int lo = 0, hi = sorted.length;
+		while ( lo < hi )
+		{
+			final int mid = ( lo + hi ) >>> 1;
+			if ( sorted[ mid ] < value )
+				lo = mid + 1;
+			else
+				hi = mid;
+		}
+		return lo;
+	}
+
+	private static double[] sorted( final IterableInterval< ? extends RealType< ? > > data )
+	{
+		final double[] values = new double[ ( int ) data.size() ];
+		final Cursor< ? extends RealType< ? > > cursor = data.cursor();
+		for ( int i = 0; i < values.length; ++i )
+			values[ i ] = cursor.next().getRealDouble();
+		Arrays.sort( values );
+		return values;
+	}
+
+	private static double[] percentiles( final IterableInterval< ? extends RealType< ? > > data )
+	{
+		final double[] values = sorted( data );
+		final double[] result = new double[ QUANTILES.length ];
+		for ( int i = 0; i < QUANTILES.length; ++i )
+			result[ i ] = Util.percentile( values, QUANTILES[ i ] );
+		return result;
+	}
+
+	private static void assertArrayEquals( final double[] expected, final double[] actual )
+	{
+		org.junit.Assert.assertArrayEquals( expected, actual, 0 );
+	}
+}
@@ -0,0 +1,200 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2018 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.histogram;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import net.imglib2.Cursor;
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessible;
+import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.img.cell.CellImgFactory;
+import net.imglib2.test.RandomImgs;
+import net.imglib2.type.numeric.IntegerType;
+import net.imglib2.type.numeric.integer.ByteType;
+import net.imglib2.type.numeric.integer.IntType;
+import net.imglib2.type.numeric.integer.UnsignedByteType;
+import net.imglib2.type.numeric.integer.UnsignedShortType;
+import net.imglib2.view.Views;
+
+import org.junit.Test;
+
+/**
+ * Tests {@link RankHistogram}.
+ */
+public class RankHistogramTest
+{
+	@Test
+	public void testAddRemove()
+	{
+		final Random rnd = new Random( 1 );
+		final RankHistogram hist = new RankHistogram( -1000, 5000 );
+		final List< Long > values = new ArrayList<>();
+		for ( int step = 0; step < 5000; ++step )
+		{
+			if ( values.isEmpty() || rnd.nextInt( 3 ) > 0 )
+			{
+				// clustered values, with occasional outliers
+				final long v = rnd.nextInt( 10 ) == 0 ? -1000 + rnd.nextInt( 5000 ) : 500 + rnd.nextInt( 20 );
+				values.add( v );
+				hist.add( v );
+			}
+			else
+				hist.remove( values.remove( rnd.nextInt( values.size() ) ) );
+
+			assertEquals( values.size(), hist.size() );
+			if ( values.isEmpty() )
+				continue;
+			final List< Long > sorted = new ArrayList<>( values );
+			Collections.sort( sorted );
+			final int rank = rnd.nextInt( sorted.size() );
+			assertEquals( ( long ) sorted.get( rank ), hist.value( rank ) );
+			assertEquals( ( long ) sorted.get( sorted.size() / 2 ), hist.median() );
+			assertEquals( ( long ) sorted.get( 0 ), hist.quantile( 0 ) );
+			assertEquals( ( long ) sorted.get( sorted.size() - 1 ), hist.quantile( 1 ) );
+		}
+	}
+
+	@Test
+	public void testClear()
+	{
+		final RankHistogram hist = RankHistogram.forType( new UnsignedShortType() );
+		assertEquals( 0, hist.minBin() );
+		assertEquals( 65536, hist.numBins() );
+		hist.add( 40000 );
+		hist.add( 3 );
+		assertEquals( 40000, hist.value( 1 ) );
+		hist.clear();
+		assertEquals( 0, hist.size() );
+		hist.add( 7 );
+		assertEquals( 7, hist.value( 0 ) );
+		assertEquals( 1, hist.count( 7 ) );
+		assertEquals( 0, hist.count( 40000 ) );
+	}
+
+	@Test( expected = IndexOutOfBoundsException.class )
+	public void testRankOutOfBounds()
+	{
+		final RankHistogram hist = new RankHistogram( 0, 10 );
+		hist.add( 5 );
+		hist.value( 1 );
+	}
+
+	@Test( expected = IllegalArgumentException.class )
+	public void testTooManyValues()
+	{
+		RankHistogram.forType( new IntType() );
+	}
+
+	@Test
+	public void testOf()
+	{
+		final Img< UnsignedShortType > img = RandomImgs.seed( 2 ).randomize( new CellImgFactory<>( new UnsignedShortType(), 16 ).create( 50, 40, 30 ) );
+		final long[] sorted = new long[ ( int ) img.size() ];
+		int i = 0;
+		for ( final UnsignedShortType t : img )
+			sorted[ i++ ] = t.get();
+		Arrays.sort( sorted );
+		final RankHistogram hist = RankHistogram.of( img );
+		assertEquals( sorted.length, hist.size() );
+		for ( final int rank : new int[] { 0, 1, 100, sorted.length / 2, sorted.length - 2, sorted.length - 1 } )
+			assertEquals( sorted[ rank ], hist.value( rank ) );
+
+		final Img< IntType > ints = ArrayImgs.ints( new int[] { 1000000, -5, 1000000, 70 }, 4 );
+		final RankHistogram intHist = RankHistogram.of( ints );
+		assertEquals( -5, intHist.minBin() );
+		assertEquals( 70, intHist.value( 1 ) );
+		assertEquals( 1000000, intHist.median() );
+		assertEquals( 1000000, intHist.value( 3 ) );
+
+		assertEquals( 0, RankHistogram.of( ArrayImgs.unsignedBytes( 0 ) ).size() );
+	}
+
+	@Test
+	public void testMedianFilter()
+	{
+		final Img< UnsignedByteType > img = RandomImgs.seed( 3 ).randomize( ArrayImgs.unsignedBytes( 37, 23, 5 ) );
+		final RandomAccessible< UnsignedByteType > extended = Views.extendMirrorSingle( img );
+		for ( int d = 0; d < 3; ++d )
+		{
+			for ( final int radius : new int[] { 0, 1, 4 } )
+			{
+				final Img< UnsignedByteType > median = ArrayImgs.unsignedBytes( 37, 23, 5 );
+				RankHistogram.medianFilter( extended, median, d, radius );
+				checkRankFilter( extended, median, d, radius, 0.5 );
+
+				final Img< UnsignedByteType > max = ArrayImgs.unsignedBytes( 37, 23, 5 );
+				RankHistogram.rankFilter( extended, max, d, radius, 1 );
+				checkRankFilter( extended, max, d, radius, 1 );
+			}
+		}
+
+		final Img< ByteType > signed = RandomImgs.seed( 4 ).randomize( ArrayImgs.bytes( 100, 3 ) );
+		final Img< ByteType > signedMedian = ArrayImgs.bytes( 100, 3 );
+		RankHistogram.rankFilter( Views.extendBorder( signed ), signedMedian, 0, 3, 0.25 );
+		checkRankFilter( Views.extendBorder( signed ), signedMedian, 0, 3, 0.25 );
+	}
+
+	/**
+	 * Compare {@code result} to the rank filter computed by sorting the values
+	 * in the window of each position.
+	 */
+	private static < T extends IntegerType< T > > void checkRankFilter( final RandomAccessible< T > source, final Img< T > result, final int d, final int radius, final double q )
+	{
+		final RandomAccess< T > in = source.randomAccess();
+		final Cursor< T > cursor = result.localizingCursor();
+		final long[] window = new long[ 2 * radius + 1 ];
+		while ( cursor.hasNext() )
+		{
+			cursor.fwd();
+			in.setPosition( cursor );
+			in.move( -radius, d );
+			for ( int i = 0; i < window.length; ++i )
+			{
+				window[ i ] = in.get().getIntegerLong();
+				in.fwd( d );
+			}
+			Arrays.sort( window );
+			assertEquals( window[ ( int ) Math.round( ( window.length - 1 ) * q ) ], cursor.get().getIntegerLong() );
+		}
+	}
+}
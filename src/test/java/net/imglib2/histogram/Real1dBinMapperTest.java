@@ -38,7 +38,11 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
 import net.imglib2.type.numeric.integer.IntType;
+import net.imglib2.type.numeric.real.DoubleType;
 import net.imglib2.type.numeric.real.FloatType;
 
 import org.junit.Test;
@@ -187,6 +191,42 @@ public class Real1dBinMapperTest
 		assertEquals( 101, binMapper.map( tmp ) );
 	}
 
+	@Test
+	public void testBulkMap()
+	{
+		final Random random = new Random( 1 );
+		final double[] values = new double[ 10000 ];
+		final float[] floats = new float[ values.length ];
+		for ( int i = 0; i < values.length; ++i )
+		{
+			values[ i ] = random.nextDouble() * 140 - 20;
+			floats[ i ] = ( float ) values[ i ];
+		}
+		values[ 0 ] = 0;
+		values[ 1 ] = 100;
+		values[ 2 ] = Double.NaN;
+		values[ 3 ] = Double.POSITIVE_INFINITY;
+		values[ 4 ] = Double.NEGATIVE_INFINITY;
+		final DoubleType tmp = new DoubleType();
+		for ( final boolean tails : new boolean[] { false, true } )
+		{
+			final Real1dBinMapper< DoubleType > binMapper = new Real1dBinMapper<>( 0.0, 100.0, 77, tails );
+			final int[] result = new int[ values.length + 1 ];
+			final int[] floatResult = new int[ values.length ];
+			binMapper.map( values, 0, values.length, result, 1 );
+			binMapper.map( floats, 0, floats.length, floatResult, 0 );
+			for ( int i = 0; i < values.length; ++i )
+			{
+				tmp.set( values[ i ] );
+				final long expected = binMapper.map( tmp );
+				assertEquals( expected == Long.MIN_VALUE || expected == Long.MAX_VALUE ? -1 : expected, result[ i + 1 ] );
+				tmp.set( floats[ i ] );
+				final long expectedFloat = binMapper.map( tmp );
+				assertEquals( expectedFloat == Long.MIN_VALUE || expectedFloat == Long.MAX_VALUE ? -1 : expectedFloat, floatResult[ i ] );
+			}
+		}
+	}
+
 	// DONE
 
 	@Test
@@ -0,0 +1,144 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2018 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.histogram;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+
+import net.imglib2.Cursor;
+import net.imglib2.FinalInterval;
+import net.imglib2.RandomAccessible;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.test.RandomImgs;
+import net.imglib2.type.numeric.IntegerType;
+import net.imglib2.type.numeric.integer.IntType;
+import net.imglib2.type.numeric.integer.LongType;
+import net.imglib2.type.numeric.integer.UnsignedByteType;
+import net.imglib2.type.numeric.integer.UnsignedShortType;
+import net.imglib2.util.Intervals;
+import net.imglib2.view.Views;
+
+import org.junit.Test;
+
+/**
+ * Tests {@link SlidingWindowHistogram}.
+ */
+public class SlidingWindowHistogramTest
+{
+	@Test
+	public void testMedianFilter1d()
+	{
+		final Img< UnsignedByteType > img = RandomImgs.seed( 1 ).randomize( ArrayImgs.unsignedBytes( 50 ) );
+		final Img< UnsignedByteType > result = ArrayImgs.unsignedBytes( 50 );
+		SlidingWindowHistogram.medianFilter( Views.extendMirrorSingle( img ), result, 3 );
+		checkRankFilter( Views.extendMirrorSingle( img ), result, new long[] { 3 }, 0.5 );
+	}
+
+	@Test
+	public void testMedianFilter2d()
+	{
+		final Img< UnsignedShortType > img = RandomImgs.seed( 2 ).randomize( ArrayImgs.unsignedShorts( 31, 17 ) );
+		final Img< UnsignedShortType > result = ArrayImgs.unsignedShorts( 31, 17 );
+		SlidingWindowHistogram.medianFilter( Views.extendBorder( img ), result, 2, 1 );
+		checkRankFilter( Views.extendBorder( img ), result, new long[] { 2, 1 }, 0.5 );
+	}
+
+	@Test
+	public void testRankFilter3d()
+	{
+		final Img< UnsignedByteType > img = RandomImgs.seed( 3 ).randomize( ArrayImgs.unsignedBytes( 13, 11, 7 ) );
+		final RandomAccessible< UnsignedByteType > extended = Views.extendMirrorSingle( img );
+		for ( final long[] radius : new long[][] { { 1, 1, 1 }, { 0, 2, 1 }, { 3, 0, 0 }, { 0, 0, 0 } } )
+		{
+			for ( final double q : new double[] { 0, 0.3, 0.5, 1 } )
+			{
+				final Img< UnsignedByteType > result = ArrayImgs.unsignedBytes( 13, 11, 7 );
+				SlidingWindowHistogram.rankFilter( extended, result, radius, q );
+				checkRankFilter( extended, result, radius, q );
+			}
+		}
+	}
+
+	/**
+	 * The target interval need not start at the origin, and the window
+	 * histogram can be used for other statistics.
+	 */
+	@Test
+	public void testProcessOffsetTarget()
+	{
+		final Img< UnsignedByteType > img = RandomImgs.seed( 4 ).randomize( ArrayImgs.unsignedBytes( 20, 20 ) );
+		final RandomAccessibleInterval< LongType > counts = Views.interval( ArrayImgs.longs( 20, 20 ), new FinalInterval( new long[] { 3, 5 }, new long[] { 15, 12 } ) );
+		SlidingWindowHistogram.process( img, counts, new long[] { 2, 3 }, ( histogram, output ) -> output.set( histogram.size() ) );
+		for ( final LongType t : Views.iterable( counts ) )
+			assertEquals( 5 * 7, t.get() );
+	}
+
+	@Test( expected = IllegalArgumentException.class )
+	public void testTooManyValues()
+	{
+		final Img< IntType > img = ArrayImgs.ints( 5, 5 );
+		SlidingWindowHistogram.medianFilter( Views.extendZero( img ), ArrayImgs.ints( 5, 5 ), 1, 1 );
+	}
+
+	/**
+	 * Compare {@code result} to the rank filter computed by sorting the values
+	 * in the window of each position.
+	 */
+	private static < T extends IntegerType< T > > void checkRankFilter( final RandomAccessible< T > source, final Img< T > result, final long[] radius, final double q )
+	{
+		final Cursor< T > cursor = result.localizingCursor();
+		final long[] min = new long[ radius.length ];
+		final long[] max = new long[ radius.length ];
+		while ( cursor.hasNext() )
+		{
+			cursor.fwd();
+			for ( int d = 0; d < radius.length; ++d )
+			{
+				min[ d ] = cursor.getLongPosition( d ) - radius[ d ];
+				max[ d ] = cursor.getLongPosition( d ) + radius[ d ];
+			}
+			final FinalInterval window = new FinalInterval( min, max );
+			final long[] values = new long[ ( int ) Intervals.numElements( window ) ];
+			int i = 0;
+			for ( final T t : Views.interval( source, window ) )
+				values[ i++ ] = t.getIntegerLong();
+			Arrays.sort( values );
+			assertEquals( values[ ( int ) Math.round( ( values.length - 1 ) * q ) ], cursor.get().getIntegerLong() );
+		}
+	}
+}
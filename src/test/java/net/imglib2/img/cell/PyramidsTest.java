@@ -0,0 +1,152 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2018 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.img.cell;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.Test;
+
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.converter.Converters;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.test.ImgLib2Assert;
+import net.imglib2.test.RandomImgs;
+import net.imglib2.type.numeric.integer.UnsignedShortType;
+import net.imglib2.util.Intervals;
+import net.imglib2.view.DownsampleView.Mode;
+import net.imglib2.view.Views;
+
+/**
+ * Tests {@link Pyramids}.
+ */
+public class PyramidsTest
+{
+	@Test
+	public void testDownsample()
+	{
+		final RandomAccessibleInterval< UnsignedShortType > source = RandomImgs.seed( 0 ).randomize( ArrayImgs.unsignedShorts( 101, 67, 9 ) );
+		for ( final Mode mode : Mode.values() )
+		{
+			final List< CellImg< UnsignedShortType, ? > > levels = downsample( source, mode, new long[] { 2, 2, 1 }, 3 );
+			assertEquals( 3, levels.size() );
+			assertArrayEquals( new long[] { 51, 34, 9 }, Intervals.dimensionsAsLongArray( levels.get( 0 ) ) );
+			assertArrayEquals( new long[] { 13, 9, 9 }, Intervals.dimensionsAsLongArray( levels.get( 2 ) ) );
+
+			// each level is the block reduction of the source
+			long f = 1;
+			for ( final CellImg< UnsignedShortType, ? > level : levels )
+			{
+				f *= 2;
+				ImgLib2Assert.assertImageEquals( Views.downsample( source, mode, f, f, 1 ), level );
+			}
+		}
+	}
+
+	/**
+	 * Blocks of the previous level that span several of its cells.
+	 */
+	@Test
+	public void testBlocksAcrossCells()
+	{
+		final RandomAccessibleInterval< UnsignedShortType > random = RandomImgs.seed( 1 ).randomize( ArrayImgs.unsignedShorts( 83, 58 ) );
+		final RandomAccessibleInterval< UnsignedShortType > labels = Views.interval( Converters.convert( random, ( a, b ) -> b.set( a.get() % 3 ), new UnsignedShortType() ), random );
+		final RandomAccessibleInterval< UnsignedShortType > source = Views.translate( labels, 5, -2 );
+		for ( final Mode mode : Mode.values() )
+		{
+			final List< CellImg< UnsignedShortType, ? > > levels = downsample( source, mode, new long[] { 3, 2 }, 4, 5, 7 );
+			long fx = 1;
+			long fy = 1;
+			for ( final CellImg< UnsignedShortType, ? > level : levels )
+			{
+				fx *= 3;
+				fy *= 2;
+				ImgLib2Assert.assertImageEquals( Views.downsample( source, mode, fx, fy ), level );
+			}
+		}
+	}
+
+	/**
+	 * The mode of block modes differs from the mode of the source block.
+	 */
+	@Test
+	public void testModeOfLabels()
+	{
+		// 4x1 labels: blocks of 2 are { 1, 2 } -> 1 and { 2, 3 } -> 2 so the
+		// cascaded mode would be 1, but the source mode is 2
+		final RandomAccessibleInterval< UnsignedShortType > labels = ArrayImgs.unsignedShorts( new short[] { 1, 2, 2, 3 }, 4, 1 );
+		final List< CellImg< UnsignedShortType, ? > > levels = downsample( labels, Mode.MODE, new long[] { 2, 1 }, 2 );
+		assertEquals( 2, levels.get( 1 ).firstElement().get() );
+	}
+
+	/**
+	 * Cut-off border blocks are averaged over the source pixels they cover.
+	 */
+	@Test
+	public void testAverageBorder()
+	{
+		// { 0, 0 } { 9 } -> { 0, 9 } would cascade to ( 0 + 9 ) / 2, but the
+		// source block { 0, 0, 9 } averages to 3
+		final RandomAccessibleInterval< UnsignedShortType > source = ArrayImgs.unsignedShorts( new short[] { 0, 0, 9 }, 3, 1 );
+		final List< CellImg< UnsignedShortType, ? > > levels = downsample( source, Mode.AVERAGE, new long[] { 2, 1 }, 2 );
+		assertEquals( 1, levels.get( 1 ).dimension( 0 ) );
+		assertEquals( 3, levels.get( 1 ).firstElement().get() );
+	}
+
+	private static List< CellImg< UnsignedShortType, ? > > downsample( final RandomAccessibleInterval< UnsignedShortType > source, final Mode mode, final long[] factors, final int numLevels )
+	{
+		final int[] cellDimensions = new int[ source.numDimensions() ];
+		Arrays.fill( cellDimensions, 16 );
+		return downsample( source, mode, factors, numLevels, cellDimensions );
+	}
+
+	private static List< CellImg< UnsignedShortType, ? > > downsample( final RandomAccessibleInterval< UnsignedShortType > source, final Mode mode, final long[] factors, final int numLevels, final int... cellDimensions )
+	{
+		final ExecutorService executor = Executors.newFixedThreadPool( 4 );
+		try
+		{
+			return Pyramids.downsample( source, mode, factors, numLevels, cellDimensions, executor );
+		}
+		finally
+		{
+			executor.shutdown();
+		}
+	}
+}
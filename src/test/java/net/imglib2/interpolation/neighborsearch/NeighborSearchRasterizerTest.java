@@ -0,0 +1,162 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2018 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.interpolation.neighborsearch;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.Test;
+
+import net.imglib2.Cursor;
+import net.imglib2.FlatKDTree;
+import net.imglib2.RandomAccess;
+import net.imglib2.RealPoint;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.img.basictypeaccess.array.DoubleArray;
+import net.imglib2.img.basictypeaccess.array.IntArray;
+import net.imglib2.neighborsearch.KNearestNeighborSearchOnFlatKDTree;
+import net.imglib2.neighborsearch.NearestNeighborSearchOnFlatKDTree;
+import net.imglib2.type.numeric.integer.IntType;
+import net.imglib2.type.numeric.real.DoubleType;
+import net.imglib2.view.Views;
+
+/**
+ * Tests that {@link NeighborSearchRasterizer} renders the same values as the
+ * rastered interpolators.
+ */
+public class NeighborSearchRasterizerTest
+{
+	private static List< RealPoint > randomPositions( final int n, final int numPoints, final Random rnd, final double scale )
+	{
+		final List< RealPoint > positions = new ArrayList<>();
+		for ( int i = 0; i < numPoints; ++i )
+		{
+			final double[] p = new double[ n ];
+			for ( int d = 0; d < n; ++d )
+				p[ d ] = rnd.nextDouble() * scale - 3;
+			positions.add( new RealPoint( p ) );
+		}
+		return positions;
+	}
+
+	@Test
+	public void testInverseDistanceWeighting()
+	{
+		final Random rnd = new Random( 11 );
+		final List< DoubleType > values = new ArrayList<>();
+		for ( int i = 0; i < 500; ++i )
+			values.add( new DoubleType( rnd.nextDouble() ) );
+		final ExecutorService executor = Executors.newFixedThreadPool( 3 );
+		try
+		{
+			for ( final long[] dimensions : new long[][] { { 57, 43 }, { 13, 11, 9 } } )
+			{
+				final FlatKDTree< DoubleType > tree = new FlatKDTree<>( values, randomPositions( dimensions.length, values.size(), rnd, 60 ) );
+				final long[] offset = new long[ dimensions.length ];
+				offset[ 0 ] = 2;
+				offset[ 1 ] = -1;
+				final long[] inverseOffset = new long[ dimensions.length ];
+				for ( int d = 0; d < dimensions.length; ++d )
+					inverseOffset[ d ] = -offset[ d ];
+				for ( final int k : new int[] { 1, 5, 20 } )
+				{
+					final ArrayImg< DoubleType, DoubleArray > target = ArrayImgs.doubles( dimensions );
+					NeighborSearchRasterizer.inverseDistanceWeighting( tree, k, 3, Views.translate( target, offset ), executor );
+					final InverseDistanceWeightingInterpolatorFactory< DoubleType > factory = new InverseDistanceWeightingInterpolatorFactory<>( 3 );
+					final RandomAccess< DoubleType > expected = Views.translate( Views.raster( Views.interpolate( new KNearestNeighborSearchOnFlatKDTree<>( tree, k ), factory ) ), inverseOffset ).randomAccess();
+					final Cursor< DoubleType > cursor = target.localizingCursor();
+					while ( cursor.hasNext() )
+					{
+						cursor.fwd();
+						expected.setPosition( cursor );
+						assertEquals( expected.get().get(), cursor.get().get(), 1e-12 );
+					}
+				}
+			}
+		}
+		finally
+		{
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void testNearestNeighbor()
+	{
+		final Random rnd = new Random( 12 );
+		final List< IntType > values = new ArrayList<>();
+		for ( int i = 0; i < 300; ++i )
+			values.add( new IntType( i ) );
+		final List< RealPoint > positions = randomPositions( 2, values.size(), rnd, 100 );
+		final FlatKDTree< IntType > tree = new FlatKDTree<>( values, positions );
+		final ArrayImg< IntType, IntArray > target = ArrayImgs.ints( 90, 70 );
+		NeighborSearchRasterizer.nearestNeighbor( tree, target );
+		final NearestNeighborSearchOnFlatKDTree< IntType > search = new NearestNeighborSearchOnFlatKDTree<>( tree );
+		final Cursor< IntType > cursor = target.localizingCursor();
+		while ( cursor.hasNext() )
+		{
+			cursor.fwd();
+			search.search( cursor );
+			// ties may resolve to a different point at the same distance
+			final RealPoint nearest = positions.get( cursor.get().get() );
+			double squDistance = 0;
+			for ( int d = 0; d < 2; ++d )
+			{
+				final double diff = nearest.getDoublePosition( d ) - cursor.getDoublePosition( d );
+				squDistance += diff * diff;
+			}
+			assertEquals( search.getSquareDistance(), squDistance, 0 );
+		}
+	}
+
+	@Test
+	public void testEmptyTarget()
+	{
+		final List< IntType > values = new ArrayList<>();
+		values.add( new IntType( 1 ) );
+		final FlatKDTree< IntType > tree = new FlatKDTree<>( values, randomPositions( 2, 1, new Random( 13 ), 10 ) );
+		final ArrayImg< IntType, IntArray > img = ArrayImgs.ints( 5, 4 );
+		NeighborSearchRasterizer.nearestNeighbor( tree, Views.interval( img, new long[] { 0, 0 }, new long[] { -1, 3 } ) );
+		NeighborSearchRasterizer.nearestNeighbor( tree, Views.interval( img, new long[] { 0, 0 }, new long[] { 4, -1 } ) );
+		for ( final IntType t : img )
+			assertEquals( 0, t.get() );
+	}
+}
@@ -0,0 +1,200 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2018 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.interpolation.randomaccess;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import net.imglib2.Cursor;
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.RealRandomAccess;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.img.basictypeaccess.array.DoubleArray;
+import net.imglib2.test.RandomImgs;
+import net.imglib2.type.numeric.integer.UnsignedByteType;
+import net.imglib2.type.numeric.real.DoubleType;
+import net.imglib2.util.Intervals;
+import net.imglib2.view.Views;
+
+public class BSplineInterpolatorTest
+{
+	/**
+	 * The B-spline interpolates, i.e., it passes through the samples.
+	 */
+	@Test
+	public void testInterpolatesSamples()
+	{
+		final RandomAccessibleInterval< DoubleType > img = Views.translate( RandomImgs.seed( 1 ).randomize( ArrayImgs.doubles( 23, 17, 9 ) ), -4, 7, 2 );
+		final RealRandomAccess< DoubleType > interpolator = Views.interpolate( img, new BSplineInterpolatorFactory< DoubleType >( false ) ).realRandomAccess();
+		final Cursor< DoubleType > cursor = Views.iterable( img ).localizingCursor();
+		while ( cursor.hasNext() )
+		{
+			cursor.fwd();
+			interpolator.setPosition( cursor );
+			assertEquals( cursor.get().get(), interpolator.get().get(), 1e-9 );
+		}
+	}
+
+	/**
+	 * Compared with evaluating the spline of coefficients that are obtained by
+	 * solving the interpolation condition of the mirrored signal with a dense
+	 * linear system.
+	 */
+	@Test
+	public void testBruteForce1D()
+	{
+		final int size = 12;
+		final double[] values = new double[ size ];
+		final Random random = new Random( 2 );
+		for ( int i = 0; i < size; ++i )
+			values[ i ] = random.nextDouble();
+
+		// interpolation condition with mirrored coefficients:
+		// ( c[ k - 1 ] + 4 c[ k ] + c[ k + 1 ] ) / 6 = values[ k ]
+		final double[][] a = new double[ size ][ size + 1 ];
+		for ( int k = 0; k < size; ++k )
+		{
+			a[ k ][ k ] += 4.0 / 6.0;
+			a[ k ][ mirror( k - 1, size ) ] += 1.0 / 6.0;
+			a[ k ][ mirror( k + 1, size ) ] += 1.0 / 6.0;
+			a[ k ][ size ] = values[ k ];
+		}
+		final double[] c = solve( a );
+
+		final RealRandomAccess< DoubleType > interpolator = Views.interpolate( ArrayImgs.doubles( values, size ), new BSplineInterpolatorFactory< DoubleType >( false ) ).realRandomAccess();
+		for ( double x = -3; x < size + 3; x += 0.125 )
+		{
+			final int i = ( int ) Math.floor( x );
+			double expected = 0;
+			for ( int k = i - 2; k <= i + 2; ++k )
+				expected += c[ mirror( k, size ) ] * cubicBSpline( x - k );
+			interpolator.setPosition( x, 0 );
+			assertEquals( expected, interpolator.get().get(), 1e-9 );
+		}
+	}
+
+	@Test
+	public void testLazyCoefficients()
+	{
+		final ArrayImg< DoubleType, DoubleArray > img = RandomImgs.seed( 3 ).randomize( ArrayImgs.doubles( 70, 45, 33 ) );
+		final RandomAccessibleInterval< DoubleType > expected = new BSplineCoefficients().compute( img );
+		final RandomAccessibleInterval< DoubleType > lazy = new BSplineCoefficients().lazy( 16, 16, 8 ).compute( img );
+		assertEquals( Intervals.minAsLongArray( expected )[ 0 ], Intervals.minAsLongArray( lazy )[ 0 ] );
+		final RandomAccess< DoubleType > access = lazy.randomAccess();
+		final Cursor< DoubleType > cursor = Views.iterable( expected ).localizingCursor();
+		while ( cursor.hasNext() )
+		{
+			cursor.fwd();
+			access.setPosition( cursor );
+			assertEquals( cursor.get().get(), access.get().get(), 1e-8 );
+		}
+	}
+
+	@Test
+	public void testClipping()
+	{
+		final ArrayImg< UnsignedByteType, ? > img = ArrayImgs.unsignedBytes( 8 );
+		final RandomAccess< UnsignedByteType > access = img.randomAccess();
+		for ( int x = 4; x < 8; ++x )
+		{
+			access.setPosition( x, 0 );
+			access.get().set( 255 );
+		}
+		final RealRandomAccess< UnsignedByteType > interpolator = Views.interpolate( img, new BSplineInterpolatorFactory< UnsignedByteType >() ).realRandomAccess();
+		for ( double x = 0; x <= 7; x += 0.1 )
+		{
+			interpolator.setPosition( x, 0 );
+			final int value = interpolator.get().get();
+			assertEquals( true, value >= 0 && value <= 255 );
+		}
+		interpolator.setPosition( 4.2, 0 );
+		assertEquals( 255, interpolator.get().get() );
+	}
+
+	private static int mirror( int k, final int size )
+	{
+		final int period = 2 * size - 2;
+		k = ( ( k % period ) + period ) % period;
+		return k < size ? k : period - k;
+	}
+
+	private static double cubicBSpline( final double x )
+	{
+		final double a = Math.abs( x );
+		if ( a < 1 )
+			return 2.0 / 3.0 - a * a + a * a * a / 2.0;
+		if ( a < 2 )
+			return ( 2 - a ) * ( 2 - a ) * ( 2 - a ) / 6.0;
+		return 0;
+	}
+
+	/**
+	 * Gaussian elimination with partial pivoting of an augmented matrix.
+	 */
+	private static double[] solve( final double[][] a )
+	{
+		final int n = a.length;
+		for ( int i = 0; i < n; ++i )
+		{
+			int p = i;
+			for ( int j = i + 1; j < n; ++j )
+				if ( Math.abs( a[ j ][ i ] ) > Math.abs( a[ p ][ i ] ) )
+					p = j;
+			final double[] t = a[ i ];
+			a[ i ] = a[ p ];
+			a[ p ] = t;
+			for ( int j = i + 1; j < n; ++j )
+			{
+				final double f = a[ j ][ i ] / a[ i ][ i ];
+				for ( int k = i; k <= n; ++k )
+					a[ j ][ k ] -= f * a[ i ][ k ];
+			}
+		}
+		final double[] x = new double[ n ];
+		for ( int i = n - 1; i >= 0; --i )
+		{
+			double s = a[ i ][ n ];
+			for ( int k = i + 1; k < n; ++k )
+				s -= a[ i ][ k ] * x[ k ];
+			x[ i ] = s / a[ i ][ i ];
+		}
+		return x;
+	}
+}
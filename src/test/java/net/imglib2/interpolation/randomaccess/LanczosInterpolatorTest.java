@@ -0,0 +1,91 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2018 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.interpolation.randomaccess;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessible;
+import net.imglib2.RealRandomAccess;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.test.RandomImgs;
+import net.imglib2.type.numeric.real.DoubleType;
+import net.imglib2.view.Views;
+
+/**
+ * Tests {@link LanczosInterpolator} against explicit convolution with the
+ * Lanczos kernel.
+ */
+public class LanczosInterpolatorTest
+{
+	private static double lanczos( final double x, final int alpha )
+	{
+		if ( x == 0 )
+			return 1;
+		return alpha * Math.sin( Math.PI * x ) * Math.sin( Math.PI * x / alpha ) / ( Math.PI * Math.PI * x * x );
+	}
+
+	@Test
+	public void test3D()
+	{
+		final int alpha = 2;
+		final RandomAccessible< DoubleType > source = Views.extendBorder( RandomImgs.seed( 3 ).randomize( ArrayImgs.doubles( 8, 9, 7 ) ) );
+		final RealRandomAccess< DoubleType > interpolator = Views.interpolate( source, new LanczosInterpolatorFactory< DoubleType >( alpha, false ) ).realRandomAccess();
+		final RandomAccess< DoubleType > access = source.randomAccess();
+		// coordinates on the lookup table grid, so the kernel values are exact
+		final double[][] positions = { { 3.3, 4.6, 2.1 }, { 1.0, 5.5, 3.7 }, { -0.4, 2.2, 6.8 } };
+		for ( final double[] p : positions )
+		{
+			final long[] first = new long[ 3 ];
+			for ( int d = 0; d < 3; ++d )
+				first[ d ] = ( long ) Math.floor( p[ d ] ) - alpha + 1;
+			double expected = 0;
+			for ( int z = 0; z < 2 * alpha; ++z )
+				for ( int y = 0; y < 2 * alpha; ++y )
+					for ( int x = 0; x < 2 * alpha; ++x )
+					{
+						access.setPosition( new long[] { first[ 0 ] + x, first[ 1 ] + y, first[ 2 ] + z } );
+						expected += access.get().get()
+								* lanczos( p[ 0 ] - first[ 0 ] - x, alpha )
+								* lanczos( p[ 1 ] - first[ 1 ] - y, alpha )
+								* lanczos( p[ 2 ] - first[ 2 ] - z, alpha );
+					}
+			interpolator.setPosition( p );
+			assertEquals( expected, interpolator.get().get(), 1e-12 );
+		}
+	}
+}
@@ -0,0 +1,182 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2018 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.interpolation.randomaccess;
+
+import java.util.Random;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+import net.imglib2.RealRandomAccess;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.test.RandomImgs;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.type.numeric.integer.UnsignedShortType;
+import net.imglib2.type.numeric.real.FloatType;
+
+/**
+ * Compares the generic {@link NLinearInterpolator} (and
+ * {@link NLinearInterpolator2D}) with {@link NLinearInterpolatorFloatArray}
+ * and {@link NLinearInterpolatorUnsignedShortArray}, sampling 2D and 3D
+ * images along a rotated grid.
+ */
+@State( Scope.Benchmark )
+public class NLinearInterpolatorArrayBenchmark
+{
+	private static final int NUM_SAMPLES = 1 << 20;
+
+	private final ArrayImg< FloatType, ? > floats2D = RandomImgs.seed( 0 ).randomize( ArrayImgs.floats( 1024, 1024 ) );
+
+	private final ArrayImg< FloatType, ? > floats3D = RandomImgs.seed( 0 ).randomize( ArrayImgs.floats( 128, 128, 128 ) );
+
+	private final ArrayImg< UnsignedShortType, ? > shorts2D = RandomImgs.seed( 0 ).randomize( ArrayImgs.unsignedShorts( 1024, 1024 ) );
+
+	private final ArrayImg< UnsignedShortType, ? > shorts3D = RandomImgs.seed( 0 ).randomize( ArrayImgs.unsignedShorts( 128, 128, 128 ) );
+
+	private final double[] positions2D = positions( 2, 1023 );
+
+	private final double[] positions3D = positions( 3, 127 );
+
+	/**
+	 * Positions on a slightly rotated and scaled grid, such that consecutive
+	 * samples are close to each other as in rendering.
+	 */
+	private static double[] positions( final int n, final double max )
+	{
+		final int side = ( int ) Math.round( Math.pow( NUM_SAMPLES, 1.0 / n ) );
+		final double scale = max / side * 0.9;
+		final Random random = new Random( 0 );
+		final double[] rotation = new double[ n ];
+		for ( int d = 0; d < n; ++d )
+			rotation[ d ] = random.nextDouble() * 0.05 * max / side;
+		final double[] positions = new double[ n * NUM_SAMPLES ];
+		for ( int i = 0; i < NUM_SAMPLES; ++i )
+		{
+			int remainder = i;
+			double shift = 0;
+			for ( int d = 0; d < n; ++d )
+			{
+				final int p = remainder % side;
+				remainder /= side;
+				shift += p * rotation[ d ];
+				positions[ i * n + d ] = p * scale;
+			}
+			for ( int d = 0; d < n; ++d )
+				positions[ i * n + d ] = Math.min( max, positions[ i * n + d ] + shift );
+		}
+		return positions;
+	}
+
+	private static < T extends RealType< T > > double sample( final RealRandomAccess< T > access, final double[] positions )
+	{
+		final int n = access.numDimensions();
+		double sum = 0;
+		for ( int i = 0; i < positions.length; i += n )
+		{
+			for ( int d = 0; d < n; ++d )
+				access.setPosition( positions[ i + d ], d );
+			sum += access.get().getRealDouble();
+		}
+		return sum;
+	}
+
+	@Benchmark
+	public double float2DGeneric()
+	{
+		return sample( new NLinearInterpolator2D<>( floats2D ), positions2D );
+	}
+
+	@Benchmark
+	public double float2DArray()
+	{
+		return sample( new NLinearInterpolatorFactory< FloatType >().create( floats2D ), positions2D );
+	}
+
+	@Benchmark
+	public double float3DGeneric()
+	{
+		return sample( new NLinearInterpolator<>( floats3D ), positions3D );
+	}
+
+	@Benchmark
+	public double float3DArray()
+	{
+		return sample( new NLinearInterpolatorFactory< FloatType >().create( floats3D ), positions3D );
+	}
+
+	@Benchmark
+	public double unsignedShort2DGeneric()
+	{
+		return sample( new NLinearInterpolator2D<>( shorts2D ), positions2D );
+	}
+
+	@Benchmark
+	public double unsignedShort2DArray()
+	{
+		return sample( new NLinearInterpolatorFactory< UnsignedShortType >().create( shorts2D ), positions2D );
+	}
+
+	@Benchmark
+	public double unsignedShort3DGeneric()
+	{
+		return sample( new NLinearInterpolator<>( shorts3D ), positions3D );
+	}
+
+	@Benchmark
+	public double unsignedShort3DArray()
+	{
+		return sample( new NLinearInterpolatorFactory< UnsignedShortType >().create( shorts3D ), positions3D );
+	}
+
+	public static void main( final String... args ) throws RunnerException
+	{
+		final Options opt = new OptionsBuilder()
+				.include( NLinearInterpolatorArrayBenchmark.class.getSimpleName() )
+				.forks( 0 )
+				.warmupIterations( 4 )
+				.measurementIterations( 8 )
+				.warmupTime( TimeValue.milliseconds( 500 ) )
+				.measurementTime( TimeValue.milliseconds( 500 ) )
+				.build();
+		new Runner( opt ).run();
+	}
+}
@@ -0,0 +1,116 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2018 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.interpolation.randomaccess;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import net.imglib2.RealRandomAccess;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.img.cell.CellImgFactory;
+import net.imglib2.test.RandomImgs;
+import net.imglib2.type.NativeType;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.type.numeric.integer.UnsignedShortType;
+import net.imglib2.type.numeric.real.DoubleType;
+import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.view.Views;
+
+/**
+ * Tests that {@link NLinearInterpolatorFloatArray} and
+ * {@link NLinearInterpolatorUnsignedShortArray} are created by
+ * {@link NLinearInterpolatorFactory} and produce the same results as
+ * {@link NLinearInterpolator}.
+ */
+public class NLinearInterpolatorArrayTest
+{
+	private static final long[][] dimensions = { { 17 }, { 13, 9 }, { 7, 5, 6 }, { 4, 3, 5, 3 } };
+
+	private static < T extends RealType< T > & NativeType< T > > void check( final ArrayImg< T, ? > img, final Class< ? > expectedClass )
+	{
+		final NLinearInterpolator< T > interpolator = new NLinearInterpolatorFactory< T >().create( img );
+		assertEquals( expectedClass, interpolator.getClass() );
+		final RealRandomAccess< T > copy = interpolator.copyRealRandomAccess();
+		final RealRandomAccess< T > expected = new NLinearInterpolator<>( Views.extendBorder( img ) );
+
+		final int n = img.numDimensions();
+		final double[] position = new double[ n ];
+		final Random random = new Random( 1 );
+		for ( int i = 0; i < 1000; ++i )
+		{
+			for ( int d = 0; d < n; ++d )
+			{
+				final long max = img.max( d );
+				// include integer positions and the upper border
+				position[ d ] = i % 5 == 0 ? random.nextInt( ( int ) max + 1 ) : random.nextDouble() * max;
+			}
+			interpolator.setPosition( position );
+			copy.setPosition( position );
+			expected.setPosition( position );
+			assertEquals( expected.get().getRealDouble(), interpolator.get().getRealDouble(), 0 );
+			assertEquals( expected.get().getRealDouble(), copy.get().getRealDouble(), 0 );
+		}
+	}
+
+	@Test
+	public void testFloat()
+	{
+		for ( final long[] dims : dimensions )
+			check( RandomImgs.seed( 2 ).randomize( ArrayImgs.floats( dims ) ), NLinearInterpolatorFloatArray.class );
+	}
+
+	@Test
+	public void testUnsignedShort()
+	{
+		for ( final long[] dims : dimensions )
+			check( RandomImgs.seed( 3 ).randomize( ArrayImgs.unsignedShorts( dims ) ), NLinearInterpolatorUnsignedShortArray.class );
+	}
+
+	@Test
+	public void testOtherTypesAreNotSpecialized()
+	{
+		final NLinearInterpolator< ? > interpolator = new NLinearInterpolatorFactory< DoubleType >().create( ArrayImgs.doubles( 4, 4 ) );
+		assertTrue( !( interpolator instanceof AbstractNLinearInterpolatorArray ) );
+		final NLinearInterpolator< FloatType > view = new NLinearInterpolatorFactory< FloatType >().create( Views.extendBorder( ArrayImgs.floats( 4, 4 ) ) );
+		assertTrue( !( view instanceof AbstractNLinearInterpolatorArray ) );
+		final NLinearInterpolator< UnsignedShortType > cell = new NLinearInterpolatorFactory< UnsignedShortType >().create( new CellImgFactory<>( new UnsignedShortType(), 2 ).create( 4, 4 ) );
+		assertTrue( !( cell instanceof AbstractNLinearInterpolatorArray ) );
+	}
+}
@@ -0,0 +1,140 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2018 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.interpolation.randomaccess;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+import net.imglib2.Cursor;
+import net.imglib2.RandomAccessible;
+import net.imglib2.RealRandomAccess;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.img.basictypeaccess.array.FloatArray;
+import net.imglib2.interpolation.InterpolatorFactory;
+import net.imglib2.test.RandomImgs;
+import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.view.Views;
+
+/**
+ * Compares {@link SeparableResampler} with sampling {@link NLinearInterpolator}
+ * and {@link LanczosInterpolator} per pixel, for 2x downsampling (one pyramid
+ * level) and 1.7x upsampling of a 3D image.
+ */
+@State( Scope.Benchmark )
+public class SeparableResamplerBenchmark
+{
+	private final RandomAccessible< FloatType > source = Views.extendBorder( RandomImgs.seed( 0 ).randomize( ArrayImgs.floats( 128, 128, 128 ) ) );
+
+	private final ArrayImg< FloatType, FloatArray > half = ArrayImgs.floats( 64, 64, 64 );
+
+	private final ArrayImg< FloatType, FloatArray > scaled = ArrayImgs.floats( 218, 218, 218 );
+
+	private static final double[] halfScale = { 2, 2, 2 };
+
+	private static final double[] halfTranslation = { 0.5, 0.5, 0.5 };
+
+	private static final double[] upScale = { 1 / 1.7, 1 / 1.7, 1 / 1.7 };
+
+	private static final double[] upTranslation = { 0, 0, 0 };
+
+	private void interpolate( final InterpolatorFactory< FloatType, RandomAccessible< FloatType > > factory, final double[] scale, final double[] translation, final ArrayImg< FloatType, FloatArray > target )
+	{
+		final RealRandomAccess< FloatType > access = Views.interpolate( source, factory ).realRandomAccess();
+		final Cursor< FloatType > cursor = target.localizingCursor();
+		while ( cursor.hasNext() )
+		{
+			cursor.fwd();
+			for ( int d = 0; d < 3; ++d )
+				access.setPosition( cursor.getDoublePosition( d ) * scale[ d ] + translation[ d ], d );
+			cursor.get().set( access.get() );
+		}
+	}
+
+	@Benchmark
+	public void downsampleNLinearInterpolator()
+	{
+		interpolate( new NLinearInterpolatorFactory<>(), halfScale, halfTranslation, half );
+	}
+
+	@Benchmark
+	public void downsampleNLinearSeparable()
+	{
+		SeparableResampler.resample( source, halfScale, halfTranslation, SeparableResampler.nLinear(), half );
+	}
+
+	@Benchmark
+	public void upsampleNLinearInterpolator()
+	{
+		interpolate( new NLinearInterpolatorFactory<>(), upScale, upTranslation, scaled );
+	}
+
+	@Benchmark
+	public void upsampleNLinearSeparable()
+	{
+		SeparableResampler.resample( source, upScale, upTranslation, SeparableResampler.nLinear(), scaled );
+	}
+
+	@Benchmark
+	public void upsampleLanczosInterpolator()
+	{
+		interpolate( new LanczosInterpolatorFactory<>( 3, false ), upScale, upTranslation, scaled );
+	}
+
+	@Benchmark
+	public void upsampleLanczosSeparable()
+	{
+		SeparableResampler.resample( source, upScale, upTranslation, SeparableResampler.lanczos( 3 ), scaled );
+	}
+
+	public static void main( final String... args ) throws RunnerException
+	{
+		final Options opt = new OptionsBuilder()
+				.include( SeparableResamplerBenchmark.class.getSimpleName() )
+				.forks( 0 )
+				.warmupIterations( 4 )
+				.measurementIterations( 8 )
+				.warmupTime( TimeValue.milliseconds( 500 ) )
+				.measurementTime( TimeValue.milliseconds( 500 ) )
+				.build();
+		new Runner( opt ).run();
+	}
+}
@@ -0,0 +1,160 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2018 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.interpolation.randomaccess;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import net.imglib2.Cursor;
+import net.imglib2.RandomAccessible;
+import net.imglib2.RealRandomAccess;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.img.basictypeaccess.array.ByteArray;
+import net.imglib2.img.basictypeaccess.array.DoubleArray;
+import net.imglib2.interpolation.InterpolatorFactory;
+import net.imglib2.test.RandomImgs;
+import net.imglib2.type.numeric.integer.UnsignedByteType;
+import net.imglib2.type.numeric.real.DoubleType;
+import net.imglib2.view.Views;
+
+/**
+ * Tests {@link SeparableResampler} against sampling the corresponding
+ * interpolators.
+ */
+public class SeparableResamplerTest
+{
+	private static void check(
+			final RandomAccessible< DoubleType > source,
+			final InterpolatorFactory< DoubleType, RandomAccessible< DoubleType > > factory,
+			final SeparableResampler.Kernel kernel,
+			final double[] scale,
+			final double[] translation,
+			final long... dimensions )
+	{
+		check( SeparableResampler.MAX_BUFFER_SIZE, source, factory, kernel, scale, translation, dimensions );
+	}
+
+	private static void check(
+			final int maxBufferSize,
+			final RandomAccessible< DoubleType > source,
+			final InterpolatorFactory< DoubleType, RandomAccessible< DoubleType > > factory,
+			final SeparableResampler.Kernel kernel,
+			final double[] scale,
+			final double[] translation,
+			final long... dimensions )
+	{
+		final ArrayImg< DoubleType, DoubleArray > target = ArrayImgs.doubles( dimensions );
+		SeparableResampler.resample( source, scale, translation, kernel, target, maxBufferSize );
+		final RealRandomAccess< DoubleType > interpolator = Views.interpolate( source, factory ).realRandomAccess();
+		final Cursor< DoubleType > cursor = target.localizingCursor();
+		while ( cursor.hasNext() )
+		{
+			cursor.fwd();
+			for ( int d = 0; d < dimensions.length; ++d )
+				interpolator.setPosition( cursor.getDoublePosition( d ) * scale[ d ] + translation[ d ], d );
+			assertEquals( interpolator.get().get(), cursor.get().get(), 1e-9 );
+		}
+	}
+
+	@Test
+	public void testNLinear()
+	{
+		final ArrayImg< DoubleType, DoubleArray > img = RandomImgs.seed( 1 ).randomize( ArrayImgs.doubles( 23, 17, 5 ) );
+		final RandomAccessible< DoubleType > source = Views.extendBorder( img );
+		final NLinearInterpolatorFactory< DoubleType > factory = new NLinearInterpolatorFactory<>();
+		// downsampling, upsampling and mixed, with negative coordinates
+		check( source, factory, SeparableResampler.nLinear(), new double[] { 2.0, 2.0, 2.0 }, new double[] { 0.5, 0.5, 0.5 }, 12, 9, 3 );
+		check( source, factory, SeparableResampler.nLinear(), new double[] { 0.3, 0.45, 0.8 }, new double[] { -1.2, 0.1, 0 }, 80, 40, 7 );
+		check( source, factory, SeparableResampler.nLinear(), new double[] { 3.1, 0.5, 1 }, new double[] { 0, -2.25, 1 }, 9, 36, 4 );
+	}
+
+	@Test
+	public void testLanczos()
+	{
+		final ArrayImg< DoubleType, DoubleArray > img = RandomImgs.seed( 2 ).randomize( ArrayImgs.doubles( 31, 19 ) );
+		final RandomAccessible< DoubleType > source = Views.extendMirrorSingle( img );
+		for ( final int alpha : new int[] { 2, 3 } )
+		{
+			final LanczosInterpolatorFactory< DoubleType > factory = new LanczosInterpolatorFactory<>( alpha, false );
+			check( source, factory, SeparableResampler.lanczos( alpha ), new double[] { 0.37, 1.7 }, new double[] { -0.4, 0.2 }, 90, 12 );
+			check( source, factory, SeparableResampler.lanczos( alpha ), new double[] { 2, 2 }, new double[] { 0.5, 0.5 }, 16, 10 );
+		}
+	}
+
+	/**
+	 * Small buffers split the target into tiles down to single lines or
+	 * pixels.
+	 */
+	@Test
+	public void testTiles()
+	{
+		final ArrayImg< DoubleType, DoubleArray > img = RandomImgs.seed( 3 ).randomize( ArrayImgs.doubles( 23, 17, 5 ) );
+		final RandomAccessible< DoubleType > source = Views.extendBorder( img );
+		final NLinearInterpolatorFactory< DoubleType > nLinear = new NLinearInterpolatorFactory<>();
+		final LanczosInterpolatorFactory< DoubleType > lanczos = new LanczosInterpolatorFactory<>( 2, false );
+		for ( final int maxBufferSize : new int[] { 1, 64, 500, 5000 } )
+		{
+			check( maxBufferSize, source, nLinear, SeparableResampler.nLinear(), new double[] { 0.3, 0.45, 0.8 }, new double[] { -1.2, 0.1, 0 }, 80, 40, 7 );
+			check( maxBufferSize, source, nLinear, SeparableResampler.nLinear(), new double[] { 3.1, 0.5, 1 }, new double[] { 0, -2.25, 1 }, 9, 36, 4 );
+			check( maxBufferSize, source, lanczos, SeparableResampler.lanczos( 2 ), new double[] { 2, -0.7, 1.3 }, new double[] { 0.5, 12, 0 }, 11, 20, 3 );
+		}
+	}
+
+	@Test
+	public void testClampToTargetType()
+	{
+		// Lanczos overshoots at a step edge
+		final ArrayImg< UnsignedByteType, ByteArray > img = ArrayImgs.unsignedBytes( 20 );
+		final Cursor< UnsignedByteType > c = img.localizingCursor();
+		while ( c.hasNext() )
+		{
+			c.fwd();
+			c.get().set( c.getIntPosition( 0 ) < 10 ? 0 : 255 );
+		}
+		final ArrayImg< UnsignedByteType, ByteArray > target = ArrayImgs.unsignedBytes( 80 );
+		SeparableResampler.resample( Views.extendBorder( img ), new double[] { 0.25 }, new double[] { 0 }, SeparableResampler.lanczos( 3 ), target );
+		int min = 255;
+		int max = 0;
+		for ( final UnsignedByteType t : target )
+		{
+			min = Math.min( min, t.get() );
+			max = Math.max( max, t.get() );
+		}
+		assertEquals( 0, min );
+		assertEquals( 255, max );
+	}
+}
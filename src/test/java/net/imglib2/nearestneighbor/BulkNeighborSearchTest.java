@@ -0,0 +1,208 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2018 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.nearestneighbor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.Test;
+
+import net.imglib2.FlatKDTree;
+import net.imglib2.KDTree;
+import net.imglib2.RealPoint;
+import net.imglib2.RealPointSampleList;
+import net.imglib2.neighborsearch.BulkNeighborSearch;
+import net.imglib2.neighborsearch.KNearestNeighborSearchOnFlatKDTree;
+import net.imglib2.neighborsearch.RadiusNeighborSearchOnKDTree;
+import net.imglib2.type.numeric.integer.IntType;
+import net.imglib2.util.Util;
+
+/**
+ * Tests {@link BulkNeighborSearch} against single queries.
+ */
+public class BulkNeighborSearchTest
+{
+	private static double[][] randomCoordinates( final int numDimensions, final int numPoints, final Random rnd )
+	{
+		final double[][] coordinates = new double[ numPoints ][ numDimensions ];
+		for ( final double[] p : coordinates )
+			for ( int d = 0; d < numDimensions; ++d )
+				p[ d ] = rnd.nextInt( 1000 ) / 10.0;
+		return coordinates;
+	}
+
+	private static void check( final KNearestNeighborSearchOnFlatKDTree< ? > search, final List< RealPoint > points, final double[][] queries, final BulkNeighborSearch.Result result )
+	{
+		final int k = search.getK();
+		assertEquals( queries.length, result.numQueries() );
+		assertEquals( k, result.getK() );
+		for ( int q = 0; q < queries.length; ++q )
+		{
+			final RealPoint query = new RealPoint( queries[ q ] );
+			search.search( query );
+			for ( int i = 0; i < k; ++i )
+			{
+				assertEquals( search.getDistance( i ), result.getDistance( q, i ), 0 );
+				// ties may resolve to a different point at the same distance
+				final RealPoint p = points.get( result.getIndex( q, i ) );
+				assertEquals( result.getDistance( q, i ), Util.distance( p, query ), 1e-12 );
+			}
+		}
+	}
+
+	@Test
+	public void testKNearest()
+	{
+		final Random rnd = new Random( 42 );
+		for ( int n = 1; n <= 3; ++n )
+		{
+			final List< RealPoint > points = new ArrayList<>();
+			for ( final double[] p : randomCoordinates( n, 2000, rnd ) )
+				points.add( new RealPoint( p ) );
+			final FlatKDTree< RealPoint > tree = new FlatKDTree<>( points, points );
+			final KNearestNeighborSearchOnFlatKDTree< RealPoint > search = new KNearestNeighborSearchOnFlatKDTree<>( tree, 5 );
+			final double[][] queries = randomCoordinates( n, 10000, rnd );
+			check( search, points, queries, BulkNeighborSearch.kNearest( tree, 5, queries, false ) );
+			check( search, points, queries, BulkNeighborSearch.kNearest( tree, 5, queries, true ) );
+		}
+	}
+
+	@Test
+	public void testIterableRealIntervalQueries()
+	{
+		final Random rnd = new Random( 7 );
+		final List< RealPoint > points = new ArrayList<>();
+		for ( final double[] p : randomCoordinates( 2, 500, rnd ) )
+			points.add( new RealPoint( p ) );
+		final FlatKDTree< RealPoint > tree = new FlatKDTree<>( points, points );
+		final double[][] queries = randomCoordinates( 2, 300, rnd );
+		final RealPointSampleList< IntType > list = new RealPointSampleList<>( 2 );
+		for ( int q = 0; q < queries.length; ++q )
+			list.add( new RealPoint( queries[ q ] ), new IntType( q ) );
+		final ExecutorService executor = Executors.newFixedThreadPool( 3 );
+		try
+		{
+			final BulkNeighborSearch.Result result = BulkNeighborSearch.kNearest( tree, 1, queries, true );
+			check( new KNearestNeighborSearchOnFlatKDTree<>( tree, 1 ), points, queries, result );
+			final BulkNeighborSearch.Result fromList = BulkNeighborSearch.kNearest( tree, 1, list, true );
+			final double[] coordinates = new double[ 2 * queries.length ];
+			for ( int q = 0; q < queries.length; ++q )
+				System.arraycopy( queries[ q ], 0, coordinates, 2 * q, 2 );
+			final BulkNeighborSearch.Result withExecutor = BulkNeighborSearch.kNearest( tree, 1, coordinates, false, executor );
+			for ( int q = 0; q < queries.length; ++q )
+			{
+				assertEquals( result.getDistance( q, 0 ), fromList.getDistance( q, 0 ), 0 );
+				assertEquals( result.getDistance( q, 0 ), withExecutor.getDistance( q, 0 ), 0 );
+			}
+		}
+		finally
+		{
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void testFewerPointsThanK()
+	{
+		final List< RealPoint > points = new ArrayList<>();
+		points.add( new RealPoint( 0.0, 0.0 ) );
+		points.add( new RealPoint( 3.0, 4.0 ) );
+		final FlatKDTree< RealPoint > tree = new FlatKDTree<>( points, points );
+		final BulkNeighborSearch.Result result = BulkNeighborSearch.kNearest( tree, 4, new double[][] { { 0.0, 0.0 } }, false );
+		assertEquals( 0, result.getIndex( 0, 0 ) );
+		assertEquals( 0.0, result.getDistance( 0, 0 ), 0 );
+		assertEquals( 1, result.getIndex( 0, 1 ) );
+		assertEquals( 5.0, result.getDistance( 0, 1 ), 0 );
+		for ( int i = 2; i < 4; ++i )
+		{
+			assertEquals( -1, result.getIndex( 0, i ) );
+			assertEquals( Double.POSITIVE_INFINITY, result.getDistance( 0, i ), 0 );
+		}
+	}
+
+	@Test( expected = IllegalArgumentException.class )
+	public void testTooManyResults()
+	{
+		final List< RealPoint > points = new ArrayList<>();
+		points.add( new RealPoint( 0.0, 0.0 ) );
+		final FlatKDTree< RealPoint > tree = new FlatKDTree<>( points, points );
+		BulkNeighborSearch.kNearest( tree, Integer.MAX_VALUE / 2, new double[][] { { 0.0, 0.0 }, { 1.0, 0.0 }, { 2.0, 0.0 } }, false );
+	}
+
+	@Test
+	public void testRadiusSearch()
+	{
+		final Random rnd = new Random( 11 );
+		final List< RealPoint > points = new ArrayList<>();
+		for ( final double[] p : randomCoordinates( 2, 1000, rnd ) )
+			points.add( new RealPoint( p ) );
+		final KDTree< RealPoint > tree = new KDTree<>( points, points );
+		final double[][] queries = randomCoordinates( 2, 10000, rnd );
+		final double[] coordinates = new double[ 2 * queries.length ];
+		for ( int q = 0; q < queries.length; ++q )
+			System.arraycopy( queries[ q ], 0, coordinates, 2 * q, 2 );
+		final double radius = 4.95;
+		final int[] counts = new int[ queries.length ];
+		final ExecutorService executor = Executors.newFixedThreadPool( 3 );
+		try
+		{
+			BulkNeighborSearch.search( () -> new RadiusNeighborSearchOnKDTree<>( tree ), coordinates, true, executor, ( search, query, q ) -> {
+				search.search( query, radius, false );
+				counts[ q ] = search.numNeighbors();
+				for ( int i = 0; i < search.numNeighbors(); ++i )
+					assertTrue( search.getDistance( i ) <= radius );
+			} );
+		}
+		finally
+		{
+			executor.shutdown();
+		}
+		for ( int q = 0; q < queries.length; ++q )
+		{
+			final RealPoint query = new RealPoint( queries[ q ] );
+			int expected = 0;
+			for ( final RealPoint p : points )
+				if ( Util.distance( p, query ) <= radius )
+					++expected;
+			assertEquals( expected, counts[ q ] );
+		}
+	}
+}
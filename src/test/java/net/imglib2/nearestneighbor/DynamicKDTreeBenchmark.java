@@ -0,0 +1,164 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2018 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.nearestneighbor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+import net.imglib2.DynamicKDTree;
+import net.imglib2.FlatKDTree;
+import net.imglib2.RealPoint;
+import net.imglib2.neighborsearch.KNearestNeighborSearchOnDynamicKDTree;
+import net.imglib2.neighborsearch.KNearestNeighborSearchOnFlatKDTree;
+
+/**
+ * Streaming workload for {@link DynamicKDTree}: each frame, a fraction of the
+ * tracked points disappears, the same number of new points appears, and a
+ * batch of nearest neighbor queries is answered. This is compared with
+ * rebuilding a {@link FlatKDTree} every frame.
+ */
+@State( Scope.Benchmark )
+public class DynamicKDTreeBenchmark
+{
+	private static final int numPoints = 100_000;
+
+	private static final int numChangesPerFrame = 1_000;
+
+	private static final int numQueriesPerFrame = 1_000;
+
+	private final Random rnd = new Random( 1 );
+
+	private final List< RealPoint > queries = randomPoints( numQueriesPerFrame, 3, new Random( 2 ) );
+
+	private final DynamicKDTree< RealPoint > dynamicTree = new DynamicKDTree<>( 3 );
+
+	private final List< Integer > ids = new ArrayList<>();
+
+	private final KNearestNeighborSearchOnDynamicKDTree< RealPoint > dynamicKnn = new KNearestNeighborSearchOnDynamicKDTree<>( dynamicTree, 4 );
+
+	private final List< RealPoint > points = randomPoints( numPoints, 3, new Random( 3 ) );
+
+	public DynamicKDTreeBenchmark()
+	{
+		for ( final RealPoint p : points )
+			ids.add( dynamicTree.insert( p, p ) );
+	}
+
+	private static List< RealPoint > randomPoints( final int numPoints, final int n, final Random rnd )
+	{
+		final List< RealPoint > points = new ArrayList<>( numPoints );
+		for ( int i = 0; i < numPoints; ++i )
+			points.add( randomPoint( n, rnd ) );
+		return points;
+	}
+
+	private static RealPoint randomPoint( final int n, final Random rnd )
+	{
+		final double[] p = new double[ n ];
+		for ( int d = 0; d < n; ++d )
+			p[ d ] = rnd.nextDouble();
+		return new RealPoint( p );
+	}
+
+	private void updateDynamic()
+	{
+		for ( int i = 0; i < numChangesPerFrame; ++i )
+		{
+			final int j = rnd.nextInt( ids.size() );
+			dynamicTree.remove( ids.get( j ) );
+			final RealPoint p = randomPoint( 3, rnd );
+			ids.set( j, dynamicTree.insert( p, p ) );
+		}
+	}
+
+	@Benchmark
+	public int insertRemoveDynamic()
+	{
+		updateDynamic();
+		return dynamicTree.size();
+	}
+
+	@Benchmark
+	public double frameDynamic()
+	{
+		updateDynamic();
+		double sum = 0;
+		for ( final RealPoint q : queries )
+		{
+			dynamicKnn.search( q );
+			sum += dynamicKnn.getSquareDistance( 3 );
+		}
+		return sum;
+	}
+
+	@Benchmark
+	public double frameRebuildFlatKDTree()
+	{
+		for ( int i = 0; i < numChangesPerFrame; ++i )
+			points.set( rnd.nextInt( numPoints ), randomPoint( 3, rnd ) );
+		final FlatKDTree< RealPoint > tree = new FlatKDTree<>( points, points );
+		final KNearestNeighborSearchOnFlatKDTree< RealPoint > knn = new KNearestNeighborSearchOnFlatKDTree<>( tree, 4 );
+		double sum = 0;
+		for ( final RealPoint q : queries )
+		{
+			knn.search( q );
+			sum += knn.getSquareDistance( 3 );
+		}
+		return sum;
+	}
+
+	public static void main( final String... args ) throws RunnerException
+	{
+		final Options opt = new OptionsBuilder()
+				.include( DynamicKDTreeBenchmark.class.getSimpleName() )
+				.forks( 0 )
+				.warmupIterations( 4 )
+				.measurementIterations( 8 )
+				.warmupTime( TimeValue.milliseconds( 500 ) )
+				.measurementTime( TimeValue.milliseconds( 500 ) )
+				.build();
+		new Runner( opt ).run();
+	}
+}
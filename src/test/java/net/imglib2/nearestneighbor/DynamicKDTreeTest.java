@@ -0,0 +1,184 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2018 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.nearestneighbor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+import net.imglib2.DynamicKDTree;
+import net.imglib2.RealPoint;
+import net.imglib2.neighborsearch.KNearestNeighborSearchOnDynamicKDTree;
+import net.imglib2.neighborsearch.RadiusNeighborSearchOnDynamicKDTree;
+
+/**
+ * Tests {@link DynamicKDTree} and its searches against exhaustive search under
+ * a random sequence of insertions and removals.
+ */
+public class DynamicKDTreeTest
+{
+	private static RealPoint randomPoint( final int n, final Random rnd )
+	{
+		final double[] p = new double[ n ];
+		for ( int d = 0; d < n; ++d )
+			p[ d ] = rnd.nextInt( 1000 ) / 10.0;
+		return new RealPoint( p );
+	}
+
+	private static double squDistance( final RealPoint a, final RealPoint b )
+	{
+		double sum = 0;
+		for ( int d = 0; d < a.numDimensions(); ++d )
+		{
+			final double diff = a.getDoublePosition( d ) - b.getDoublePosition( d );
+			sum += diff * diff;
+		}
+		return sum;
+	}
+
+	@Test
+	public void testInsertRemoveSearch()
+	{
+		final Random rnd = new Random( 1234 );
+		for ( int n = 1; n <= 3; ++n )
+		{
+			final DynamicKDTree< RealPoint > tree = new DynamicKDTree<>( n );
+			final Map< Integer, RealPoint > reference = new HashMap<>();
+			final List< Integer > ids = new ArrayList<>();
+			final KNearestNeighborSearchOnDynamicKDTree< RealPoint > knn = new KNearestNeighborSearchOnDynamicKDTree<>( tree, 5 );
+			final KNearestNeighborSearchOnDynamicKDTree< RealPoint > knnHeap = new KNearestNeighborSearchOnDynamicKDTree<>( tree, 30 );
+			final RadiusNeighborSearchOnDynamicKDTree< RealPoint > radius = new RadiusNeighborSearchOnDynamicKDTree<>( tree );
+			for ( int step = 0; step < 40; ++step )
+			{
+				// grow during the first steps, then shrink
+				final int numInserts = step < 25 ? 150 : 20;
+				final int numRemoves = step < 25 ? 60 : 150;
+				for ( int i = 0; i < numInserts; ++i )
+				{
+					final RealPoint p = randomPoint( n, rnd );
+					final int id = tree.insert( p, p );
+					assertFalse( reference.containsKey( id ) );
+					reference.put( id, p );
+					ids.add( id );
+				}
+				for ( int i = 0; i < numRemoves && !ids.isEmpty(); ++i )
+				{
+					final int id = ids.remove( rnd.nextInt( ids.size() ) );
+					assertTrue( tree.remove( id ) );
+					assertFalse( tree.remove( id ) );
+					reference.remove( id );
+				}
+				assertEquals( reference.size(), tree.size() );
+				if ( reference.size() < 30 )
+					continue;
+
+				for ( int q = 0; q < 20; ++q )
+				{
+					final RealPoint query = randomPoint( n, rnd );
+					final double[] sorted = new double[ reference.size() ];
+					int i = 0;
+					for ( final RealPoint p : reference.values() )
+						sorted[ i++ ] = squDistance( p, query );
+					Arrays.sort( sorted );
+
+					knn.search( query );
+					for ( i = 0; i < 5; ++i )
+					{
+						assertEquals( sorted[ i ], knn.getSquareDistance( i ), 0 );
+						assertSame( reference.get( knn.getId( i ) ), knn.getSampler( i ).get() );
+					}
+					knnHeap.search( query );
+					for ( i = 0; i < 30; ++i )
+						assertEquals( sorted[ i ], knnHeap.getSquareDistance( i ), 0 );
+
+					final double r = 12;
+					radius.search( query, r, true );
+					int expected = 0;
+					while ( expected < sorted.length && sorted[ expected ] <= r * r )
+						++expected;
+					assertEquals( expected, radius.numNeighbors() );
+					for ( i = 0; i < expected; ++i )
+					{
+						assertEquals( sorted[ i ], radius.getSquareDistance( i ), 0 );
+						final RealPoint p = reference.get( radius.getId( i ) );
+						assertSame( p, radius.getSampler( i ).get() );
+						assertEquals( p.getDoublePosition( 0 ), radius.getPosition( i ).getDoublePosition( 0 ), 0 );
+					}
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testFewerPointsThanK()
+	{
+		final DynamicKDTree< String > tree = new DynamicKDTree<>( 2 );
+		final int a = tree.insert( new RealPoint( 0.0, 0.0 ), "a" );
+		tree.insert( new RealPoint( 3.0, 4.0 ), "b" );
+		tree.remove( a );
+		final KNearestNeighborSearchOnDynamicKDTree< String > knn = new KNearestNeighborSearchOnDynamicKDTree<>( tree, 2 );
+		knn.search( new RealPoint( 0.0, 0.0 ) );
+		assertEquals( "b", knn.getSampler().get() );
+		assertEquals( 5, knn.getDistance(), 0 );
+		assertEquals( -1, knn.getId( 1 ) );
+		assertNull( knn.getSampler( 1 ) );
+		assertNull( knn.getPosition( 1 ) );
+
+		final RadiusNeighborSearchOnDynamicKDTree< String > radius = new RadiusNeighborSearchOnDynamicKDTree<>( tree );
+		radius.search( new RealPoint( 0.0, 0.0 ), 10, true );
+		assertEquals( 1, radius.numNeighbors() );
+		assertEquals( "b", radius.getSampler( 0 ).get() );
+		assertNull( radius.getSampler( 1 ) );
+		assertNull( radius.getPosition( 1 ) );
+
+		tree.clear();
+		assertEquals( 0, tree.size() );
+		knn.search( new RealPoint( 0.0, 0.0 ) );
+		assertEquals( -1, knn.getId( 0 ) );
+		assertNull( knn.getSampler() );
+		assertNull( knn.getPosition() );
+	}
+}
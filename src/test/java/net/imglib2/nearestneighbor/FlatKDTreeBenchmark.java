@@ -0,0 +1,194 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2018 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.nearestneighbor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+import net.imglib2.FlatKDTree;
+import net.imglib2.KDTree;
+import net.imglib2.RealPoint;
+import net.imglib2.neighborsearch.KNearestNeighborSearchOnFlatKDTree;
+import net.imglib2.neighborsearch.KNearestNeighborSearchOnKDTree;
+import net.imglib2.neighborsearch.RadiusNeighborSearchOnFlatKDTree;
+import net.imglib2.neighborsearch.RadiusNeighborSearchOnKDTree;
+
+/**
+ * Compares query throughput of {@link KDTree} and {@link FlatKDTree}. Running
+ * {@link #main} also prints the heap used by both trees.
+ */
+@State( Scope.Benchmark )
+public class FlatKDTreeBenchmark
+{
+	private static final int numPoints = 1_000_000;
+
+	private final List< RealPoint > points = randomPoints( numPoints, 3, new Random( 1 ) );
+
+	private final List< RealPoint > queries = randomPoints( 10_000, 3, new Random( 2 ) );
+
+	private final KDTree< RealPoint > kdtree = new KDTree<>( points, points );
+
+	private final FlatKDTree< RealPoint > flatKDTree = new FlatKDTree<>( points, points );
+
+	private final KNearestNeighborSearchOnKDTree< RealPoint > knn = new KNearestNeighborSearchOnKDTree<>( kdtree, 10 );
+
+	private final KNearestNeighborSearchOnFlatKDTree< RealPoint > flatKnn = new KNearestNeighborSearchOnFlatKDTree<>( flatKDTree, 10 );
+
+	private final RadiusNeighborSearchOnKDTree< RealPoint > radius = new RadiusNeighborSearchOnKDTree<>( kdtree );
+
+	private final RadiusNeighborSearchOnFlatKDTree< RealPoint > flatRadius = new RadiusNeighborSearchOnFlatKDTree<>( flatKDTree );
+
+	private static List< RealPoint > randomPoints( final int numPoints, final int n, final Random rnd )
+	{
+		final List< RealPoint > points = new ArrayList<>( numPoints );
+		final double[] p = new double[ n ];
+		for ( int i = 0; i < numPoints; ++i )
+		{
+			for ( int d = 0; d < n; ++d )
+				p[ d ] = rnd.nextDouble();
+			points.add( new RealPoint( p ) );
+		}
+		return points;
+	}
+
+	@Benchmark
+	public Object buildKDTree()
+	{
+		return new KDTree<>( points, points );
+	}
+
+	@Benchmark
+	public Object buildFlatKDTree()
+	{
+		return new FlatKDTree<>( points, points );
+	}
+
+	@Benchmark
+	public double knnKDTree()
+	{
+		double sum = 0;
+		for ( final RealPoint q : queries )
+		{
+			knn.search( q );
+			sum += knn.getSquareDistance( 9 );
+		}
+		return sum;
+	}
+
+	@Benchmark
+	public double knnFlatKDTree()
+	{
+		double sum = 0;
+		for ( final RealPoint q : queries )
+		{
+			flatKnn.search( q );
+			sum += flatKnn.getSquareDistance( 9 );
+		}
+		return sum;
+	}
+
+	@Benchmark
+	public int radiusKDTree()
+	{
+		int sum = 0;
+		for ( final RealPoint q : queries )
+		{
+			radius.search( q, 0.02, false );
+			sum += radius.numNeighbors();
+		}
+		return sum;
+	}
+
+	@Benchmark
+	public int radiusFlatKDTree()
+	{
+		int sum = 0;
+		for ( final RealPoint q : queries )
+		{
+			flatRadius.search( q, 0.02, false );
+			sum += flatRadius.numNeighbors();
+		}
+		return sum;
+	}
+
+	private static long usedMemory()
+	{
+		final Runtime runtime = Runtime.getRuntime();
+		for ( int i = 0; i < 3; ++i )
+			System.gc();
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+
+	/**
+	 * Print the heap retained by a {@link KDTree} and a {@link FlatKDTree}
+	 * over the same points (excluding the points).
+	 */
+	public static void printMemory()
+	{
+		final List< RealPoint > points = randomPoints( numPoints, 3, new Random( 1 ) );
+		long before = usedMemory();
+		KDTree< RealPoint > kdtree = new KDTree<>( points, points );
+		System.out.println( "KDTree:     " + ( usedMemory() - before ) / numPoints + " bytes per point" );
+		kdtree = null;
+		before = usedMemory();
+		final FlatKDTree< RealPoint > flatKDTree = new FlatKDTree<>( points, points );
+		System.out.println( "FlatKDTree: " + ( usedMemory() - before ) / numPoints + " bytes per point" );
+		flatKDTree.getClass();
+	}
+
+	public static void main( final String... args ) throws RunnerException
+	{
+		printMemory();
+		final Options opt = new OptionsBuilder()
+				.include( FlatKDTreeBenchmark.class.getSimpleName() )
+				.forks( 0 )
+				.warmupIterations( 4 )
+				.measurementIterations( 8 )
+				.warmupTime( TimeValue.milliseconds( 500 ) )
+				.measurementTime( TimeValue.milliseconds( 500 ) )
+				.build();
+		new Runner( opt ).run();
+	}
+}
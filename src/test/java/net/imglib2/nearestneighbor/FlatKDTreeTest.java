@@ -0,0 +1,290 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2018 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.nearestneighbor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+
+import net.imglib2.FlatKDTree;
+import net.imglib2.RealCursor;
+import net.imglib2.RealPoint;
+import net.imglib2.neighborsearch.KNearestNeighborSearchOnFlatKDTree;
+import net.imglib2.neighborsearch.NearestNeighborSearchOnFlatKDTree;
+import net.imglib2.neighborsearch.RadiusNeighborSearchOnFlatKDTree;
+
+/**
+ * Tests {@link FlatKDTree} and its searches against exhaustive search.
+ */
+public class FlatKDTreeTest
+{
+	private static List< RealPoint > randomPoints( final int numDimensions, final int numPoints, final Random rnd )
+	{
+		final List< RealPoint > points = new ArrayList<>();
+		final double[] p = new double[ numDimensions ];
+		for ( int i = 0; i < numPoints; ++i )
+		{
+			for ( int d = 0; d < numDimensions; ++d )
+				p[ d ] = rnd.nextInt( 1000 ) / 10.0; // duplicate coordinates
+			points.add( new RealPoint( p ) );
+		}
+		return points;
+	}
+
+	private static double[] squDistances( final List< RealPoint > points, final RealPoint query )
+	{
+		final double[] distances = new double[ points.size() ];
+		for ( int i = 0; i < distances.length; ++i )
+		{
+			double sum = 0;
+			for ( int d = 0; d < query.numDimensions(); ++d )
+			{
+				final double diff = points.get( i ).getDoublePosition( d ) - query.getDoublePosition( d );
+				sum += diff * diff;
+			}
+			distances[ i ] = sum;
+		}
+		return distances;
+	}
+
+	@Test
+	public void testTreeLayout()
+	{
+		for ( int size = 1; size < 70; ++size )
+		{
+			final List< RealPoint > points = randomPoints( 2, size, new Random( size ) );
+			final FlatKDTree< RealPoint > tree = new FlatKDTree<>( points, points );
+			assertEquals( size, tree.size() );
+			final boolean[] seen = new boolean[ size ];
+			for ( int node = 0; node < size; ++node )
+			{
+				seen[ tree.getIndex( node ) ] = true;
+				assertSame( points.get( tree.getIndex( node ) ), tree.getValue( node ) );
+				checkSubtree( tree, 2 * node + 1, node, true );
+				checkSubtree( tree, 2 * node + 2, node, false );
+			}
+			for ( final boolean s : seen )
+				assertEquals( true, s );
+		}
+	}
+
+	private static void checkSubtree( final FlatKDTree< ? > tree, final int node, final int parent, final boolean left )
+	{
+		if ( node >= tree.numPoints() )
+			return;
+		final int d = tree.getSplitDimension( parent );
+		final double split = tree.getDoublePosition( parent, d );
+		if ( left )
+			assertEquals( true, tree.getDoublePosition( node, d ) <= split );
+		else
+			assertEquals( true, tree.getDoublePosition( node, d ) >= split );
+		checkSubtree( tree, 2 * node + 1, parent, left );
+		checkSubtree( tree, 2 * node + 2, parent, left );
+	}
+
+	@Test
+	public void testSearches()
+	{
+		final Random rnd = new Random( 435435435 );
+		for ( int n = 1; n <= 3; ++n )
+		{
+			final List< RealPoint > points = randomPoints( n, 1000, rnd );
+			final FlatKDTree< RealPoint > tree = new FlatKDTree<>( points, points );
+			final NearestNeighborSearchOnFlatKDTree< RealPoint > nn = new NearestNeighborSearchOnFlatKDTree<>( tree );
+			final KNearestNeighborSearchOnFlatKDTree< RealPoint > knn = new KNearestNeighborSearchOnFlatKDTree<>( tree, 7 );
+			final KNearestNeighborSearchOnFlatKDTree< RealPoint > knnHeap = new KNearestNeighborSearchOnFlatKDTree<>( tree, 40 );
+			final RadiusNeighborSearchOnFlatKDTree< RealPoint > radius = new RadiusNeighborSearchOnFlatKDTree<>( tree );
+			for ( final RealPoint query : randomPoints( n, 100, rnd ) )
+			{
+				final double[] distances = squDistances( points, query );
+				final double[] sorted = distances.clone();
+				Arrays.sort( sorted );
+
+				nn.search( query );
+				assertEquals( sorted[ 0 ], nn.getSquareDistance(), 0 );
+				assertEquals( distances[ nn.getIndex() ], nn.getSquareDistance(), 0 );
+				assertSame( points.get( nn.getIndex() ), nn.getSampler().get() );
+
+				knn.search( query );
+				for ( int i = 0; i < 7; ++i )
+				{
+					assertEquals( sorted[ i ], knn.getSquareDistance( i ), 0 );
+					assertEquals( distances[ knn.getIndex( i ) ], knn.getSquareDistance( i ), 0 );
+				}
+
+				knnHeap.search( query );
+				for ( int i = 0; i < 40; ++i )
+				{
+					assertEquals( sorted[ i ], knnHeap.getSquareDistance( i ), 0 );
+					assertEquals( distances[ knnHeap.getIndex( i ) ], knnHeap.getSquareDistance( i ), 0 );
+				}
+
+				final double r = 15;
+				radius.search( query, r, true );
+				int expected = 0;
+				while ( expected < sorted.length && sorted[ expected ] <= r * r )
+					++expected;
+				assertEquals( expected, radius.numNeighbors() );
+				for ( int i = 0; i < expected; ++i )
+				{
+					assertEquals( sorted[ i ], radius.getSquareDistance( i ), 0 );
+					assertSame( points.get( radius.getIndex( i ) ), radius.getSampler( i ).get() );
+					assertEquals( points.get( radius.getIndex( i ) ).getDoublePosition( 0 ), radius.getPosition( i ).getDoublePosition( 0 ), 0 );
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testEmptyTree()
+	{
+		final FlatKDTree< RealPoint > tree = new FlatKDTree<>( new ArrayList<>(), new double[ 0 ], 2 );
+		final RealPoint query = new RealPoint( 0.5, 0.5 );
+		final NearestNeighborSearchOnFlatKDTree< RealPoint > nn = new NearestNeighborSearchOnFlatKDTree<>( tree );
+		nn.search( query );
+		assertNull( nn.getSampler() );
+		assertNull( nn.getPosition() );
+		assertEquals( -1, nn.getIndex() );
+		assertEquals( Double.MAX_VALUE, nn.getSquareDistance(), 0 );
+
+		final KNearestNeighborSearchOnFlatKDTree< RealPoint > knn = new KNearestNeighborSearchOnFlatKDTree<>( tree, 3 );
+		knn.search( query );
+		for ( int i = 0; i < 3; ++i )
+		{
+			assertNull( knn.getSampler( i ) );
+			assertEquals( -1, knn.getIndex( i ) );
+		}
+	}
+
+	@Test
+	public void testEmptyList()
+	{
+		final List< RealPoint > points = new ArrayList<>();
+		final FlatKDTree< RealPoint > tree = new FlatKDTree<>( points, points, 3 );
+		assertEquals( 0, tree.size() );
+		assertEquals( 3, tree.numDimensions() );
+		final NearestNeighborSearchOnFlatKDTree< RealPoint > nn = new NearestNeighborSearchOnFlatKDTree<>( tree );
+		nn.search( new RealPoint( 3 ) );
+		assertNull( nn.getSampler() );
+	}
+
+	@Test( expected = IllegalArgumentException.class )
+	public void testEmptyListWithoutNumDimensions()
+	{
+		final List< RealPoint > points = new ArrayList<>();
+		new FlatKDTree<>( points, points );
+	}
+
+	/**
+	 * Result slots that are not filled by a search must not keep the nodes
+	 * of a previous search.
+	 */
+	@Test
+	public void testMissingResults()
+	{
+		final List< RealPoint > points = randomPoints( 2, 5, new Random( 4 ) );
+		final FlatKDTree< RealPoint > tree = new FlatKDTree<>( points, points );
+		final KNearestNeighborSearchOnFlatKDTree< RealPoint > knn = new KNearestNeighborSearchOnFlatKDTree<>( tree, 8 );
+		final RealPoint query = new RealPoint( 0.5, 0.5 );
+		knn.search( query );
+		for ( int i = 0; i < 8; ++i )
+		{
+			if ( i < 5 )
+				assertSame( points.get( knn.getIndex( i ) ), knn.getSampler( i ).get() );
+			else
+			{
+				assertNull( knn.getSampler( i ) );
+				assertNull( knn.getPosition( i ) );
+				assertEquals( -1, knn.getIndex( i ) );
+				assertEquals( Double.MAX_VALUE, knn.getSquareDistance( i ), 0 );
+			}
+		}
+
+		// nothing within the bound
+		knn.search( query, 0 );
+		for ( int i = 0; i < 8; ++i )
+		{
+			assertNull( knn.getSampler( i ) );
+			assertEquals( -1, knn.getIndex( i ) );
+		}
+	}
+
+	@Test
+	public void testParallelConstruction()
+	{
+		final List< RealPoint > points = randomPoints( 3, 100000, new Random( 3 ) );
+		final double[] coordinates = new double[ 3 * points.size() ];
+		for ( int i = 0; i < points.size(); ++i )
+			for ( int d = 0; d < 3; ++d )
+				coordinates[ 3 * i + d ] = points.get( i ).getDoublePosition( d );
+		final FlatKDTree< RealPoint > tree = new FlatKDTree<>( points, coordinates, 3 );
+		final ForkJoinPool pool = new ForkJoinPool( 4 );
+		try
+		{
+			final FlatKDTree< RealPoint > parallel = new FlatKDTree<>( points, coordinates, 3, pool );
+			for ( int node = 0; node < points.size(); ++node )
+				assertEquals( tree.getIndex( node ), parallel.getIndex( node ) );
+		}
+		finally
+		{
+			pool.shutdown();
+		}
+	}
+
+	@Test
+	public void testCursor()
+	{
+		final List< RealPoint > points = randomPoints( 3, 50, new Random( 1 ) );
+		final FlatKDTree< RealPoint > tree = new FlatKDTree<>( points, points );
+		final RealCursor< RealPoint > cursor = tree.localizingCursor();
+		int count = 0;
+		while ( cursor.hasNext() )
+		{
+			final RealPoint p = cursor.next();
+			for ( int d = 0; d < 3; ++d )
+				assertEquals( p.getDoublePosition( d ), cursor.getDoublePosition( d ), 0 );
+			++count;
+		}
+		assertEquals( 50, count );
+	}
+}
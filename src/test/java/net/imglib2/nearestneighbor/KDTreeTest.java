@@ -34,14 +34,17 @@
 
 package net.imglib2.nearestneighbor;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
 
 import net.imglib2.KDTree;
+import net.imglib2.KDTreeNode;
 import net.imglib2.RealPoint;
 import net.imglib2.neighborsearch.KNearestNeighborSearchOnKDTree;
 import net.imglib2.neighborsearch.NearestNeighborSearchOnKDTree;
@@ -424,6 +427,12 @@ public class KDTreeTest
 		assertTrue( testKNearestNeighbor( 3, 3, 1000, 100, -5, 5 ) );
 	}
 
+	@Test
+	public void testKDTreeKNearestNeighborSearchLargeK()
+	{
+		assertTrue( testKNearestNeighbor( KNearestNeighborSearchOnKDTree.HEAP_THRESHOLD + 9, 3, 1000, 100, -5, 5 ) );
+	}
+
 	@Test
 	public void testKDTreeNearestNeighborSearch()
 	{
@@ -436,6 +445,94 @@ public class KDTreeTest
 		assertTrue( testRadiusNeighbor( 3, 1000, 100, -5, 5 ) );
 	}
 
+	@Test
+	public void testParallelConstruction()
+	{
+		final Random rnd = new Random( 4233 );
+		final ArrayList< RealPoint > points = new ArrayList< RealPoint >();
+		final ArrayList< Integer > indices = new ArrayList< Integer >();
+		for ( int i = 0; i < 100000; ++i )
+		{
+			points.add( new RealPoint( rnd.nextDouble(), rnd.nextDouble(), rnd.nextInt( 10 ) ) );
+			indices.add( i );
+		}
+		final ArrayList< RealPoint > original = new ArrayList< RealPoint >( points );
+
+		final ForkJoinPool pool = new ForkJoinPool( 4 );
+		try
+		{
+			for ( final boolean approximate : new boolean[] { false, true } )
+			{
+				final KDTree< RealPoint > tree = new KDTree< RealPoint >( new ArrayList< RealPoint >( original ), new ArrayList< RealPoint >( original ), pool, approximate );
+				final KDTree< RealPoint > sameList = new KDTree< RealPoint >( points, points, pool, approximate );
+				final KDTree< Integer > valueTree = new KDTree< Integer >( indices, new ArrayList< RealPoint >( original ), pool, approximate );
+				assertEquals( 100000, countNodes( tree.getRoot() ) );
+				assertEquals( 100000, countNodes( sameList.getRoot() ) );
+
+				final NearestNeighborSearchOnKDTree< RealPoint > search = new NearestNeighborSearchOnKDTree< RealPoint >( tree );
+				final NearestNeighborSearchOnKDTree< RealPoint > sameListSearch = new NearestNeighborSearchOnKDTree< RealPoint >( sameList );
+				final NearestNeighborSearchOnKDTree< Integer > valueSearch = new NearestNeighborSearchOnKDTree< Integer >( valueTree );
+				for ( int i = 0; i < 100; ++i )
+				{
+					final RealPoint query = new RealPoint( rnd.nextDouble(), rnd.nextDouble(), rnd.nextInt( 10 ) );
+					final RealPoint expected = findNearestNeighborExhaustive( original, query );
+					search.search( query );
+					sameListSearch.search( query );
+					valueSearch.search( query );
+					assertEquals( squDistance( expected, query ), search.getSquareDistance(), 0 );
+					assertEquals( squDistance( expected, query ), sameListSearch.getSquareDistance(), 0 );
+					assertEquals( sameListSearch.getSquareDistance(), squDistance( sameListSearch.getSampler().get(), query ), 0 );
+					assertEquals( valueSearch.getSquareDistance(), squDistance( original.get( valueSearch.getSampler().get() ), query ), 0 );
+				}
+			}
+		}
+		finally
+		{
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * Splitting at the sample median must not degenerate if many points have
+	 * the same coordinates.
+	 */
+	@Test
+	public void testApproximateMedianDuplicates()
+	{
+		final Random rnd = new Random( 12 );
+		final ArrayList< RealPoint > points = new ArrayList< RealPoint >();
+		for ( int i = 0; i < 100000; ++i )
+			points.add( new RealPoint( rnd.nextInt( 3 ), 0 ) );
+		final KDTree< RealPoint > tree = new KDTree< RealPoint >( points, points, null, true );
+		assertEquals( 100000, countNodes( tree.getRoot() ) );
+		assertTrue( depth( tree.getRoot() ) < 64 );
+
+		final NearestNeighborSearchOnKDTree< RealPoint > search = new NearestNeighborSearchOnKDTree< RealPoint >( tree );
+		search.search( new RealPoint( 1.2, 0.5 ) );
+		assertEquals( 1.0, search.getSampler().get().getDoublePosition( 0 ), 0 );
+	}
+
+	private static int depth( final KDTreeNode< ? > node )
+	{
+		return node == null ? 0 : 1 + Math.max( depth( node.left ), depth( node.right ) );
+	}
+
+	private static int countNodes( final KDTreeNode< ? > node )
+	{
+		return node == null ? 0 : 1 + countNodes( node.left ) + countNodes( node.right );
+	}
+
+	private static double squDistance( final RealPoint a, final RealPoint b )
+	{
+		double sum = 0;
+		for ( int d = 0; d < a.numDimensions(); ++d )
+		{
+			final double diff = a.getDoublePosition( d ) - b.getDoublePosition( d );
+			sum += diff * diff;
+		}
+		return sum;
+	}
+
 	public static void main( final String[] args )
 	{
 		for ( int i = 0; i < 5; ++i )
@@ -0,0 +1,154 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2018 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.nearestneighbor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import net.imglib2.RealPoint;
+import net.imglib2.RealPointSampleList;
+import net.imglib2.UniformGrid;
+import net.imglib2.neighborsearch.NearestNeighborSearchOnUniformGrid;
+import net.imglib2.neighborsearch.RadiusNeighborSearchOnUniformGrid;
+
+/**
+ * Tests {@link UniformGrid} and its searches against exhaustive search.
+ */
+public class UniformGridTest
+{
+	private static RealPoint randomPoint( final int n, final Random rnd, final double scale )
+	{
+		final double[] p = new double[ n ];
+		for ( int d = 0; d < n; ++d )
+			p[ d ] = rnd.nextInt( 1000 ) / 1000.0 * scale; // duplicate coordinates
+		return new RealPoint( p );
+	}
+
+	private static double squDistance( final RealPoint a, final RealPoint b )
+	{
+		double sum = 0;
+		for ( int d = 0; d < a.numDimensions(); ++d )
+		{
+			final double diff = a.getDoublePosition( d ) - b.getDoublePosition( d );
+			sum += diff * diff;
+		}
+		return sum;
+	}
+
+	@Test
+	public void testSearches()
+	{
+		final Random rnd = new Random( 5 );
+		for ( int n = 1; n <= 3; ++n )
+		{
+			final List< RealPoint > points = new ArrayList<>();
+			final RealPointSampleList< RealPoint > list = new RealPointSampleList<>( n );
+			for ( int i = 0; i < 3000; ++i )
+			{
+				final RealPoint p = randomPoint( n, rnd, 100 );
+				points.add( p );
+				list.add( p, p );
+			}
+			final double r = 4;
+			for ( final UniformGrid< RealPoint > grid : Arrays.asList( new UniformGrid<>( list, r ), new UniformGrid<>( list ) ) )
+			{
+				assertEquals( points.size(), grid.numPoints() );
+				final RadiusNeighborSearchOnUniformGrid< RealPoint > radius = new RadiusNeighborSearchOnUniformGrid<>( grid );
+				final NearestNeighborSearchOnUniformGrid< RealPoint > nn = new NearestNeighborSearchOnUniformGrid<>( grid );
+				for ( int q = 0; q < 200; ++q )
+				{
+					// some queries are outside of the bounding box of the points
+					final RealPoint query = randomPoint( n, rnd, 130 );
+					query.move( -15, 0 );
+					final double[] distances = new double[ points.size() ];
+					for ( int i = 0; i < distances.length; ++i )
+						distances[ i ] = squDistance( points.get( i ), query );
+					final double[] sorted = distances.clone();
+					Arrays.sort( sorted );
+
+					nn.search( query );
+					assertEquals( sorted[ 0 ], nn.getSquareDistance(), 0 );
+					assertSame( points.get( nn.getIndex() ), nn.getSampler().get() );
+					assertEquals( distances[ nn.getIndex() ], squDistance( query, new RealPoint( nn.getPosition() ) ), 0 );
+
+					for ( final double searchRadius : new double[] { r, 2.5 * r } )
+					{
+						radius.search( query, searchRadius, true );
+						int expected = 0;
+						while ( expected < sorted.length && sorted[ expected ] <= searchRadius * searchRadius )
+							++expected;
+						assertEquals( expected, radius.numNeighbors() );
+						for ( int i = 0; i < expected; ++i )
+						{
+							assertEquals( sorted[ i ], radius.getSquareDistance( i ), 0 );
+							assertEquals( distances[ radius.getIndex( i ) ], radius.getSquareDistance( i ), 0 );
+							assertSame( points.get( radius.getIndex( i ) ), radius.getSampler( i ).get() );
+						}
+					}
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testSparsePoints()
+	{
+		// a tiny radius must not create a huge grid
+		final RealPointSampleList< String > list = new RealPointSampleList<>( 3 );
+		list.add( new RealPoint( 0.0, 0.0, 0.0 ), "a" );
+		list.add( new RealPoint( 1000.0, 1000.0, 1000.0 ), "b" );
+		final UniformGrid< String > grid = new UniformGrid<>( list, 0.001 );
+		long numCells = 1;
+		for ( int d = 0; d < 3; ++d )
+			numCells *= grid.getGridDimension( d );
+		assertTrue( numCells <= UniformGrid.MAX_CELLS_PER_POINT * 2 );
+
+		final NearestNeighborSearchOnUniformGrid< String > nn = new NearestNeighborSearchOnUniformGrid<>( grid );
+		nn.search( new RealPoint( 900.0, 900.0, 900.0 ) );
+		assertEquals( "b", nn.getSampler().get() );
+		final RadiusNeighborSearchOnUniformGrid< String > radius = new RadiusNeighborSearchOnUniformGrid<>( grid );
+		radius.search( new RealPoint( 0.0005, 0.0, 0.0 ), 0.001, false );
+		assertEquals( 1, radius.numNeighbors() );
+		assertEquals( "a", radius.getSampler( 0 ).get() );
+	}
+}
@@ -43,6 +43,9 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.ListIterator;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import org.junit.Test;
 
@@ -635,4 +638,150 @@ public class KthElementTest
 		for ( int p = 0; p < permutation.length; ++p )
 			assertTrue( values.get( p ).equals( origvalues.get( permutation[ p ] ) ) );
 	}
+
+	/**
+	 * Inputs that are quadratic for quickselect with a fixed pivot: sorted,
+	 * reverse sorted, all equal (saturated pixels), organ pipe, and few
+	 * distinct values.
+	 */
+	@Test
+	public void testAdversarialInputs()
+	{
+		final int n = 100000;
+		final Random rnd = new Random( 1 );
+		final int[][] inputs = new int[ 6 ][ n ];
+		for ( int p = 0; p < n; ++p )
+		{
+			inputs[ 0 ][ p ] = p;
+			inputs[ 1 ][ p ] = n - p;
+			inputs[ 2 ][ p ] = 255;
+			inputs[ 3 ][ p ] = Math.min( p, n - p );
+			inputs[ 4 ][ p ] = rnd.nextInt( 3 );
+			inputs[ 5 ][ p ] = rnd.nextInt();
+		}
+		for ( final int[] input : inputs )
+		{
+			final int[] sorted = input.clone();
+			Arrays.sort( sorted );
+			for ( final int k : new int[] { 0, 1, n / 3, n / 2, n - 2, n - 1 } )
+			{
+				final int[] values = input.clone();
+				KthElement.kthElement( k, values );
+				assertPartitioned( k, values, sorted );
+			}
+		}
+	}
+
+	@Test
+	public void testAllPrimitiveTypes()
+	{
+		final Random rnd = new Random( 2 );
+		for ( final int n : new int[] { 1, 2, 5, 17, 100, 1000, 10000 } )
+		{
+			final int k = rnd.nextInt( n );
+			final byte[] bytes = new byte[ n ];
+			final short[] shorts = new short[ n ];
+			final long[] longs = new long[ n ];
+			final float[] floats = new float[ n ];
+			final double[] doubles = new double[ n ];
+			final char[] chars = new char[ n ];
+			for ( int p = 0; p < n; ++p )
+			{
+				bytes[ p ] = ( byte ) rnd.nextInt();
+				shorts[ p ] = ( short ) rnd.nextInt();
+				longs[ p ] = rnd.nextLong();
+				floats[ p ] = rnd.nextFloat();
+				doubles[ p ] = rnd.nextGaussian();
+				chars[ p ] = ( char ) rnd.nextInt();
+			}
+			final byte[] sortedBytes = bytes.clone();
+			Arrays.sort( sortedBytes );
+			KthElement.kthElement( k, bytes );
+			assertEquals( sortedBytes[ k ], bytes[ k ] );
+			for ( int p = 0; p < n; ++p )
+				assertTrue( p < k ? bytes[ p ] <= bytes[ k ] : bytes[ p ] >= bytes[ k ] );
+
+			final short[] sortedShorts = shorts.clone();
+			Arrays.sort( sortedShorts );
+			KthElement.kthElement( k, shorts );
+			assertEquals( sortedShorts[ k ], shorts[ k ] );
+			for ( int p = 0; p < n; ++p )
+				assertTrue( p < k ? shorts[ p ] <= shorts[ k ] : shorts[ p ] >= shorts[ k ] );
+
+			final long[] sortedLongs = longs.clone();
+			Arrays.sort( sortedLongs );
+			KthElement.kthElement( k, longs );
+			assertEquals( sortedLongs[ k ], longs[ k ] );
+			for ( int p = 0; p < n; ++p )
+				assertTrue( p < k ? longs[ p ] <= longs[ k ] : longs[ p ] >= longs[ k ] );
+
+			final float[] sortedFloats = floats.clone();
+			Arrays.sort( sortedFloats );
+			KthElement.kthElement( k, floats );
+			assertEquals( sortedFloats[ k ], floats[ k ], 0 );
+			for ( int p = 0; p < n; ++p )
+				assertTrue( p < k ? floats[ p ] <= floats[ k ] : floats[ p ] >= floats[ k ] );
+
+			final double[] sortedDoubles = doubles.clone();
+			Arrays.sort( sortedDoubles );
+			KthElement.kthElement( k, doubles );
+			assertEquals( sortedDoubles[ k ], doubles[ k ], 0 );
+			for ( int p = 0; p < n; ++p )
+				assertTrue( p < k ? doubles[ p ] <= doubles[ k ] : doubles[ p ] >= doubles[ k ] );
+
+			final char[] sortedChars = chars.clone();
+			Arrays.sort( sortedChars );
+			KthElement.kthElement( k, chars );
+			assertEquals( sortedChars[ k ], chars[ k ] );
+			for ( int p = 0; p < n; ++p )
+				assertTrue( p < k ? chars[ p ] <= chars[ k ] : chars[ p ] >= chars[ k ] );
+		}
+	}
+
+	@Test
+	public void testParallel()
+	{
+		final int n = 3 * KthElement.PARALLEL_THRESHOLD + 17;
+		final Random rnd = new Random( 3 );
+		final int[] input = new int[ n ];
+		for ( int p = 0; p < n; ++p )
+			input[ p ] = rnd.nextInt( 1000 );
+		final int[] sorted = input.clone();
+		Arrays.sort( sorted );
+		final ExecutorService executor = Executors.newFixedThreadPool( 4 );
+		try
+		{
+			for ( final int k : new int[] { 0, n / 4, n / 2, n - 1 } )
+			{
+				final int[] values = input.clone();
+				KthElement.kthElement( 0, n - 1, k, values, executor );
+				assertPartitioned( k, values, sorted );
+			}
+			final int i = 1000;
+			final int j = n - 1000;
+			final int k = n / 3;
+			final int[] values = input.clone();
+			KthElement.kthElement( i, j, k, values, executor );
+			final int[] sub = Arrays.copyOfRange( input, i, j + 1 );
+			Arrays.sort( sub );
+			assertEquals( sub[ k - i ], values[ k ] );
+			assertArrayEquals( Arrays.copyOf( input, i ), Arrays.copyOf( values, i ) );
+		}
+		finally
+		{
+			executor.shutdown();
+		}
+	}
+
+	private static void assertPartitioned( final int k, final int[] values, final int[] sorted )
+	{
+		assertEquals( sorted[ k ], values[ k ] );
+		for ( int p = 0; p < k; ++p )
+			assertTrue( values[ p ] <= values[ k ] );
+		for ( int p = k + 1; p < values.length; ++p )
+			assertTrue( values[ p ] >= values[ k ] );
+		final int[] all = values.clone();
+		Arrays.sort( all );
+		assertArrayEquals( sorted, all );
+	}
 }
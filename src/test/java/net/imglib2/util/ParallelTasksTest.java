@@ -0,0 +1,120 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2018 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Test;
+
+/**
+ * Tests {@link ParallelTasks}.
+ */
+public class ParallelTasksTest
+{
+	@Test
+	public void testMapRanges()
+	{
+		final ExecutorService executor = Executors.newFixedThreadPool( 3 );
+		try
+		{
+			final List< Long > serial = ParallelTasks.mapRanges( 1000, null, ParallelTasksTest::sum );
+			final List< Long > parallel = ParallelTasks.mapRanges( 1000, executor, ParallelTasksTest::sum );
+			assertEquals( serial, parallel );
+			long total = 0;
+			for ( final long s : parallel )
+				total += s;
+			assertEquals( 999 * 1000 / 2, total );
+		}
+		finally
+		{
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void testInvokeAllCancelsOnFailure() throws InterruptedException
+	{
+		final ExecutorService executor = Executors.newFixedThreadPool( 2 );
+		final CountDownLatch started = new CountDownLatch( 1 );
+		final AtomicBoolean interrupted = new AtomicBoolean();
+		final Callable< Object > failing = () -> {
+			started.await();
+			throw new IllegalStateException();
+		};
+		final Callable< Object > blocking = () -> {
+			started.countDown();
+			try
+			{
+				Thread.sleep( 60000 );
+			}
+			catch ( final InterruptedException e )
+			{
+				interrupted.set( true );
+			}
+			return null;
+		};
+		try
+		{
+			ParallelTasks.invokeAll( executor, Arrays.asList( failing, blocking ) );
+			fail();
+		}
+		catch ( final RuntimeException e )
+		{
+			assertTrue( e.getCause() instanceof IllegalStateException );
+		}
+		executor.shutdown();
+		assertTrue( executor.awaitTermination( 10, TimeUnit.SECONDS ) );
+		assertTrue( interrupted.get() );
+	}
+
+	private static long sum( final int from, final int to )
+	{
+		long sum = 0;
+		for ( int i = from; i < to; ++i )
+			sum += i;
+		return sum;
+	}
+}
@@ -35,6 +35,7 @@
 package net.imglib2.util;
 
 import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
 import java.util.ArrayList;
@@ -42,6 +43,9 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.ListIterator;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import org.junit.Test;
 
@@ -473,4 +477,72 @@ public class PartitionTest
 			assertTrue( values.get( k ).equals( origvalues.get( permutation[ k ] ) ) );
 	}
 
+	@Test
+	public void testThreeWayPartition()
+	{
+		final double[] values = new double[] { 3, 1, 4, 1, 5, 9, 2, 6, 5, 3, 5 };
+		final double[] sortedValues = values.clone();
+		Arrays.sort( sortedValues );
+		final int[] range = new int[ 2 ];
+		Partition.partitionSubList( 1, 9, 5.0, values, range );
+		assertEquals( 6, range[ 0 ] );
+		assertEquals( 7, range[ 1 ] );
+		assertEquals( 3, values[ 0 ], 0 );
+		assertEquals( 5, values[ 10 ], 0 );
+		for ( int p = 1; p < 6; ++p )
+			assertTrue( values[ p ] < 5 );
+		for ( int p = 6; p <= 7; ++p )
+			assertEquals( 5, values[ p ], 0 );
+		for ( int p = 8; p <= 9; ++p )
+			assertTrue( values[ p ] > 5 );
+		Arrays.sort( values );
+		assertArrayEquals( sortedValues, values, 0 );
+
+		// pivot not contained
+		final byte[] bytes = new byte[] { 7, -3, 100, 8, 9, -128 };
+		Partition.partitionSubList( 0, bytes.length - 1, ( byte ) 8, bytes, range );
+		assertEquals( 3, range[ 0 ] );
+		assertEquals( 3, range[ 1 ] );
+		Partition.partitionSubList( 0, bytes.length - 1, ( byte ) 50, bytes, range );
+		assertEquals( 5, range[ 0 ] );
+		assertEquals( 4, range[ 1 ] );
+	}
+
+	@Test
+	public void testParallelThreeWayPartition()
+	{
+		final int n = ( 1 << 20 ) + 123;
+		final Random rnd = new Random( 4 );
+		final float[] values = new float[ n ];
+		for ( int p = 0; p < n; ++p )
+			values[ p ] = rnd.nextInt( 100 );
+		final float[] serial = values.clone();
+		final int[] serialRange = new int[ 2 ];
+		Partition.partitionSubList( 10, n - 10, 42f, serial, serialRange );
+		final int[] range = new int[ 2 ];
+		final ExecutorService executor = Executors.newFixedThreadPool( 4 );
+		try
+		{
+			Partition.partitionSubList( 10, n - 10, 42f, values, range, executor );
+		}
+		finally
+		{
+			executor.shutdown();
+		}
+		assertArrayEquals( serialRange, range );
+		for ( int p = 0; p < n; ++p )
+		{
+			if ( p < 10 || p > n - 10 )
+				assertEquals( serial[ p ], values[ p ], 0 );
+			else if ( p < range[ 0 ] )
+				assertTrue( values[ p ] < 42 );
+			else if ( p <= range[ 1 ] )
+				assertEquals( 42, values[ p ], 0 );
+			else
+				assertTrue( values[ p ] > 42 );
+		}
+		Arrays.sort( values );
+		Arrays.sort( serial );
+		assertArrayEquals( serial, values, 0 );
+	}
 }
@@ -137,4 +137,21 @@ public class RealSumTest
 			Assert.assertEquals( sum, stream.length, 0.0001 );
 		}
 	}
+
+	/**
+	 * Test method for {@link net.imglib2.util.RealSum#add(RealSum)}.
+	 */
+	@Test
+	public void testAddRealSum()
+	{
+		final RealSum sum = new RealSum();
+		for ( int part = 0; part < 4; ++part )
+		{
+			final RealSum partial = new RealSum();
+			for ( int i = part * stream.length / 4; i < ( part + 1 ) * stream.length / 4; ++i )
+				partial.add( stream[ i ] );
+			sum.add( partial );
+		}
+		Assert.assertEquals( sum.getSum(), referenceSum.doubleValue(), 0.0001 );
+	}
 }
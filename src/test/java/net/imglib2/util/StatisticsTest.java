@@ -0,0 +1,190 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2018 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import net.imglib2.IterableInterval;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.img.cell.CellImgFactory;
+import net.imglib2.img.planar.PlanarImgs;
+import net.imglib2.test.RandomImgs;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.type.numeric.integer.ByteType;
+import net.imglib2.type.numeric.integer.UnsignedIntType;
+import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.view.Views;
+
+public class StatisticsTest
+{
+	private static ExecutorService executor;
+
+	@BeforeClass
+	public static void setUp()
+	{
+		executor = Executors.newFixedThreadPool( 4 );
+	}
+
+	@AfterClass
+	public static void tearDown()
+	{
+		executor.shutdown();
+	}
+
+	@Test
+	public void testAdd()
+	{
+		final Statistics stats = new Statistics();
+		for ( final double v : new double[] { 2, 4, 4, 4, 5, 5, 7, 9 } )
+			stats.add( v );
+		assertEquals( 8, stats.count() );
+		assertEquals( 2, stats.min(), 0 );
+		assertEquals( 9, stats.max(), 0 );
+		assertEquals( 40, stats.sum(), 1e-12 );
+		assertEquals( 5, stats.mean(), 1e-12 );
+		assertEquals( 4, stats.populationVariance(), 1e-12 );
+		assertEquals( 32.0 / 7, stats.variance(), 1e-12 );
+		assertEquals( Math.sqrt( 32.0 / 7 ), stats.standardDeviation(), 1e-12 );
+		assertEquals( 5.25, stats.centralMoment( 3 ), 1e-12 );
+		assertEquals( 44.5, stats.centralMoment( 4 ), 1e-12 );
+		assertEquals( 5.25 / 8, stats.skewness(), 1e-12 );
+		assertEquals( 44.5 / 16 - 3, stats.kurtosis(), 1e-12 );
+	}
+
+	@Test
+	public void testEmpty()
+	{
+		final Statistics stats = Statistics.of( ArrayImgs.floats( 0 ) );
+		assertEquals( 0, stats.count() );
+		assertTrue( Double.isNaN( stats.mean() ) );
+		assertTrue( Double.isNaN( stats.variance() ) );
+		stats.add( 3 );
+		assertEquals( 3, stats.mean(), 0 );
+		assertTrue( Double.isNaN( stats.variance() ) );
+		stats.reset();
+		assertEquals( 0, stats.count() );
+	}
+
+	@Test
+	public void testMerge()
+	{
+		final Random rnd = new Random( 1 );
+		final Statistics all = new Statistics();
+		final Statistics merged = new Statistics();
+		for ( int part = 0; part < 5; ++part )
+		{
+			final Statistics partial = new Statistics();
+			final double offset = rnd.nextDouble() * 100;
+			for ( int i = 0; i < 1000 * ( part + 1 ); ++i )
+			{
+				final double v = offset + Math.pow( rnd.nextDouble(), 3 );
+				all.add( v );
+				partial.add( v );
+			}
+			merged.add( partial );
+		}
+		assertSame( all, merged, 1e-10 );
+	}
+
+	/**
+	 * Values with a large offset, where the sums of powers formulas lose all
+	 * precision.
+	 */
+	@Test
+	public void testLargeOffset()
+	{
+		final Statistics stats = new Statistics();
+		for ( int i = 0; i < 1000; ++i )
+			stats.add( 1e9 + i % 2 );
+		assertEquals( 1e9 + 0.5, stats.mean(), 1e-6 );
+		assertEquals( 0.25, stats.populationVariance(), 1e-9 );
+		assertEquals( 0, stats.skewness(), 1e-9 );
+		assertEquals( -2, stats.kurtosis(), 1e-9 );
+	}
+
+	@Test
+	public void testImgs()
+	{
+		final long[] dims = { 123, 45, 67 };
+		check( RandomImgs.seed( 1 ).randomize( ArrayImgs.floats( dims ) ) );
+		check( RandomImgs.seed( 2 ).randomize( ArrayImgs.doubles( dims ) ) );
+		check( RandomImgs.seed( 3 ).randomize( ArrayImgs.unsignedBytes( dims ) ) );
+		check( RandomImgs.seed( 4 ).randomize( ArrayImgs.bytes( dims ) ) );
+		check( RandomImgs.seed( 5 ).randomize( PlanarImgs.unsignedShorts( dims ) ) );
+		check( RandomImgs.seed( 6 ).randomize( PlanarImgs.shorts( dims ) ) );
+		check( RandomImgs.seed( 7 ).randomize( new CellImgFactory<>( new UnsignedIntType(), 32 ).create( dims ) ) );
+		check( RandomImgs.seed( 8 ).randomize( new CellImgFactory<>( new FloatType(), 32 ).create( dims ) ) );
+		check( RandomImgs.seed( 9 ).randomize( ArrayImgs.ints( dims ) ) );
+		check( RandomImgs.seed( 10 ).randomize( ArrayImgs.longs( dims ) ) );
+		check( RandomImgs.seed( 11 ).randomize( new CellImgFactory<>( new ByteType(), 32 ).create( dims ) ) );
+		check( Views.interval( RandomImgs.seed( 12 ).randomize( ArrayImgs.floats( 200, 100 ) ), new long[] { 10, 20 }, new long[] { 150, 80 } ) );
+	}
+
+	/**
+	 * Compare the statistics of {@code data} to those computed with
+	 * {@link Statistics#add(double)}, and parallel to serial results, which
+	 * must be identical.
+	 */
+	private static void check( final IterableInterval< ? extends RealType< ? > > data )
+	{
+		final Statistics expected = new Statistics();
+		for ( final RealType< ? > t : data )
+			expected.add( t.getRealDouble() );
+		final Statistics serial = Statistics.of( data );
+		assertSame( expected, serial, 1e-9 );
+		final Statistics parallel = Statistics.of( data, executor );
+		assertSame( serial, parallel, 0 );
+	}
+
+	private static void assertSame( final Statistics expected, final Statistics actual, final double relativeTolerance )
+	{
+		assertEquals( expected.count(), actual.count() );
+		assertEquals( expected.min(), actual.min(), 0 );
+		assertEquals( expected.max(), actual.max(), 0 );
+		assertEquals( expected.mean(), actual.mean(), Math.abs( expected.mean() ) * relativeTolerance );
+		assertEquals( expected.variance(), actual.variance(), expected.variance() * relativeTolerance );
+		assertEquals( expected.centralMoment( 3 ), actual.centralMoment( 3 ), Math.pow( expected.populationVariance(), 1.5 ) * relativeTolerance );
+		assertEquals( expected.centralMoment( 4 ), actual.centralMoment( 4 ), expected.centralMoment( 4 ) * relativeTolerance );
+	}
+}
@@ -0,0 +1,171 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2018 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.util;
+
+import java.math.BigDecimal;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.img.cell.CellImgFactory;
+import net.imglib2.test.RandomImgs;
+import net.imglib2.type.numeric.real.FloatType;
+
+/**
+ * Benchmark for {@link Sums}, compared to summing with a cursor into a
+ * {@code double}, a {@link RealSum}, or a {@link KahanSum}.
+ * <p>
+ * {@link #main} first prints the relative error of each method on the
+ * benchmark data, compared to the exact sum.
+ * </p>
+ */
+@State( Scope.Benchmark )
+public class SumsBenchmark
+{
+	private final Img< FloatType > arrayImg = RandomImgs.seed( 42 ).randomize( ArrayImgs.floats( 4096, 4096 ) );
+
+	private final Img< FloatType > cellImg = RandomImgs.seed( 42 ).randomize( new CellImgFactory<>( new FloatType(), 256 ).create( 4096, 4096 ) );
+
+	private final ExecutorService executor = Executors.newFixedThreadPool( Runtime.getRuntime().availableProcessors() );
+
+	@TearDown
+	public void tearDown()
+	{
+		executor.shutdown();
+	}
+
+	@Benchmark
+	public double cursorDouble()
+	{
+		double sum = 0;
+		for ( final FloatType t : arrayImg )
+			sum += t.getRealDouble();
+		return sum;
+	}
+
+	@Benchmark
+	public double cursorRealSum()
+	{
+		final RealSum sum = new RealSum();
+		for ( final FloatType t : arrayImg )
+			sum.add( t.getRealDouble() );
+		return sum.getSum();
+	}
+
+	@Benchmark
+	public double cursorKahanSum()
+	{
+		final KahanSum sum = new KahanSum();
+		for ( final FloatType t : arrayImg )
+			sum.add( t.getRealDouble() );
+		return sum.getSum();
+	}
+
+	@Benchmark
+	public double sumsArrayImg()
+	{
+		return Sums.sum( arrayImg );
+	}
+
+	@Benchmark
+	public double sumsCellImg()
+	{
+		return Sums.sum( cellImg );
+	}
+
+	@Benchmark
+	public double sumsCellImgParallel()
+	{
+		return Sums.sum( cellImg, executor );
+	}
+
+	@Benchmark
+	public double varianceCellImg()
+	{
+		return Sums.variance( cellImg );
+	}
+
+	@Benchmark
+	public double varianceCellImgParallel()
+	{
+		return Sums.variance( cellImg, executor );
+	}
+
+	private void printAccuracy()
+	{
+		BigDecimal exact = BigDecimal.ZERO;
+		float floatSum = 0;
+		for ( final FloatType t : arrayImg )
+		{
+			exact = exact.add( new BigDecimal( t.get() ) );
+			floatSum += t.get();
+		}
+		final double reference = exact.doubleValue();
+		System.out.println( "relative errors of the sum of " + arrayImg.size() + " floats:" );
+		System.out.println( "  float loop  " + Math.abs( floatSum - reference ) / reference );
+		System.out.println( "  double loop " + Math.abs( cursorDouble() - reference ) / reference );
+		System.out.println( "  RealSum     " + Math.abs( cursorRealSum() - reference ) / reference );
+		System.out.println( "  KahanSum    " + Math.abs( cursorKahanSum() - reference ) / reference );
+		System.out.println( "  Sums        " + Math.abs( sumsArrayImg() - reference ) / reference );
+	}
+
+	public static void main( final String... args ) throws RunnerException
+	{
+		final SumsBenchmark benchmark = new SumsBenchmark();
+		benchmark.printAccuracy();
+		benchmark.tearDown();
+
+		final Options opt = new OptionsBuilder()
+				.include( SumsBenchmark.class.getSimpleName() )
+				.forks( 0 )
+				.warmupIterations( 4 )
+				.measurementIterations( 8 )
+				.warmupTime( TimeValue.milliseconds( 500 ) )
+				.measurementTime( TimeValue.milliseconds( 500 ) )
+				.build();
+		new Runner( opt ).run();
+	}
+}
@@ -0,0 +1,191 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2018 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import net.imglib2.Cursor;
+import net.imglib2.IterableInterval;
+import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.img.cell.CellImgFactory;
+import net.imglib2.img.planar.PlanarImgs;
+import net.imglib2.test.RandomImgs;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.type.numeric.integer.UnsignedShortType;
+import net.imglib2.type.numeric.real.DoubleType;
+import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.view.Views;
+
+public class SumsTest
+{
+	private static ExecutorService executor;
+
+	@BeforeClass
+	public static void setUp()
+	{
+		executor = Executors.newFixedThreadPool( 4 );
+	}
+
+	@AfterClass
+	public static void tearDown()
+	{
+		executor.shutdown();
+	}
+
+	@Test
+	public void testDoubleArray()
+	{
+		final Random rnd = new Random( 1 );
+		for ( final int n : new int[] { 0, 1, 3, 127, 128, 129, 1000, 100003 } )
+		{
+			final double[] values = new double[ n ];
+			BigDecimal reference = BigDecimal.ZERO;
+			for ( int i = 0; i < n; ++i )
+			{
+				values[ i ] = ( rnd.nextDouble() - 0.3 ) * 1e6;
+				reference = reference.add( new BigDecimal( values[ i ] ) );
+			}
+			assertEquals( reference.doubleValue(), Sums.sum( values ), Math.abs( reference.doubleValue() ) * 1e-15 );
+			assertEquals( Sums.sum( values, 0, n / 2 ) + Sums.sum( values, n / 2, n ), Sums.sum( values ), Math.abs( reference.doubleValue() ) * 1e-15 );
+		}
+	}
+
+	@Test
+	public void testFloatArray()
+	{
+		final Random rnd = new Random( 2 );
+		final float[] values = new float[ 1000000 ];
+		BigDecimal reference = BigDecimal.ZERO;
+		float naive = 0;
+		for ( int i = 0; i < values.length; ++i )
+		{
+			values[ i ] = rnd.nextFloat();
+			reference = reference.add( new BigDecimal( values[ i ] ) );
+			naive += values[ i ];
+		}
+		final double error = Math.abs( Sums.sum( values ) - reference.doubleValue() );
+		assertTrue( error < 1e-6 );
+		assertTrue( error < Math.abs( naive - reference.doubleValue() ) );
+	}
+
+	@Test
+	public void testSumOfSquaredDeviations()
+	{
+		final double[] values = { 1, 2, 3, 4, 5, 6, 7 };
+		final float[] floats = { 1, 2, 3, 4, 5, 6, 7 };
+		assertEquals( 28, Sums.sumOfSquaredDeviations( values, 0, values.length, 4 ), 0 );
+		assertEquals( 28, Sums.sumOfSquaredDeviations( floats, 0, floats.length, 4 ), 0 );
+		assertEquals( 13, Sums.sumOfSquaredDeviations( values, 1, 3, 0 ), 0 );
+	}
+
+	@Test
+	public void testFloatImgs()
+	{
+		final long[] dims = { 123, 45, 67 };
+		check( RandomImgs.seed( 3 ).randomize( ArrayImgs.floats( dims ) ) );
+		check( RandomImgs.seed( 4 ).randomize( PlanarImgs.floats( dims ) ) );
+		check( RandomImgs.seed( 5 ).randomize( new CellImgFactory<>( new FloatType(), 32 ).create( dims ) ) );
+	}
+
+	@Test
+	public void testDoubleImgs()
+	{
+		final long[] dims = { 123, 45, 67 };
+		check( RandomImgs.seed( 6 ).randomize( ArrayImgs.doubles( dims ) ) );
+		check( RandomImgs.seed( 7 ).randomize( PlanarImgs.doubles( dims ) ) );
+		check( RandomImgs.seed( 8 ).randomize( new CellImgFactory<>( new DoubleType(), 32 ).create( dims ) ) );
+	}
+
+	@Test
+	public void testOtherData()
+	{
+		final Img< UnsignedShortType > img = RandomImgs.seed( 9 ).randomize( ArrayImgs.unsignedShorts( 123, 45, 67 ) );
+		check( img );
+		check( Views.interval( RandomImgs.seed( 10 ).randomize( ArrayImgs.floats( 200, 100 ) ), new long[] { 10, 20 }, new long[] { 150, 80 } ) );
+	}
+
+	@Test
+	public void testEmptyAndSingle()
+	{
+		assertEquals( 0, Sums.sum( ArrayImgs.floats( 0 ) ), 0 );
+		assertTrue( Double.isNaN( Sums.mean( ArrayImgs.floats( 0 ) ) ) );
+		assertTrue( Double.isNaN( Sums.variance( ArrayImgs.floats( 0 ) ) ) );
+		final Img< FloatType > single = ArrayImgs.floats( new float[] { 3 }, 1 );
+		assertEquals( 3, Sums.mean( single ), 0 );
+		assertTrue( Double.isNaN( Sums.variance( single ) ) );
+	}
+
+	/**
+	 * Compare sum, mean, and variance of {@code data} to exact references,
+	 * and parallel to serial results, which must be identical.
+	 */
+	private static void check( final IterableInterval< ? extends RealType< ? > > data )
+	{
+		BigDecimal sum = BigDecimal.ZERO;
+		for ( final RealType< ? > t : data )
+			sum = sum.add( new BigDecimal( t.getRealDouble() ) );
+		final BigDecimal n = new BigDecimal( data.size() );
+		final BigDecimal mean = sum.divide( n, MathContext.DECIMAL128 );
+		BigDecimal m2 = BigDecimal.ZERO;
+		final Cursor< ? extends RealType< ? > > cursor = data.cursor();
+		while ( cursor.hasNext() )
+		{
+			final BigDecimal d = new BigDecimal( cursor.next().getRealDouble() ).subtract( mean );
+			m2 = m2.add( d.multiply( d ) );
+		}
+		final double variance = m2.divide( n.subtract( BigDecimal.ONE ), MathContext.DECIMAL128 ).doubleValue();
+
+		final double s = Sums.sum( data );
+		assertEquals( sum.doubleValue(), s, Math.abs( sum.doubleValue() ) * 1e-14 );
+		assertEquals( mean.doubleValue(), Sums.mean( data ), Math.abs( mean.doubleValue() ) * 1e-14 );
+		assertEquals( variance, Sums.variance( data ), variance * 1e-12 );
+
+		assertEquals( s, Sums.sum( data, executor ), 0 );
+		assertEquals( Sums.mean( data ), Sums.mean( data, executor ), 0 );
+		assertEquals( Sums.variance( data ), Sums.variance( data, executor ), 0 );
+	}
+}
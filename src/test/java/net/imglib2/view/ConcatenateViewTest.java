@@ -38,6 +38,8 @@ import java.util.Arrays;
 import java.util.List;
 import java.util.Random;
 
+import net.imglib2.Cursor;
+import net.imglib2.RandomAccess;
 import net.imglib2.img.Img;
 import net.imglib2.util.ValuePair;
 import org.junit.Assert;
@@ -97,6 +99,147 @@ public class ConcatenateViewTest
 		assertImageEquals( img, concatenated );
 	}
 
+	@Test
+	public void testConcatenateLastAxisCursor()
+	{
+		final Img< ByteType > img = createRandomImage( new long[] { 4, 3, 7 } );
+		final List< RandomAccessibleInterval< ByteType > > parts = Arrays.asList(
+				Views.interval( img, new long[] { 0, 0, 0 }, new long[] { 3, 2, 1 } ),
+				Views.interval( img, new long[] { 0, 0, 2 }, new long[] { 3, 2, 2 } ),
+				Views.interval( img, new long[] { 0, 0, 3 }, new long[] { 3, 2, 6 } ) );
+		final RandomAccessibleInterval< ByteType > concatenated = Views.concatenate( 2, parts );
+		Assert.assertTrue( concatenated instanceof ConcatenateView );
+
+		final Cursor< ByteType > expected = img.localizingCursor();
+		final Cursor< ByteType > actual = ( ( ConcatenateView< ByteType > ) concatenated ).cursor();
+		while ( expected.hasNext() )
+		{
+			Assert.assertTrue( actual.hasNext() );
+			Assert.assertEquals( expected.next().get(), actual.next().get() );
+			for ( int d = 0; d < 3; ++d )
+				Assert.assertEquals( expected.getLongPosition( d ), actual.getLongPosition( d ) );
+		}
+		Assert.assertFalse( actual.hasNext() );
+
+		for ( long steps = 1; steps <= img.size(); ++steps )
+		{
+			expected.reset();
+			actual.reset();
+			expected.jumpFwd( steps );
+			actual.jumpFwd( steps );
+			Assert.assertEquals( expected.get().get(), actual.get().get() );
+			for ( int d = 0; d < 3; ++d )
+				Assert.assertEquals( expected.getLongPosition( d ), actual.getLongPosition( d ) );
+		}
+	}
+
+	@Test
+	public void testConcatenateRandomAccess()
+	{
+		final Img< ByteType > img = createRandomImage( new long[] { 5, 6, 4 } );
+		final RandomAccessibleInterval< ByteType > concatenated = Views.concatenate( 1, splitImage( img, 1, 2 ) );
+
+		final RandomAccess< ByteType > expected = img.randomAccess();
+		final RandomAccess< ByteType > actual = concatenated.randomAccess();
+		final Random rng = new Random( 1 );
+		for ( int i = 0; i < 1000; ++i )
+		{
+			final int d = rng.nextInt( 3 );
+			switch ( rng.nextInt( 4 ) )
+			{
+			case 0:
+				final long[] pos = { rng.nextInt( 5 ), rng.nextInt( 6 ), rng.nextInt( 4 ) };
+				expected.setPosition( pos );
+				actual.setPosition( pos );
+				break;
+			case 1:
+				final long p = rng.nextInt( ( int ) img.dimension( d ) );
+				expected.setPosition( p, d );
+				actual.setPosition( p, d );
+				break;
+			case 2:
+				if ( expected.getLongPosition( d ) < img.max( d ) )
+				{
+					expected.fwd( d );
+					actual.fwd( d );
+				}
+				break;
+			default:
+				final long dist = rng.nextInt( ( int ) img.dimension( d ) ) - expected.getLongPosition( d );
+				expected.move( dist, d );
+				actual.move( dist, d );
+			}
+			Assert.assertEquals( expected.get().get(), actual.get().get() );
+			for ( int e = 0; e < 3; ++e )
+				Assert.assertEquals( expected.getLongPosition( e ), actual.getLongPosition( e ) );
+			Assert.assertEquals( expected.get().get(), actual.copyRandomAccess().get().get() );
+		}
+	}
+
+	@Test
+	public void testConcatenateEmptySources()
+	{
+		final Img< ByteType > img = createRandomImage( new long[] { 4, 3, 7 } );
+		final List< RandomAccessibleInterval< ByteType > > parts = Arrays.asList(
+				Views.interval( img, new long[] { 0, 0, 0 }, new long[] { 3, 2, -1 } ),
+				Views.interval( img, new long[] { 0, 0, 0 }, new long[] { 3, 2, 1 } ),
+				Views.interval( img, new long[] { 0, 0, 2 }, new long[] { 3, 2, 1 } ),
+				Views.interval( img, new long[] { 0, 0, 2 }, new long[] { 3, 2, 6 } ),
+				Views.interval( img, new long[] { 0, 0, 7 }, new long[] { 3, 2, 6 } ) );
+		final RandomAccessibleInterval< ByteType > concatenated = Views.concatenate( 2, parts );
+		assertArrayEquals( Intervals.dimensionsAsLongArray( img ), Intervals.dimensionsAsLongArray( concatenated ) );
+		assertImageEquals( img, concatenated );
+
+		final Cursor< ByteType > expected = img.cursor();
+		final Cursor< ByteType > actual = Views.flatIterable( concatenated ).cursor();
+		while ( expected.hasNext() )
+		{
+			Assert.assertTrue( actual.hasNext() );
+			Assert.assertEquals( expected.next().get(), actual.next().get() );
+		}
+		Assert.assertFalse( actual.hasNext() );
+	}
+
+	@Test
+	public void testConcatenateAllEmptySources()
+	{
+		final Img< ByteType > img = createRandomImage( new long[] { 4, 3 } );
+		final RandomAccessibleInterval< ByteType > empty = Views.interval( img, new long[] { 0, 1 }, new long[] { 3, 0 } );
+		final RandomAccessibleInterval< ByteType > concatenated = Views.concatenate( 1, empty, empty );
+		Assert.assertTrue( Intervals.isEmpty( concatenated ) );
+		Assert.assertFalse( Views.flatIterable( concatenated ).cursor().hasNext() );
+	}
+
+	@Test
+	public void testConcatenateKeepsNonAxisCoordinates()
+	{
+		final Img< ByteType > img = createRandomImage( new long[] { 6, 5 } );
+		final RandomAccessibleInterval< ByteType > a = Views.interval( img, new long[] { 2, 0 }, new long[] { 4, 1 } );
+		final RandomAccessibleInterval< ByteType > b = Views.interval( img, new long[] { 2, 3 }, new long[] { 4, 4 } );
+		final RandomAccessibleInterval< ByteType > concatenated = Views.concatenate( 1, a, b );
+		assertArrayEquals( new long[] { 2, 0 }, Intervals.minAsLongArray( concatenated ) );
+		assertArrayEquals( new long[] { 4, 3 }, Intervals.maxAsLongArray( concatenated ) );
+
+		final RandomAccess< ByteType > expected = img.randomAccess();
+		final RandomAccess< ByteType > actual = concatenated.randomAccess();
+		for ( long x = 2; x <= 4; ++x )
+			for ( long y = 0; y <= 3; ++y )
+			{
+				expected.setPosition( new long[] { x, y < 2 ? y : y + 1 } );
+				actual.setPosition( new long[] { x, y } );
+				Assert.assertEquals( expected.get().get(), actual.get().get() );
+			}
+	}
+
+	@Test( expected = IllegalArgumentException.class )
+	public void testConcatenateMismatchedIntervals()
+	{
+		final Img< ByteType > img = createRandomImage( new long[] { 6, 5 } );
+		Views.concatenate( 1,
+				Views.interval( img, new long[] { 0, 0 }, new long[] { 4, 1 } ),
+				Views.interval( img, new long[] { 1, 2 }, new long[] { 5, 4 } ) );
+	}
+
 	private static ArrayImg< ByteType, ByteArray > createRandomImage( long[] dim )
 	{
 		final long numElements = Intervals.numElements( dim );
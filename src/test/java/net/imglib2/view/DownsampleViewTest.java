@@ -0,0 +1,104 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2018 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.view;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.img.basictypeaccess.array.DoubleArray;
+import net.imglib2.img.basictypeaccess.array.IntArray;
+import net.imglib2.type.numeric.integer.IntType;
+import net.imglib2.type.numeric.real.DoubleType;
+import net.imglib2.util.Intervals;
+import net.imglib2.view.DownsampleView.Mode;
+
+/**
+ * Tests {@link DownsampleView}.
+ */
+public class DownsampleViewTest
+{
+	private final ArrayImg< DoubleType, DoubleArray > img = ArrayImgs.doubles( new double[] {
+			1, 2, 3, 4, 5,
+			6, 7, 8, 9, 10,
+			11, 12, 13, 14, 15
+	}, 5, 3 );
+
+	@Test
+	public void testAverage()
+	{
+		final RandomAccessibleInterval< DoubleType > view = Views.downsample( img, Mode.AVERAGE, 2, 2 );
+		assertArrayEquals( new long[] { 3, 2 }, Intervals.dimensionsAsLongArray( view ) );
+		assertArrayEquals( new long[] { 0, 0 }, Intervals.minAsLongArray( view ) );
+		final RandomAccess< DoubleType > access = view.randomAccess();
+		assertEquals( ( 1 + 2 + 6 + 7 ) / 4.0, get( access, 0, 0 ).get(), 0 );
+		assertEquals( ( 5 + 10 ) / 2.0, get( access, 2, 0 ).get(), 0 );
+		assertEquals( ( 13 + 14 ) / 2.0, get( access, 1, 1 ).get(), 0 );
+		assertEquals( 15, get( access, 2, 1 ).get(), 0 );
+	}
+
+	@Test
+	public void testMaxWithOffsetSource()
+	{
+		final RandomAccessibleInterval< DoubleType > view = Views.downsample( Views.translate( img, -3, 7 ), Mode.MAX, 3, 3 );
+		assertArrayEquals( new long[] { 2, 1 }, Intervals.dimensionsAsLongArray( view ) );
+		final RandomAccess< DoubleType > access = view.randomAccess();
+		assertEquals( 13, get( access, 0, 0 ).get(), 0 );
+		assertEquals( 15, get( access, 1, 0 ).get(), 0 );
+	}
+
+	@Test
+	public void testMode()
+	{
+		final ArrayImg< IntType, IntArray > labels = ArrayImgs.ints( new int[] {
+				3, 3, 1, 2,
+				5, 3, 1, 2
+		}, 4, 2 );
+		final RandomAccess< IntType > access = Views.downsample( labels, Mode.MODE, 2, 2 ).randomAccess();
+		assertEquals( 3, get( access, 0, 0 ).get() );
+		assertEquals( 1, get( access, 1, 0 ).get() );
+	}
+
+	private static < T > T get( final RandomAccess< T > access, final long... position )
+	{
+		access.setPosition( position );
+		return access.get();
+	}
+}
@@ -0,0 +1,128 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2018 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.view;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.img.basictypeaccess.array.IntArray;
+import net.imglib2.img.cell.CellImg;
+import net.imglib2.img.cell.CellImgFactory;
+import net.imglib2.img.planar.PlanarImg;
+import net.imglib2.img.planar.PlanarImgs;
+import net.imglib2.test.ImgLib2Assert;
+import net.imglib2.test.RandomImgs;
+import net.imglib2.type.numeric.integer.IntType;
+
+/**
+ * Tests {@link Hyperslabs}.
+ */
+public class HyperslabsTest
+{
+	private final PlanarImg< IntType, IntArray > planar = RandomImgs.seed( 0 ).randomize( PlanarImgs.ints( 5, 4, 3, 2 ) );
+
+	@Test
+	public void testPlaneSharesData()
+	{
+		final ArrayImg< IntType, IntArray > plane = Hyperslabs.plane( planar, 2, 1 );
+		assertSame( planar.getPlane( 5 ), plane.update( null ) );
+		ImgLib2Assert.assertImageEquals( plane, Views.hyperSlice( Views.hyperSlice( planar, 3, 1 ), 2, 2 ) );
+
+		plane.firstElement().set( 42 );
+		assertEquals( 42, planar.getPlane( 5 ).getValue( 0 ) );
+	}
+
+	@Test
+	public void testPlanarHyperSlice()
+	{
+		for ( int d = 0; d < planar.numDimensions(); ++d )
+			for ( long pos = 0; pos < planar.dimension( d ); ++pos )
+				ImgLib2Assert.assertImageEquals( Hyperslabs.hyperSlice( planar, d, pos ), Views.hyperSlice( planar, d, pos ) );
+
+		assertTrue( Hyperslabs.hyperSlice( planar, 3, 1 ) instanceof PlanarImg );
+		assertTrue( Hyperslabs.hyperSlice( planar, 2, 0 ) instanceof PlanarImg );
+		assertTrue( Hyperslabs.hyperSlice( Hyperslabs.hyperSlice( planar, 3, 1 ), 2, 2 ) instanceof ArrayImg );
+	}
+
+	@Test
+	public void testCell()
+	{
+		final CellImg< IntType, ? > img = RandomImgs.seed( 1 ).randomize( new CellImgFactory<>( new IntType(), 4, 3, 1 ).create( 10, 6, 3 ) );
+		final ArrayImg< IntType, ? > cell = Hyperslabs.cell( img, 2, 1, 2 );
+		ImgLib2Assert.assertImageEquals( cell, Views.zeroMin( Views.interval( img, new long[] { 8, 3, 2 }, new long[] { 9, 5, 2 } ) ) );
+	}
+
+	@Test
+	public void testCellHyperSlice()
+	{
+		final CellImg< IntType, ? > img = RandomImgs.seed( 2 ).randomize( new CellImgFactory<>( new IntType(), 10, 6, 1 ).create( 10, 6, 3 ) );
+		for ( long pos = 0; pos < 3; ++pos )
+		{
+			final RandomAccessibleInterval< IntType > slice = Hyperslabs.hyperSlice( img, 2, pos );
+			assertTrue( slice instanceof ArrayImg );
+			ImgLib2Assert.assertImageEquals( slice, Views.hyperSlice( img, 2, pos ) );
+		}
+		ImgLib2Assert.assertImageEquals( Hyperslabs.hyperSlice( img, 0, 3 ), Views.hyperSlice( img, 0, 3 ) );
+	}
+
+	@Test
+	public void testStack()
+	{
+		final List< RandomAccessibleInterval< IntType > > planes = new ArrayList<>();
+		for ( int i = 0; i < 3; ++i )
+			planes.add( RandomImgs.seed( i ).randomize( ArrayImgs.ints( 5, 4 ) ) );
+
+		final RandomAccessibleInterval< IntType > stack = Hyperslabs.stack( planes );
+		assertTrue( stack instanceof PlanarImg );
+		assertSame( ( ( ArrayImg< ?, ? > ) planes.get( 1 ) ).update( null ), ( ( PlanarImg< ?, ? > ) stack ).getPlane( 1 ) );
+		ImgLib2Assert.assertImageEquals( stack, Views.stack( planes ) );
+
+		final RandomAccessibleInterval< IntType > stack4d = Hyperslabs.stack( stack, stack );
+		assertTrue( stack4d instanceof PlanarImg );
+		ImgLib2Assert.assertImageEquals( stack4d, Views.stack( stack, stack ) );
+
+		planes.add( Views.translate( planes.get( 0 ), 0, 0 ) );
+		assertTrue( Hyperslabs.stack( planes ) instanceof StackView );
+	}
+}
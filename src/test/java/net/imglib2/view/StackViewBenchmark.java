@@ -0,0 +1,167 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2018 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.view;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+import net.imglib2.Cursor;
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.test.RandomImgs;
+import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.view.StackView.StackAccessMode;
+
+/**
+ * Compares iteration and random access on a stack of {@link FloatType}
+ * {@link net.imglib2.img.array.ArrayImg} planes for both
+ * {@link StackAccessMode}s of {@link StackView} and for the
+ * {@link net.imglib2.img.planar.PlanarImg} created by
+ * {@link Hyperslabs#stack(List)}.
+ */
+@State( Scope.Benchmark )
+public class StackViewBenchmark
+{
+	private final List< RandomAccessibleInterval< FloatType > > planes = new ArrayList<>();
+	{
+		for ( int i = 0; i < 200; ++i )
+			planes.add( RandomImgs.seed( i ).randomize( ArrayImgs.floats( 128, 128 ) ) );
+	}
+
+	private final RandomAccessibleInterval< FloatType > defaultStack = Views.stack( StackAccessMode.DEFAULT, planes );
+
+	private final RandomAccessibleInterval< FloatType > moveAllStack = Views.stack( StackAccessMode.MOVE_ALL_SLICE_ACCESSES, planes );
+
+	private final RandomAccessibleInterval< FloatType > planarStack = Hyperslabs.stack( planes );
+
+	@Benchmark
+	public double iterateDefault()
+	{
+		return sum( defaultStack );
+	}
+
+	@Benchmark
+	public double iterateMoveAll()
+	{
+		return sum( moveAllStack );
+	}
+
+	@Benchmark
+	public double iteratePlanar()
+	{
+		return sum( planarStack );
+	}
+
+	@Benchmark
+	public double zProfilesDefault()
+	{
+		return sumAlongStackAxis( defaultStack );
+	}
+
+	@Benchmark
+	public double zProfilesMoveAll()
+	{
+		return sumAlongStackAxis( moveAllStack );
+	}
+
+	@Benchmark
+	public double zProfilesPlanar()
+	{
+		return sumAlongStackAxis( planarStack );
+	}
+
+	private static double sum( final RandomAccessibleInterval< FloatType > img )
+	{
+		double sum = 0;
+		final Cursor< FloatType > cursor = Views.flatIterable( img ).cursor();
+		while ( cursor.hasNext() )
+			sum += cursor.next().getRealDouble();
+		return sum;
+	}
+
+	/**
+	 * Visit every pixel with the stack axis in the inner loop, which is the
+	 * access pattern {@link StackAccessMode#MOVE_ALL_SLICE_ACCESSES} is
+	 * designed for.
+	 */
+	private static double sumAlongStackAxis( final RandomAccessibleInterval< FloatType > img )
+	{
+		double sum = 0;
+		final int sd = img.numDimensions() - 1;
+		final long sizeX = img.dimension( 0 );
+		final long sizeY = img.dimension( 1 );
+		final long sizeZ = img.dimension( sd );
+		final RandomAccess< FloatType > access = img.randomAccess();
+		for ( long y = 0; y < sizeY; ++y )
+		{
+			access.setPosition( y, 1 );
+			for ( long x = 0; x < sizeX; ++x )
+			{
+				access.setPosition( x, 0 );
+				access.setPosition( 0, sd );
+				sum += access.get().getRealDouble();
+				for ( long z = 1; z < sizeZ; ++z )
+				{
+					access.fwd( sd );
+					sum += access.get().getRealDouble();
+				}
+			}
+		}
+		return sum;
+	}
+
+	public static void main( final String... args ) throws RunnerException
+	{
+		final Options opt = new OptionsBuilder()
+				.include( StackViewBenchmark.class.getSimpleName() )
+				.forks( 0 )
+				.warmupIterations( 4 )
+				.measurementIterations( 8 )
+				.warmupTime( TimeValue.milliseconds( 100 ) )
+				.measurementTime( TimeValue.milliseconds( 100 ) )
+				.build();
+		new Runner( opt ).run();
+	}
+}
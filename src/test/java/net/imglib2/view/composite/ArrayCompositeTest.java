@@ -0,0 +1,132 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2018 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.view.composite;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import net.imglib2.Cursor;
+import net.imglib2.RandomAccess;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.array.ArrayImgFactory;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.img.basictypeaccess.array.DoubleArray;
+import net.imglib2.img.basictypeaccess.array.FloatArray;
+import net.imglib2.test.RandomImgs;
+import net.imglib2.type.numeric.real.DoubleType;
+import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.view.Views;
+
+/**
+ * Tests {@link FloatArrayComposite} and {@link DoubleArrayComposite}.
+ */
+public class ArrayCompositeTest
+{
+	@Test
+	public void testFloatCollapse()
+	{
+		final ArrayImg< FloatType, FloatArray > rgb = RandomImgs.seed( 0 ).randomize( ArrayImgs.floats( 3, 7, 5 ) );
+		final ArrayImg< FloatArrayComposite, FloatArray > collapsed = FloatArrayComposite.collapse( rgb );
+		assertArrayEquals( new long[] { 7, 5 }, new long[] { collapsed.dimension( 0 ), collapsed.dimension( 1 ) } );
+
+		final RandomAccess< RealComposite< FloatType > > reference = Views.collapseReal( Views.moveAxis( rgb, 0, 2 ) ).randomAccess();
+		final Cursor< FloatArrayComposite > cursor = collapsed.localizingCursor();
+		while ( cursor.hasNext() )
+		{
+			final FloatArrayComposite c = cursor.next();
+			reference.setPosition( cursor );
+			assertEquals( 3, c.getLength() );
+			for ( int i = 0; i < 3; ++i )
+			{
+				assertEquals( reference.get().get( i ).get(), c.getFloat( i ), 0 );
+				assertEquals( reference.get().get( i ).get(), c.get( i ).get(), 0 );
+			}
+		}
+
+		// writes go to the interleaved source
+		final RandomAccess< FloatArrayComposite > access = collapsed.randomAccess();
+		access.setPosition( new long[] { 2, 3 } );
+		access.get().set( new float[] { 1, 2, 3 } );
+		final RandomAccess< FloatType > source = rgb.randomAccess();
+		source.setPosition( new long[] { 1, 2, 3 } );
+		assertEquals( 2, source.get().get(), 0 );
+		assertEquals( 0.299 * 1 + 0.587 * 2 + 0.114 * 3, access.get().dot( new double[] { 0.299, 0.587, 0.114 } ), 1e-6 );
+	}
+
+	@Test
+	public void testDoubleCollapse()
+	{
+		final ArrayImg< DoubleType, DoubleArray > spectra = RandomImgs.seed( 1 ).randomize( ArrayImgs.doubles( 16, 10 ) );
+		final ArrayImg< DoubleArrayComposite, DoubleArray > collapsed = DoubleArrayComposite.collapse( spectra );
+
+		final double[] values = new double[ 16 ];
+		final RandomAccess< DoubleType > source = spectra.randomAccess();
+		final Cursor< DoubleArrayComposite > cursor = collapsed.localizingCursor();
+		while ( cursor.hasNext() )
+		{
+			cursor.next().get( values );
+			source.setPosition( cursor.getLongPosition( 0 ), 1 );
+			for ( int i = 0; i < 16; ++i )
+			{
+				source.setPosition( i, 0 );
+				assertEquals( source.get().get(), values[ i ], 0 );
+			}
+		}
+	}
+
+	@Test
+	public void testImgOfComposites()
+	{
+		final DoubleArrayComposite type = new DoubleArrayComposite( 4 );
+		final ArrayImg< DoubleArrayComposite, ? > img = new ArrayImgFactory<>( type ).create( 3, 2 );
+		final Cursor< DoubleArrayComposite > cursor = img.cursor();
+		int k = 0;
+		while ( cursor.hasNext() )
+		{
+			final DoubleArrayComposite c = cursor.next();
+			for ( int i = 0; i < 4; ++i )
+				c.setDouble( i, k++ );
+		}
+		final DoubleArrayComposite copy = img.firstElement().copy();
+		assertTrue( copy.valueEquals( img.firstElement() ) );
+		cursor.reset();
+		cursor.fwd();
+		cursor.fwd();
+		assertEquals( 6, cursor.get().getDouble( 2 ), 0 );
+	}
+}